@@ -0,0 +1,176 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.threadly.concurrent.CentralThreadlyPool;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.concurrent.future.SettableListenableFuture;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.Clock;
+
+/**
+ * {@link HostResolver} which does the (blocking) system lookups on a separate executor, and 
+ * caches the results.  Successful lookups are cached for the TTL, and failed lookups are cached 
+ * for the negative TTL so that a missing host does not cause a lookup per request.  Concurrent 
+ * resolutions of the same host share a single lookup.
+ * <p>
+ * Note that the JVM also caches lookups (see the {@code networkaddress.cache.ttl} security 
+ * property), so the effective TTL may be longer than the one configured here.
+ */
+public class CachingHostResolver implements HostResolver {
+  public static final long DEFAULT_TTL_MILLIS = 30_000;
+  public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 5_000;
+  public static final int DEFAULT_LOOKUP_THREADS = 4;
+  private static final int PRUNE_SIZE = 1024;
+  private static volatile Executor defaultExecutor = null;
+
+  private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  private final Executor executor;
+  private final long ttlMillis;
+  private final long negativeTtlMillis;
+
+  /**
+   * Constructs a resolver with the default TTLs, running lookups on a shared pool of 
+   * {@value #DEFAULT_LOOKUP_THREADS} threads.
+   */
+  public CachingHostResolver() {
+    this(getDefaultExecutor(), DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+  }
+
+  /**
+   * Constructs a resolver with the default TTLs.
+   * 
+   * @param executor Executor to run the blocking lookups on
+   */
+  public CachingHostResolver(Executor executor) {
+    this(executor, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+  }
+
+  /**
+   * Constructs a new resolver.
+   * 
+   * @param executor Executor to run the blocking lookups on
+   * @param ttlMillis Time in milliseconds to cache resolved addresses
+   * @param negativeTtlMillis Time in milliseconds to cache failed lookups
+   */
+  public CachingHostResolver(Executor executor, long ttlMillis, long negativeTtlMillis) {
+    ArgumentVerifier.assertNotNull(executor, "executor");
+    ArgumentVerifier.assertNotNegative(ttlMillis, "ttlMillis");
+    ArgumentVerifier.assertNotNegative(negativeTtlMillis, "negativeTtlMillis");
+    this.executor = executor;
+    this.ttlMillis = ttlMillis;
+    this.negativeTtlMillis = negativeTtlMillis;
+  }
+
+  private static Executor getDefaultExecutor() {
+    Executor result = defaultExecutor;
+    if (result == null) {
+      synchronized (CachingHostResolver.class) {
+        result = defaultExecutor;
+        if (result == null) {
+          defaultExecutor = result = 
+              CentralThreadlyPool.threadPool(DEFAULT_LOOKUP_THREADS, "HTTPClient-dns");
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ListenableFuture<List<InetAddress>> resolve(String host) {
+    CacheEntry entry = cache.get(host);
+    if (entry != null && ! entry.isExpired()) {
+      return entry.future;
+    }
+    if (cache.size() >= PRUNE_SIZE) {
+      prune();
+    }
+    return cache.compute(host, (k, current) -> {
+      if (current != null && ! current.isExpired()) {
+        return current;
+      }
+      CacheEntry newEntry = new CacheEntry();
+      executor.execute(() -> newEntry.lookup(k));
+      return newEntry;
+    }).future;
+  }
+
+  /**
+   * Removes any cached result for the host, so that the next resolution does a new lookup.
+   * 
+   * @param host The host to remove from the cache
+   */
+  public void invalidate(String host) {
+    cache.remove(host);
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Returns the number of hosts currently cached (including failures and in progress lookups).
+   * 
+   * @return The number of cached hosts
+   */
+  public int getCacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Does the blocking lookup for the host.  Can be overridden to change how hosts are resolved.
+   * 
+   * @param host The host to resolve
+   * @return The addresses for the host
+   * @throws UnknownHostException Thrown if the host can not be resolved
+   */
+  protected InetAddress[] lookup(String host) throws UnknownHostException {
+    return InetAddress.getAllByName(host);
+  }
+
+  private void prune() {
+    Iterator<CacheEntry> it = cache.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().isExpired()) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * A cached (or in progress) lookup.
+   */
+  private class CacheEntry {
+    private final SettableListenableFuture<List<InetAddress>> future = 
+        new SettableListenableFuture<>(false);
+    private volatile long expiresAt = Long.MAX_VALUE;  // never while the lookup is in progress
+
+    private boolean isExpired() {
+      return Clock.lastKnownForwardProgressingMillis() >= expiresAt;
+    }
+
+    private void lookup(String host) {
+      try {
+        InetAddress[] addresses = CachingHostResolver.this.lookup(host);
+        if (addresses == null || addresses.length == 0) {
+          throw new UnknownHostException(host);
+        }
+        expiresAt = Clock.accurateForwardProgressingMillis() + ttlMillis;
+        future.setResult(Collections.unmodifiableList(Arrays.asList(addresses)));
+      } catch (Throwable t) {
+        expiresAt = Clock.accurateForwardProgressingMillis() + negativeTtlMillis;
+        future.setFailure(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,380 @@
+package org.threadly.litesockets.client.http;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.threadly.litesockets.TCPClient;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.ExceptionUtils;
+
+/**
+ * Pool of idle {@link TCPClient} connections, kept per {@link HTTPAddress}.  Each host has a
+ * fixed size LIFO stack so that the most recently used (and thus most likely to still be open)
+ * connection is reused first.  Checking out and returning connections is lock free.
+ * <p>
+ * Each host will hold at most the {@code maxIdlePerHost} connections, connections returned past
+ * that are closed.  If a maximum idle time is set, each returned connection gets a timeout on the
+ * provided {@link TimingWheel} which closes it once expired, so connections are evicted one at a
+ * time rather than by scanning the pool.  Connections returned while the host has fewer than
+ * {@code minIdlePerHost} idle connections are not expired.
+ */
+class ConnectionPool {
+  private final ConcurrentHashMap<HTTPAddress, HostPool> hosts = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final TimingWheel timingWheel;
+  private volatile int minIdlePerHost;
+  private volatile int maxIdlePerHost;
+  private volatile long maxIdleTime = -1;
+  private volatile Consumer<HTTPAddress> idleEvictionListener = null;
+
+  ConnectionPool(TimingWheel timingWheel, int minIdlePerHost, int maxIdlePerHost) {
+    this.timingWheel = timingWheel;
+    setIdleLimits(minIdlePerHost, maxIdlePerHost);
+  }
+
+  /**
+   * Updates the per host idle limits.  Hosts which have already been pooled with a different
+   * maximum will have their idle connections closed.
+   *
+   * @param minIdlePerHost Number of connections to keep open per host even if expired
+   * @param maxIdlePerHost Maximum number of idle connections to keep per host
+   */
+  public void setIdleLimits(int minIdlePerHost, int maxIdlePerHost) {
+    ArgumentVerifier.assertNotNegative(minIdlePerHost, "minIdlePerHost");
+    ArgumentVerifier.assertNotNegative(maxIdlePerHost, "maxIdlePerHost");
+    if (minIdlePerHost > maxIdlePerHost) {
+      throw new IllegalArgumentException("minIdlePerHost can not be greater than maxIdlePerHost");
+    }
+    this.minIdlePerHost = minIdlePerHost;
+    this.maxIdlePerHost = maxIdlePerHost;
+    Iterator<HostPool> it = hosts.values().iterator();
+    while (it.hasNext()) {
+      HostPool hp = it.next();
+      if (hp.capacity() != maxIdlePerHost) {
+        it.remove();
+        hp.retire(this);
+      }
+    }
+  }
+
+  public int getMinIdlePerHost() {
+    return minIdlePerHost;
+  }
+
+  public int getMaxIdlePerHost() {
+    return maxIdlePerHost;
+  }
+
+  /**
+   * Sets how long a returned connection may be idle before it is closed.  This applies to
+   * connections returned after it is set.
+   *
+   * @param maxIdleTime Time in milliseconds a connection can be idle, {@code <= 0} to never expire
+   */
+  public void setMaxIdleTime(long maxIdleTime) {
+    this.maxIdleTime = maxIdleTime;
+  }
+
+  /**
+   * Sets a listener to be invoked with the host address when an idle connection is evicted 
+   * because its idle time expired or it was found to be closed.  The listener may be invoked on 
+   * the timing wheel thread, so it should be quick.
+   *
+   * @param listener Listener to invoke, or {@code null} to remove
+   */
+  public void setIdleEvictionListener(Consumer<HTTPAddress> listener) {
+    this.idleEvictionListener = listener;
+  }
+
+  /**
+   * Takes the most recently returned open connection for the host.  Connections which were
+   * closed while idle are discarded.
+   *
+   * @param ha The address to get a connection to
+   * @return An open connection, or {@code null} if a new connection must be created
+   */
+  public TCPClient checkout(HTTPAddress ha) {
+    HostPool hp = hosts.get(ha);
+    if (hp != null) {
+      TCPClient client;
+      while ((client = hp.pop()) != null) {
+        if (! client.isClosed()) {
+          hits.increment();
+          return client;
+        }
+        evictions.increment();
+        idleEvicted(ha);
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Returns a connection to be reused for future requests to the host.  If the host already has
+   * the maximum idle connections the connection will be closed.
+   *
+   * @param ha The address the connection is to
+   * @param client The connection which is now idle
+   */
+  public void release(HTTPAddress ha, TCPClient client) {
+    HostPool hp = hosts.get(ha);
+    if (hp == null) {
+      int maxIdle = maxIdlePerHost;
+      if (maxIdle == 0) {
+        evict(client);
+        return;
+      }
+      hp = hosts.computeIfAbsent(ha, (ignored) -> new HostPool(ha, maxIdle));
+    }
+    if (! hp.push(this, client)) {
+      // full, but some of the pooled connections may have been closed while idle
+      hp.removeClosed(this);
+      if (! hp.push(this, client)) {
+        evict(client);
+        return;
+      }
+    }
+    if (hp.isRetired()) {
+      // pool was retired while we were returning, make sure the connection is not stranded
+      hp.drain(this);
+    }
+  }
+
+  /**
+   * Closes all idle connections.
+   */
+  public void closeIdle() {
+    for (HostPool hp : hosts.values()) {
+      hp.drain(this);
+    }
+  }
+
+  /**
+   * Counts the idle connections across all hosts.
+   *
+   * @return The number of pooled connections
+   */
+  public int getIdleCount() {
+    int result = 0;
+    for (HostPool hp : hosts.values()) {
+      result += hp.size();
+    }
+    return result;
+  }
+
+  /**
+   * Counts the idle connections to a single host.
+   *
+   * @param ha The address to count connections for
+   * @return The number of pooled connections to the host
+   */
+  public int getIdleCount(HTTPAddress ha) {
+    HostPool hp = hosts.get(ha);
+    return hp == null ? 0 : hp.size();
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  private void evict(TCPClient client) {
+    evictions.increment();
+    client.close();
+  }
+
+  private void idleEvicted(HTTPAddress ha) {
+    Consumer<HTTPAddress> listener = idleEvictionListener;
+    if (listener != null) {
+      try {
+        listener.accept(ha);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+
+  /**
+   * Fixed size LIFO stack of idle connections for a single host.  Connections are stored in slots,
+   * and two lock free stacks of slot indexes are used, one for the idle slots and one for the
+   * free slots.  A slot is only ever in one of the stacks (or held by the thread which popped it),
+   * so a single {@code next} array can be shared.
+   * <p>
+   * A connection whose idle timeout expires is closed and no longer counted, but its slot is only
+   * reclaimed once it is popped (or the pool fills and closed connections are removed).
+   */
+  private static class HostPool {
+    private final HTTPAddress address;
+    private final TCPClient[] clients;
+    private final TimingWheel.Timeout[] timeouts;
+    private final int[] next;
+    private final IndexStack idle;
+    private final IndexStack free;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean retired = false;
+
+    private HostPool(HTTPAddress address, int capacity) {
+      this.address = address;
+      clients = new TCPClient[capacity];
+      timeouts = new TimingWheel.Timeout[capacity];
+      next = new int[capacity];
+      idle = new IndexStack(next);
+      free = new IndexStack(next);
+      for (int i = capacity - 1; i >= 0; i--) {
+        free.push(i);
+      }
+    }
+
+    private int capacity() {
+      return clients.length;
+    }
+
+    private boolean isRetired() {
+      return retired;
+    }
+
+    private void retire(ConnectionPool pool) {
+      retired = true;
+      drain(pool);
+    }
+
+    private boolean push(ConnectionPool pool, TCPClient client) {
+      int slot = free.pop();
+      if (slot < 0) {
+        return false;
+      }
+      clients[slot] = client;
+      long maxIdleTime = pool.maxIdleTime;
+      if (maxIdleTime > 0 && size.get() >= pool.minIdlePerHost) {
+        timeouts[slot] = pool.timingWheel.schedule(() -> {
+          size.decrementAndGet();
+          pool.evict(client);
+          pool.idleEvicted(address);
+        }, maxIdleTime);
+      } else {
+        timeouts[slot] = null;
+      }
+      size.incrementAndGet();
+      idle.push(slot);
+      return true;
+    }
+
+    private TCPClient pop() {
+      while (true) {
+        int slot = idle.pop();
+        if (slot < 0) {
+          return null;
+        }
+        TCPClient client = clients[slot];
+        TimingWheel.Timeout timeout = timeouts[slot];
+        clients[slot] = null;
+        timeouts[slot] = null;
+        free.push(slot);
+        if (timeout == null || timeout.cancel()) {
+          size.decrementAndGet();
+          return client;
+        } // else expired while idle, already closed and no longer counted
+      }
+    }
+
+    private int size() {
+      return size.get();
+    }
+
+    private void drain(ConnectionPool pool) {
+      TCPClient client;
+      while ((client = pop()) != null) {
+        pool.evict(client);
+      }
+    }
+
+    private void removeClosed(ConnectionPool pool) {
+      // take all idle slots (newest first) so they can be checked, then return kept ones in order
+      int[] slots = new int[clients.length];
+      int count = 0;
+      int slot;
+      while (count < slots.length && (slot = idle.pop()) >= 0) {
+        slots[count++] = slot;
+      }
+      int kept = 0;
+      for (int i = 0; i < count; i++) {
+        TCPClient client = clients[slots[i]];
+        TimingWheel.Timeout timeout = timeouts[slots[i]];
+        if (! client.isClosed() && (timeout == null || ! timeout.isExpired())) {
+          slots[kept++] = slots[i];
+          continue;
+        } else if (timeout == null || timeout.cancel()) {
+          // closed by the remote side, if the cancel failed the timeout has already accounted for it
+          size.decrementAndGet();
+          pool.evictions.increment();
+          pool.idleEvicted(address);
+        }
+        clients[slots[i]] = null;
+        timeouts[slots[i]] = null;
+        free.push(slots[i]);
+      }
+      for (int i = kept - 1; i >= 0; i--) {
+        idle.push(slots[i]);
+      }
+    }
+  }
+
+  /**
+   * Treiber stack of slot indexes.  The head holds the top index in the low 32 bits and a version
+   * in the high 32 bits, the version is incremented on every change to avoid ABA problems when a
+   * slot is popped and pushed back while another thread is attempting a pop.
+   */
+  private static class IndexStack {
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLong head = new AtomicLong();
+    private final int[] next;
+
+    private IndexStack(int[] next) {
+      this.next = next;
+    }
+
+    private static long makeHead(long previous, int index) {
+      return (((previous >>> 32) + 1) << 32) | ((index + 1) & INDEX_MASK);
+    }
+
+    private void push(int index) {
+      while (true) {
+        long current = head.get();
+        // next is published by the volatile write of the CAS
+        next[index] = (int)(current & INDEX_MASK) - 1;
+        if (head.compareAndSet(current, makeHead(current, index))) {
+          return;
+        }
+      }
+    }
+
+    private int pop() {
+      while (true) {
+        long current = head.get();
+        int index = (int)(current & INDEX_MASK) - 1;
+        if (index < 0) {
+          return -1;
+        } else if (head.compareAndSet(current, makeHead(current, next[index]))) {
+          return index;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package org.threadly.litesockets.client.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.threadly.concurrent.future.FutureCallback;
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.concurrent.future.SettableListenableFuture;
+import org.threadly.litesockets.TCPClient;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.Clock;
+
+/**
+ * Establishes connections to hosts which resolve to multiple addresses, in the style of Happy
+ * Eyeballs (RFC 8305).  Addresses are attempted one at a time, but if an attempt has not
+ * connected within the attempt delay the next address is started without abandoning the first.
+ * The first attempt to connect wins and all others are closed.
+ * <p>
+ * Addresses which fail to connect are remembered for the failure penalty time, and are attempted
+ * after healthy addresses until then.
+ */
+class ConnectionRacer {
+  public static final long DEFAULT_ATTEMPT_DELAY_MILLIS = 250;
+  public static final long DEFAULT_FAILURE_PENALTY_MILLIS = 10_000;
+
+  private final ConcurrentHashMap<InetAddress, Long> failedUntil = new ConcurrentHashMap<>();
+  private final TimingWheel timingWheel;
+  private volatile long attemptDelayMillis = DEFAULT_ATTEMPT_DELAY_MILLIS;
+  private volatile long failurePenaltyMillis = DEFAULT_FAILURE_PENALTY_MILLIS;
+
+  ConnectionRacer(TimingWheel timingWheel) {
+    this.timingWheel = timingWheel;
+  }
+
+  public void setAttemptDelay(long attemptDelayMillis) {
+    ArgumentVerifier.assertNotNegative(attemptDelayMillis, "attemptDelayMillis");
+    this.attemptDelayMillis = attemptDelayMillis;
+  }
+
+  public long getAttemptDelay() {
+    return attemptDelayMillis;
+  }
+
+  public void setFailurePenalty(long failurePenaltyMillis) {
+    ArgumentVerifier.assertNotNegative(failurePenaltyMillis, "failurePenaltyMillis");
+    this.failurePenaltyMillis = failurePenaltyMillis;
+    if (failurePenaltyMillis == 0) {
+      failedUntil.clear();
+    }
+  }
+
+  public long getFailurePenalty() {
+    return failurePenaltyMillis;
+  }
+
+  /**
+   * Connects to one of the addresses.  If there is only a single address the client is returned
+   * right away (still connecting), otherwise the returned future completes once an attempt has
+   * connected, or fails once all attempts have failed.
+   *
+   * @param addresses The resolved addresses for the host, must not be empty
+   * @param sequence Incrementing number used to rotate through the addresses
+   * @param factory Creates a connecting client for an address
+   * @return A future which will complete with the client to use
+   */
+  public ListenableFuture<TCPClient> connect(List<InetAddress> addresses, int sequence,
+                                             ClientFactory factory) {
+    if (addresses.size() == 1) {
+      try {
+        return FutureUtils.immediateResultFuture(factory.create(addresses.get(0)));
+      } catch (Throwable t) {
+        return FutureUtils.immediateFailureFuture(t);
+      }
+    }
+    Race race = new Race(orderAddresses(addresses, sequence), factory);
+    race.startNext();
+    return race.result;
+  }
+
+  /**
+   * Checks if the address recently failed to connect.
+   *
+   * @param address The address to check
+   * @return {@code true} if the address is currently being attempted after healthy addresses
+   */
+  public boolean isPenalized(InetAddress address) {
+    Long until = failedUntil.get(address);
+    if (until == null) {
+      return false;
+    } else if (Clock.lastKnownForwardProgressingMillis() >= until) {
+      failedUntil.remove(address, until);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Orders the addresses in which they should be attempted.  Addresses from the family of the
+   * first (system preferred) address are interleaved with the other family, each family rotated
+   * by the sequence so that connections are spread across the addresses.  Recently failed
+   * addresses are then moved to the end.
+   *
+   * @param addresses The resolved addresses
+   * @param sequence Incrementing number used to rotate through the addresses
+   * @return A new list with the addresses in the order to be attempted
+   */
+  public List<InetAddress> orderAddresses(List<InetAddress> addresses, int sequence) {
+    Class<?> preferredFamily = addresses.get(0).getClass();
+    List<InetAddress> preferred = new ArrayList<>(addresses.size());
+    List<InetAddress> other = new ArrayList<>(addresses.size());
+    for (InetAddress address : addresses) {
+      if (address.getClass() == preferredFamily) {
+        preferred.add(address);
+      } else {
+        other.add(address);
+      }
+    }
+    List<InetAddress> interleaved = new ArrayList<>(addresses.size());
+    for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+      if (i < preferred.size()) {
+        interleaved.add(preferred.get(Math.floorMod(sequence + i, preferred.size())));
+      }
+      if (i < other.size()) {
+        interleaved.add(other.get(Math.floorMod(sequence + i, other.size())));
+      }
+    }
+    List<InetAddress> result = new ArrayList<>(addresses.size());
+    List<InetAddress> penalized = null;
+    for (InetAddress address : interleaved) {
+      if (isPenalized(address)) {
+        if (penalized == null) {
+          penalized = new ArrayList<>(addresses.size());
+        }
+        penalized.add(address);
+      } else {
+        result.add(address);
+      }
+    }
+    if (penalized != null) {
+      result.addAll(penalized);
+    }
+    return result;
+  }
+
+  private void addressFailed(InetAddress address) {
+    long penalty = failurePenaltyMillis;
+    if (penalty > 0) {
+      failedUntil.put(address, Clock.accurateForwardProgressingMillis() + penalty);
+    }
+  }
+
+  /**
+   * Creates a new client which has started connecting to the address.
+   */
+  interface ClientFactory {
+    TCPClient create(InetAddress address) throws IOException;
+  }
+
+  /**
+   * State for racing the connection attempts for a single connection.
+   */
+  private class Race {
+    private final SettableListenableFuture<TCPClient> result = new SettableListenableFuture<>(false);
+    private final List<InetAddress> addresses;
+    private final ClientFactory factory;
+    private final TCPClient[] attempts;
+    private int started = 0;
+    private int failed = 0;
+    private TimingWheel.Timeout nextAttempt = null;
+
+    private Race(List<InetAddress> addresses, ClientFactory factory) {
+      this.addresses = addresses;
+      this.factory = factory;
+      this.attempts = new TCPClient[addresses.size()];
+    }
+
+    private synchronized void startNext() {
+      if (result.isDone() || started == attempts.length) {
+        return;
+      }
+      if (nextAttempt != null) {
+        nextAttempt.cancel();
+        nextAttempt = null;
+      }
+      final int index = started++;
+      final InetAddress address = addresses.get(index);
+      TCPClient client;
+      try {
+        client = factory.create(address);
+      } catch (Throwable t) {
+        attemptFailed(address, t);
+        return;
+      }
+      attempts[index] = client;
+      if (started < attempts.length) {
+        nextAttempt = timingWheel.schedule(this::startNext, attemptDelayMillis);
+      }
+      client.connect().callback(new FutureCallback<Boolean>() {
+        @Override
+        public void handleResult(Boolean ignored) {
+          connected(index);
+        }
+
+        @Override
+        public void handleFailure(Throwable t) {
+          attemptFailed(address, t);
+        }
+      });
+    }
+
+    private synchronized void connected(int index) {
+      TCPClient client = attempts[index];
+      if (result.isDone()) {
+        // lost the race
+        client.close();
+        return;
+      }
+      if (nextAttempt != null) {
+        nextAttempt.cancel();
+        nextAttempt = null;
+      }
+      for (int i = 0; i < started; i++) {
+        if (i != index && attempts[i] != null) {
+          attempts[i].close();
+        }
+      }
+      failedUntil.remove(addresses.get(index));
+      result.setResult(client);
+    }
+
+    private synchronized void attemptFailed(InetAddress address, Throwable t) {
+      failed++;
+      if (result.isDone()) {
+        // likely closed because another attempt won, so not counted against the address
+        return;
+      }
+      addressFailed(address);
+      if (failed == attempts.length) {
+        result.setFailure(t);
+      } else if (failed == started) {
+        // nothing left in progress, no need to wait for the delay
+        startNext();
+      }
+    }
+  }
+}
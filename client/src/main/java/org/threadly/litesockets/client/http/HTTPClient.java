@@ -2,26 +2,32 @@ package org.threadly.litesockets.client.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 
 import org.threadly.concurrent.ReschedulingOperation;
 import org.threadly.concurrent.SingleThreadScheduler;
 import org.threadly.concurrent.SubmitterScheduler;
+import org.threadly.concurrent.TaskPriority;
 import org.threadly.concurrent.future.FutureCallback;
 import org.threadly.concurrent.future.FutureUtils;
 import org.threadly.concurrent.future.ListenableFuture;
@@ -36,22 +42,29 @@ import org.threadly.litesockets.buffers.MergedByteBuffers;
 import org.threadly.litesockets.buffers.ReuseableMergedByteBuffers;
 import org.threadly.litesockets.buffers.SimpleMergedByteBuffers;
 import org.threadly.litesockets.protocols.http.request.ClientHTTPRequest;
+import org.threadly.litesockets.protocols.http.request.ClientHTTPRequest.BodyConsumer;
 import org.threadly.litesockets.protocols.http.request.HTTPRequest;
 import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder.BufferedBodyConsumer;
 import org.threadly.litesockets.protocols.http.response.HTTPResponse;
 import org.threadly.litesockets.protocols.http.response.HTTPResponseProcessor;
 import org.threadly.litesockets.protocols.http.response.HTTPResponseProcessor.HTTPResponseCallback;
+import org.threadly.litesockets.protocols.http.shared.ContentDecoder;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoding;
 import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
 import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
 import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
 import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
 import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
 import org.threadly.litesockets.protocols.websocket.WSFrame;
 import org.threadly.litesockets.utils.IOUtils;
 import org.threadly.litesockets.utils.SSLUtils;
 import org.threadly.util.AbstractService;
+import org.threadly.util.ArgumentVerifier;
 import org.threadly.util.Clock;
-import org.threadly.util.Pair;
+import org.threadly.util.ExceptionUtils;
 
 /**
  * <p>This is a HTTPClient for doing many simple HTTPRequests.  Every request will be make a new connection and requests
@@ -62,20 +75,44 @@ public class HTTPClient extends AbstractService {
   public static final int DEFAULT_CONCURRENT = 8;
   public static final int DEFAULT_TIMEOUT = 15000;
   public static final int DEFAULT_MAX_IDLE = 45000;
+  public static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+  public static final int DEFAULT_LOW_PRIORITY_MAX_WAIT = 500;
+  public static final int DEFAULT_MAX_HOST_TIMING_STATS = 1024;
 
   private final SubmitterScheduler ssi;
   private final SocketExecuter sei;
-  private final Queue<HTTPRequestWrapper> queue;
+  private final ConcurrentHashMap<HTTPAddress, HostQueue> hostQueues = new ConcurrentHashMap<>();
+  private final PriorityLevel[] priorityLevels = new PriorityLevel[TaskPriority.values().length];
+  private final AtomicInteger queuedCount = new AtomicInteger();
+  private final AtomicInteger pendingConnects = new AtomicInteger();
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicInteger dispatchRequests = new AtomicInteger();
   private final ConcurrentHashMap<TCPClient, HTTPRequestWrapper> inProcess = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<HTTPAddress, ArrayDeque<Pair<Long,TCPClient>>> sockets = new ConcurrentHashMap<>();
-  private final CopyOnWriteArraySet<TCPClient> tcpClients = new CopyOnWriteArraySet<>();
+  // each connection keeps its response processor, which is reset and reused for each request
+  private final ConcurrentHashMap<TCPClient, ConnectionState> tcpClients = new ConcurrentHashMap<>();
+  private final TimingWheel timingWheel;
+  private final ConnectionPool connectionPool;
+  private final ConnectionRacer connectionRacer;
   private final MainClientProcessor mcp = new MainClientProcessor();
   private final RunSocket runSocketTask;
   private final int maxConcurrent;
-  private volatile Runnable checkIdle = null;
+  private final int maxQueueSize;
   private volatile long defaultTimeoutMS = HTTPRequest.DEFAULT_TIMEOUT_MS;
   private volatile SSLContext sslContext = SSLUtils.OPEN_SSL_CTX;
   private volatile long maxIdleTime = DEFAULT_MAX_IDLE;
+  private volatile boolean decompressResponses = false;
+  private volatile int maxConcurrentPerHost;
+  private volatile long maxWaitForLowPriorityMs = DEFAULT_LOW_PRIORITY_MAX_WAIT;
+  private volatile HostResolver hostResolver = new CachingHostResolver();
+  private volatile HTTPClientEventListener eventListener = HTTPClientEventListener.NO_OP;
+  private final ConcurrentHashMap<HTTPAddress, WarmPolicy> warmPolicies = new ConcurrentHashMap<>();
+  private final TLSSessionTracker tlsSessionTracker = new TLSSessionTracker();
+  private final Object hostTimingStatsLock = new Object();
+  // access ordered so the least recently used host is dropped first, guarded by hostTimingStatsLock
+  private final LinkedHashMap<HTTPAddress, HostTimingStats> hostTimingStats = new LinkedHashMap<>(16, .75f, true);
+  private volatile int maxHostTimingStats = DEFAULT_MAX_HOST_TIMING_STATS;
+  private volatile int tlsSessionCacheSize = -1;
+  private volatile int tlsSessionTimeoutSeconds = -1;
 
   private NoThreadSocketExecuter ntse = null;
   private SingleThreadScheduler sts = null;
@@ -116,12 +153,17 @@ public class HTTPClient extends AbstractService {
     this.maxConcurrent = maxConcurrent;
     sts = new SingleThreadScheduler();
     this.ssi = sts;
+    this.timingWheel = new TimingWheel(ssi);
+    this.connectionPool = new ConnectionPool(timingWheel, 0, Math.max(1, maxConcurrent));
+    connectionPool.setMaxIdleTime(maxIdleTime);
+    this.connectionRacer = new ConnectionRacer(timingWheel);
+    connectionPool.setIdleEvictionListener(this::idleConnectionEvicted);
     ntse = new NoThreadSocketExecuter();
     sei = ntse;
-    if (maxQueueSize < 1 || maxQueueSize == Integer.MAX_VALUE) {
-      queue = new ConcurrentLinkedQueue<>();
-    } else {
-      queue = new ArrayBlockingQueue<>(maxQueueSize);
+    this.maxQueueSize = maxQueueSize < 1 ? Integer.MAX_VALUE : maxQueueSize;
+    this.maxConcurrentPerHost = maxConcurrent;
+    for (TaskPriority priority : TaskPriority.values()) {
+      priorityLevels[priority.ordinal()] = new PriorityLevel();
     }
     runSocketTask = new RunSocket(ssi);
   }
@@ -153,11 +195,16 @@ public class HTTPClient extends AbstractService {
   public HTTPClient(int maxConcurrent, int maxQueueSize, SocketExecuter sei) {
     this.maxConcurrent = maxConcurrent;
     this.ssi = sei.getThreadScheduler();
+    this.timingWheel = new TimingWheel(ssi);
+    this.connectionPool = new ConnectionPool(timingWheel, 0, Math.max(1, maxConcurrent));
+    connectionPool.setMaxIdleTime(maxIdleTime);
+    this.connectionRacer = new ConnectionRacer(timingWheel);
+    connectionPool.setIdleEvictionListener(this::idleConnectionEvicted);
     this.sei = sei;
-    if (maxQueueSize < 1 || maxQueueSize == Integer.MAX_VALUE) {
-      queue = new ConcurrentLinkedQueue<>();
-    } else {
-      queue = new ArrayBlockingQueue<>(maxQueueSize);
+    this.maxQueueSize = maxQueueSize < 1 ? Integer.MAX_VALUE : maxQueueSize;
+    this.maxConcurrentPerHost = maxConcurrent;
+    for (TaskPriority priority : TaskPriority.values()) {
+      priorityLevels[priority.ordinal()] = new PriorityLevel();
     }
     runSocketTask = new RunSocket(ssi);
   }
@@ -169,9 +216,122 @@ public class HTTPClient extends AbstractService {
    * @return number of pending requests.
    */
   public int getRequestQueueSize() {
-    return this.queue.size();
+    return queuedCount.get();
+  }
+
+  /**
+   * Number of HTTPRequests of a given priority pending on the HTTPClient.  These requests are not 
+   * currently being processed, but waiting in queue for the next free http worker.
+   * 
+   * @param priority the {@link TaskPriority} of the requests to count
+   * @return number of pending requests at the given priority.
+   */
+  public int getRequestQueueSize(TaskPriority priority) {
+    return priorityLevels[priority.ordinal()].queued.get();
+  }
+  
+  /**
+   * Returns the average time in milliseconds requests of a given priority waited in the queue 
+   * before being started.  This includes all requests started since the client was constructed.
+   * 
+   * @param priority the {@link TaskPriority} of the requests to check
+   * @return average queue wait time in milliseconds, or {@code -1} if no requests have been started
+   */
+  public double getAverageQueueWaitMillis(TaskPriority priority) {
+    PriorityLevel level = priorityLevels[priority.ordinal()];
+    long count = level.started.sum();
+    if (count == 0) {
+      return -1;
+    }
+    return level.totalWaitMillis.sum() / (double)count;
+  }
+  
+  /**
+   * Sets the maximum time a {@link TaskPriority#Low} request will wait in queue while 
+   * {@link TaskPriority#High} requests are being started.  Once the oldest low priority request 
+   * has waited this long it will be started ahead of high priority requests, avoiding starvation.  
+   * {@link TaskPriority#Starvable} requests are only started once no other requests are queued.
+   * 
+   * @param maxWaitMs time in milliseconds a low priority request can be delayed by high priority requests
+   */
+  public void setMaxWaitForLowPriority(long maxWaitMs) {
+    ArgumentVerifier.assertNotNegative(maxWaitMs, "maxWaitMs");
+    this.maxWaitForLowPriorityMs = maxWaitMs;
+  }
+  
+  /**
+   * Returns the maximum time a {@link TaskPriority#Low} request will be delayed by 
+   * {@link TaskPriority#High} requests.
+   * 
+   * @return time in milliseconds a low priority request can be delayed
+   */
+  public long getMaxWaitForLowPriority() {
+    return maxWaitForLowPriorityMs;
   }
 
+  /**
+   * Sets the {@link HostResolver} used to resolve hosts when a new connection is needed.  By
+   * default a {@link CachingHostResolver} is used so that lookups are not done on the client
+   * thread.  Connections are made round-robin across the resolved addresses, see 
+   * {@link #setConnectionAttemptDelay(long, TimeUnit)} for how unreachable addresses are handled.
+   *
+   * @param hostResolver The resolver to use for new connections
+   */
+  public void setHostResolver(HostResolver hostResolver) {
+    ArgumentVerifier.assertNotNull(hostResolver, "hostResolver");
+    this.hostResolver = hostResolver;
+  }
+
+  /**
+   * Returns the {@link HostResolver} used when creating new connections.
+   *
+   * @return The current resolver
+   */
+  public HostResolver getHostResolver() {
+    return hostResolver;
+  }
+
+  /**
+   * Sets how long a connection attempt to one of a host's addresses can take before an attempt 
+   * to the next address is started in parallel.  This only applies to hosts which resolve to 
+   * multiple addresses, the first attempt to connect is used and the others are closed.
+   *
+   * @param attemptDelay Time to wait before racing the next address, {@code 0} to start all at once
+   * @param unit The unit the {@code attemptDelay} value is represented in
+   */
+  public void setConnectionAttemptDelay(long attemptDelay, TimeUnit unit) {
+    connectionRacer.setAttemptDelay(unit.toMillis(attemptDelay));
+  }
+
+  /**
+   * Returns the delay before racing a connection to the next address of a host.
+   *
+   * @return Time in milliseconds before the next address is attempted
+   */
+  public long getConnectionAttemptDelay() {
+    return connectionRacer.getAttemptDelay();
+  }
+
+  /**
+   * Sets how long an address which failed to connect will be attempted after the other addresses 
+   * of the host.
+   *
+   * @param penalty Time to deprioritize a failed address, {@code 0} to not remember failures
+   * @param unit The unit the {@code penalty} value is represented in
+   */
+  public void setFailedAddressPenalty(long penalty, TimeUnit unit) {
+    connectionRacer.setFailurePenalty(unit.toMillis(penalty));
+  }
+
+  /**
+   * Returns how long an address which failed to connect is deprioritized.
+   *
+   * @return Time in milliseconds a failed address is attempted last
+   */
+  public long getFailedAddressPenalty() {
+    return connectionRacer.getFailurePenalty();
+  }
+  
   /**
    * Number of HTTPRequests pending on the HTTPClient.  These are requests that are currently 
    * either trying to connect to or have been sent to a server.
@@ -182,6 +342,38 @@ public class HTTPClient extends AbstractService {
     return this.inProcess.size();
   }
 
+  /**
+   * Sets the maximum number of requests which may be in progress to a single host at once.  By 
+   * default this is the same as the {@code maxConcurrent} provided at construction.  Setting a 
+   * lower value prevents a slow host from using every in-progress slot, which would delay requests 
+   * to other hosts queued behind it.  Queued requests are started in round-robin order between 
+   * the hosts which have capacity.
+   * 
+   * @param maxConcurrentPerHost maximum number of requests to run simultaneously per host
+   */
+  public void setMaxConcurrentPerHost(int maxConcurrentPerHost) {
+    ArgumentVerifier.assertGreaterThanZero(maxConcurrentPerHost, "maxConcurrentPerHost");
+    this.maxConcurrentPerHost = maxConcurrentPerHost;
+    for (HostQueue hq : hostQueues.values()) {
+      hq.markReady();  // hosts which were at capacity may now be able to start requests
+    }
+    if(ntse != null) {
+      ntse.wakeup();
+      runSocketTask.signalToRun();
+    } else {
+      processQueue();
+    }
+  }
+  
+  /**
+   * Returns the maximum number of requests which may be in progress to a single host at once.
+   * 
+   * @return maximum number of requests to run simultaneously per host
+   */
+  public int getMaxConcurrentPerHost() {
+    return maxConcurrentPerHost;
+  }
+  
   /**
    * Returns the total number of open Client Connections on this HTTPClient.
    * 
@@ -191,6 +383,173 @@ public class HTTPClient extends AbstractService {
     return tcpClients.size();
   }
   
+  /**
+   * Returns the number of open connections which are currently idle and available for reuse.
+   * 
+   * @return number of pooled connections.
+   */
+  public int getIdleConnectionCount() {
+    return connectionPool.getIdleCount();
+  }
+  
+  /**
+   * Returns the number of requests which were able to reuse an idle connection.
+   * 
+   * @return number of connection pool hits.
+   */
+  public long getConnectionPoolHitCount() {
+    return connectionPool.getHitCount();
+  }
+  
+  /**
+   * Returns the number of requests which had to open a new connection because no idle 
+   * connection was available.
+   * 
+   * @return number of connection pool misses.
+   */
+  public long getConnectionPoolMissCount() {
+    return connectionPool.getMissCount();
+  }
+  
+  /**
+   * Returns the number of idle connections which were closed or discarded, either because they 
+   * expired, the host already had the maximum idle connections, or the server closed them.
+   * 
+   * @return number of connection pool evictions.
+   */
+  public long getConnectionPoolEvictionCount() {
+    return connectionPool.getEvictionCount();
+  }
+  
+  /**
+   * Sets the number of idle connections which will be kept per host.  By default up to the 
+   * {@code maxConcurrent} value connections are kept, with no minimum.  When idle connections 
+   * are expired (see {@link #setMaxIdleTimeout(long, TimeUnit)}) connections returned while the 
+   * host has fewer than {@code minIdlePerHost} idle connections are kept open.  Changing the 
+   * maximum will close currently idle connections.
+   * 
+   * @param minIdlePerHost Number of idle connections per host to keep open even once expired
+   * @param maxIdlePerHost Maximum number of idle connections per host, {@code 0} to never reuse connections
+   */
+  public void setIdleConnectionLimits(int minIdlePerHost, int maxIdlePerHost) {
+    connectionPool.setIdleLimits(minIdlePerHost, maxIdlePerHost);
+  }
+
+  /**
+   * Opens connections to the host and places them in the idle pool, so that later requests do 
+   * not pay for connection (and TLS handshake) setup.  Only enough connections are opened to 
+   * bring the host up to {@code count} idle connections, and never more than the per host idle 
+   * maximum (see {@link #setIdleConnectionLimits(int, int)}).  Pre-warmed connections are 
+   * expired like any other idle connection.  The client must be started for the connections to 
+   * be established.
+   * 
+   * @param ha The address to open connections to
+   * @param count The number of idle connections wanted
+   * @return A future which completes once the connections are established and pooled
+   */
+  public ListenableFuture<?> prewarm(HTTPAddress ha, int count) {
+    ArgumentVerifier.assertNotNull(ha, "ha");
+    ArgumentVerifier.assertNotNegative(count, "count");
+    SettableListenableFuture<Void> result = new SettableListenableFuture<>(false);
+    ssi.execute(() -> {
+      int needed = Math.min(count, connectionPool.getMaxIdlePerHost()) - connectionPool.getIdleCount(ha);
+      if (needed <= 0 || maxIdleTime == 0) {
+        result.setResult(null);
+        return;
+      }
+      pendingConnects.addAndGet(needed);
+      ListenableFuture<List<InetAddress>> addressFuture;
+      try {
+        addressFuture = hostResolver.resolve(ha.getHost());
+      } catch (Throwable t) {
+        pendingConnects.addAndGet(-needed);
+        result.setFailure(t);
+        return;
+      }
+      whenDone(addressFuture, () -> {
+        List<ListenableFuture<?>> futures = new ArrayList<>(needed);
+        for (int i = 0; i < needed; i++) {
+          futures.add(warmConnection(ha, addressFuture));
+        }
+        FutureUtils.makeFailurePropagatingCompleteFuture(futures, null)
+                   .callback(new FutureCallback<Object>() {
+                     @Override
+                     public void handleResult(Object ignored) {
+                       result.setResult(null);
+                     }
+
+                     @Override
+                     public void handleFailure(Throwable t) {
+                       result.setFailure(t);
+                     }
+                   });
+      });
+      if (ntse != null) {
+        ntse.wakeup();
+        runSocketTask.signalToRun();
+      }
+    });
+    return result;
+  }
+  
+  /**
+   * Keeps at least the given number of idle connections open to the host.  The host is 
+   * pre-warmed now (see {@link #prewarm(HTTPAddress, int)}), and again whenever one of its idle 
+   * connections is expired or found to be closed.  Connections taken from the pool by requests 
+   * are not replaced until they are returned.
+   * 
+   * @param ha The address to keep connections open to
+   * @param minWarm The number of idle connections to keep, {@code 0} to remove the policy
+   */
+  public void setMinWarmConnections(HTTPAddress ha, int minWarm) {
+    ArgumentVerifier.assertNotNull(ha, "ha");
+    ArgumentVerifier.assertNotNegative(minWarm, "minWarm");
+    if (minWarm == 0) {
+      warmPolicies.remove(ha);
+    } else {
+      WarmPolicy policy = new WarmPolicy(ha, minWarm);
+      warmPolicies.put(ha, policy);
+      policy.refill();
+    }
+  }
+  
+  /**
+   * Returns the number of idle connections kept open to the host.
+   * 
+   * @param ha The address to check
+   * @return The number of connections kept warm, {@code 0} if there is no policy for the host
+   */
+  public int getMinWarmConnections(HTTPAddress ha) {
+    WarmPolicy policy = warmPolicies.get(ha);
+    return policy == null ? 0 : policy.minWarm;
+  }
+  
+  private ListenableFuture<?> warmConnection(HTTPAddress ha, 
+                                             ListenableFuture<List<InetAddress>> addressFuture) {
+    ListenableFuture<TCPClient> clientFuture;
+    try {
+      HostQueue hq = hostQueues.get(ha);
+      if (hq == null) {
+        hq = hostQueues.computeIfAbsent(ha, (ignored) -> new HostQueue());
+      }
+      clientFuture = connectionRacer.connect(addressFuture.get(), hq.nextAddress.getAndIncrement(), 
+                                             (address) -> createTCPClient(ha, address));
+    } catch (ExecutionException e) {
+      clientFuture = FutureUtils.immediateFailureFuture(e.getCause());
+    } catch (Throwable t) {
+      clientFuture = FutureUtils.immediateFailureFuture(t);
+    }
+    ListenableFuture<?> result = clientFuture.flatMap((client) -> {
+      ListenableFuture<?> ready = ha.getdoSSL() ? client.startSSL() : client.connect();
+      return ready.map((ignored) -> {
+        addBackTCPClient(ha, client);
+        return client;
+      }).failureCallback((ignored) -> client.close());
+    });
+    result.listener(pendingConnects::decrementAndGet);
+    return result;
+  }
+  
   /**
    * Sets the {@link SSLContext} to be used for connection using ssl on this client.
    * If nothing is set a completely open {@link SSLContext} is used providing no cert validation.
@@ -198,16 +557,190 @@ public class HTTPClient extends AbstractService {
    * @param sslctx the {@link SSLContext} to use for ssl connections. 
    */
   public void setSSLContext(SSLContext sslctx) {
+    applySessionSettings(sslctx);
     sslContext = sslctx;
   }
   
+  /**
+   * Sets the number of TLS sessions the {@link SSLContext} will cache for resumption.  Sessions 
+   * are cached by host and port, so resuming allows a new connection to a host to skip the full 
+   * handshake.  For TLS 1.3 the cached session holds the ticket issued by the server (which 
+   * requires the {@code jdk.tls.client.enableSessionTicketExtension} system property to not be 
+   * disabled).
+   * <p>
+   * The setting is applied to the current {@link SSLContext} and any set later.  Note that the 
+   * default open {@link SSLContext} is shared across the JVM.
+   * 
+   * @param cacheSize Maximum number of sessions to cache, {@code 0} for no limit
+   */
+  public void setTLSSessionCacheSize(int cacheSize) {
+    ArgumentVerifier.assertNotNegative(cacheSize, "cacheSize");
+    tlsSessionCacheSize = cacheSize;
+    applySessionSettings(sslContext);
+  }
+  
+  /**
+   * Sets how long a cached TLS session can be resumed for.  See 
+   * {@link #setTLSSessionCacheSize(int)} for how this is applied.
+   * 
+   * @param timeout Time a session can be resumed for, {@code 0} for no limit
+   * @param unit The unit the {@code timeout} value is represented in
+   */
+  public void setTLSSessionTimeout(long timeout, TimeUnit unit) {
+    ArgumentVerifier.assertNotNegative(timeout, "timeout");
+    tlsSessionTimeoutSeconds = (int)Math.min(Integer.MAX_VALUE, unit.toSeconds(timeout));
+    applySessionSettings(sslContext);
+  }
+  
+  private void applySessionSettings(SSLContext sslctx) {
+    SSLSessionContext sessionContext = sslctx.getClientSessionContext();
+    if (sessionContext != null) {
+      if (tlsSessionCacheSize >= 0) {
+        sessionContext.setSessionCacheSize(tlsSessionCacheSize);
+      }
+      if (tlsSessionTimeoutSeconds >= 0) {
+        sessionContext.setSessionTimeout(tlsSessionTimeoutSeconds);
+      }
+    }
+  }
+  
+  /**
+   * Sets the {@link HTTPClientEventListener} to report request lifecycle events to.  Requests 
+   * report to the listener which was set when they were submitted.
+   * 
+   * @param listener The listener to use, or {@code null} to stop reporting events
+   */
+  public void setEventListener(HTTPClientEventListener listener) {
+    this.eventListener = listener == null ? HTTPClientEventListener.NO_OP : listener;
+  }
+  
+  /**
+   * @return The {@link HTTPClientEventListener} being reported to, {@link HTTPClientEventListener#NO_OP} if none is set
+   */
+  public HTTPClientEventListener getEventListener() {
+    return eventListener;
+  }
+  
+  /**
+   * Returns the aggregated {@link RequestTimings} of the requests completed to a host.  These 
+   * show where time is spent for the host (queued, connecting, handshaking or waiting on the 
+   * server), as well as how often pooled connections were reused.
+   * 
+   * @param ha The address to get the stats for
+   * @return The stats for the host, or {@code null} if no requests have completed to it (or its 
+   *           stats were dropped, see {@link #setMaxHostTimingStats(int)})
+   */
+  public HostTimingStats getHostTimingStats(HTTPAddress ha) {
+    synchronized (hostTimingStatsLock) {
+      return hostTimingStats.get(ha);
+    }
+  }
+  
+  /**
+   * Sets how many hosts {@link HostTimingStats} are kept for, by default 
+   * {@value #DEFAULT_MAX_HOST_TIMING_STATS}.  Once more hosts have completed requests the stats 
+   * of the least recently used host are dropped, so a client talking to many distinct hosts (ie 
+   * a crawler) does not keep stats for every host it has ever seen.
+   * 
+   * @param maxHosts The maximum number of hosts to keep stats for, {@code 0} to not record stats
+   */
+  public void setMaxHostTimingStats(int maxHosts) {
+    ArgumentVerifier.assertNotNegative(maxHosts, "maxHosts");
+    this.maxHostTimingStats = maxHosts;
+    synchronized (hostTimingStatsLock) {
+      trimHostTimingStats(maxHosts);
+    }
+  }
+  
+  /**
+   * @return The maximum number of hosts {@link HostTimingStats} are kept for
+   */
+  public int getMaxHostTimingStats() {
+    return maxHostTimingStats;
+  }
+  
+  private void recordHostTimings(HTTPAddress ha, RequestTimings timings) {
+    int maxHosts = maxHostTimingStats;
+    if (maxHosts == 0) {
+      return;
+    }
+    HostTimingStats stats;
+    synchronized (hostTimingStatsLock) {
+      stats = hostTimingStats.get(ha);
+      if (stats == null) {
+        stats = new HostTimingStats();
+        hostTimingStats.put(ha, stats);
+        trimHostTimingStats(maxHosts);
+      }
+    }
+    stats.record(timings);
+  }
+  
+  private void trimHostTimingStats(int maxHosts) {
+    Iterator<HostTimingStats> it = hostTimingStats.values().iterator();
+    while (hostTimingStats.size() > maxHosts) {
+      it.next();
+      it.remove();
+    }
+  }
+  
+  /**
+   * Returns the number of TLS handshakes which could not resume a previous session.
+   * 
+   * @return The number of full handshakes done
+   */
+  public long getTLSFullHandshakeCount() {
+    return tlsSessionTracker.getFullHandshakeCount();
+  }
+  
+  /**
+   * Returns the number of TLS handshakes which resumed a previous session.
+   * 
+   * @return The number of resumed handshakes done
+   */
+  public long getTLSResumedHandshakeCount() {
+    return tlsSessionTracker.getResumedHandshakeCount();
+  }
+  
+  /**
+   * Returns the average time from a connection being established until its TLS handshake 
+   * completed.
+   * 
+   * @return The average handshake time in milliseconds, or {@code -1} if none have completed
+   */
+  public double getAverageTLSHandshakeMillis() {
+    return tlsSessionTracker.getAverageHandshakeMillis();
+  }
+  
+  /**
+   * Sets if responses should be requested compressed.  When enabled requests which do not already 
+   * specify an {@code Accept-Encoding} will be sent with {@value #ACCEPTED_ENCODINGS}, and gzip or 
+   * deflate encoded responses will be decompressed as they are read, before being provided to the 
+   * {@link BodyConsumer}.  Decompressed responses will have the {@code Content-Encoding} and 
+   * {@code Content-Length} headers removed.  By default this is disabled.
+   * 
+   * @param enabled {@code true} to request and decompress compressed responses
+   */
+  public void setResponseDecompression(boolean enabled) {
+    decompressResponses = enabled;
+  }
+  
+  /**
+   * Checks if compressed responses are being requested and decompressed.
+   * 
+   * @return {@code true} if responses will be decompressed
+   */
+  public boolean isResponseDecompressionEnabled() {
+    return decompressResponses;
+  }
+  
   /**
    * This forces closed all client connections on this HTTPClient.
    * NOTE: this will disrupt any pending requests if called.
    * 
    */
   public void closeAllClients() {
-    for(TCPClient client: tcpClients) {
+    for(TCPClient client: tcpClients.keySet()) {
       client.close();
     }
   }
@@ -244,18 +777,7 @@ public class HTTPClient extends AbstractService {
    */
   public void setMaxIdleTimeout(long idleTimeout, TimeUnit unit) {
     this.maxIdleTime = unit.toMillis(idleTimeout);
-    if(this.maxIdleTime > 0) {
-      this.checkIdle = new Runnable() {
-        @Override
-        public void run() {
-          if(checkIdle == this) {
-            checkIdleSockets();
-            ssi.schedule(this, Math.max(100, maxIdleTime/2));
-          }
-        }
-      };
-      this.ssi.schedule(checkIdle, Math.max(100, maxIdleTime/2));
-    }
+    connectionPool.setMaxIdleTime(maxIdleTime);
   }
 
   /**
@@ -352,10 +874,13 @@ public class HTTPClient extends AbstractService {
    * successfully or with errors.
    */
   public ListenableFuture<HTTPResponseData> requestAsync(final ClientHTTPRequest request) {
-    HTTPRequestWrapper hrw = new HTTPRequestWrapper(request);
-    if (! queue.offer(hrw)) {
+    if (queuedCount.incrementAndGet() > maxQueueSize) {
+      queuedCount.decrementAndGet();
       return FutureUtils.immediateFailureFuture(new RejectedExecutionException("Request queue full"));
     }
+    HTTPRequestWrapper hrw = new HTTPRequestWrapper(request);
+    hrw.events.requestQueued(request);
+    hrw.hostLevel.add(hrw);
     if(ntse != null) {
       ntse.wakeup();
       runSocketTask.signalToRun();
@@ -365,36 +890,224 @@ public class HTTPClient extends AbstractService {
     return hrw.slf;
   }
 
+  /**
+   * Starts as many queued requests as the concurrency limits allow.  This may be called from any 
+   * thread and never blocks; if another thread is already dispatching, the call is recorded and 
+   * that thread will make another pass before it returns.
+   */
   protected void processQueue() {
     //This should be done after we do a .select on the ntse to check for more jobs before it exits.
-    synchronized (inProcess) {
+    if (dispatchRequests.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      dispatchQueued();
+      missed = dispatchRequests.addAndGet(-missed);
+    } while (missed != 0);
+  }
+  
+  private void dispatchQueued() {
+    PriorityLevel level;
+    while((level = nextPriorityLevel()) != null && tryAcquirePermit()) {
+      // only the dispatching thread removes from the ready queue, so after the peek this can't be null
+      HostLevel hl = level.readyHosts.poll();
       HTTPRequestWrapper hrw;
-      while(maxConcurrent > inProcess.size() && (hrw = queue.poll()) != null) {
-        process(hrw);
+      if (hl.host.inFlight.get() >= maxConcurrentPerHost || (hrw = hl.requests.poll()) == null) {
+        // host is at capacity or has nothing queued, it will be made ready again once that changes
+        activeRequests.decrementAndGet();
+        hl.clearReady();
+        continue;
+      }
+      queuedCount.decrementAndGet();
+      level.queued.decrementAndGet();
+      level.readyHosts.offer(hl); // to the back of the line so other hosts get a turn
+      if (hrw.slf.isDone()) {
+        // don't process, request either timed out while queued or otherwise completed in error
+        activeRequests.decrementAndGet();
+        continue;
+      }
+      level.started.increment();
+      level.totalWaitMillis.add(Clock.accurateForwardProgressingMillis() - hrw.queuedTime);
+      hl.host.inFlight.incrementAndGet();
+      hrw.holdingSlot.set(true);
+      process(hrw);
+    }
+  }
+  
+  /**
+   * Attempts to take one of the {@code maxConcurrent} permits for starting a request.
+   * 
+   * @return {@code true} if a permit was acquired and must later be released
+   */
+  private boolean tryAcquirePermit() {
+    while (true) {
+      int active = activeRequests.get();
+      if (active >= maxConcurrent) {
+        return false;
+      } else if (activeRequests.compareAndSet(active, active + 1)) {
+        return true;
+      }
+    }
+  }
+  
+  /**
+   * Selects which priority level the next request should be started from.  High priority is 
+   * preferred, unless the low priority requests have waited too long.  Starvable requests are 
+   * only started when no other requests are ready.
+   * 
+   * @return the level to start a request from, or {@code null} if no requests are ready
+   */
+  private PriorityLevel nextPriorityLevel() {
+    PriorityLevel high = priorityLevels[TaskPriority.High.ordinal()];
+    PriorityLevel low = priorityLevels[TaskPriority.Low.ordinal()];
+    HostLevel lowHead = low.readyHosts.peek();
+    if (lowHead != null) {
+      if (high.readyHosts.isEmpty()) {
+        return low;
+      }
+      HTTPRequestWrapper oldestLow = lowHead.requests.peek();
+      if (oldestLow != null && 
+          Clock.lastKnownForwardProgressingMillis() - oldestLow.queuedTime >= maxWaitForLowPriorityMs) {
+        return low;
       }
     }
+    if (! high.readyHosts.isEmpty()) {
+      return high;
+    }
+    PriorityLevel starvable = priorityLevels[TaskPriority.Starvable.ordinal()];
+    if (! starvable.readyHosts.isEmpty()) {
+      return starvable;
+    }
+    return null;
+  }
+  
+  /**
+   * Releases the concurrency permit and host slot held by the request (if it still holds them), 
+   * allowing the next request to start.
+   * 
+   * @param hrw The request which is no longer in progress
+   */
+  private void releaseSlot(HTTPRequestWrapper hrw) {
+    if (hrw.holdingSlot.compareAndSet(true, false)) {
+      activeRequests.decrementAndGet();
+      hrw.hostLevel.host.inFlight.decrementAndGet();
+      hrw.hostLevel.host.markReady();
+    }
   }
   
   private void process(HTTPRequestWrapper hrw) {
-    if (hrw.slf.isDone()) {
-      // don't process, request either timed out while queued or otherwise completed in error
+    TCPClient pooledClient;
+    try {
+      hrw.requestStarting();
+      pooledClient = connectionPool.checkout(hrw.chr.getHTTPAddress());
+    } catch (Throwable t) {
+      processFailure(hrw, t);
+      return;
+    }
+    if (pooledClient != null) {
+      hrw.connectionReused = true;
+      sendRequest(hrw, pooledClient);
       return;
     }
+    pendingConnects.incrementAndGet();
+    ListenableFuture<List<InetAddress>> addressFuture;
     try {
-      hrw.requestStarting();
-      TCPClient freshClient = getTCPClient(hrw.chr.getHTTPAddress());
+      hrw.events.dnsStart(hrw.chr, hrw.chr.getHTTPAddress().getHost());
+      addressFuture = hostResolver.resolve(hrw.chr.getHTTPAddress().getHost());
+    } catch (Throwable t) {
+      pendingConnects.decrementAndGet();
+      processFailure(hrw, t);
+      return;
+    }
+    whenDone(addressFuture, () -> connectResolved(hrw, addressFuture));
+  }
+  
+  private void connectResolved(HTTPRequestWrapper hrw, 
+                               ListenableFuture<List<InetAddress>> addressFuture) {
+    hrw.resolvedNanos = System.nanoTime();
+    ListenableFuture<TCPClient> clientFuture;
+    try {
+      HTTPAddress ha = hrw.chr.getHTTPAddress();
+      List<InetAddress> addresses = addressFuture.get();
+      hrw.events.dnsEnd(hrw.chr, ha.getHost(), addresses);
+      hrw.events.connectStart(hrw.chr);
+      clientFuture = connectionRacer.connect(addresses, 
+                                             hrw.hostLevel.host.nextAddress.getAndIncrement(), 
+                                             (address) -> createTCPClient(ha, address));
+    } catch (ExecutionException e) {
+      pendingConnects.decrementAndGet();
+      processFailure(hrw, e.getCause());
+      return;
+    } catch (Throwable t) {
+      pendingConnects.decrementAndGet();
+      processFailure(hrw, t);
+      return;
+    }
+    whenDone(clientFuture, () -> {
+      pendingConnects.decrementAndGet();
+      try {
+        sendRequest(hrw, clientFuture.get());
+      } catch (ExecutionException e) {
+        processFailure(hrw, e.getCause());
+      } catch (Throwable t) {
+        processFailure(hrw, t);
+      }
+    });
+  }
+  
+  /**
+   * Runs the task once the future completes.  If already complete it is run right away, 
+   * otherwise it is run on the client's scheduler.
+   * 
+   * @param lf Future to wait on
+   * @param task Task to run once the future is done
+   */
+  private void whenDone(ListenableFuture<?> lf, Runnable task) {
+    if (lf.isDone()) {
+      task.run();
+    } else {
+      lf.listener(() -> {
+        task.run();
+        if (ntse != null) {
+          ntse.wakeup();
+          runSocketTask.signalToRun();
+        }
+      }, ssi);
+    }
+  }
+  
+  private void processFailure(HTTPRequestWrapper hrw, Throwable t) {
+    if (hrw.client == null || inProcess.remove(hrw.client, hrw)) {
+      releaseSlot(hrw);
+      // may be failing from a resolve or connect future, so nothing else would start the next request
+      if(ntse != null) {
+        ntse.wakeup();
+        runSocketTask.signalToRun();
+      } else {
+        processQueue();
+      }
+    }
+    hrw.slf.setFailure(t);
+  }
+  
+  private void sendRequest(HTTPRequestWrapper hrw, TCPClient freshClient) {
+    try {
+      hrw.attachProcessor(freshClient);
       hrw.client = freshClient;
       inProcess.put(freshClient, hrw);
       if (hrw.slf.isDone()) { // check if completed early, likely a timeout
         // since timeout logic may have missed cleanup we must ensure cleanup is done now
         // TODO - see if we can improve this by avoiding the extra check
         inProcess.remove(freshClient, hrw);
+        releaseSlot(hrw);
         addBackTCPClient(hrw.chr.getHTTPAddress(), freshClient); // if client is cleaned up this will ignore
         return;
       }
       if (hrw.chr.hasBody()) {
         if (hrw.chr.getHTTPRequest().getHTTPHeaders().isChunked()) {
-          hrw.client.write(hrw.chr.getHTTPRequest().getMergedByteBuffers());
+          hrw.client.write(hrw.request.getMergedByteBuffers());
+          hrw.events.requestHeadersWritten(hrw.chr);
           
           hrw.chr.nextBodySection().callback(new FutureCallback<ByteBuffer>() {
             @Override
@@ -408,11 +1121,15 @@ public class HTTPClient extends AbstractService {
               // but the only reason the client should be replaced is if an error occurred
               // in that condition the client will be closed anyways
               
+              int size = bb == null ? 0 : bb.remaining();
               ListenableFuture<?> writeFuture = client.write(HTTPUtils.wrapInChunk(bb));
               
-              if (bb != null && bb.hasRemaining()) {
+              if (size > 0) {
+                hrw.requestBodyBytes += size;
                 ListenableFuture<ByteBuffer> nextWrite = hrw.chr.nextBodySection();
                 writeFuture.resultCallback((ignored) -> nextWrite.callback(this));
+              } else {
+                hrw.events.requestBodyWritten(hrw.chr, hrw.requestBodyBytes);
               }
             }
 
@@ -438,21 +1155,30 @@ public class HTTPClient extends AbstractService {
               
               if (bb != null && bb.hasRemaining()) {
                 MergedByteBuffers writeBuffer;
+                boolean headers = firstSection;
                 if (firstSection) {
                   firstSection = false;
                   writeBuffer = new SimpleMergedByteBuffers(false, 
-                                                            hrw.chr.getHTTPRequest().getMergedByteBuffers(), 
+                                                            hrw.request.getMergedByteBuffers(), 
                                                             bb);
                 } else {
                   writeBuffer = new SimpleMergedByteBuffers(false, bb);
                 }
+                hrw.requestBodyBytes += bb.remaining();
                 
                 ListenableFuture<ByteBuffer> nextWrite = hrw.chr.nextBodySection();
                 client.write(writeBuffer)
                       .resultCallback((ignored) -> nextWrite.callback(this));
-              } else if (firstSection) {
-                firstSection = false;
-                client.write(hrw.chr.getHTTPRequest().getMergedByteBuffers());
+                if (headers) {
+                  hrw.events.requestHeadersWritten(hrw.chr);
+                }
+              } else {
+                if (firstSection) {
+                  firstSection = false;
+                  client.write(hrw.request.getMergedByteBuffers());
+                  hrw.events.requestHeadersWritten(hrw.chr);
+                }
+                hrw.events.requestBodyWritten(hrw.chr, hrw.requestBodyBytes);
               }
             }
 
@@ -463,11 +1189,12 @@ public class HTTPClient extends AbstractService {
           });
         }
       } else {
-        hrw.client.write(hrw.chr.getHTTPRequest().getMergedByteBuffers());
+        hrw.client.write(hrw.request.getMergedByteBuffers());
+        hrw.events.requestHeadersWritten(hrw.chr);
       }
     } catch (Throwable t) {
       //Have to catch all here or we dont keep processing if NoThreadSE is in use
-      hrw.slf.setFailure(t);
+      processFailure(hrw, t);
     }
   }
 
@@ -476,7 +1203,9 @@ public class HTTPClient extends AbstractService {
     if (ntse != null) {
       ntse.start();
     }
-    setMaxIdleTimeout(this.maxIdleTime, TimeUnit.MILLISECONDS);
+    for (WarmPolicy policy : warmPolicies.values()) {
+      policy.refill();
+    }
   }
 
   @Override
@@ -495,83 +1224,46 @@ public class HTTPClient extends AbstractService {
     }
   }
 
-  private TCPClient getTCPClient(final HTTPAddress ha) throws IOException {
-    ArrayDeque<Pair<Long,TCPClient>> pl = sockets.get(ha);
-    TCPClient tc = null;
-    if(pl != null) {
-      synchronized(pl) {
-        while(pl.size() > 0 && tc == null) {
-          if(pl.peek().getRight().isClosed()) {
-            pl.pop();
-          } else {
-            tc = pl.pop().getRight();
-          }
-        }
-        if(pl.size() == 0) {
-          sockets.remove(ha);
-        }
-      }
+  private TCPClient createTCPClient(final HTTPAddress ha, final InetAddress address) throws IOException {
+    // connect to the resolved address so the socket executer does not do a blocking lookup
+    TCPClient tc = sei.createTCPClient(address.getHostAddress(), ha.getPort());
+    ConnectionState cs = new ConnectionState(new HTTPResponseProcessor(false));
+    tcpClients.put(tc, cs);
+    ListenableFuture<SSLSession> handshakeFuture = null;
+    if(ha.getdoSSL()) {
+      // the host name is still used for SNI, and is the key sessions are cached (and resumed) by
+      SSLEngine sse = sslContext.createSSLEngine(ha.getHost(), ha.getPort());
+      sse.setUseClientMode(true);
+      tc.setSSLEngine(sse);
+      handshakeFuture = tc.startSSL();
+      cs.handshakeFuture = handshakeFuture;
     }
-    if(tc == null) {
-      tc = sei.createTCPClient(ha.getHost(), ha.getPort());
-      tcpClients.add(tc);
-      if(ha.getdoSSL()) {
-        SSLEngine sse = sslContext.createSSLEngine(ha.getHost(), ha.getPort());
-        sse.setUseClientMode(true);
-        tc.setSSLEngine(sse);
-        tc.startSSL();
-      }
-      tc.setReader(mcp);
-      tc.addCloseListener(mcp);
-      tc.connect();
+    tc.setReader(mcp);
+    tc.addCloseListener(mcp);
+    ListenableFuture<?> connectFuture = tc.connect();
+    cs.connectFuture = connectFuture;
+    connectFuture.resultCallback((ignored) -> cs.connectedNanos = System.nanoTime());
+    if (handshakeFuture != null) {
+      tlsSessionTracker.track(ha, connectFuture, handshakeFuture);
+      handshakeFuture.resultCallback((ignored) -> cs.handshakeNanos = System.nanoTime());
     }
     return tc;
   }
 
+  private void idleConnectionEvicted(HTTPAddress ha) {
+    WarmPolicy policy = warmPolicies.get(ha);
+    if (policy != null) {
+      policy.refill();
+    }
+  }
+
   private void addBackTCPClient(final HTTPAddress ha, final TCPClient client) {
     if(maxIdleTime == 0) {
       client.close();
       return;
     }
-    Pair<Long,TCPClient> p = new Pair<>(Clock.lastKnownForwardProgressingMillis(), client);
-    while (!client.isClosed()) {
-      ArrayDeque<Pair<Long,TCPClient>> ll = sockets.get(ha);
-      if(ll == null) {
-        ll = new ArrayDeque<>(8);
-        ll.add(p);
-        if (sockets.putIfAbsent(ha, ll) == null) {
-          break;
-        }
-      } else {
-        synchronized(ll) {
-          if (sockets.get(ha) == ll) {
-            ll.add(p);
-            break;
-          }
-        }
-      }
-    }
-  }
-  
-  private void checkIdleSockets() {
-    if(maxIdleTime > 0) {
-      Iterator<ArrayDeque<Pair<Long,TCPClient>>> hostSocketsIt = sockets.values().iterator();
-      while (hostSocketsIt.hasNext()) {
-        ArrayDeque<Pair<Long,TCPClient>> adq = hostSocketsIt.next();
-        synchronized(adq) {
-          Iterator<Pair<Long,TCPClient>> clientConIt = adq.iterator();
-          while(clientConIt.hasNext()) {
-            Pair<Long,TCPClient> c = clientConIt.next();
-            if(Clock.lastKnownForwardProgressingMillis() - c.getLeft() > maxIdleTime) {
-              clientConIt.remove();
-              c.getRight().close();
-            }
-          }
-          if (adq.isEmpty()) {
-            hostSocketsIt.remove();
-          }
-        }
-      }
+    if (! client.isClosed()) {
+      connectionPool.release(ha, client);
     }
   }
 
@@ -590,7 +1282,7 @@ public class HTTPClient extends AbstractService {
       }
       if(ntse.isRunning()) {
         processQueue();
-        if (! queue.isEmpty() || ! inProcess.isEmpty()) {
+        if (queuedCount.get() > 0 || ! inProcess.isEmpty() || pendingConnects.get() > 0) {
           signalToRun();  // still more to run
         }
       }
@@ -607,12 +1299,16 @@ public class HTTPClient extends AbstractService {
 
       client.close();
       if(hrw != null) {
+        releaseSlot(hrw);
         hrw.hrp.connectionClosed();
         if(! hrw.slf.isDone()) {
           hrw.slf.setFailure(new HTTPParsingException("Did not get complete body!"));
         }
       }
       tcpClients.remove(client);
+      if (hrw != null) {
+        processQueue();
+      }
     }
 
     @Override
@@ -626,6 +1322,118 @@ public class HTTPClient extends AbstractService {
     }
   }
 
+  /**
+   * Requests queued at a single {@link TaskPriority}.  Hosts with requests at this priority are 
+   * rotated through {@link #readyHosts} so each host gets a fair turn.
+   */
+  private static class PriorityLevel {
+    private final ConcurrentLinkedQueue<HostLevel> readyHosts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+  }
+
+  /**
+   * Minimum number of warm connections to keep to a host.  Only a single refill runs at a time, 
+   * so that several evictions at once do not open more connections than needed.
+   */
+  private class WarmPolicy {
+    private final HTTPAddress ha;
+    private final int minWarm;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private WarmPolicy(HTTPAddress ha, int minWarm) {
+      this.ha = ha;
+      this.minWarm = minWarm;
+    }
+
+    private void refill() {
+      if (warmPolicies.get(ha) == this && isRunning() && refilling.compareAndSet(false, true)) {
+        prewarm(ha, minWarm).listener(() -> refilling.set(false));
+      }
+    }
+  }
+
+  /**
+   * A connection's response processor, and when the connection was established.
+   */
+  private static class ConnectionState {
+    private final HTTPResponseProcessor hrp;
+    private volatile ListenableFuture<?> connectFuture;
+    private volatile ListenableFuture<SSLSession> handshakeFuture;
+    private volatile long connectedNanos = -1;
+    private volatile long handshakeNanos = -1;
+
+    private ConnectionState(HTTPResponseProcessor hrp) {
+      this.hrp = hrp;
+    }
+  }
+
+  /**
+   * Requests to a single {@link HTTPAddress}, with a queue for each {@link TaskPriority}.  The 
+   * in-flight count is shared across all priorities.
+   */
+  private class HostQueue {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger nextAddress = new AtomicInteger();
+    private final HostLevel[] levels = new HostLevel[priorityLevels.length];
+
+    private HostQueue() {
+      for (int i = 0; i < levels.length; i++) {
+        levels[i] = new HostLevel(this, priorityLevels[i]);
+      }
+    }
+
+    private void markReady() {
+      for (HostLevel hl : levels) {
+        hl.markReady();
+      }
+    }
+  }
+
+  /**
+   * Queue of requests to a single host at a single priority.  It is in its priority's ready queue 
+   * at most once, when it has queued requests and the host may have capacity to start one.
+   */
+  private class HostLevel {
+    private final HostQueue host;
+    private final PriorityLevel level;
+    private final ConcurrentLinkedQueue<HTTPRequestWrapper> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean ready = new AtomicBoolean();
+
+    private HostLevel(HostQueue host, PriorityLevel level) {
+      this.host = host;
+      this.level = level;
+    }
+
+    private void add(HTTPRequestWrapper hrw) {
+      level.queued.incrementAndGet();
+      requests.add(hrw);
+      markReady();
+    }
+
+    private boolean remove(HTTPRequestWrapper hrw) {
+      if (requests.remove(hrw)) {
+        level.queued.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+
+    private void markReady() {
+      if (! requests.isEmpty() && host.inFlight.get() < maxConcurrentPerHost && 
+          ready.compareAndSet(false, true)) {
+        level.readyHosts.offer(this);
+      }
+    }
+
+    private void clearReady() {
+      ready.set(false);
+      // a request may have been added or completed before the flag was cleared
+      markReady();
+    }
+  }
+
   /**
    * State the request is currently in, state should transition in order of enum.
    */
@@ -639,26 +1447,58 @@ public class HTTPClient extends AbstractService {
    */
   private class HTTPRequestWrapper implements HTTPResponseCallback {
     private final SettableListenableFuture<HTTPResponseData> slf = new TimeoutTrackingSettableListenableFuture<>();
-    private final HTTPResponseProcessor hrp;
+    private HTTPResponseProcessor hrp;
     private final ClientHTTPRequest chr;
+    private final HostLevel hostLevel;
+    private final HTTPRequest request;
+    private final boolean headRequest;
+    private final boolean decompress;
     private RequestState currentState = RequestState.Queued;
     private HTTPResponse response;
+    private ContentDecoder decoder;
+    private long encodedBodySize;
+    private long decodedBodySize;
     private TCPClient client;
+    private final AtomicBoolean holdingSlot = new AtomicBoolean();
+    private final long queuedTime = Clock.accurateForwardProgressingMillis();
     private long lastRead = Clock.lastKnownForwardProgressingMillis();
+    // System.nanoTime() of each phase for the RequestTimings, -1 until it happens
+    private final long queuedNanos = System.nanoTime();
+    private long startedNanos = -1;
+    private volatile long resolvedNanos = -1;
+    private long firstByteNanos = -1;
+    private long headersNanos = -1;
+    private volatile boolean connectionReused = false;
+    private volatile ConnectionState connection;
+    private final HTTPClientEventListener events = eventListener;
+    private long requestBodyBytes = 0;
 
     private HTTPRequestWrapper(ClientHTTPRequest chr) {
-      hrp = new HTTPResponseProcessor(chr.getHTTPRequest()
-                                         .getHTTPRequestHeader()
-                                         .getRequestMethod().equals("HEAD"));
-      hrp.addHTTPResponseCallback(this);
+      headRequest = chr.getHTTPRequest().getHTTPRequestHeader().getRequestMethod().equals("HEAD");
       this.chr = chr;
+      HostQueue hq = hostQueues.get(chr.getHTTPAddress());
+      if (hq == null) {
+        hq = hostQueues.computeIfAbsent(chr.getHTTPAddress(), (ignored) -> new HostQueue());
+      }
+      hostLevel = hq.levels[chr.getPriority().ordinal()];
+      decompress = decompressResponses && ! headRequest;
+      if (decompress && 
+          chr.getHTTPRequest().getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING) == null) {
+        request = chr.getHTTPRequest().makeBuilder()
+                     .setHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING, ACCEPTED_ENCODINGS)
+                     .buildHTTPRequest();
+      } else {
+        request = chr.getHTTPRequest();
+      }
       
       if (chr.getTimeoutMS() > 0) {
-        sei.watchFuture(slf, chr.getTimeoutMS());
+        TimingWheel.Timeout timeout = timingWheel.schedule(() -> slf.cancel(false), chr.getTimeoutMS());
+        slf.listener(timeout::cancel);
       }
       slf.failureCallback((t) -> {
-        if (queue.remove(this)) {
+        if (hostLevel.remove(this)) {
           // was likely a timeout, avoid leaving the request suck in the queue
+          queuedCount.decrementAndGet();
         } else {
           // since it was not in the queue, we need to release the client from being in-process
           TCPClient client = this.client;
@@ -667,17 +1507,58 @@ public class HTTPClient extends AbstractService {
             client.close();
           }
         }
+        events.requestFailed(chr, t);  // after cleanup, so a failing listener can't leak the request
       });
     }
 
     public void requestStarting() {
       currentState = RequestState.SendingRequest;
       lastRead = Clock.lastKnownForwardProgressingMillis();
+      startedNanos = System.nanoTime();
+      events.requestDequeued(chr, startedNanos - queuedNanos);
+    }
+
+    /**
+     * Takes over the response processor for the connection the request will be sent on.  This
+     * must be done before the request is visible as in-process for the client.
+     *
+     * @param client The connection the request is being sent on
+     */
+    public void attachProcessor(TCPClient client) {
+      ConnectionState cs = tcpClients.get(client);
+      HTTPResponseProcessor hrp;
+      if (cs == null) {
+        // client was already closed, still provide a processor so close handling is consistent
+        hrp = new HTTPResponseProcessor(headRequest);
+      } else {
+        connection = cs;
+        hrp = cs.hrp;
+        hrp.resetForReuse(headRequest);
+        if (! connectionReused && events != HTTPClientEventListener.NO_OP) {
+          trackConnectEvents(cs);
+        }
+      }
+      hrp.addHTTPResponseCallback(this);
+      this.hrp = hrp;
+    }
+
+    private void trackConnectEvents(ConnectionState cs) {
+      ListenableFuture<SSLSession> handshakeFuture = cs.handshakeFuture;
+      cs.connectFuture.resultCallback((ignored) -> {
+        events.connectEnd(chr);
+        if (handshakeFuture != null) {
+          events.secureConnectStart(chr);
+        }
+      });
+      if (handshakeFuture != null) {
+        handshakeFuture.resultCallback((session) -> events.secureConnectEnd(chr, session));
+      }
     }
 
     public void processIncomingData(ReuseableMergedByteBuffers read) {
       if (currentState == RequestState.SendingRequest) {
         currentState = RequestState.ReadingResponseHeader;
+        firstByteNanos = System.nanoTime();
       }
       lastRead = Clock.lastKnownForwardProgressingMillis();
       hrp.processData(read);
@@ -686,16 +1567,51 @@ public class HTTPClient extends AbstractService {
     @Override
     public void headersFinished(HTTPResponse hr) {
       currentState = RequestState.ReadingResponseBody;
+      headersNanos = System.nanoTime();
+      events.responseHeadersReceived(chr, hr);
       response = hr;
+      if (decompress) {
+        ContentEncoding encoding = 
+            ContentEncoding.fromName(hr.getHeaders().getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+        if (encoding != null) {
+          BodyConsumer bodyConsumer = chr.getBodyConsumer();
+          // bound the inflated size early so a small response can't expand to an unbounded buffer
+          long maxDecodedSize = bodyConsumer instanceof BufferedBodyConsumer ? 
+              Math.max(1, ((BufferedBodyConsumer)bodyConsumer).getMaxResponseSize()) : Long.MAX_VALUE;
+          decoder = new ContentDecoder(encoding, maxDecodedSize);
+          response = hr.makeBuilder()
+                       .removeHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING)
+                       .removeHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH)
+                       .build();
+        }
+      }
     }
 
     @Override
     public void bodyData(ByteBuffer bb) {
+      events.responseBodyData(chr, bb.remaining());
       try {
+        encodedBodySize += bb.remaining();
+        if (decoder != null) {
+          bb = decoder.decode(bb);
+          if (! bb.hasRemaining()) {
+            return;
+          }
+        }
+        decodedBodySize += bb.remaining();
         chr.getBodyConsumer().accept(bb);
       } catch (Exception e) {
-        TCPClient client = this.client; // will be `null` after error
-        slf.setFailure(e);
+        bodyFailure(e);
+      }
+    }
+    
+    private void bodyFailure(Exception e) {
+      if (decoder != null) {
+        decoder.close();
+      }
+      TCPClient client = this.client; // will be `null` after error
+      slf.setFailure(e);
+      if (client != null) {
         client.close();
       }
     }
@@ -703,19 +1619,64 @@ public class HTTPClient extends AbstractService {
     @Override
     public void finished() {
       currentState = RequestState.Finished;
-      slf.setResult(new HTTPResponseData(HTTPClient.this, chr.getHTTPRequest(), response, 
-                                         chr.getBodyConsumer().finishBody()));
+      if (decoder != null) {
+        try {
+          if (encodedBodySize > 0) {
+            decoder.finish();
+          } else {
+            decoder.close();  // no body was sent (ie a 304), nothing to decode
+          }
+        } catch (HTTPParsingException e) {
+          hrp.removeHTTPResponseCallback(this);
+          bodyFailure(e);
+          return;
+        }
+      }
+      RequestTimings timings = makeTimings();
+      recordHostTimings(chr.getHTTPAddress(), timings);
+      HTTPResponseData result = new HTTPResponseData(HTTPClient.this, request, response, 
+                                                     chr.getBodyConsumer().finishBody(), 
+                                                     encodedBodySize, decodedBodySize, timings);
+      try {
+        events.requestCompleted(chr, result);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);  // the result must still be delivered
+      }
+      slf.setResult(result);
       hrp.removeHTTPResponseCallback(this);
       TCPClient client = this.client;
       this.client = null;
       if (client != null && inProcess.remove(client, this)) {
+        releaseSlot(this);
         addBackTCPClient(chr.getHTTPAddress(), client);
       }
       processQueue();
     }
 
+    private RequestTimings makeTimings() {
+      long finishedNanos = System.nanoTime();
+      ConnectionState cs = connection;
+      long connectedNanos = -1;
+      long handshakeNanos = -1;
+      if (! connectionReused && cs != null) {
+        connectedNanos = cs.connectedNanos;
+        handshakeNanos = cs.handshakeNanos;
+      }
+      return new RequestTimings(connectionReused, sinceQueued(startedNanos), sinceQueued(resolvedNanos), 
+                                sinceQueued(connectedNanos), sinceQueued(handshakeNanos), 
+                                sinceQueued(firstByteNanos), sinceQueued(headersNanos), 
+                                sinceQueued(finishedNanos));
+    }
+    
+    private long sinceQueued(long nanos) {
+      return nanos == -1 ? -1 : nanos - queuedNanos;
+    }
+
     @Override
     public void hasError(Throwable t) {
+      if (decoder != null) {
+        decoder.close();
+      }
       // since it was not in the queue, we need to release the client from being in-process
       TCPClient client = this.client;
       if (client != null) { // may have already been cleaned up
@@ -768,13 +1729,43 @@ public class HTTPClient extends AbstractService {
     private final HTTPRequest origRequest;
     private final MergedByteBuffers body;
     private final HTTPClient client;
+    private final long compressedBodySize;
+    private final long decompressedBodySize;
+    private final RequestTimings timings;
 
     public HTTPResponseData(HTTPClient client, HTTPRequest origRequest, HTTPResponse hr, 
                             MergedByteBuffers bb) {
+      this(client, origRequest, hr, bb, -1, -1);
+    }
+    
+    public HTTPResponseData(HTTPClient client, HTTPRequest origRequest, HTTPResponse hr, 
+                            MergedByteBuffers bb, long compressedBodySize, long decompressedBodySize) {
+      this(client, origRequest, hr, bb, compressedBodySize, decompressedBodySize, null);
+    }
+
+    /**
+     * Constructs a new {@link HTTPResponseData} recording the size of the body as it was read from 
+     * the network as well as once decompressed.  If the body sizes are negative the size of the 
+     * provided body will be used.
+     * 
+     * @param client The client which executed the request
+     * @param origRequest The request which was sent
+     * @param hr The response received
+     * @param bb The body produced by the {@link BodyConsumer}
+     * @param compressedBodySize The number of body bytes read, or {@code -1} if unknown
+     * @param decompressedBodySize The number of body bytes provided to the consumer, or {@code -1} if unknown
+     * @param timings When each phase of the request happened, or {@code null} if unknown
+     */
+    public HTTPResponseData(HTTPClient client, HTTPRequest origRequest, HTTPResponse hr, 
+                            MergedByteBuffers bb, long compressedBodySize, long decompressedBodySize, 
+                            RequestTimings timings) {
       this.client = client;
       this.hr = hr;
       this.body = bb == null ? new SimpleMergedByteBuffers(false) : bb;
       this.origRequest = origRequest;
+      this.compressedBodySize = compressedBodySize < 0 ? body.remaining() : compressedBodySize;
+      this.decompressedBodySize = decompressedBodySize < 0 ? body.remaining() : decompressedBodySize;
+      this.timings = timings;
     }
     
     public HTTPClient getHTTPClient() {
@@ -813,6 +1804,35 @@ public class HTTPClient extends AbstractService {
       }
     }
 
+    /**
+     * Get the size of the body as it was read from the network.  If the response was not 
+     * compressed this will be the same as {@link #getDecompressedBodySize()}.
+     * 
+     * @return The size of the encoded body in bytes
+     */
+    public long getCompressedBodySize() {
+      return compressedBodySize;
+    }
+
+    /**
+     * Get the size of the body once decompressed, this is the number of bytes which were provided 
+     * to the {@link BodyConsumer}.
+     * 
+     * @return The size of the decoded body in bytes
+     */
+    public long getDecompressedBodySize() {
+      return decompressedBodySize;
+    }
+
+    /**
+     * Get when each phase of the request happened, from being queued to the response completing.
+     * 
+     * @return The request's timings, or {@code null} if not recorded
+     */
+    public RequestTimings getTimings() {
+      return timings;
+    }
+
     /**
      * Get a copy of the body as a {@link MergedByteBuffers}.
      * 
@@ -0,0 +1,162 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import javax.net.ssl.SSLSession;
+
+import org.threadly.litesockets.client.http.HTTPClient.HTTPResponseData;
+import org.threadly.litesockets.protocols.http.request.ClientHTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponse;
+
+/**
+ * Listener for the lifecycle of each request made by an {@link HTTPClient}, for example to feed
+ * a tracing system.  Set with {@link HTTPClient#setEventListener(HTTPClientEventListener)}, a
+ * request reports to the listener which was set when it was submitted.
+ * <p>
+ * Every method defaults to doing nothing, and the client uses {@link #NO_OP} when no listener is
+ * set, so the calls cost nothing once inlined.  No event objects are created, the values are
+ * passed directly.  Callbacks are invoked inline from the thread doing the work, which is the
+ * connection's thread for reads and connection events, so they must be quick and must not block.
+ * Callbacks must not throw, an exception thrown from one may fail the request it is for.
+ * <p>
+ * For a request the events happen in this order, connection events only happen if a new
+ * connection was opened and TLS events only for HTTPS:
+ * {@code requestQueued}, {@code requestDequeued}, {@code dnsStart}, {@code dnsEnd},
+ * {@code connectStart}, {@code connectEnd}, {@code secureConnectStart}, {@code secureConnectEnd},
+ * {@code requestHeadersWritten}, {@code requestBodyWritten}, {@code responseHeadersReceived},
+ * {@code responseBodyData}, then either {@code requestCompleted} or {@code requestFailed}.
+ * {@code requestFailed} may happen at any point, including while queued.  The request is given to
+ * a new connection while it is still connecting (it is written once connected), so
+ * {@code requestHeadersWritten} and {@code requestBodyWritten} may be reported before
+ * {@code connectEnd} and the TLS events.
+ */
+public interface HTTPClientEventListener {
+  /**
+   * Listener which ignores all events, used when no listener is set.
+   */
+  public static final HTTPClientEventListener NO_OP = new HTTPClientEventListener() { };
+
+  /**
+   * The request was accepted and added to the queue.
+   *
+   * @param request the request
+   */
+  default void requestQueued(ClientHTTPRequest request) {
+  }
+
+  /**
+   * The request left the queue and is starting to be sent.
+   *
+   * @param request the request
+   * @param queueWaitNanos nanoseconds the request was queued for
+   */
+  default void requestDequeued(ClientHTTPRequest request, long queueWaitNanos) {
+  }
+
+  /**
+   * No pooled connection was available, so the host is being resolved to open a new one.
+   *
+   * @param request the request
+   * @param host the host being resolved
+   */
+  default void dnsStart(ClientHTTPRequest request, String host) {
+  }
+
+  /**
+   * The host was resolved.
+   *
+   * @param request the request
+   * @param host the host which was resolved
+   * @param addresses the addresses it resolved to
+   */
+  default void dnsEnd(ClientHTTPRequest request, String host, List<InetAddress> addresses) {
+  }
+
+  /**
+   * Connecting to the resolved addresses is starting.
+   *
+   * @param request the request
+   */
+  default void connectStart(ClientHTTPRequest request) {
+  }
+
+  /**
+   * The connection the request will be sent on was established.
+   *
+   * @param request the request
+   */
+  default void connectEnd(ClientHTTPRequest request) {
+  }
+
+  /**
+   * The TLS handshake is starting, after {@link #connectEnd(ClientHTTPRequest)}.
+   *
+   * @param request the request
+   */
+  default void secureConnectStart(ClientHTTPRequest request) {
+  }
+
+  /**
+   * The TLS handshake completed.
+   *
+   * @param request the request
+   * @param session the negotiated session
+   */
+  default void secureConnectEnd(ClientHTTPRequest request, SSLSession session) {
+  }
+
+  /**
+   * The request headers were given to the connection to write.
+   *
+   * @param request the request
+   */
+  default void requestHeadersWritten(ClientHTTPRequest request) {
+  }
+
+  /**
+   * The last of the request body was given to the connection to write.  Not called for requests
+   * without a body.
+   *
+   * @param request the request
+   * @param bodyBytes the number of body bytes written, not including chunk encoding
+   */
+  default void requestBodyWritten(ClientHTTPRequest request, long bodyBytes) {
+  }
+
+  /**
+   * The response headers were read.
+   *
+   * @param request the request
+   * @param response the response headers, before any decompression changes
+   */
+  default void responseHeadersReceived(ClientHTTPRequest request, HTTPResponse response) {
+  }
+
+  /**
+   * Response body data was read, called for each read.
+   *
+   * @param request the request
+   * @param bytes the number of body bytes read, before decompression
+   */
+  default void responseBodyData(ClientHTTPRequest request, int bytes) {
+  }
+
+  /**
+   * The response was complete.
+   *
+   * @param request the request
+   * @param response the completed response
+   */
+  default void requestCompleted(ClientHTTPRequest request, HTTPResponseData response) {
+  }
+
+  /**
+   * The request failed, timed out or was canceled.
+   *
+   * @param request the request
+   * @param error the reason for the failure
+   */
+  default void requestFailed(ClientHTTPRequest request, Throwable error) {
+  }
+}
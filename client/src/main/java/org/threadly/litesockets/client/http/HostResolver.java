@@ -0,0 +1,22 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import org.threadly.concurrent.future.ListenableFuture;
+
+/**
+ * Resolves host names to the addresses {@link HTTPClient} should connect to.  Implementations 
+ * must not block the calling thread, since that is usually the thread handling all other client 
+ * IO.
+ */
+public interface HostResolver {
+  /**
+   * Resolves the host to its addresses.  The returned future should fail with an 
+   * {@link java.net.UnknownHostException} if the host can not be resolved.
+   * 
+   * @param host The host name or ip address to resolve
+   * @return A future which will complete with one or more addresses for the host
+   */
+  public ListenableFuture<List<InetAddress>> resolve(String host);
+}
@@ -0,0 +1,85 @@
+package org.threadly.litesockets.client.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.threadly.litesockets.protocols.http.shared.LatencyHistogram;
+
+/**
+ * Aggregated {@link RequestTimings} for the requests {@link HTTPClient} completed to a single host.
+ * Histograms are in nanoseconds, and only include requests where the phase happened (for example
+ * the connect histogram only counts requests which opened a new connection).
+ */
+public class HostTimingStats {
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  private final LatencyHistogram connect = new LatencyHistogram();
+  private final LatencyHistogram tlsHandshake = new LatencyHistogram();
+  private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+  private final LatencyHistogram total = new LatencyHistogram();
+  private final LongAdder reusedConnections = new LongAdder();
+  private final LongAdder newConnections = new LongAdder();
+
+  protected void record(RequestTimings timings) {
+    queueWait.record(timings.getQueueWaitNanos());
+    if (timings.isConnectionReused()) {
+      reusedConnections.increment();
+    } else {
+      newConnections.increment();
+    }
+    long value = timings.getConnectNanos();
+    if (value >= 0) {
+      connect.record(value);
+    }
+    value = timings.getTLSHandshakeNanos();
+    if (value >= 0) {
+      tlsHandshake.record(value);
+    }
+    value = timings.getTimeToFirstByteNanos();
+    if (value >= 0) {
+      timeToFirstByte.record(value);
+    }
+    total.record(timings.getTotalNanos());
+  }
+
+  public LatencyHistogram getQueueWait() {
+    return queueWait;
+  }
+
+  public LatencyHistogram getConnect() {
+    return connect;
+  }
+
+  public LatencyHistogram getTLSHandshake() {
+    return tlsHandshake;
+  }
+
+  public LatencyHistogram getTimeToFirstByte() {
+    return timeToFirstByte;
+  }
+
+  public LatencyHistogram getTotal() {
+    return total;
+  }
+
+  /**
+   * @return The number of completed requests sent on a pooled connection
+   */
+  public long getReusedConnectionCount() {
+    return reusedConnections.sum();
+  }
+
+  /**
+   * @return The number of completed requests which opened a new connection
+   */
+  public long getNewConnectionCount() {
+    return newConnections.sum();
+  }
+
+  /**
+   * @return The fraction of completed requests sent on a pooled connection, or {@code 0} if none have completed
+   */
+  public double getReuseRatio() {
+    long reused = reusedConnections.sum();
+    long count = reused + newConnections.sum();
+    return count == 0 ? 0 : reused / (double)count;
+  }
+}
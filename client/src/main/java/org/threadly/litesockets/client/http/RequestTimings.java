@@ -0,0 +1,147 @@
+package org.threadly.litesockets.client.http;
+
+/**
+ * When each phase of a request made by {@link HTTPClient} happened.  Times are in nanoseconds
+ * measured from when the request was queued, a phase which did not happen for the request (for
+ * example connecting when a pooled connection was reused) is reported as {@code -1}.
+ */
+public class RequestTimings {
+  private final boolean connectionReused;
+  private final long started;
+  private final long resolved;
+  private final long connected;
+  private final long handshakeDone;
+  private final long firstByte;
+  private final long headersRead;
+  private final long finished;
+
+  /**
+   * Constructs a new {@link RequestTimings}.  All times are nanoseconds since the request was
+   * queued, or {@code -1} if the phase did not happen.
+   *
+   * @param connectionReused {@code true} if the request was sent on a pooled connection
+   * @param started When the request left the queue and started to be sent
+   * @param resolved When the host was resolved
+   * @param connected When the connection was established
+   * @param handshakeDone When the TLS handshake completed
+   * @param firstByte When the first byte of the response was read
+   * @param headersRead When the response headers were read
+   * @param finished When the response was complete
+   */
+  public RequestTimings(boolean connectionReused, long started, long resolved, long connected,
+                        long handshakeDone, long firstByte, long headersRead, long finished) {
+    this.connectionReused = connectionReused;
+    this.started = started;
+    this.resolved = resolved;
+    this.connected = connected;
+    this.handshakeDone = handshakeDone;
+    this.firstByte = firstByte;
+    this.headersRead = headersRead;
+    this.finished = finished;
+  }
+
+  /**
+   * @return {@code true} if the request was sent on a pooled connection
+   */
+  public boolean isConnectionReused() {
+    return connectionReused;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the request started being sent
+   */
+  public long getStartedNanos() {
+    return started;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the host was resolved, or {@code -1} if not connected
+   */
+  public long getResolvedNanos() {
+    return resolved;
+  }
+
+  /**
+   * @return Nanoseconds from queued until connected, or {@code -1} if a pooled connection was used
+   */
+  public long getConnectedNanos() {
+    return connected;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the TLS handshake completed, or {@code -1} if there was none
+   */
+  public long getHandshakeDoneNanos() {
+    return handshakeDone;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the first byte of the response was read
+   */
+  public long getFirstByteNanos() {
+    return firstByte;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the response headers were read
+   */
+  public long getHeadersReadNanos() {
+    return headersRead;
+  }
+
+  /**
+   * @return Nanoseconds from queued until the response was complete
+   */
+  public long getFinishedNanos() {
+    return finished;
+  }
+
+  /**
+   * @return Nanoseconds the request waited in the queue
+   */
+  public long getQueueWaitNanos() {
+    return started;
+  }
+
+  /**
+   * @return Nanoseconds spent establishing the connection after the host was resolved, or
+   *           {@code -1} if a pooled connection was used
+   */
+  public long getConnectNanos() {
+    return connected < 0 || resolved < 0 ? -1 : connected - resolved;
+  }
+
+  /**
+   * @return Nanoseconds spent in the TLS handshake, or {@code -1} if there was none
+   */
+  public long getTLSHandshakeNanos() {
+    return handshakeDone < 0 || connected < 0 ? -1 : handshakeDone - connected;
+  }
+
+  /**
+   * Time to first byte, from when the request could be written (once started on a pooled
+   * connection, or once connected and any handshake was done) until the first response byte.
+   *
+   * @return Nanoseconds until the first byte of the response, or {@code -1} if none was read
+   */
+  public long getTimeToFirstByteNanos() {
+    if (firstByte < 0) {
+      return -1;
+    }
+    return firstByte - Math.max(started, Math.max(connected, handshakeDone));
+  }
+
+  /**
+   * @return Nanoseconds from queued until the response was complete
+   */
+  public long getTotalNanos() {
+    return finished;
+  }
+
+  @Override
+  public String toString() {
+    return "RequestTimings{reused=" + connectionReused + ", queueWait=" + getQueueWaitNanos() +
+             ", connect=" + getConnectNanos() + ", tls=" + getTLSHandshakeNanos() +
+             ", ttfb=" + getTimeToFirstByteNanos() + ", total=" + getTotalNanos() + "}";
+  }
+}
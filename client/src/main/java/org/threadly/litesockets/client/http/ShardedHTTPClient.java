@@ -0,0 +1,418 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.client.http.HTTPClient.HTTPResponseData;
+import org.threadly.litesockets.protocols.http.request.ClientHTTPRequest;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.utils.IOUtils;
+import org.threadly.util.AbstractService;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * <p>A client which spreads requests across several {@link HTTPClient} shards.  Each shard has its
+ * own event loop thread, connection pool and request queue, so a single client object can make
+ * use of multiple cores for parsing, TLS and callbacks.</p>
+ *
+ * <p>Requests are assigned to shards based off the {@link ShardSelection}.  The default of
+ * {@link ShardSelection#HostHash} sends all requests for a host to the same shard, keeping
+ * connection reuse (and per host limits) as if it was a single client.
+ * {@link ShardSelection#LeastLoaded} balances hot hosts across all shards, at the cost of each
+ * shard needing its own connections to the host.</p>
+ *
+ * <p>Settings are applied to every shard, and statistics are summed across them.</p>
+ */
+public class ShardedHTTPClient extends AbstractService {
+  /**
+   * How requests are assigned to shards.
+   */
+  public enum ShardSelection {
+    /**
+     * Requests to the same host always use the same shard.
+     */
+    HostHash,
+    /**
+     * Requests use the shard with the fewest in progress and queued requests.
+     */
+    LeastLoaded
+  }
+
+  private final HTTPClient[] shards;
+  private final ShardSelection shardSelection;
+
+  /**
+   * Constructs a client with a shard per available processor, each using the default
+   * {@value HTTPClient#DEFAULT_CONCURRENT} concurrent requests, assigning requests by host.
+   */
+  public ShardedHTTPClient() {
+    this(Runtime.getRuntime().availableProcessors(), HTTPClient.DEFAULT_CONCURRENT, -1,
+         ShardSelection.HostHash);
+  }
+
+  /**
+   * Constructs a new sharded client.
+   *
+   * @param shardCount Number of shards (and event loop threads) to create
+   * @param maxConcurrentPerShard maximum number of requests to run simultaneously on each shard
+   * @param maxQueueSizePerShard Maximum queue size of each shard, {@code <= 0} to leave unbounded
+   * @param shardSelection How requests should be assigned to shards
+   */
+  public ShardedHTTPClient(int shardCount, int maxConcurrentPerShard, int maxQueueSizePerShard,
+                           ShardSelection shardSelection) {
+    ArgumentVerifier.assertGreaterThanZero(shardCount, "shardCount");
+    ArgumentVerifier.assertNotNull(shardSelection, "shardSelection");
+    this.shardSelection = shardSelection;
+    shards = new HTTPClient[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new HTTPClient(maxConcurrentPerShard, maxQueueSizePerShard);
+    }
+  }
+
+  /**
+   * Returns the number of shards requests are spread across.
+   *
+   * @return The number of shards
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  public ShardSelection getShardSelection() {
+    return shardSelection;
+  }
+
+  /**
+   * Selects the shard a request to the address should be made on.
+   *
+   * @param ha The address the request is to
+   * @return The shard to use
+   */
+  protected HTTPClient selectShard(HTTPAddress ha) {
+    if (shards.length == 1) {
+      return shards[0];
+    } else if (shardSelection == ShardSelection.HostHash) {
+      int hash = ha.hashCode();
+      hash ^= (hash >>> 16); // spread the high bits since the shard count is usually small
+      return shards[Math.floorMod(hash, shards.length)];
+    } else {
+      HTTPClient result = shards[0];
+      int minLoad = Integer.MAX_VALUE;
+      for (HTTPClient shard : shards) {
+        int load = shard.getInProgressCount() + shard.getRequestQueueSize();
+        if (load < minLoad) {
+          minLoad = load;
+          result = shard;
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Sends a blocking HTTP request.  See {@link HTTPClient#request(URL)}.
+   *
+   * @param url the url to send the request too.
+   * @return A {@link HTTPResponseData} object containing the headers and content of the response.
+   * @throws HTTPParsingException is thrown if the server sends back protocol or a response that is larger then allowed.
+   */
+  public HTTPResponseData request(final URL url) throws HTTPParsingException {
+    return request(url, HTTPRequestMethod.GET, IOUtils.EMPTY_BYTEBUFFER);
+  }
+
+  /**
+   * Sends a blocking HTTP request.  See {@link HTTPClient#request(URL, HTTPRequestMethod, ByteBuffer)}.
+   *
+   * @param url the url to send the request too.
+   * @param rm the {@link HTTPRequestMethod} to use on the request.
+   * @param bb the data to put in the body for this request.
+   * @return A {@link HTTPResponseData} object containing the headers and content of the response.
+   * @throws HTTPParsingException is thrown if the server sends back protocol or a response that is larger then allowed.
+   */
+  public HTTPResponseData request(final URL url, final HTTPRequestMethod rm,
+                                  final ByteBuffer bb) throws HTTPParsingException {
+    return selectShard(new HTTPAddress(url)).request(url, rm, bb);
+  }
+
+  /**
+   * Sends a blocking HTTP request.  See {@link HTTPClient#request(ClientHTTPRequest)}.
+   *
+   * @param request the {@link ClientHTTPRequest} to send the server once connected.
+   * @return A {@link HTTPResponseData} object containing the headers and content of the response.
+   * @throws HTTPParsingException is thrown if the server sends back protocol or a response that is larger then allowed.
+   */
+  public HTTPResponseData request(final ClientHTTPRequest request) throws HTTPParsingException {
+    return selectShard(request.getHTTPAddress()).request(request);
+  }
+
+  /**
+   * Sends an asynchronous HTTP request.  See {@link HTTPClient#requestAsync(URL)}.
+   *
+   * @param url the {@link URL} to send the request too.
+   * @return A {@link ListenableFuture} containing a {@link HTTPResponseData} object that will be completed when the request is finished,
+   * successfully or with errors.
+   */
+  public ListenableFuture<HTTPResponseData> requestAsync(final URL url) {
+    return requestAsync(url, HTTPRequestMethod.GET, IOUtils.EMPTY_BYTEBUFFER);
+  }
+
+  /**
+   * Sends an asynchronous HTTP request.  See
+   * {@link HTTPClient#requestAsync(URL, HTTPRequestMethod, ByteBuffer)}.
+   *
+   * @param url the {@link URL} to send the request too.
+   * @param rm the {@link HTTPRequestMethod} to use on the request.
+   * @param bb the data to put in the body for this request.
+   * @return A {@link ListenableFuture} containing a {@link HTTPResponseData} object that will be completed when the request is finished,
+   * successfully or with errors.
+   */
+  public ListenableFuture<HTTPResponseData> requestAsync(final URL url, final HTTPRequestMethod rm,
+                                                         final ByteBuffer bb) {
+    return selectShard(new HTTPAddress(url)).requestAsync(url, rm, bb);
+  }
+
+  /**
+   * Sends an asynchronous HTTP request.  See {@link HTTPClient#requestAsync(ClientHTTPRequest)}.
+   *
+   * @param request the {@link ClientHTTPRequest} to send the server once connected.
+   * @return an {@link ListenableFuture} containing a {@link HTTPResponseData} object that will be completed when the request is finished,
+   * successfully or with errors.
+   */
+  public ListenableFuture<HTTPResponseData> requestAsync(final ClientHTTPRequest request) {
+    return selectShard(request.getHTTPAddress()).requestAsync(request);
+  }
+
+  /**
+   * Opens idle connections to the host.  With {@link ShardSelection#HostHash} the host's shard is
+   * pre-warmed, otherwise the connections are split evenly across every shard.  See
+   * {@link HTTPClient#prewarm(HTTPAddress, int)}.
+   *
+   * @param ha The address to open connections to
+   * @param count The number of idle connections wanted
+   * @return A future which completes once the connections are established and pooled
+   */
+  public ListenableFuture<?> prewarm(HTTPAddress ha, int count) {
+    if (shardSelection == ShardSelection.HostHash) {
+      return selectShard(ha).prewarm(ha, count);
+    }
+    int perShard = (count + shards.length - 1) / shards.length;
+    List<ListenableFuture<?>> futures = new ArrayList<>(shards.length);
+    for (HTTPClient shard : shards) {
+      futures.add(shard.prewarm(ha, perShard));
+    }
+    return FutureUtils.makeFailurePropagatingCompleteFuture(futures);
+  }
+
+  /**
+   * See {@link HTTPClient#setTimeout(long, TimeUnit)}.
+   *
+   * @param timeout time to wait for HTTPRequests to finish.
+   * @param unit The unit the {@code timeout} value is represented in
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    for (HTTPClient shard : shards) {
+      shard.setTimeout(timeout, unit);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setMaxIdleTimeout(long, TimeUnit)}.
+   *
+   * @param idleTimeout the time to wait before timing out a connection.
+   * @param unit The unit the {@code idleTimeout} value is represented in
+   */
+  public void setMaxIdleTimeout(long idleTimeout, TimeUnit unit) {
+    for (HTTPClient shard : shards) {
+      shard.setMaxIdleTimeout(idleTimeout, unit);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setIdleConnectionLimits(int, int)}, limits apply per shard.
+   *
+   * @param minIdlePerHost Number of idle connections per host to keep open even once expired
+   * @param maxIdlePerHost Maximum number of idle connections per host, {@code 0} to never reuse connections
+   */
+  public void setIdleConnectionLimits(int minIdlePerHost, int maxIdlePerHost) {
+    for (HTTPClient shard : shards) {
+      shard.setIdleConnectionLimits(minIdlePerHost, maxIdlePerHost);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setMaxConcurrentPerHost(int)}.  The limit applies per shard, so with
+   * {@link ShardSelection#LeastLoaded} a host may have this many requests on every shard.
+   *
+   * @param maxConcurrentPerHost maximum number of requests to run simultaneously per host
+   */
+  public void setMaxConcurrentPerHost(int maxConcurrentPerHost) {
+    for (HTTPClient shard : shards) {
+      shard.setMaxConcurrentPerHost(maxConcurrentPerHost);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setMaxWaitForLowPriority(long)}.
+   *
+   * @param maxWaitMs time in milliseconds a low priority request can be delayed by high priority requests
+   */
+  public void setMaxWaitForLowPriority(long maxWaitMs) {
+    for (HTTPClient shard : shards) {
+      shard.setMaxWaitForLowPriority(maxWaitMs);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setHostResolver(HostResolver)}, the resolver is shared by all shards.
+   *
+   * @param hostResolver The resolver to use for new connections
+   */
+  public void setHostResolver(HostResolver hostResolver) {
+    for (HTTPClient shard : shards) {
+      shard.setHostResolver(hostResolver);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setSSLContext(SSLContext)}.
+   *
+   * @param sslctx the {@link SSLContext} to use for ssl connections.
+   */
+  public void setSSLContext(SSLContext sslctx) {
+    for (HTTPClient shard : shards) {
+      shard.setSSLContext(sslctx);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setEventListener(HTTPClientEventListener)}.
+   *
+   * @param listener the listener to report request events to, or {@code null} for none
+   */
+  public void setEventListener(HTTPClientEventListener listener) {
+    for (HTTPClient shard : shards) {
+      shard.setEventListener(listener);
+    }
+  }
+
+  /**
+   * See {@link HTTPClient#setResponseDecompression(boolean)}.
+   *
+   * @param enabled {@code true} to request and decompress compressed responses
+   */
+  public void setResponseDecompression(boolean enabled) {
+    for (HTTPClient shard : shards) {
+      shard.setResponseDecompression(enabled);
+    }
+  }
+
+  /**
+   * Closes all connections on every shard.
+   */
+  public void closeAllClients() {
+    for (HTTPClient shard : shards) {
+      shard.closeAllClients();
+    }
+  }
+
+  /**
+   * Number of requests in progress across all shards.
+   *
+   * @return number of request currently in progress.
+   */
+  public int getInProgressCount() {
+    int result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getInProgressCount();
+    }
+    return result;
+  }
+
+  /**
+   * Number of requests queued across all shards.
+   *
+   * @return the number of requests waiting to be started
+   */
+  public int getRequestQueueSize() {
+    int result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getRequestQueueSize();
+    }
+    return result;
+  }
+
+  /**
+   * Number of open connections across all shards.
+   *
+   * @return number of open connections
+   */
+  public int getOpenConnectionCount() {
+    int result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getOpenConnectionCount();
+    }
+    return result;
+  }
+
+  /**
+   * Number of idle pooled connections across all shards.
+   *
+   * @return number of idle connections
+   */
+  public int getIdleConnectionCount() {
+    int result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getIdleConnectionCount();
+    }
+    return result;
+  }
+
+  /**
+   * Number of requests which reused a pooled connection, across all shards.
+   *
+   * @return the number of connection pool hits
+   */
+  public long getConnectionPoolHitCount() {
+    long result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getConnectionPoolHitCount();
+    }
+    return result;
+  }
+
+  /**
+   * Number of requests which needed a new connection, across all shards.
+   *
+   * @return the number of connection pool misses
+   */
+  public long getConnectionPoolMissCount() {
+    long result = 0;
+    for (HTTPClient shard : shards) {
+      result += shard.getConnectionPoolMissCount();
+    }
+    return result;
+  }
+
+  @Override
+  protected void startupService() {
+    for (HTTPClient shard : shards) {
+      shard.start();
+    }
+  }
+
+  @Override
+  protected void shutdownService() {
+    for (HTTPClient shard : shards) {
+      shard.stop();
+    }
+  }
+}
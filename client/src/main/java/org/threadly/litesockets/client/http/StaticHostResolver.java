@@ -0,0 +1,54 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * {@link HostResolver} which resolves from an in-memory table, useful for tests or for pinning 
+ * hosts to known addresses.  Hosts not in the table fail to resolve.
+ */
+public class StaticHostResolver implements HostResolver {
+  private final ConcurrentHashMap<String, ListenableFuture<List<InetAddress>>> hosts = 
+      new ConcurrentHashMap<>();
+
+  /**
+   * Sets the addresses a host will resolve to, replacing any previous addresses for the host.
+   * 
+   * @param host The host name
+   * @param addresses One or more addresses for the host
+   */
+  public void setHost(String host, InetAddress ... addresses) {
+    ArgumentVerifier.assertNotNull(host, "host");
+    if (addresses == null || addresses.length == 0) {
+      throw new IllegalArgumentException("Must provide at least one address");
+    }
+    List<InetAddress> list = Collections.unmodifiableList(Arrays.asList(addresses.clone()));
+    hosts.put(host, FutureUtils.immediateResultFuture(list));
+  }
+
+  /**
+   * Removes the host from the table, so that future resolutions will fail.
+   * 
+   * @param host The host name to remove
+   */
+  public void removeHost(String host) {
+    hosts.remove(host);
+  }
+
+  @Override
+  public ListenableFuture<List<InetAddress>> resolve(String host) {
+    ListenableFuture<List<InetAddress>> result = hosts.get(host);
+    if (result == null) {
+      return FutureUtils.immediateFailureFuture(new UnknownHostException(host));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,75 @@
+package org.threadly.litesockets.client.http;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLSession;
+
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.util.Clock;
+
+/**
+ * Tracks TLS handshakes made by {@link HTTPClient}, counting how many resumed a previous session
+ * and how long they took.  Session resumption itself is done by the {@link javax.net.ssl.SSLContext},
+ * which caches client sessions by the host and port the engine was created for.
+ * <p>
+ * A handshake is considered resumed if it produced the same session id as the previous handshake
+ * to the address (TLS 1.2 and earlier), or if the session was created before the handshake
+ * started (TLS 1.3 tickets, which issue a new id on each resumption).
+ */
+class TLSSessionTracker {
+  private final ConcurrentHashMap<HTTPAddress, byte[]> lastSessionIds = new ConcurrentHashMap<>();
+  private final LongAdder fullHandshakes = new LongAdder();
+  private final LongAdder resumedHandshakes = new LongAdder();
+  private final LongAdder handshakeMillis = new LongAdder();
+
+  /**
+   * Records the handshake once it completes.  Timing starts once the connection is established
+   * so that only the handshake is measured.
+   *
+   * @param ha The address the connection is to
+   * @param connectFuture Future which completes once connected
+   * @param handshakeFuture Future which completes once the handshake is done
+   */
+  public void track(HTTPAddress ha, ListenableFuture<?> connectFuture,
+                    ListenableFuture<SSLSession> handshakeFuture) {
+    connectFuture.resultCallback((ignored) -> {
+      long startMillis = Clock.accurateForwardProgressingMillis();
+      long startTime = Clock.accurateTimeMillis();
+      handshakeFuture.resultCallback((session) -> {
+        handshakeMillis.add(Clock.accurateForwardProgressingMillis() - startMillis);
+        byte[] id = session.getId();
+        byte[] previousId = id == null || id.length == 0 ? null : lastSessionIds.put(ha, id);
+        if (Arrays.equals(id, previousId) || session.getCreationTime() < startTime) {
+          resumedHandshakes.increment();
+        } else {
+          fullHandshakes.increment();
+        }
+      });
+    });
+  }
+
+  public long getFullHandshakeCount() {
+    return fullHandshakes.sum();
+  }
+
+  public long getResumedHandshakeCount() {
+    return resumedHandshakes.sum();
+  }
+
+  /**
+   * Returns the average time handshakes took, from the connection being established until the
+   * handshake completed.
+   *
+   * @return The average handshake time in milliseconds, or {@code -1} if none have completed
+   */
+  public double getAverageHandshakeMillis() {
+    long count = fullHandshakes.sum() + resumedHandshakes.sum();
+    if (count == 0) {
+      return -1;
+    }
+    return handshakeMillis.sum() / (double)count;
+  }
+}
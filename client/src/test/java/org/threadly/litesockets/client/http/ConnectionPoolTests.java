@@ -0,0 +1,221 @@
+package org.threadly.litesockets.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.SocketExecuter;
+import org.threadly.litesockets.TCPClient;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.test.concurrent.AsyncVerifier;
+import org.threadly.test.concurrent.TestCondition;
+
+public class ConnectionPoolTests {
+  private static final HTTPAddress ADDRESS_A = new HTTPAddress("localhost", 80, false);
+  private static final HTTPAddress ADDRESS_B = new HTTPAddress("localhost", 443, true);
+
+  SocketExecuter SEI;
+  PriorityScheduler PS;
+  TimingWheel wheel;
+  int port;
+
+  @Before
+  public void start() {
+    PS = new PriorityScheduler(5);
+    SEI = new ThreadedSocketExecuter(PS);
+    SEI.start();
+    wheel = new TimingWheel(PS, 10, 64);
+    port = PortUtils.findTCPPort();
+  }
+
+  @After
+  public void stop() {
+    SEI.stop();
+    PS.shutdownNow();
+  }
+
+  private TCPClient makeClient() throws IOException {
+    return SEI.createTCPClient("localhost", port);
+  }
+
+  @Test
+  public void lifoCheckoutTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 4);
+    TCPClient first = makeClient();
+    TCPClient second = makeClient();
+    assertNull(pool.checkout(ADDRESS_A));
+    pool.release(ADDRESS_A, first);
+    pool.release(ADDRESS_A, second);
+    assertEquals(2, pool.getIdleCount());
+
+    assertNull(pool.checkout(ADDRESS_B));
+    assertSame(second, pool.checkout(ADDRESS_A));
+    assertSame(first, pool.checkout(ADDRESS_A));
+    assertNull(pool.checkout(ADDRESS_A));
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(2, pool.getHitCount());
+    assertEquals(3, pool.getMissCount());
+  }
+
+  @Test
+  public void maxIdleEvictsTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 1);
+    TCPClient first = makeClient();
+    TCPClient second = makeClient();
+    pool.release(ADDRESS_A, first);
+    pool.release(ADDRESS_A, second);
+
+    assertTrue(second.isClosed());
+    assertEquals(1, pool.getEvictionCount());
+    assertSame(first, pool.checkout(ADDRESS_A));
+  }
+
+  @Test
+  public void zeroMaxIdleNeverPoolsTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 0);
+    TCPClient client = makeClient();
+    pool.release(ADDRESS_A, client);
+
+    assertTrue(client.isClosed());
+    assertNull(pool.checkout(ADDRESS_A));
+  }
+
+  @Test
+  public void closedConnectionSkippedTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 4);
+    TCPClient first = makeClient();
+    TCPClient second = makeClient();
+    pool.release(ADDRESS_A, first);
+    pool.release(ADDRESS_A, second);
+    second.close();
+
+    assertSame(first, pool.checkout(ADDRESS_A));
+    assertEquals(1, pool.getEvictionCount());
+  }
+
+  @Test
+  public void expireKeepsMinIdleTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 1, 4);
+    pool.setMaxIdleTime(50);
+    TCPClient first = makeClient();
+    TCPClient second = makeClient();
+    TCPClient third = makeClient();
+    pool.release(ADDRESS_A, first);
+    pool.release(ADDRESS_A, second);
+    pool.release(ADDRESS_A, third);
+    assertEquals(3, pool.getIdleCount());
+    assertEquals(2, wheel.getScheduledCount());
+
+    new TestCondition(() -> pool.getIdleCount() == 1).blockTillTrue(5_000);
+    assertFalse(first.isClosed());
+    assertTrue(second.isClosed());
+    assertTrue(third.isClosed());
+    assertEquals(2, pool.getEvictionCount());
+    assertSame(first, pool.checkout(ADDRESS_A));
+    assertNull(pool.checkout(ADDRESS_A));
+    assertEquals(0, wheel.getScheduledCount());
+  }
+
+  @Test
+  public void checkoutCancelsIdleTimeoutTest() throws IOException, InterruptedException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 4);
+    pool.setMaxIdleTime(50);
+    TCPClient client = makeClient();
+    pool.release(ADDRESS_A, client);
+    assertEquals(1, wheel.getScheduledCount());
+    assertSame(client, pool.checkout(ADDRESS_A));
+    assertEquals(0, wheel.getScheduledCount());
+    TimeUnit.MILLISECONDS.sleep(150);
+
+    assertFalse(client.isClosed());
+    assertEquals(0, pool.getEvictionCount());
+  }
+
+  @Test
+  public void fullPoolRemovesClosedTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 2);
+    TCPClient first = makeClient();
+    TCPClient second = makeClient();
+    TCPClient third = makeClient();
+    pool.release(ADDRESS_A, first);
+    pool.release(ADDRESS_A, second);
+    first.close();
+    pool.release(ADDRESS_A, third);
+
+    assertFalse(third.isClosed());
+    assertEquals(2, pool.getIdleCount());
+    assertEquals(1, pool.getEvictionCount());
+    assertSame(third, pool.checkout(ADDRESS_A));
+    assertSame(second, pool.checkout(ADDRESS_A));
+  }
+
+  @Test
+  public void changeLimitsClosesIdleTest() throws IOException {
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 4);
+    TCPClient client = makeClient();
+    pool.release(ADDRESS_A, client);
+    pool.setIdleLimits(0, 8);
+
+    assertTrue(client.isClosed());
+    assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void minGreaterThanMaxFail() {
+    new ConnectionPool(wheel, 2, 1);
+  }
+
+  @Test
+  public void concurrentCheckoutTest() throws IOException, InterruptedException, TimeoutException {
+    final int threads = 4;
+    final int iterations = 20_000;
+    ConnectionPool pool = new ConnectionPool(wheel, 0, 8);
+    List<TCPClient> clients = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      TCPClient client = makeClient();
+      clients.add(client);
+      pool.release(ADDRESS_A, client);
+    }
+    Set<TCPClient> checkedOut = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    AsyncVerifier av = new AsyncVerifier();
+    for (int i = 0; i < threads; i++) {
+      PS.execute(() -> {
+        for (int j = 0; j < iterations; j++) {
+          TCPClient client = pool.checkout(ADDRESS_A);
+          if (client != null) {
+            av.assertTrue(checkedOut.add(client));
+            av.assertTrue(clients.contains(client));
+            checkedOut.remove(client);
+            pool.release(ADDRESS_A, client);
+          }
+        }
+        av.signalComplete();
+      });
+    }
+    av.waitForTest(10_000, threads);
+
+    assertEquals(8, pool.getIdleCount());
+    assertEquals(0, pool.getEvictionCount());
+    for (TCPClient client : clients) {
+      assertFalse(client.isClosed());
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.threadly.litesockets.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.SocketExecuter;
+import org.threadly.litesockets.TCPClient;
+import org.threadly.litesockets.TCPServer;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
+import org.threadly.litesockets.utils.PortUtils;
+
+public class ConnectionRacerTests {
+  SocketExecuter SEI;
+  PriorityScheduler PS;
+  ConnectionRacer racer;
+  TCPServer server;
+  int port;
+
+  @Before
+  public void start() throws IOException {
+    PS = new PriorityScheduler(5);
+    SEI = new ThreadedSocketExecuter(PS);
+    SEI.start();
+    racer = new ConnectionRacer(new TimingWheel(PS, 10, 64));
+    port = PortUtils.findTCPPort();
+    server = SEI.createTCPServer("127.0.0.1", port);
+    server.setClientAcceptor((client) -> { });
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.close();
+    SEI.stop();
+    PS.shutdownNow();
+  }
+
+  private static InetAddress address(int lastOctet) throws UnknownHostException {
+    return InetAddress.getByAddress(new byte[] {127, 0, 0, (byte)lastOctet});
+  }
+
+  private static InetAddress v6Address(int last) throws UnknownHostException {
+    byte[] bytes = new byte[16];
+    bytes[0] = 0x20;
+    bytes[1] = 0x01;
+    bytes[15] = (byte)last;
+    return InetAddress.getByAddress(bytes);
+  }
+
+  private ConnectionRacer.ClientFactory factory() {
+    return (address) -> {
+      TCPClient client = SEI.createTCPClient(address.getHostAddress(), port);
+      client.connect();
+      return client;
+    };
+  }
+
+  @Test
+  public void failedAddressSkippedTest() throws Exception {
+    // nothing listens on 127.0.0.2, so that attempt is refused and the next address is raced
+    List<InetAddress> addresses = Arrays.asList(address(2), address(1));
+    TCPClient client = racer.connect(addresses, 0, factory()).get(5, TimeUnit.SECONDS);
+
+    assertEquals(address(1), client.getRemoteSocketAddress().getAddress());
+    assertTrue(racer.isPenalized(address(2)));
+    assertFalse(racer.isPenalized(address(1)));
+    assertEquals(address(1), racer.orderAddresses(addresses, 0).get(0));
+    client.close();
+  }
+
+  @Test
+  public void allFailTest() throws Exception {
+    List<InetAddress> addresses = Arrays.asList(address(2), address(3));
+    try {
+      racer.connect(addresses, 0, factory()).get(5, TimeUnit.SECONDS);
+      fail("Exception should have thrown");
+    } catch (ExecutionException e) {
+      // expected
+    }
+    assertTrue(racer.isPenalized(address(2)));
+    assertTrue(racer.isPenalized(address(3)));
+  }
+
+  @Test
+  public void penaltyExpiresTest() throws Exception {
+    racer.setFailurePenalty(50);
+    try {
+      racer.connect(Arrays.asList(address(2), address(3)), 0, factory()).get(5, TimeUnit.SECONDS);
+      fail("Exception should have thrown");
+    } catch (ExecutionException e) {
+      // expected
+    }
+    assertTrue(racer.isPenalized(address(2)));
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertFalse(racer.isPenalized(address(2)));
+  }
+
+  @Test
+  public void orderInterleavesFamiliesTest() throws UnknownHostException {
+    List<InetAddress> addresses =
+        Arrays.asList(address(1), address(2), v6Address(1), v6Address(2));
+    assertEquals(Arrays.asList(address(1), v6Address(1), address(2), v6Address(2)),
+                 racer.orderAddresses(addresses, 0));
+    assertEquals(Arrays.asList(address(2), v6Address(2), address(1), v6Address(1)),
+                 racer.orderAddresses(addresses, 1));
+  }
+}
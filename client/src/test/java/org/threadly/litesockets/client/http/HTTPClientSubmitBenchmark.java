@@ -0,0 +1,141 @@
+package org.threadly.litesockets.client.http;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.SocketExecuter;
+import org.threadly.litesockets.TCPServer;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.client.http.HTTPClient.HTTPResponseData;
+import org.threadly.litesockets.protocols.http.request.ClientHTTPRequest;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.utils.PortUtils;
+
+/**
+ * Timed benchmark of submitting requests to {@link HTTPClient} from many threads at once.  This is
+ * not run as part of the tests, run the main method directly:
+ * <p>
+ * {@code HTTPClientSubmitBenchmark <threads> <requestsPerThread>}
+ * <p>
+ * Two cases are measured.  "queued" submits to a server which never responds, so every request
+ * past the concurrency limit only goes through the queue and dispatch, isolating contention
+ * between submitting threads.  "round trip" sends to a local server which responds immediately,
+ * so submitting threads also compete with completions on the socket thread.
+ */
+public class HTTPClientSubmitBenchmark {
+  private static final String CONTENT = "TEST123";
+  private static final int WARMUP_RUNS = 2;
+  private static final int MEASURED_RUNS = 5;
+  private static final int ROUND_TRIP_WINDOW = 64;
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int requestsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+    int silentPort = PortUtils.findTCPPort();
+    SocketExecuter se = new ThreadedSocketExecuter();
+    se.start();
+    TCPServer silentServer = se.createTCPServer("localhost", silentPort);
+    silentServer.setClientAcceptor((client) -> { /* never respond */ });
+    silentServer.start();
+    int port = PortUtils.findTCPPort();
+    TestHTTPServer server =
+        new TestHTTPServer(port, new HTTPResponseBuilder()
+                                   .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH,
+                                              Integer.toString(CONTENT.length())).build(),
+                           CONTENT.getBytes(), false, false);
+    try {
+      for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+        long queued = runQueued(silentPort, threads, requestsPerThread);
+        long roundTrip = runRoundTrip(port, threads, requestsPerThread / 10);
+        if (i >= WARMUP_RUNS) {
+          System.out.println("threads=" + threads +
+                               " queued=" + perSecond(threads * requestsPerThread, queued) + "/s" +
+                               " roundTrip=" + perSecond(threads * (requestsPerThread / 10), roundTrip) + "/s");
+        }
+      }
+    } finally {
+      server.stop();
+      silentServer.close();
+      se.stop();
+    }
+    System.exit(0);
+  }
+
+  private static long perSecond(long count, long nanos) {
+    return count * TimeUnit.SECONDS.toNanos(1) / nanos;
+  }
+
+  private static long runQueued(int port, int threads, int requestsPerThread) throws Exception {
+    HTTPClient client = new HTTPClient();
+    client.start();
+    try {
+      ClientHTTPRequest request =
+          new HTTPRequestBuilder(new URL("http://localhost:" + port))
+            .setTimeout(1, TimeUnit.MINUTES).buildClientHTTPRequest();
+      return timeThreads(threads, () -> {
+        for (int i = 0; i < requestsPerThread; i++) {
+          client.requestAsync(request);
+        }
+      });
+    } finally {
+      client.stop();
+    }
+  }
+
+  private static long runRoundTrip(int port, int threads, int requestsPerThread) throws Exception {
+    HTTPClient client = new HTTPClient();
+    client.start();
+    try {
+      ClientHTTPRequest request =
+          new HTTPRequestBuilder(new URL("http://localhost:" + port)).buildClientHTTPRequest();
+      return timeThreads(threads, () -> {
+        List<ListenableFuture<HTTPResponseData>> window = new ArrayList<>(ROUND_TRIP_WINDOW);
+        for (int i = 0; i < requestsPerThread; i++) {
+          window.add(client.requestAsync(request));
+          if (window.size() == ROUND_TRIP_WINDOW || i == requestsPerThread - 1) {
+            try {
+              FutureUtils.blockTillAllCompleteOrFirstError(window);
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+            window.clear();
+          }
+        }
+      });
+    } finally {
+      client.stop();
+    }
+  }
+
+  private static long timeThreads(int threads, Runnable task) throws InterruptedException {
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(() -> {
+        ready.countDown();
+        try {
+          start.await();
+          task.run();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+    ready.await();
+    long startTime = System.nanoTime();
+    start.countDown();
+    done.await();
+    return System.nanoTime() - startTime;
+  }
+}
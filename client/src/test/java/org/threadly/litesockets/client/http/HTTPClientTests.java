@@ -2,25 +2,38 @@ package org.threadly.litesockets.client.http;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.concurrent.TaskPriority;
 import org.threadly.concurrent.future.FutureCallback;
 import org.threadly.concurrent.future.FutureUtils;
 import org.threadly.concurrent.future.ListenableFuture;
@@ -44,6 +57,7 @@ import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
 import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
 import org.threadly.litesockets.utils.IOUtils;
 import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.litesockets.utils.SSLUtils;
 import org.threadly.test.concurrent.AsyncVerifier;
 import org.threadly.test.concurrent.TestCondition;
 import org.threadly.util.ArrayIterator;
@@ -177,6 +191,55 @@ public class HTTPClientTests {
       TSE.stop();
   }
 
+  @Test
+  public void concurrentSubmitRespectsLimitTest() throws IOException, InterruptedException, TimeoutException {
+    final int submitters = 16;
+    final int perSubmitter = 100;
+    final int maxConcurrent = 4;
+    final int port = PortUtils.findTCPPort();
+    final ThreadedSocketExecuter TSE = new ThreadedSocketExecuter(PS);
+    TSE.start();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    final HTTPClient httpClient = new HTTPClient(maxConcurrent, TSE);
+    httpClient.start();
+
+    AsyncVerifier av = new AsyncVerifier();
+    AtomicInteger maxSeen = new AtomicInteger();
+    PriorityScheduler CLIENT_PS = new PriorityScheduler(submitters);
+    long start = Clock.accurateForwardProgressingMillis();
+    for (int i = 0; i < submitters; i++) {
+      // every submitting thread dispatches directly since the client uses a threaded executor
+      CLIENT_PS.execute(() -> {
+        for (int j = 0; j < perSubmitter; j++) {
+          httpClient.requestAsync(hrb.buildClientHTTPRequest()).callback(new FutureCallback<HTTPResponseData>() {
+            @Override
+            public void handleResult(HTTPResponseData result) {
+              maxSeen.accumulateAndGet(httpClient.getInProgressCount(), Math::max);
+              av.assertEquals(CONTENT, result.getBodyAsString());
+              av.signalComplete();
+            }
+
+            @Override
+            public void handleFailure(Throwable t) {
+              av.fail(t);
+            }
+          });
+        }
+      });
+    }
+    av.waitForTest(20_000, submitters * perSubmitter);
+    long elapsed = Clock.accurateForwardProgressingMillis() - start;
+
+    assertTrue(maxSeen.get() <= maxConcurrent);
+    assertTrue("Took " + elapsed + "ms", elapsed < 20_000);
+    new TestCondition(() -> httpClient.getInProgressCount() == 0).blockTillTrue(1_000);
+    assertEquals(0, httpClient.getRequestQueueSize());
+    httpClient.stop();
+    TSE.stop();
+    CLIENT_PS.shutdownNow();
+  }
+
   @Test
   public void manyRequestsConcurrentOnPool() throws IOException, InterruptedException, TimeoutException {
     final int number = 500;
@@ -345,6 +408,405 @@ public class HTTPClientTests {
     assertEquals("", hrs.getBodyAsString());
   }
 
+  @Test
+  public void gzipResponseDecompressed() throws IOException, HTTPParsingException {
+    int port = PortUtils.findTCPPort();
+    byte[] encoded = gzip(LARGE_CONTENT.getBytes());
+    HTTPResponse response = new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length))
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip").build();
+    fakeServer = new TestHTTPServer(port, response, encoded, false, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port))
+        .setMaximumBufferedResponseSize(LARGE_CONTENT.length());
+    
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setResponseDecompression(true);
+    httpClient.start();
+    HTTPResponseData hrs = httpClient.request(hrb.buildClientHTTPRequest());
+    assertEquals(HTTPClient.ACCEPTED_ENCODINGS, 
+                 hrs.getHTTPRequest().getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING));
+    assertNull(hrs.getResponse().getHeaders().getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(LARGE_CONTENT, hrs.getBodyAsString());
+    assertEquals(LARGE_CONTENT.length(), hrs.getContentLength());
+    assertEquals(encoded.length, hrs.getCompressedBodySize());
+    assertEquals(LARGE_CONTENT.length(), hrs.getDecompressedBodySize());
+  }
+
+  @Test
+  public void gzipResponseNotDecompressedByDefault() throws IOException, HTTPParsingException {
+    int port = PortUtils.findTCPPort();
+    byte[] encoded = gzip(CONTENT.getBytes());
+    HTTPResponse response = new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length))
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip").build();
+    fakeServer = new TestHTTPServer(port, response, encoded, false, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.start();
+    HTTPResponseData hrs = httpClient.request(hrb.buildClientHTTPRequest());
+    assertNull(hrs.getHTTPRequest().getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING));
+    assertEquals("gzip", hrs.getResponse().getHeaders().getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(encoded.length, hrs.getBody().remaining());
+    assertEquals(encoded.length, hrs.getDecompressedBodySize());
+  }
+
+  @Test
+  public void gzipResponseDecompressedTooLarge() throws IOException {
+    int port = PortUtils.findTCPPort();
+    byte[] encoded = gzip(LARGE_CONTENT.getBytes());
+    HTTPResponse response = new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length))
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip").build();
+    fakeServer = new TestHTTPServer(port, response, encoded, false, false);
+    // compressed body fits in the limit, but the decompressed body does not
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port))
+        .setMaximumBufferedResponseSize(LARGE_CONTENT.length() - 1);
+    
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setResponseDecompression(true);
+    httpClient.start();
+    try {
+      httpClient.request(hrb.buildClientHTTPRequest());
+      fail();
+    } catch(HTTPParsingException e) {
+      // expected
+    }
+  }
+  
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzos = new GZIPOutputStream(out)) {
+      gzos.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void prewarmTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPAddress ha = new HTTPAddress("localhost", port, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    hrb.setHTTPAddress(ha, true);
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.start();
+    try {
+      httpClient.prewarm(ha, 3).get(5, TimeUnit.SECONDS);
+      assertEquals(3, httpClient.getIdleConnectionCount());
+      httpClient.prewarm(ha, 2).get(5, TimeUnit.SECONDS);
+      assertEquals(3, httpClient.getIdleConnectionCount());
+
+      assertEquals(CONTENT, httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
+      assertEquals(1, httpClient.getConnectionPoolHitCount());
+      assertEquals(0, httpClient.getConnectionPoolMissCount());
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void requestTimingsTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPAddress ha = new HTTPAddress("localhost", port, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.start();
+    try {
+      RequestTimings first = httpClient.request(hrb.buildClientHTTPRequest()).getTimings();
+      assertFalse(first.isConnectionReused());
+      assertTrue(first.getConnectNanos() >= 0);
+      assertEquals(-1, first.getTLSHandshakeNanos());
+      assertTrue(first.getStartedNanos() <= first.getResolvedNanos());
+      assertTrue(first.getResolvedNanos() <= first.getConnectedNanos());
+      assertTrue(first.getFirstByteNanos() <= first.getHeadersReadNanos());
+      assertTrue(first.getHeadersReadNanos() <= first.getFinishedNanos());
+      assertTrue(first.getTimeToFirstByteNanos() >= 0);
+
+      new TestCondition(() -> httpClient.getIdleConnectionCount() == 1).blockTillTrue(5_000);
+      RequestTimings second = httpClient.request(hrb.buildClientHTTPRequest()).getTimings();
+      assertTrue(second.isConnectionReused());
+      assertEquals(-1, second.getConnectNanos());
+      assertEquals(-1, second.getResolvedNanos());
+      assertTrue(second.getTimeToFirstByteNanos() >= 0);
+
+      HostTimingStats stats = httpClient.getHostTimingStats(ha);
+      assertEquals(2, stats.getTotal().getCount());
+      assertEquals(1, stats.getConnect().getCount());
+      assertEquals(0, stats.getTLSHandshake().getCount());
+      assertEquals(.5, stats.getReuseRatio(), 0);
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void hostTimingStatsBoundedTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setHostResolver((host) -> 
+        FutureUtils.immediateResultFuture(Collections.singletonList(InetAddress.getLoopbackAddress())));
+    httpClient.setMaxHostTimingStats(2);
+    httpClient.start();
+    try {
+      HTTPAddress[] hosts = new HTTPAddress[] { new HTTPAddress("a.test", port, false), 
+                                                new HTTPAddress("b.test", port, false), 
+                                                new HTTPAddress("c.test", port, false) };
+      for (HTTPAddress ha : hosts) {
+        httpClient.request(new HTTPRequestBuilder().setHTTPAddress(ha, true).buildClientHTTPRequest());
+      }
+      // the least recently used host was dropped
+      assertNull(httpClient.getHostTimingStats(hosts[0]));
+      assertEquals(1, httpClient.getHostTimingStats(hosts[1]).getTotal().getCount());
+      assertEquals(1, httpClient.getHostTimingStats(hosts[2]).getTotal().getCount());
+
+      httpClient.setMaxHostTimingStats(0);
+      assertNull(httpClient.getHostTimingStats(hosts[2]));
+      httpClient.request(new HTTPRequestBuilder().setHTTPAddress(hosts[0], true).buildClientHTTPRequest());
+      assertNull(httpClient.getHostTimingStats(hosts[0]));
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  private static class RecordingEventListener implements HTTPClientEventListener {
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void requestQueued(ClientHTTPRequest request) {
+      events.add("requestQueued");
+    }
+
+    @Override
+    public void requestDequeued(ClientHTTPRequest request, long queueWaitNanos) {
+      events.add("requestDequeued");
+    }
+
+    @Override
+    public void dnsStart(ClientHTTPRequest request, String host) {
+      events.add("dnsStart");
+    }
+
+    @Override
+    public void dnsEnd(ClientHTTPRequest request, String host, List<InetAddress> addresses) {
+      events.add("dnsEnd");
+    }
+
+    @Override
+    public void connectStart(ClientHTTPRequest request) {
+      events.add("connectStart");
+    }
+
+    @Override
+    public void connectEnd(ClientHTTPRequest request) {
+      events.add("connectEnd");
+    }
+
+    @Override
+    public void requestHeadersWritten(ClientHTTPRequest request) {
+      events.add("requestHeadersWritten");
+    }
+
+    @Override
+    public void responseHeadersReceived(ClientHTTPRequest request, HTTPResponse response) {
+      events.add("responseHeadersReceived");
+    }
+
+    @Override
+    public void responseBodyData(ClientHTTPRequest request, int bytes) {
+      if (! events.get(events.size() - 1).equals("responseBodyData")) {
+        events.add("responseBodyData");
+      }
+    }
+
+    @Override
+    public void requestCompleted(ClientHTTPRequest request, HTTPResponseData response) {
+      events.add("requestCompleted");
+    }
+
+    @Override
+    public void requestFailed(ClientHTTPRequest request, Throwable error) {
+      events.add("requestFailed");
+    }
+  }
+
+  @Test
+  public void eventListenerTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    final HTTPClient httpClient = new HTTPClient();
+    RecordingEventListener listener = new RecordingEventListener();
+    httpClient.setEventListener(listener);
+    httpClient.start();
+    try {
+      assertEquals(CONTENT, httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
+      // connecting completes asynchronously to the request being written
+      assertTrue(listener.events.remove("connectEnd"));
+      assertEquals(Arrays.asList("requestQueued", "requestDequeued", "dnsStart", "dnsEnd", 
+                                 "connectStart", "requestHeadersWritten", "responseHeadersReceived", 
+                                 "responseBodyData", "requestCompleted"), 
+                   listener.events);
+
+      listener.events.clear();
+      new TestCondition(() -> httpClient.getIdleConnectionCount() == 1).blockTillTrue(5_000);
+      httpClient.request(hrb.buildClientHTTPRequest());
+      assertEquals(Arrays.asList("requestQueued", "requestDequeued", "requestHeadersWritten", 
+                                 "responseHeadersReceived", "responseBodyData", "requestCompleted"), 
+                   listener.events);
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void eventListenerFailureTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    TCPServer server = SEI.createTCPServer("localhost", port);
+    server.start();
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://localhost:"+port));
+    hrb.setTimeout(200, TimeUnit.MILLISECONDS);
+    final HTTPClient httpClient = new HTTPClient();
+    RecordingEventListener listener = new RecordingEventListener();
+    httpClient.setEventListener(listener);
+    httpClient.start();
+    try {
+      httpClient.request(hrb.buildClientHTTPRequest());
+      fail();
+    } catch (CancellationException e) {
+      new TestCondition(() -> listener.events.contains("requestFailed")).blockTillTrue(1_000);
+      assertFalse(listener.events.contains("requestCompleted"));
+    } finally {
+      httpClient.stop();
+      server.close();
+    }
+  }
+
+  @Test
+  public void minWarmConnectionsRefilledTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPAddress ha = new HTTPAddress("localhost", port, false);
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setMaxIdleTimeout(100, TimeUnit.MILLISECONDS);
+    httpClient.start();
+    try {
+      httpClient.setMinWarmConnections(ha, 2);
+      assertEquals(2, httpClient.getMinWarmConnections(ha));
+      new TestCondition(() -> httpClient.getConnectionPoolEvictionCount() >= 4 &&
+                              httpClient.getIdleConnectionCount() == 2).blockTillTrue(5_000);
+
+      httpClient.setMinWarmConnections(ha, 0);
+      new TestCondition(() -> httpClient.getIdleConnectionCount() == 0).blockTillTrue(5_000);
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void perHostLimitIsolatesSlowHost() throws Exception {
+    int slowPort = PortUtils.findTCPPort();
+    TCPServer slowServer = SEI.createTCPServer("localhost", slowPort);
+    slowServer.start();  // accepts connections but never responds
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    
+    final HTTPClient httpClient = new HTTPClient(4);
+    httpClient.setMaxConcurrentPerHost(2);
+    httpClient.start();
+    try {
+      List<ListenableFuture<HTTPResponseData>> slowFutures = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        slowFutures.add(httpClient.requestAsync(new HTTPRequestBuilder(new URL("http://localhost:"+slowPort))
+                                                    .setTimeout(10_000, TimeUnit.MILLISECONDS)
+                                                    .buildClientHTTPRequest()));
+      }
+      new TestCondition(() -> httpClient.getInProgressCount() == 2).blockTillTrue(5_000);
+      assertEquals(4, httpClient.getRequestQueueSize());
+      
+      // healthy host is not stuck behind the queued slow requests
+      HTTPResponseData hrs = httpClient.requestAsync(new HTTPRequestBuilder(new URL("http://localhost:"+port))
+                                                         .buildClientHTTPRequest())
+                                       .get(5_000, TimeUnit.MILLISECONDS);
+      assertEquals(CONTENT, hrs.getBodyAsString());
+      assertEquals(4, httpClient.getRequestQueueSize());
+      
+      // completing the in progress requests allows the queued ones to start
+      slowFutures.get(0).cancel(true);
+      slowFutures.get(1).cancel(true);
+      new TestCondition(() -> httpClient.getRequestQueueSize() == 2).blockTillTrue(5_000);
+      for (ListenableFuture<HTTPResponseData> lf : slowFutures) {
+        lf.cancel(true);
+      }
+      new TestCondition(() -> httpClient.getInProgressCount() == 0 && 
+                              httpClient.getRequestQueueSize() == 0).blockTillTrue(5_000);
+    } finally {
+      httpClient.stop();
+      slowServer.close();
+    }
+  }
+
+  private static List<String> runPriorityOrder(int port, long maxLowPriorityWait) throws Exception {
+    AtomicBoolean paused = new AtomicBoolean(true);
+    final HTTPClient httpClient = new HTTPClient(1) {
+      @Override
+      protected void processQueue() {
+        if (! paused.get()) {
+          super.processQueue();
+        }
+      }
+    };
+    httpClient.setMaxWaitForLowPriority(maxLowPriorityWait);
+    httpClient.start();
+    try {
+      List<String> order = Collections.synchronizedList(new ArrayList<>());
+      List<ListenableFuture<HTTPResponseData>> futures = new ArrayList<>();
+      String[] names = new String[] { "starvable", "low", "high1", "high2" };
+      TaskPriority[] priorities = new TaskPriority[] { TaskPriority.Starvable, TaskPriority.Low, 
+                                                       TaskPriority.High, TaskPriority.High };
+      for (int i = 0; i < names.length; i++) {
+        String name = names[i];
+        ListenableFuture<HTTPResponseData> lf = 
+            httpClient.requestAsync(new HTTPRequestBuilder(new URL("http://localhost:"+port))
+                                        .setPriority(priorities[i]).buildClientHTTPRequest());
+        lf.resultCallback((ignored) -> order.add(name));
+        futures.add(lf);
+      }
+      assertEquals(2, httpClient.getRequestQueueSize(TaskPriority.High));
+      assertEquals(1, httpClient.getRequestQueueSize(TaskPriority.Low));
+      assertEquals(1, httpClient.getRequestQueueSize(TaskPriority.Starvable));
+      TimeUnit.MILLISECONDS.sleep(50);
+      
+      paused.set(false);
+      FutureUtils.blockTillAllCompleteOrFirstError(futures, 10_000);
+      assertEquals(0, httpClient.getRequestQueueSize());
+      assertTrue(httpClient.getAverageQueueWaitMillis(TaskPriority.High) > 0);
+      assertTrue(httpClient.getAverageQueueWaitMillis(TaskPriority.Low) > 0);
+      return order;
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void priorityOrderTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    
+    assertEquals(Arrays.asList("high1", "high2", "low", "starvable"), runPriorityOrder(port, 10_000));
+  }
+
+  @Test
+  public void lowPriorityAgingTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    
+    // low priority has already waited past the limit so goes ahead of high priority
+    assertEquals(Arrays.asList("low", "high1", "high2", "starvable"), runPriorityOrder(port, 10));
+  }
+
   @Test
   public void closeBeforeLength() throws IOException, HTTPParsingException {
     int port = PortUtils.findTCPPort();
@@ -462,6 +924,34 @@ public class HTTPClientTests {
     assertEquals(CONTENT, httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
   }
 
+  @Test
+  public void sslSessionResumedTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), true, false);
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("https://localhost:"+port));
+    SSLContext sslContext = SSLContext.getInstance("TLS");
+    sslContext.init(null, SSLUtils.getOpenTrustManager(), null);
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setSSLContext(sslContext);
+    httpClient.setTLSSessionCacheSize(10);
+    httpClient.setTLSSessionTimeout(1, TimeUnit.MINUTES);
+    httpClient.start();
+    try {
+      assertEquals(10, sslContext.getClientSessionContext().getSessionCacheSize());
+      assertEquals(60, sslContext.getClientSessionContext().getSessionTimeout());
+      assertEquals(-1, httpClient.getAverageTLSHandshakeMillis(), 0);
+      assertEquals(CONTENT, httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
+      httpClient.closeAllClients();
+      assertEquals(CONTENT, httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
+
+      assertEquals(1, httpClient.getTLSFullHandshakeCount());
+      assertEquals(1, httpClient.getTLSResumedHandshakeCount());
+      assertTrue(httpClient.getAverageTLSHandshakeMillis() >= 0);
+    } finally {
+      httpClient.stop();
+    }
+  }
+
   @Test
   public void tooLargeRequest() throws IOException, HTTPParsingException {
     int port = PortUtils.findTCPPort();
@@ -551,6 +1041,40 @@ public class HTTPClientTests {
   }
 
 
+  @Test
+  public void asyncResolveFailureStartsQueuedTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, RESPONSE_CL, CONTENT.getBytes(), false, false);
+    final HTTPClient httpClient = new HTTPClient(1, SEI);
+    // the failing lookup completes later, on another thread
+    httpClient.setHostResolver((host) -> {
+      if (host.equals("localhost")) {
+        return FutureUtils.immediateResultFuture(Collections.singletonList(InetAddress.getLoopbackAddress()));
+      }
+      SettableListenableFuture<List<InetAddress>> slf = new SettableListenableFuture<>();
+      PS.schedule(() -> slf.setFailure(new UnknownHostException(host)), 200);
+      return slf;
+    });
+    httpClient.start();
+    try {
+      ListenableFuture<HTTPResponseData> failed = 
+          httpClient.requestAsync(new HTTPRequestBuilder(new URL("http://unknown.invalid:" + port))
+                                    .buildClientHTTPRequest());
+      ListenableFuture<HTTPResponseData> queued = 
+          httpClient.requestAsync(new HTTPRequestBuilder(new URL("http://localhost:" + port))
+                                    .setTimeout(5_000, TimeUnit.MILLISECONDS).buildClientHTTPRequest());
+      try {
+        failed.get(5_000, TimeUnit.MILLISECONDS);
+        fail("Exception should have thrown");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof UnknownHostException);
+      }
+      assertEquals(CONTENT, queued.get(2_000, TimeUnit.MILLISECONDS).getBodyAsString());
+    } finally {
+      httpClient.stop();
+    }
+  }
+
   @Test
   public void urlRequest() throws HTTPParsingException, IOException {
     int port = PortUtils.findTCPPort();
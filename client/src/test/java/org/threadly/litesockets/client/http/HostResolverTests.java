@@ -0,0 +1,170 @@
+package org.threadly.litesockets.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
+import org.threadly.litesockets.utils.PortUtils;
+
+public class HostResolverTests {
+  PriorityScheduler PS;
+  TestHTTPServer fakeServer;
+
+  @Before
+  public void start() {
+    PS = new PriorityScheduler(2);
+  }
+
+  @After
+  public void stop() {
+    PS.shutdownNow();
+    if(fakeServer != null) {
+      fakeServer.stop();
+    }
+  }
+
+  private static InetAddress address(int lastOctet) throws UnknownHostException {
+    return InetAddress.getByAddress(new byte[] {10, 0, 0, (byte)lastOctet});
+  }
+
+  @Test
+  public void staticResolveTest() throws Exception {
+    StaticHostResolver resolver = new StaticHostResolver();
+    resolver.setHost("backend", address(1), address(2));
+    List<InetAddress> result = resolver.resolve("backend").get();
+    assertEquals(2, result.size());
+    assertEquals(address(1), result.get(0));
+
+    resolver.removeHost("backend");
+    try {
+      resolver.resolve("backend").get();
+      fail("Exception should have thrown");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof UnknownHostException);
+    }
+  }
+
+  @Test
+  public void cachedUntilTtlTest() throws Exception {
+    AtomicInteger lookups = new AtomicInteger();
+    CachingHostResolver resolver = new CachingHostResolver(PS, 100, 0) {
+      @Override
+      protected InetAddress[] lookup(String host) throws UnknownHostException {
+        lookups.incrementAndGet();
+        return new InetAddress[] { address(1) };
+      }
+    };
+    ListenableFuture<List<InetAddress>> first = resolver.resolve("backend");
+    assertEquals(address(1), first.get().get(0));
+    assertSame(first, resolver.resolve("backend"));
+    assertEquals(1, lookups.get());
+
+    TimeUnit.MILLISECONDS.sleep(150);
+    resolver.resolve("backend").get();
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  public void negativeCacheTest() throws Exception {
+    AtomicInteger lookups = new AtomicInteger();
+    CachingHostResolver resolver = new CachingHostResolver(PS, 10_000, 100) {
+      @Override
+      protected InetAddress[] lookup(String host) throws UnknownHostException {
+        lookups.incrementAndGet();
+        throw new UnknownHostException(host);
+      }
+    };
+    for (int i = 0; i < 5; i++) {
+      try {
+        resolver.resolve("missing").get();
+        fail("Exception should have thrown");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof UnknownHostException);
+      }
+    }
+    assertEquals(1, lookups.get());
+
+    TimeUnit.MILLISECONDS.sleep(150);
+    try {
+      resolver.resolve("missing").get();
+      fail("Exception should have thrown");
+    } catch (ExecutionException e) {
+      // expected
+    }
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  public void concurrentResolveSharesLookupTest() throws Exception {
+    AtomicInteger lookups = new AtomicInteger();
+    CachingHostResolver resolver = new CachingHostResolver(PS) {
+      @Override
+      protected InetAddress[] lookup(String host) throws UnknownHostException {
+        lookups.incrementAndGet();
+        try {
+          TimeUnit.MILLISECONDS.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new InetAddress[] { address(1) };
+      }
+    };
+    ListenableFuture<List<InetAddress>> first = resolver.resolve("backend");
+    ListenableFuture<List<InetAddress>> second = resolver.resolve("backend");
+    assertFalse(first.isDone());
+    assertSame(first, second);
+    first.get();
+    assertEquals(1, lookups.get());
+
+    resolver.invalidate("backend");
+    assertEquals(0, resolver.getCacheSize());
+  }
+
+  @Test
+  public void clientUsesResolverTest() throws IOException, HTTPParsingException, InterruptedException {
+    int port = PortUtils.findTCPPort();
+    fakeServer = new TestHTTPServer(port, HTTPClientTests.RESPONSE_CL,
+                                    HTTPClientTests.CONTENT.getBytes(), false, false);
+    StaticHostResolver resolver = new StaticHostResolver();
+    resolver.setHost("backend.invalid", InetAddress.getByName("localhost"));
+    final HTTPRequestBuilder hrb = new HTTPRequestBuilder(new URL("http://backend.invalid:"+port));
+    hrb.setHTTPAddress(new HTTPAddress("backend.invalid", port, false), true);
+    final HTTPClient httpClient = new HTTPClient();
+    httpClient.setHostResolver(resolver);
+    httpClient.start();
+    try {
+      assertEquals(HTTPClientTests.CONTENT,
+                   httpClient.request(hrb.buildClientHTTPRequest()).getBodyAsString());
+
+      resolver.removeHost("backend.invalid");
+      httpClient.closeAllClients();
+      try {
+        httpClient.requestAsync(hrb.buildClientHTTPRequest()).get();
+        fail("Exception should have thrown");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof UnknownHostException);
+      }
+    } finally {
+      httpClient.stop();
+    }
+  }
+}
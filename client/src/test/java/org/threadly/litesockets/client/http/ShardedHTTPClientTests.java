@@ -0,0 +1,107 @@
+package org.threadly.litesockets.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.client.http.HTTPClient.HTTPResponseData;
+import org.threadly.litesockets.client.http.ShardedHTTPClient.ShardSelection;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPAddress;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.test.concurrent.TestCondition;
+
+public class ShardedHTTPClientTests {
+  TestHTTPServer serverA;
+  TestHTTPServer serverB;
+  ShardedHTTPClient client;
+
+  @After
+  public void stop() {
+    if (client != null) {
+      client.stopIfRunning();
+    }
+    if (serverA != null) {
+      serverA.stop();
+    }
+    if (serverB != null) {
+      serverB.stop();
+    }
+  }
+
+  private void runRequests(ShardSelection selection) throws Exception {
+    int portA = PortUtils.findTCPPort();
+    serverA = new TestHTTPServer(portA, HTTPClientTests.RESPONSE_CL,
+                                 HTTPClientTests.CONTENT.getBytes(), false, false);
+    int portB = PortUtils.findTCPPort();
+    serverB = new TestHTTPServer(portB, HTTPClientTests.RESPONSE_CL,
+                                 HTTPClientTests.CONTENT.getBytes(), false, false);
+    client = new ShardedHTTPClient(4, HTTPClient.DEFAULT_CONCURRENT, -1, selection);
+    client.start();
+
+    HTTPRequestBuilder hrbA = new HTTPRequestBuilder(new URL("http://localhost:" + portA));
+    HTTPRequestBuilder hrbB = new HTTPRequestBuilder(new URL("http://localhost:" + portB));
+    List<ListenableFuture<HTTPResponseData>> futures = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      futures.add(client.requestAsync((i % 2 == 0 ? hrbA : hrbB).buildClientHTTPRequest()));
+    }
+    FutureUtils.blockTillAllCompleteOrFirstError(futures, 10_000);
+    for (ListenableFuture<HTTPResponseData> lf : futures) {
+      assertEquals(HTTPClientTests.CONTENT, lf.get().getBodyAsString());
+    }
+    assertEquals(HTTPClientTests.CONTENT,
+                 client.request(new URL("http://localhost:" + portA)).getBodyAsString());
+    new TestCondition(() -> client.getInProgressCount() == 0).blockTillTrue(5_000);
+    assertEquals(0, client.getRequestQueueSize());
+  }
+
+  @Test
+  public void hostHashRequestsTest() throws Exception {
+    runRequests(ShardSelection.HostHash);
+  }
+
+  @Test
+  public void leastLoadedRequestsTest() throws Exception {
+    runRequests(ShardSelection.LeastLoaded);
+  }
+
+  @Test
+  public void hostHashStableTest() {
+    client = new ShardedHTTPClient(8, 1, -1, ShardSelection.HostHash);
+    for (int port = 1000; port < 1100; port++) {
+      HTTPAddress ha = new HTTPAddress("localhost", port, false);
+      assertSame(client.selectShard(ha),
+                 client.selectShard(new HTTPAddress("localhost", port, false)));
+    }
+  }
+
+  @Test
+  public void prewarmHostShardTest() throws Exception {
+    int port = PortUtils.findTCPPort();
+    serverA = new TestHTTPServer(port, HTTPClientTests.RESPONSE_CL,
+                                 HTTPClientTests.CONTENT.getBytes(), false, false);
+    client = new ShardedHTTPClient(4, HTTPClient.DEFAULT_CONCURRENT, -1, ShardSelection.HostHash);
+    client.start();
+    HTTPAddress ha = new HTTPAddress("localhost", port, false);
+    client.prewarm(ha, 2).get(5, TimeUnit.SECONDS);
+
+    assertEquals(2, client.getIdleConnectionCount());
+    assertEquals(2, client.selectShard(ha).getIdleConnectionCount());
+  }
+
+  @Test
+  public void shardCountTest() throws IOException {
+    client = new ShardedHTTPClient();
+    assertEquals(Runtime.getRuntime().availableProcessors(), client.getShardCount());
+    assertEquals(ShardSelection.HostHash, client.getShardSelection());
+  }
+}
@@ -3,6 +3,7 @@ package org.threadly.litesockets.protocols.http.request;
 import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
+import org.threadly.concurrent.TaskPriority;
 import org.threadly.concurrent.future.FutureUtils;
 import org.threadly.concurrent.future.ListenableFuture;
 import org.threadly.litesockets.buffers.MergedByteBuffers;
@@ -24,15 +25,23 @@ public class ClientHTTPRequest {
   private final Supplier<ListenableFuture<ByteBuffer>> bodyProvider;
   private final BodyConsumer bodyConsumer;
   private final int timeoutMS; 
+  private final TaskPriority priority;
   
   protected ClientHTTPRequest(HTTPRequest request, HTTPAddress ha, int timeoutMS, 
                               Supplier<ListenableFuture<ByteBuffer>> bodyProvider, 
                               BodyConsumer bodyConsumer) {
+    this(request, ha, timeoutMS, bodyProvider, bodyConsumer, TaskPriority.High);
+  }
+  
+  protected ClientHTTPRequest(HTTPRequest request, HTTPAddress ha, int timeoutMS, 
+                              Supplier<ListenableFuture<ByteBuffer>> bodyProvider, 
+                              BodyConsumer bodyConsumer, TaskPriority priority) {
     this.request = request;
     this.ha = ha;
     this.bodyProvider = bodyProvider == null ? EMPTY_BODY_SUPPLIER : bodyProvider;
     this.bodyConsumer = bodyConsumer;
     this.timeoutMS = timeoutMS;
+    this.priority = priority == null ? TaskPriority.High : priority;
   }
   
   public HTTPRequest getHTTPRequest() {
@@ -74,6 +83,15 @@ public class ClientHTTPRequest {
     return this.timeoutMS;
   }
   
+  /**
+   * Returns the priority the request should be started with when it has to be queued.
+   * 
+   * @return The {@link TaskPriority} of the request
+   */
+  public TaskPriority getPriority() {
+    return priority;
+  }
+  
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -17,6 +17,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import org.threadly.concurrent.SubmitterExecutor;
+import org.threadly.concurrent.TaskPriority;
 import org.threadly.concurrent.future.FutureUtils;
 import org.threadly.concurrent.future.ListenableFuture;
 import org.threadly.litesockets.buffers.MergedByteBuffers;
@@ -47,6 +48,7 @@ public class HTTPRequestBuilder {
   private Supplier<ListenableFuture<ByteBuffer>> bodySupplier = null;
   private BodyConsumer bodyConsumer = null;
   private int timeoutMS = HTTPRequest.DEFAULT_TIMEOUT_MS;
+  private TaskPriority priority = TaskPriority.High;
 
   /**
    * Creates a new HTTPRequestBuilder object.
@@ -454,6 +456,22 @@ public class HTTPRequestBuilder {
     return this;
   }
 
+  /**
+   * Sets the priority used when the request has to be queued by the client before it can be 
+   * started.  {@link TaskPriority#High} requests are started before {@link TaskPriority#Low} 
+   * requests (unless the low priority requests have been waiting too long), and 
+   * {@link TaskPriority#Starvable} requests are only started when nothing else is queued.  If not 
+   * set {@link TaskPriority#High} is used.
+   * 
+   * @param priority the {@link TaskPriority} for the request
+   * @return the current {@link HTTPRequestBuilder} object.
+   */
+  public HTTPRequestBuilder setPriority(TaskPriority priority) {
+    ArgumentVerifier.assertNotNull(priority, "priority");
+    this.priority = priority;
+    return this;
+  }
+
   /**
    * Creates an independent copy of this {@link HTTPRequestBuilder}.
    * 
@@ -469,6 +487,7 @@ public class HTTPRequestBuilder {
     hrb.setPort(port);
     hrb.setSSL(doSSL);
     hrb.setTimeout(timeoutMS, TimeUnit.MILLISECONDS);
+    hrb.setPriority(priority);
     return hrb;
   }
 
@@ -541,7 +560,7 @@ public class HTTPRequestBuilder {
       bodyConsumer = new BufferedBodyConsumer(MAX_HTTP_BUFFERED_RESPONSE);
     }
     return new ClientHTTPRequest(buildHTTPRequest(), buildHTTPAddress(), this.timeoutMS, 
-                                 this.bodySupplier, bodyConsumer);
+                                 this.bodySupplier, bodyConsumer, this.priority);
   }
 
   /**
@@ -570,6 +589,16 @@ public class HTTPRequestBuilder {
       this.maxResponseSize = maxResponseSize;
     }
 
+    /**
+     * Returns the maximum body size this consumer will accept.  If the response is compressed
+     * this limit applies to the decompressed body.
+     *
+     * @return Maximum size in bytes the response body can be
+     */
+    public int getMaxResponseSize() {
+      return maxResponseSize;
+    }
+
     @Override
     public void accept(ByteBuffer bb) throws HTTPParsingException {
       if(responseMBB.remaining() + bb.remaining() > maxResponseSize) {
@@ -2,16 +2,21 @@ package org.threadly.litesockets.protocols.http.request;
 
 import java.nio.ByteBuffer;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.threadly.concurrent.event.ListenerHelper;
 import org.threadly.litesockets.buffers.MergedByteBuffers;
 import org.threadly.litesockets.buffers.ReuseableMergedByteBuffers;
+import org.threadly.litesockets.protocols.http.shared.ContentDecoder;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoding;
 import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
 import org.threadly.litesockets.protocols.http.shared.HTTPHeaders;
 import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
 import org.threadly.litesockets.protocols.websocket.WSFrame;
 import org.threadly.litesockets.protocols.websocket.WSUtils;
 import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.ExceptionUtils;
 
 /**
  * This processes byte data and turns it into HTTPrequests.  It does this through callbacks to a {@link HTTPRequestCallback} interface.  
@@ -24,10 +29,14 @@ public class HTTPRequestProcessor {
   public static final int MAX_HEADER_LENGTH = 1024*128;
   public static final int MAX_HEADER_ROW_LENGTH = 1024*8;
   private static final int MAX_CHUNK_SIZE = 1024*20;
+  private static final HTTPRequestCallback[] NO_CALLBACKS = new HTTPRequestCallback[0];
 
   private final ReuseableMergedByteBuffers pendingBuffers = new ReuseableMergedByteBuffers();
-  private final ListenerHelper<HTTPRequestCallback> listeners = new ListenerHelper<>(HTTPRequestCallback.class);
+  private final Object callbacksLock = new Object();
+  private volatile HTTPRequestCallback[] callbacks = NO_CALLBACKS; // copy on write
   private int maxHeaderLength = MAX_HEADER_LENGTH;
+  private long maxDecodedBodySize = -1;
+  private ContentDecoder decoder = null;
   private HTTPRequest request;
   private int currentBodySize = 0;
   private long bodySize = 0;
@@ -52,13 +61,41 @@ public class HTTPRequestProcessor {
     this.maxHeaderLength = maxHeaderLength;
   }
 
+  /**
+   * Enables transparent decoding of request bodies sent with a {@code gzip} or {@code deflate}
+   * {@link HTTPConstants#HTTP_KEY_CONTENT_ENCODING}.  When a request is decoded the
+   * {@code Content-Encoding} and {@code Content-Length} headers are removed from the
+   * {@link HTTPRequest} provided to {@link HTTPRequestCallback#headersFinished(HTTPRequest)}, and
+   * {@link HTTPRequestCallback#bodyData(ByteBuffer)} is called with the decoded data.
+   * 
+   * @param maxDecodedBodySize The largest decoded body accepted, larger bodies will error the request
+   */
+  public void enableContentDecoding(long maxDecodedBodySize) {
+    ArgumentVerifier.assertGreaterThanZero(maxDecodedBodySize, "maxDecodedBodySize");
+    
+    this.maxDecodedBodySize = maxDecodedBodySize;
+  }
+  
+  /**
+   * Disables request body decoding, bodies will be provided exactly as they were sent.  This is 
+   * the default.
+   */
+  public void disableContentDecoding() {
+    this.maxDecodedBodySize = -1;
+  }
+
   /**
    * Adds an {@link HTTPRequestCallback} to the processor.  More the one can be added.
    * 
    * @param hrc the {@link HTTPRequestCallback} to add. 
    */
   public void addHTTPRequestCallback(HTTPRequestCallback hrc) {
-    listeners.addListener(hrc);
+    ArgumentVerifier.assertNotNull(hrc, "hrc");
+    synchronized (callbacksLock) {
+      HTTPRequestCallback[] newCallbacks = Arrays.copyOf(callbacks, callbacks.length + 1);
+      newCallbacks[callbacks.length] = hrc;
+      callbacks = newCallbacks;
+    }
   }
 
   /**
@@ -67,7 +104,27 @@ public class HTTPRequestProcessor {
    * @param hrc the {@link HTTPRequestCallback} to remove. 
    */
   public void removeHTTPRequestCallback(HTTPRequestCallback hrc) {
-    listeners.removeListener(hrc);
+    synchronized (callbacksLock) {
+      for (int i = 0; i < callbacks.length; i++) {
+        if (callbacks[i].equals(hrc)) {
+          HTTPRequestCallback[] newCallbacks = new HTTPRequestCallback[callbacks.length - 1];
+          System.arraycopy(callbacks, 0, newCallbacks, 0, i);
+          System.arraycopy(callbacks, i + 1, newCallbacks, i, newCallbacks.length - i);
+          callbacks = newCallbacks;
+          return;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Removes all {@link HTTPRequestCallback}'s from the processor, so it can be reused with new 
+   * callbacks.
+   */
+  public void clearHTTPRequestCallbacks() {
+    synchronized (callbacksLock) {
+      callbacks = NO_CALLBACKS;
+    }
   }
 
   /**
@@ -133,8 +190,8 @@ public class HTTPRequestProcessor {
             HTTPRequestHeader hrh = new HTTPRequestHeader(reqh);
             HTTPHeaders hh = new HTTPHeaders(pendingBuffers.getAsString((pos + 2) - reqh.length()));
             pendingBuffers.discard(2);  // discard final newline
-            request = new HTTPRequest(hrh, hh);
-            listeners.call().headersFinished(request);
+            request = new HTTPRequest(hrh, maybeStartDecoding(hh));
+            callHeadersFinished(request);
             bodySize = hh.getContentLength();
             String upgrade = hh.getHeader(HTTPConstants.HTTP_KEY_UPGRADE);
             if(hh.isChunked()) {
@@ -161,6 +218,21 @@ public class HTTPRequestProcessor {
     }
   }
 
+  private HTTPHeaders maybeStartDecoding(HTTPHeaders hh) {
+    if (maxDecodedBodySize < 0 || (! hh.isChunked() && hh.getContentLength() <= 0)) {
+      return hh;
+    }
+    ContentEncoding encoding = ContentEncoding.fromName(hh.getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    if (encoding == null) {
+      return hh;
+    }
+    decoder = new ContentDecoder(encoding, maxDecodedBodySize);
+    Map<String, String> headers = new HashMap<>(hh.getHeadersMap());
+    headers.remove(HTTPConstants.HTTP_KEY_CONTENT_ENCODING);
+    headers.remove(HTTPConstants.HTTP_KEY_CONTENT_LENGTH);
+    return new HTTPHeaders(headers);
+  }
+
   private boolean processBody() {
     if(isChunked) {
       return parseChunkData();
@@ -184,7 +256,7 @@ public class HTTPRequestProcessor {
       if(lastFrame.hasMask()) {
         bb = WSUtils.maskData(bb, lastFrame.getMaskValue());
       }
-      for(HTTPRequestCallback hrc: listeners.getSubscribedListeners()) {
+      for(HTTPRequestCallback hrc: callbacks) {
         hrc.websocketData(lastFrame, bb.duplicate());
       }
       lastFrame = null;
@@ -197,14 +269,16 @@ public class HTTPRequestProcessor {
 
   private boolean parseStreamBody() {
     if(bodySize == -1) {
-      sendDuplicateBBtoListeners(pendingBuffers.pullBuffer(pendingBuffers.remaining()));
+      sendBody(pendingBuffers.pullBuffer(pendingBuffers.remaining()));
       return false;
     } else {
       if(currentBodySize < bodySize) {
         ByteBuffer bb = pendingBuffers.pullBuffer((int)Math.min(pendingBuffers.remaining(), 
                                                                 bodySize - currentBodySize));
         currentBodySize+=bb.remaining();
-        sendDuplicateBBtoListeners(bb);
+        if (! sendBody(bb)) {
+          return false;
+        }
         if(currentBodySize == bodySize) {
           reset();
         }
@@ -235,7 +309,7 @@ public class HTTPRequestProcessor {
           return false;
         }
       } catch(Exception e) {
-        listeners.call().hasError(new HTTPParsingException("Problem reading chunk size!", e));
+        callHasError(new HTTPParsingException("Problem reading chunk size!", e));
         return false;
       }
     } // if not returned we can now try to read
@@ -245,7 +319,9 @@ public class HTTPRequestProcessor {
         if (chunkedBB != null) {
           if (chunkedBB.position() > 0) {
             chunkedBB.flip();
-            sendDuplicateBBtoListeners(chunkedBB);
+            if (! sendBody(chunkedBB)) {
+              return false;
+            }
           }
           chunkedBB = null;
         }
@@ -262,7 +338,9 @@ public class HTTPRequestProcessor {
       
       if (! chunkedBB.hasRemaining()) {
         chunkedBB.flip();
-        sendDuplicateBBtoListeners(chunkedBB);
+        if (! sendBody(chunkedBB)) {
+          return false;
+        }
         int remaining = Math.min(((int)bodySize) - currentBodySize, MAX_CHUNK_SIZE);
         if (remaining > 0) {
           chunkedBB.clear();
@@ -278,10 +356,67 @@ public class HTTPRequestProcessor {
   }
 
   private void sendDuplicateBBtoListeners(ByteBuffer bb) {
-    for(HTTPRequestCallback hrc: listeners.getSubscribedListeners()) {
+    for(HTTPRequestCallback hrc: callbacks) {
       hrc.bodyData(bb.duplicate());
     }
   }
+  
+  // callbacks are invoked directly, errors they throw are handled without interrupting parsing
+
+  private void callHeadersFinished(HTTPRequest request) {
+    for(HTTPRequestCallback hrc: callbacks) {
+      try {
+        hrc.headersFinished(request);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+  
+  private void callFinished() {
+    for(HTTPRequestCallback hrc: callbacks) {
+      try {
+        hrc.finished();
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+  
+  private void callHasError(Throwable error) {
+    for(HTTPRequestCallback hrc: callbacks) {
+      try {
+        hrc.hasError(error);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+
+  /**
+   * Sends body data to the listeners, decoding it first if needed.  If the data fails to decode
+   * the request is reset with the error and any pending data is discarded.
+   * 
+   * @param bb the body data as it was read
+   * @return {@code false} if decoding failed and the body should not continue to be processed
+   */
+  private boolean sendBody(ByteBuffer bb) {
+    if (decoder == null) {
+      sendDuplicateBBtoListeners(bb);
+      return true;
+    }
+    try {
+      ByteBuffer decoded = decoder.decode(bb);
+      if (decoded.hasRemaining()) {
+        sendDuplicateBBtoListeners(decoded);
+      }
+      return true;
+    } catch (HTTPParsingException e) {
+      pendingBuffers.discard(pendingBuffers.remaining());
+      reset(e);
+      return false;
+    }
+  }
 
   /**
    * Forces a reset on the HTTPProcessor.  This will call finish on any set callbacks if a request has started.
@@ -301,10 +436,23 @@ public class HTTPRequestProcessor {
    * NOTE: any currently unprocessed buffer will remain! see {@link #clearBuffer()}
    */
   public void reset(Throwable t) {
+    if (decoder != null) {
+      ContentDecoder decoder = this.decoder;
+      this.decoder = null;
+      if (t == null && this.request != null) {
+        try {
+          decoder.finish();
+        } catch (HTTPParsingException e) {
+          t = e;
+        }
+      } else {
+        decoder.close();
+      }
+    }
     if(t != null) {
-      this.listeners.call().hasError(t);
+      callHasError(t);
     } else if(this.request != null) {
-      this.listeners.call().finished();
+      callFinished();
     }
     this.request = null;
     this.currentBodySize = 0;
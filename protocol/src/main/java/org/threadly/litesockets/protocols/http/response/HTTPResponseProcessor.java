@@ -1,10 +1,11 @@
 package org.threadly.litesockets.protocols.http.response;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 
-import org.threadly.concurrent.event.ListenerHelper;
 import org.threadly.litesockets.buffers.MergedByteBuffers;
 import org.threadly.litesockets.buffers.ReuseableMergedByteBuffers;
 import org.threadly.litesockets.buffers.SimpleMergedByteBuffers;
@@ -13,6 +14,8 @@ import org.threadly.litesockets.protocols.http.shared.HTTPHeaders;
 import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
 import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
 import org.threadly.litesockets.protocols.websocket.WSFrame;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.ExceptionUtils;
 
 
 /**
@@ -21,10 +24,12 @@ import org.threadly.litesockets.protocols.websocket.WSFrame;
 public class HTTPResponseProcessor {
   public static final int MAX_RESPONSE_HEADER_SIZE = 5000;
   public static final int MAX_HEADER_SIZE = 50000;
+  private static final HTTPResponseCallback[] NO_CALLBACKS = new HTTPResponseCallback[0];
 
   private final ReuseableMergedByteBuffers buffers = new ReuseableMergedByteBuffers();
-  private final ListenerHelper<HTTPResponseCallback> listeners = new ListenerHelper<>(HTTPResponseCallback.class);
-  private final boolean headRequest;
+  private final Object callbacksLock = new Object();
+  private volatile HTTPResponseCallback[] callbacks = NO_CALLBACKS; // copy on write
+  private boolean headRequest;
   private HTTPResponse response;
   private int nextChunkSize = -1;
   private int currentBodySize = 0;
@@ -43,7 +48,12 @@ public class HTTPResponseProcessor {
    * @param hrc the callback to add
    */
   public void addHTTPResponseCallback(HTTPResponseCallback hrc) {
-    listeners.addListener(hrc);
+    ArgumentVerifier.assertNotNull(hrc, "hrc");
+    synchronized (callbacksLock) {
+      HTTPResponseCallback[] newCallbacks = Arrays.copyOf(callbacks, callbacks.length + 1);
+      newCallbacks[callbacks.length] = hrc;
+      callbacks = newCallbacks;
+    }
   }
 
   /**
@@ -53,7 +63,31 @@ public class HTTPResponseProcessor {
    * @param hrc the callback to remove.
    */
   public void removeHTTPResponseCallback(HTTPResponseCallback hrc) {
-    listeners.removeListener(hrc);
+    synchronized (callbacksLock) {
+      for (int i = 0; i < callbacks.length; i++) {
+        if (callbacks[i].equals(hrc)) {
+          HTTPResponseCallback[] newCallbacks = new HTTPResponseCallback[callbacks.length - 1];
+          System.arraycopy(callbacks, 0, newCallbacks, 0, i);
+          System.arraycopy(callbacks, i + 1, newCallbacks, i, newCallbacks.length - i);
+          callbacks = newCallbacks;
+          return;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Removes all {@link HTTPResponseCallback}'s and discards any buffered data so the processor can 
+   * be reused for a new response on the same connection.
+   * 
+   * @param headRequest {@code true} if the next response is for a {@code HEAD} request
+   */
+  public void resetForReuse(boolean headRequest) {
+    synchronized (callbacksLock) {
+      callbacks = NO_CALLBACKS;
+    }
+    clearBuffer();
+    this.headRequest = headRequest;
   }
 
   /**
@@ -62,7 +96,7 @@ public class HTTPResponseProcessor {
    * @return a collection of {@link HTTPResponseCallback} objects currently listening for data.
    */
   public Collection<HTTPResponseCallback> getAllCallbacks() {
-    return listeners.getSubscribedListeners();
+    return Collections.unmodifiableList(Arrays.asList(callbacks));
   }
 
 
@@ -105,7 +139,7 @@ public class HTTPResponseProcessor {
           buffers.discard(HTTPConstants.HTTP_NEWLINE_DELIMINATOR.length());
         }
         response = new HTTPResponse(hrh, hh);
-        listeners.call().headersFinished(response);
+        callHeadersFinished(response);
         if(response.getResponseCode() != HTTPResponseCode.SwitchingProtocols && 
             (headRequest || response.getResponseCode() == HTTPResponseCode.NoContent || 
                 (!response.getHeaders().isChunked() && response.getHeaders().getContentLength() == 0))) {
@@ -180,11 +214,11 @@ public class HTTPResponseProcessor {
    */
   public void reset(Throwable t) {
     if(response != null && t == null) {
-      listeners.call().finished();
+      callFinished();
     }
     
     if (t != null){
-      listeners.call().hasError(t);
+      callHasError(t);
     }
     response = null;
 
@@ -267,7 +301,7 @@ public class HTTPResponseProcessor {
             return;
           }
         } catch(Exception e) {
-          listeners.call().hasError(new HTTPParsingException("Problem reading chunk size!", e));
+          callHasError(new HTTPParsingException("Problem reading chunk size!", e));
           return;
         }
       } else {
@@ -284,10 +318,42 @@ public class HTTPResponseProcessor {
   }
 
   private void sendDuplicateBBtoListeners(ByteBuffer bb) {
-    for(HTTPResponseCallback hrc: listeners.getSubscribedListeners()) {
+    for(HTTPResponseCallback hrc: callbacks) {
       hrc.bodyData(bb.duplicate());
     }
   }
+  
+  // callbacks are invoked directly, errors they throw are handled without interrupting parsing
+
+  private void callHeadersFinished(HTTPResponse response) {
+    for(HTTPResponseCallback hrc: callbacks) {
+      try {
+        hrc.headersFinished(response);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+  
+  private void callFinished() {
+    for(HTTPResponseCallback hrc: callbacks) {
+      try {
+        hrc.finished();
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
+  
+  private void callHasError(Throwable error) {
+    for(HTTPResponseCallback hrc: callbacks) {
+      try {
+        hrc.hasError(error);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+  }
 
   /**
    * Used for processing data with {@link HTTPResponseProcessor}.
@@ -0,0 +1,389 @@
+package org.threadly.litesockets.protocols.http.shared;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.threadly.litesockets.utils.IOUtils;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * A streaming decoder for {@link ContentEncoding#GZIP} and {@link ContentEncoding#DEFLATE}
+ * content.  Encoded data is provided with {@link #decode(ByteBuffer)} as it arrives and the
+ * decoded output produced so far is returned.  {@link #finish()} should be called once all the
+ * encoded data has been provided to verify the stream was complete.
+ * <p>
+ * The total decoded size is limited, so a small compressed body can not be used to exhaust
+ * memory.  Like {@link ContentEncoder}, the native zlib contexts are taken from a shared pool and
+ * returned once the decoder is finished or closed.  This class is not thread safe.
+ */
+public class ContentDecoder {
+  public static final int MAX_POOLED_INFLATERS = ContentEncoder.MAX_POOLED_DEFLATERS;
+  private static final int MIN_OUTPUT_SIZE = 1024;
+  private static final int EXPECTED_RATIO = 4;
+  private static final int MAX_INPUT_COPY_SIZE = 64 * 1024;
+  private static final int MAX_OUTPUT_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int GZIP_FIXED_HEADER_SIZE = 10;
+  private static final int GZIP_TRAILER_SIZE = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final int OPTIONAL_FIELDS = FHCRC | FEXTRA | FNAME | FCOMMENT;
+  private static final int DEFLATE_METHOD = 8;
+  private static final int UNSIGNED_BYTE_MASK = 0xff;
+  private static final InflaterPool RAW_POOL = new InflaterPool(true);
+  private static final InflaterPool ZLIB_POOL = new InflaterPool(false);
+
+  /**
+   * The parts of the encoded stream we can be waiting on.
+   */
+  private enum State { GZIP_HEADER, ZLIB_HEADER, BODY, GZIP_TRAILER, DONE }
+
+  private final ContentEncoding encoding;
+  private final long maxDecodedSize;
+  private final CRC32 crc;
+  private final byte[] headerBytes = new byte[GZIP_FIXED_HEADER_SIZE];
+  private InflaterPool pool = null;
+  private Inflater inflater = null;
+  private State state;
+  private int headerPos = 0;
+  private int headerFlags = 0;
+  private int extraLengthRead = 0;
+  private int extraRemaining = 0;
+  private int headerCrcRemaining = 0;
+  private int membersCompleted = 0;
+  private byte[] inputCopy = null;
+  private byte[] output = null;
+  private int outputPos = 0;
+  private long inputSize = 0;
+  private long outputSize = 0;
+  private boolean closed = false;
+
+  /**
+   * Constructs a new {@link ContentDecoder}.
+   *
+   * @param encoding the {@link ContentEncoding} of the data to be decoded.
+   * @param maxDecodedSize the maximum number of decoded bytes which will be produced before failing.
+   */
+  public ContentDecoder(ContentEncoding encoding, long maxDecodedSize) {
+    ArgumentVerifier.assertNotNull(encoding, "encoding");
+    ArgumentVerifier.assertGreaterThanZero(maxDecodedSize, "maxDecodedSize");
+    this.encoding = encoding;
+    this.maxDecodedSize = maxDecodedSize;
+    if (encoding == ContentEncoding.GZIP) {
+      crc = new CRC32();
+      state = State.GZIP_HEADER;
+    } else {
+      crc = null;
+      state = State.ZLIB_HEADER;
+    }
+  }
+
+  /**
+   * Returns the {@link ContentEncoding} this decoder reads.
+   *
+   * @return the {@link ContentEncoding} of the input.
+   */
+  public ContentEncoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Returns the total number of encoded bytes which have been provided.
+   *
+   * @return the compressed size.
+   */
+  public long getInputSize() {
+    return inputSize;
+  }
+
+  /**
+   * Returns the total number of decoded bytes which have been produced.
+   *
+   * @return the decompressed size.
+   */
+  public long getOutputSize() {
+    return outputSize;
+  }
+
+  /**
+   * Decodes the provided data.  The returned buffer contains the output produced so far, which
+   * may be empty if more input is needed.  The provided buffer is fully consumed.
+   *
+   * @param bb the encoded data.
+   * @return a new {@link ByteBuffer} with the decoded output.
+   * @throws HTTPParsingException if the data is not valid or the decoded size limit is exceeded.
+   */
+  public ByteBuffer decode(ByteBuffer bb) throws HTTPParsingException {
+    if (closed) {
+      throw new IllegalStateException("Decoder is already closed");
+    }
+    int length = bb.remaining();
+    if (length == 0) {
+      return IOUtils.EMPTY_BYTEBUFFER;
+    }
+    inputSize += length;
+    outputPos = 0;
+    output = new byte[(int)Math.min(maxOutputSize(), Math.max(MIN_OUTPUT_SIZE, (long)length * EXPECTED_RATIO))];
+    try {
+      if (bb.hasArray()) {
+        process(bb.array(), bb.arrayOffset() + bb.position(), length);
+        bb.position(bb.limit());
+      } else {
+        if (inputCopy == null) {
+          inputCopy = new byte[Math.min(length, MAX_INPUT_COPY_SIZE)];
+        }
+        while (bb.hasRemaining()) {
+          int size = Math.min(bb.remaining(), inputCopy.length);
+          bb.get(inputCopy, 0, size);
+          process(inputCopy, 0, size);
+        }
+      }
+    } catch (HTTPParsingException e) {
+      close();
+      throw e;
+    }
+    ByteBuffer result = outputPos == 0 ? IOUtils.EMPTY_BYTEBUFFER : ByteBuffer.wrap(output, 0, outputPos);
+    output = null;
+    return result;
+  }
+
+  /**
+   * Verifies the encoded stream was completed and releases the pooled resources.  This decoder
+   * can not be used once this is called.
+   *
+   * @throws HTTPParsingException if the encoded stream was truncated.
+   */
+  public void finish() throws HTTPParsingException {
+    boolean complete = state == State.DONE || (state == State.GZIP_HEADER && headerPos == 0 && membersCompleted > 0);
+    close();
+    if (! complete) {
+      throw new HTTPParsingException("Encoded body was truncated");
+    }
+  }
+
+  /**
+   * Releases the pooled resources without verifying the stream.  This is safe to call multiple
+   * times.
+   */
+  public void close() {
+    closed = true;
+    releaseInflater();
+  }
+
+  private void process(byte[] input, int offset, int length) throws HTTPParsingException {
+    while (length > 0) {
+      int consumed;
+      switch (state) {
+        case GZIP_HEADER:
+          consumed = readGzipHeader(input, offset, length);
+          break;
+        case ZLIB_HEADER:
+          consumed = readZlibHeader(input, offset, length);
+          break;
+        case BODY:
+          consumed = inflate(input, offset, length);
+          break;
+        case GZIP_TRAILER:
+          consumed = readGzipTrailer(input, offset, length);
+          break;
+        default:
+          throw new HTTPParsingException("Unexpected data after the end of the encoded body");
+      }
+      offset += consumed;
+      length -= consumed;
+    }
+  }
+
+  private void startInflater(InflaterPool pool) {
+    if (this.pool != pool) {
+      releaseInflater();
+      this.pool = pool;
+      inflater = pool.borrow();
+    } else if (inflater == null) {
+      inflater = pool.borrow();
+    } else {
+      inflater.reset();
+    }
+    state = State.BODY;
+  }
+
+  private void releaseInflater() {
+    if (inflater != null) {
+      pool.release(inflater);
+      inflater = null;
+    }
+  }
+
+  private long maxOutputSize() {
+    // one byte past the limit is allowed so that exceeding it can be detected
+    long remaining = maxDecodedSize - (outputSize - outputPos);
+    return remaining >= MAX_OUTPUT_BUFFER_SIZE ? MAX_OUTPUT_BUFFER_SIZE : remaining + 1;
+  }
+
+  private int inflate(byte[] input, int offset, int length) throws HTTPParsingException {
+    inflater.setInput(input, offset, length);
+    try {
+      while (true) {
+        if (outputPos == output.length) {
+          output = Arrays.copyOf(output, (int)Math.min(maxOutputSize(), output.length * 2L));
+        }
+        int size = inflater.inflate(output, outputPos, output.length - outputPos);
+        if (crc != null) {
+          crc.update(output, outputPos, size);
+        }
+        outputPos += size;
+        outputSize += size;
+        if (outputSize > maxDecodedSize) {
+          throw new HTTPParsingException("Decoded body exceeds the limit of " + maxDecodedSize + " bytes");
+        } else if (inflater.finished()) {
+          state = crc == null ? State.DONE : State.GZIP_TRAILER;
+          headerPos = 0;
+          break;
+        } else if (inflater.needsInput()) {
+          break;
+        } else if (size == 0 && inflater.needsDictionary()) {
+          throw new HTTPParsingException("Encoded body requires a preset dictionary");
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new HTTPParsingException("Invalid encoded body", e);
+    }
+    return length - inflater.getRemaining();
+  }
+
+  private int readZlibHeader(byte[] input, int offset, int length) throws HTTPParsingException {
+    if (headerPos == 0 && length < 2) {
+      headerBytes[headerPos++] = input[offset];
+      return 1;
+    }
+    int cmf = (headerPos == 0 ? input[offset] : headerBytes[0]) & UNSIGNED_BYTE_MASK;
+    int flg = (headerPos == 0 ? input[offset + 1] : input[offset]) & UNSIGNED_BYTE_MASK;
+    // "deflate" should be zlib wrapped, but raw deflate streams are common enough to accept
+    boolean zlib = (cmf & 0x0f) == DEFLATE_METHOD && ((cmf << 8) | flg) % 31 == 0;
+    startInflater(zlib ? ZLIB_POOL : RAW_POOL);
+    if (headerPos > 0) {
+      headerPos = 0;
+      inflate(headerBytes, 0, 1);
+    }
+    return 0;
+  }
+
+  private int readGzipHeader(byte[] input, int offset, int length) throws HTTPParsingException {
+    int pos = offset;
+    int end = offset + length;
+    if (headerPos < GZIP_FIXED_HEADER_SIZE) {
+      int size = Math.min(GZIP_FIXED_HEADER_SIZE - headerPos, length);
+      System.arraycopy(input, offset, headerBytes, headerPos, size);
+      headerPos += size;
+      pos += size;
+      if (headerPos < GZIP_FIXED_HEADER_SIZE) {
+        return size;
+      }
+      int magic = (headerBytes[0] & UNSIGNED_BYTE_MASK) | ((headerBytes[1] & UNSIGNED_BYTE_MASK) << 8);
+      if (magic != GZIP_MAGIC || headerBytes[2] != DEFLATE_METHOD) {
+        throw new HTTPParsingException("Invalid gzip header");
+      }
+      headerFlags = headerBytes[3] & OPTIONAL_FIELDS;
+      extraLengthRead = 0;
+      extraRemaining = 0;
+      headerCrcRemaining = 2;
+    }
+    // optional header fields are skipped, each flag is cleared once its field has been read
+    while (pos < end && headerFlags != 0) {
+      if ((headerFlags & FEXTRA) != 0) {
+        if (extraLengthRead < 2) {
+          extraRemaining |= (input[pos++] & UNSIGNED_BYTE_MASK) << (8 * extraLengthRead++);
+        } else {
+          int skip = Math.min(extraRemaining, end - pos);
+          pos += skip;
+          extraRemaining -= skip;
+        }
+        if (extraLengthRead == 2 && extraRemaining == 0) {
+          headerFlags &= ~FEXTRA;
+        }
+      } else if ((headerFlags & FNAME) != 0) {
+        if (input[pos++] == 0) {
+          headerFlags &= ~FNAME;
+        }
+      } else if ((headerFlags & FCOMMENT) != 0) {
+        if (input[pos++] == 0) {
+          headerFlags &= ~FCOMMENT;
+        }
+      } else {
+        pos++;
+        if (--headerCrcRemaining == 0) {
+          headerFlags &= ~FHCRC;
+        }
+      }
+    }
+    if (headerFlags == 0) {
+      crc.reset();
+      startInflater(RAW_POOL);
+    }
+    return pos - offset;
+  }
+
+  private int readGzipTrailer(byte[] input, int offset, int length) throws HTTPParsingException {
+    int size = Math.min(GZIP_TRAILER_SIZE - headerPos, length);
+    System.arraycopy(input, offset, headerBytes, headerPos, size);
+    headerPos += size;
+    if (headerPos == GZIP_TRAILER_SIZE) {
+      if (readIntLE(headerBytes, 0) != (int)crc.getValue() ||
+          readIntLE(headerBytes, 4) != (int)inflater.getBytesWritten()) {
+        throw new HTTPParsingException("gzip trailer does not match the decoded body");
+      }
+      // another gzip member may follow
+      membersCompleted++;
+      headerPos = 0;
+      state = State.GZIP_HEADER;
+    }
+    return size;
+  }
+
+  private static int readIntLE(byte[] bytes, int offset) {
+    return (bytes[offset] & UNSIGNED_BYTE_MASK) |
+             ((bytes[offset + 1] & UNSIGNED_BYTE_MASK) << 8) |
+             ((bytes[offset + 2] & UNSIGNED_BYTE_MASK) << 16) |
+             ((bytes[offset + 3] & UNSIGNED_BYTE_MASK) << 24);
+  }
+
+  /**
+   * A bounded pool of {@link Inflater} instances.  Inflaters returned when the pool is full are
+   * ended rather than pooled.
+   */
+  private static class InflaterPool {
+    private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final boolean nowrap;
+
+    private InflaterPool(boolean nowrap) {
+      this.nowrap = nowrap;
+    }
+
+    private Inflater borrow() {
+      Inflater i = inflaters.poll();
+      if (i == null) {
+        return new Inflater(nowrap);
+      }
+      size.decrementAndGet();
+      return i;
+    }
+
+    private void release(Inflater i) {
+      if (size.incrementAndGet() > MAX_POOLED_INFLATERS) {
+        size.decrementAndGet();
+        i.end();
+      } else {
+        i.reset();
+        inflaters.offer(i);
+      }
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package org.threadly.litesockets.protocols.http.shared;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.threadly.litesockets.utils.IOUtils;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * A streaming encoder for {@link ContentEncoding#GZIP} and {@link ContentEncoding#DEFLATE}
+ * content.  Data is provided with {@link #encode(ByteBuffer)} and the compressed output produced
+ * so far is returned, {@link #finish()} must be called once all the data has been provided to get
+ * the remaining output.
+ * <p>
+ * The native zlib contexts are taken from a shared pool and returned once the encoder is finished
+ * or closed, so a new {@link Deflater} is not allocated per response.  This class is not thread
+ * safe, but may be used by different threads as long as calls are not concurrent.
+ */
+public class ContentEncoder {
+  public static final int MAX_POOLED_DEFLATERS = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+  private static final int INITIAL_OUTPUT_SIZE = 8 * 1024;
+  private static final int MAX_INPUT_COPY_SIZE = 64 * 1024;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int GZIP_HEADER_SIZE = 10;
+  private static final int GZIP_TRAILER_SIZE = 8;
+  private static final int UNKNOWN_OS = 255;
+  private static final DeflaterPool GZIP_POOL = new DeflaterPool(true);
+  private static final DeflaterPool DEFLATE_POOL = new DeflaterPool(false);
+
+  private final ContentEncoding encoding;
+  private final DeflaterPool pool;
+  private final CRC32 crc;
+  private Deflater deflater;
+  private byte[] inputCopy = null;
+  private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+  private int outputPos = 0;
+  private boolean headerWritten = false;
+  private long inputSize = 0;
+  private long outputSize = 0;
+
+  /**
+   * Constructs a new {@link ContentEncoder} using {@link Deflater#DEFAULT_COMPRESSION}.
+   *
+   * @param encoding the {@link ContentEncoding} to produce.
+   */
+  public ContentEncoder(ContentEncoding encoding) {
+    this(encoding, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Constructs a new {@link ContentEncoder}.
+   *
+   * @param encoding the {@link ContentEncoding} to produce.
+   * @param level the compression level, {@code 1} - {@code 9} or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public ContentEncoder(ContentEncoding encoding, int level) {
+    ArgumentVerifier.assertNotNull(encoding, "encoding");
+    if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.encoding = encoding;
+    if (encoding == ContentEncoding.GZIP) {
+      pool = GZIP_POOL;
+      crc = new CRC32();
+    } else {
+      pool = DEFLATE_POOL;
+      crc = null;
+    }
+    deflater = pool.borrow();
+    deflater.setLevel(level);
+  }
+
+  /**
+   * Returns the {@link ContentEncoding} this encoder produces.
+   *
+   * @return the {@link ContentEncoding} of the output.
+   */
+  public ContentEncoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Returns the total number of bytes which have been provided to be encoded.
+   *
+   * @return the uncompressed size.
+   */
+  public long getInputSize() {
+    return inputSize;
+  }
+
+  /**
+   * Returns the total number of encoded bytes which have been returned.
+   *
+   * @return the compressed size.
+   */
+  public long getOutputSize() {
+    return outputSize;
+  }
+
+  /**
+   * Compresses the provided data.  The returned buffer contains the output produced so far,
+   * which may be empty as the compressor buffers data internally.  The provided buffer is fully
+   * consumed.
+   *
+   * @param bb the data to compress.
+   * @return a new {@link ByteBuffer} with any compressed output.
+   */
+  public ByteBuffer encode(ByteBuffer bb) {
+    verifyOpen();
+    int length = bb.remaining();
+    if (length == 0) {
+      return IOUtils.EMPTY_BYTEBUFFER;
+    }
+    inputSize += length;
+    writeGzipHeader();
+    if (bb.hasArray()) {
+      deflate(bb.array(), bb.arrayOffset() + bb.position(), length);
+      bb.position(bb.limit());
+    } else {
+      if (inputCopy == null) {
+        inputCopy = new byte[Math.min(length, MAX_INPUT_COPY_SIZE)];
+      }
+      while (bb.hasRemaining()) {
+        int size = Math.min(bb.remaining(), inputCopy.length);
+        bb.get(inputCopy, 0, size);
+        deflate(inputCopy, 0, size);
+      }
+    }
+    return takeOutput();
+  }
+
+  /**
+   * Flushes all the data provided so far (a zlib {@link Deflater#SYNC_FLUSH}), so the returned 
+   * output can be decoded without waiting for more data.  Flushing often reduces the compression 
+   * ratio, so this should only be used when the data must be sent right away, ie a streamed body.
+   *
+   * @return a new {@link ByteBuffer} with the compressed output, empty if no data was provided.
+   */
+  public ByteBuffer flush() {
+    verifyOpen();
+    if (inputSize == 0) {
+      return takeOutput();
+    }
+    while (true) {
+      ensureOutputSpace(1);
+      int space = output.length - outputPos;
+      int written = deflater.deflate(output, outputPos, space, Deflater.SYNC_FLUSH);
+      outputPos += written;
+      if (written < space) {
+        // output was not filled, so everything has been flushed
+        return takeOutput();
+      }
+    }
+  }
+
+  /**
+   * Completes the encoded stream, returning any remaining output (including the gzip trailer).
+   * Once called the pooled resources are released and this encoder can no longer be used.
+   *
+   * @return a new {@link ByteBuffer} with the final compressed output.
+   */
+  public ByteBuffer finish() {
+    verifyOpen();
+    writeGzipHeader();
+    deflater.finish();
+    while (! deflater.finished()) {
+      ensureOutputSpace(1);
+      outputPos += deflater.deflate(output, outputPos, output.length - outputPos);
+    }
+    if (crc != null) {
+      ensureOutputSpace(GZIP_TRAILER_SIZE);
+      writeIntLE((int)crc.getValue());
+      writeIntLE((int)inputSize);
+    }
+    close();
+    return takeOutput();
+  }
+
+  /**
+   * Releases the pooled resources without completing the stream.  This is safe to call multiple
+   * times, and should be used when the encoded stream is abandoned.
+   */
+  public void close() {
+    if (deflater != null) {
+      pool.release(deflater);
+      deflater = null;
+    }
+  }
+
+  private void verifyOpen() {
+    if (deflater == null) {
+      throw new IllegalStateException("Encoder is already finished");
+    }
+  }
+
+  private void deflate(byte[] input, int offset, int length) {
+    if (crc != null) {
+      crc.update(input, offset, length);
+    }
+    deflater.setInput(input, offset, length);
+    while (! deflater.needsInput()) {
+      ensureOutputSpace(1);
+      outputPos += deflater.deflate(output, outputPos, output.length - outputPos);
+    }
+  }
+
+  private void writeGzipHeader() {
+    if (crc != null && ! headerWritten) {
+      headerWritten = true;
+      output[outputPos++] = (byte)GZIP_MAGIC;
+      output[outputPos++] = (byte)(GZIP_MAGIC >> 8);
+      output[outputPos++] = Deflater.DEFLATED;
+      // no flags, no mtime, no extra flags
+      outputPos += GZIP_HEADER_SIZE - 4;
+      output[outputPos++] = (byte)UNKNOWN_OS;
+    }
+  }
+
+  private void ensureOutputSpace(int size) {
+    if (output.length - outputPos < size) {
+      output = Arrays.copyOf(output, Math.max(output.length * 2, outputPos + size));
+    }
+  }
+
+  private void writeIntLE(int value) {
+    output[outputPos++] = (byte)value;
+    output[outputPos++] = (byte)(value >> 8);
+    output[outputPos++] = (byte)(value >> 16);
+    output[outputPos++] = (byte)(value >> 24);
+  }
+
+  private ByteBuffer takeOutput() {
+    if (outputPos == 0) {
+      return IOUtils.EMPTY_BYTEBUFFER;
+    }
+    // the output array is reused, so the result must be an exact sized copy
+    ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(output, outputPos));
+    outputSize += outputPos;
+    outputPos = 0;
+    return result;
+  }
+
+  /**
+   * A bounded pool of {@link Deflater} instances.  Deflaters returned when the pool is full are
+   * ended rather than pooled.
+   */
+  private static class DeflaterPool {
+    private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final boolean nowrap;
+
+    private DeflaterPool(boolean nowrap) {
+      this.nowrap = nowrap;
+    }
+
+    private Deflater borrow() {
+      Deflater d = deflaters.poll();
+      if (d == null) {
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+      }
+      size.decrementAndGet();
+      return d;
+    }
+
+    private void release(Deflater d) {
+      if (size.incrementAndGet() > MAX_POOLED_DEFLATERS) {
+        size.decrementAndGet();
+        d.end();
+      } else {
+        d.reset();
+        deflaters.offer(d);
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.threadly.litesockets.protocols.http.shared;
+
+/**
+ * Enum of the content codings which can be encoded and decoded with {@link ContentEncoder}.
+ */
+public enum ContentEncoding {
+  GZIP("gzip"), DEFLATE("deflate");
+
+  private final String encodingName;
+
+  ContentEncoding(String encodingName) {
+    this.encodingName = encodingName;
+  }
+
+  /**
+   * Returns the name of this coding as it is used in the {@code Content-Encoding} and
+   * {@code Accept-Encoding} headers.
+   *
+   * @return the header value for this encoding.
+   */
+  public String getEncodingName() {
+    return encodingName;
+  }
+
+  @Override
+  public String toString() {
+    return encodingName;
+  }
+
+  /**
+   * Finds the {@link ContentEncoding} for a {@code Content-Encoding} header value.  The legacy
+   * {@code x-gzip} name is also accepted.
+   *
+   * @param name the coding name, may be {@code null}.
+   * @return the matching {@link ContentEncoding} or {@code null} if the coding is not supported.
+   */
+  public static ContentEncoding fromName(String name) {
+    if (name == null) {
+      return null;
+    }
+    name = name.trim();
+    if (GZIP.encodingName.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+      return GZIP;
+    } else if (DEFLATE.encodingName.equalsIgnoreCase(name)) {
+      return DEFLATE;
+    }
+    return null;
+  }
+
+  /**
+   * Selects the preferred encoding the client will accept, based off the value of an
+   * {@link HTTPConstants#HTTP_KEY_ACCEPT_ENCODING} header.  {@link #GZIP} is preferred over
+   * {@link #DEFLATE}.
+   *
+   * @param acceptEncoding the header value, may be {@code null}.
+   * @return the {@link ContentEncoding} to use, or {@code null} if none are accepted.
+   */
+  public static ContentEncoding negotiate(String acceptEncoding) {
+    for (ContentEncoding ce : values()) {
+      if (HTTPUtils.acceptsEncoding(acceptEncoding, ce.encodingName)) {
+        return ce;
+      }
+    }
+    return null;
+  }
+}
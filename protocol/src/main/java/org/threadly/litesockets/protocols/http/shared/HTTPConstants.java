@@ -41,6 +41,17 @@ public class HTTPConstants {
   public static final String HTTP_KEY_KEEP_ALIVE = "Keep-Alive";
   public static final String HTTP_KEY_ACCEPT = "Accept";
   public static final String HTTP_KEY_HOST = "Host";
+  public static final String HTTP_KEY_ALLOW = "Allow";
+  public static final String HTTP_KEY_ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String HTTP_KEY_CONTENT_ENCODING = "Content-Encoding";
+  public static final String HTTP_KEY_VARY = "Vary";
+  public static final String HTTP_KEY_ETAG = "ETag";
+  public static final String HTTP_KEY_LAST_MODIFIED = "Last-Modified";
+  public static final String HTTP_KEY_IF_NONE_MATCH = "If-None-Match";
+  public static final String HTTP_KEY_IF_MODIFIED_SINCE = "If-Modified-Since";
+  public static final String HTTP_KEY_CACHE_CONTROL = "Cache-Control";
+  public static final String HTTP_KEY_SET_COOKIE = "Set-Cookie";
+  public static final String HTTP_KEY_RETRY_AFTER = "Retry-After";
   public static final String HTTP_VERSION_1_1 = "HTTP/1.1";
   public static final String HTTP_VERSION_1_0 = "HTTP/1.0";
   public static final String WEBSOCKET = "websocket";
@@ -84,6 +84,43 @@ public class HTTPUtils {
     }
   }
   
+  /**
+   * Checks if a content coding is acceptable based off the value of an
+   * {@link HTTPConstants#HTTP_KEY_ACCEPT_ENCODING} header.  A coding is acceptable if it is listed
+   * (or matched by {@code *}) without a {@code q=0} weight.
+   *
+   * @param acceptEncoding The header value, may be {@code null}
+   * @param encoding The content coding to check for, ie {@code gzip}
+   * @return {@code true} if the encoding is acceptable to the client
+   */
+  public static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+    if (StringUtils.isNullOrEmpty(acceptEncoding)) {
+      return false;
+    }
+    boolean wildcardAccepted = false;
+    for (String coding : acceptEncoding.split(",")) {
+      int paramPos = coding.indexOf(';');
+      String name = (paramPos < 0 ? coding : coding.substring(0, paramPos)).trim();
+      boolean accepted = true;
+      if (paramPos >= 0) {
+        String param = coding.substring(paramPos + 1).trim();
+        if (param.startsWith("q=")) {
+          try {
+            accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+          } catch (NumberFormatException e) {
+            accepted = false;
+          }
+        }
+      }
+      if (name.equalsIgnoreCase(encoding)) {
+        return accepted;
+      } else if (name.equals("*")) {
+        wildcardAccepted = accepted;
+      }
+    }
+    return wildcardAccepted;
+  }
+
   private static byte[] chunkSizeBytes(int size) {
     return Integer.toHexString(size).getBytes();
   }
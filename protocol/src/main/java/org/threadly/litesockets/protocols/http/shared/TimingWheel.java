@@ -0,0 +1,263 @@
+package org.threadly.litesockets.protocols.http.shared;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.threadly.concurrent.SubmitterScheduler;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.Clock;
+import org.threadly.util.ExceptionUtils;
+
+/**
+ * A hashed timing wheel for tracking large numbers of timeouts which are usually cancelled before
+ * they expire (ie request deadlines or idle expiration).  Scheduling and cancelling are
+ * {@code O(1)}, and rather than a scheduler task per timeout there is a single task which
+ * advances the wheel one tick at a time.  Timeouts will fire up to one tick late.
+ * <p>
+ * New timeouts and cancellations are queued, and applied to the wheel by the tick task, so the
+ * wheel itself is only ever modified by a single thread.  The tick task only runs while there are
+ * timeouts outstanding.  Expired tasks are run on the tick thread, so they should be quick.
+ */
+public class TimingWheel {
+  public static final int DEFAULT_TICK_MILLIS = 50;
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+  private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+  private final SubmitterScheduler scheduler;
+  private final long tickMillis;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final long startTime;
+  private final ConcurrentLinkedQueue<Timeout> pendingAdds = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<Timeout> pendingCancels = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger scheduledCount = new AtomicInteger();
+  private final AtomicBoolean ticking = new AtomicBoolean();
+  private final Runnable tickTask = this::tick;
+  private long currentTick = 0;  // only accessed from the tick task
+
+  /**
+   * Constructs a new {@link TimingWheel} with a {@value #DEFAULT_TICK_MILLIS} millisecond tick and
+   * {@value #DEFAULT_WHEEL_SIZE} buckets.
+   *
+   * @param scheduler the scheduler to run the tick task and expired timeouts on.
+   */
+  public TimingWheel(SubmitterScheduler scheduler) {
+    this(scheduler, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link TimingWheel}.  Timeouts further out than
+   * {@code tickMillis * wheelSize} are kept in the wheel across multiple rotations, so the wheel
+   * size only needs to cover the common timeout range.
+   *
+   * @param scheduler the scheduler to run the tick task and expired timeouts on.
+   * @param tickMillis the resolution of timeouts in milliseconds.
+   * @param wheelSize the number of buckets in the wheel, rounded up to a power of two.
+   */
+  public TimingWheel(SubmitterScheduler scheduler, long tickMillis, int wheelSize) {
+    ArgumentVerifier.assertNotNull(scheduler, "scheduler");
+    ArgumentVerifier.assertGreaterThanZero(tickMillis, "tickMillis");
+    ArgumentVerifier.assertGreaterThanZero(wheelSize, "wheelSize");
+    this.scheduler = scheduler;
+    this.tickMillis = tickMillis;
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) {
+      size <<= 1;
+    }
+    wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    mask = size - 1;
+    startTime = Clock.accurateForwardProgressingMillis();
+  }
+
+  /**
+   * Schedules a task to run once the delay has passed, unless it is cancelled first.
+   *
+   * @param task the task to run on expiration.
+   * @param delayMillis the time in milliseconds until the task should run.
+   * @return a {@link Timeout} which can be used to cancel the task.
+   */
+  public Timeout schedule(Runnable task, long delayMillis) {
+    ArgumentVerifier.assertNotNull(task, "task");
+    Timeout timeout = new Timeout(task, Clock.accurateForwardProgressingMillis() + Math.max(0, delayMillis));
+    scheduledCount.incrementAndGet();
+    pendingAdds.offer(timeout);
+    if (ticking.compareAndSet(false, true)) {
+      scheduler.schedule(tickTask, tickMillis);
+    }
+    return timeout;
+  }
+
+  /**
+   * Returns the number of timeouts which have been scheduled and not yet expired or cancelled.
+   *
+   * @return the number of outstanding timeouts.
+   */
+  public int getScheduledCount() {
+    return scheduledCount.get();
+  }
+
+  private void tick() {
+    try {
+      long targetTick = (Clock.accurateForwardProgressingMillis() - startTime) / tickMillis;
+      Timeout timeout;
+      while ((timeout = pendingCancels.poll()) != null) {
+        timeout.unlink();
+      }
+      while ((timeout = pendingAdds.poll()) != null) {
+        if (timeout.state == Timeout.STATE_PENDING) {
+          add(timeout);
+        }
+      }
+      while (currentTick < targetTick) {
+        currentTick++;
+        wheel[(int)(currentTick & mask)].expire();
+      }
+    } finally {
+      if (scheduledCount.get() > 0) {
+        scheduler.schedule(tickTask, tickMillis);
+      } else {
+        ticking.set(false);
+        // a timeout may have been scheduled after the check, but before we stopped ticking
+        if (scheduledCount.get() > 0 && ticking.compareAndSet(false, true)) {
+          scheduler.schedule(tickTask, tickMillis);
+        }
+      }
+    }
+  }
+
+  private void add(Timeout timeout) {
+    long deadlineTick = (timeout.deadline - startTime + tickMillis - 1) / tickMillis;
+    if (deadlineTick <= currentTick) {
+      deadlineTick = currentTick + 1;
+    }
+    timeout.remainingRounds = (deadlineTick - currentTick - 1) / wheel.length;
+    wheel[(int)(deadlineTick & mask)].add(timeout);
+  }
+
+  /**
+   * Doubly linked list of the timeouts which fall on a single slot of the wheel.
+   */
+  private static class Bucket {
+    private Timeout head = null;
+    private Timeout tail = null;
+
+    private void add(Timeout timeout) {
+      timeout.bucket = this;
+      timeout.prev = tail;
+      if (tail == null) {
+        head = timeout;
+      } else {
+        tail.next = timeout;
+      }
+      tail = timeout;
+    }
+
+    private void remove(Timeout timeout) {
+      if (timeout.prev == null) {
+        head = timeout.next;
+      } else {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next == null) {
+        tail = timeout.prev;
+      } else {
+        timeout.next.prev = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+
+    private void expire() {
+      Timeout timeout = head;
+      while (timeout != null) {
+        Timeout next = timeout.next;
+        if (timeout.remainingRounds > 0) {
+          timeout.remainingRounds--;
+        } else {
+          remove(timeout);
+          timeout.expire();
+        }
+        timeout = next;
+      }
+    }
+  }
+
+  /**
+   * Handle for a task scheduled on the {@link TimingWheel}.
+   */
+  public class Timeout {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadline;
+    volatile int state = STATE_PENDING;  // package visible for the field updater
+    // below are only accessed from the tick task
+    private long remainingRounds;
+    private Bucket bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the timeout so that the task will not run.
+     *
+     * @return {@code true} if cancelled, {@code false} if the task has already run (or started running) or was already cancelled.
+     */
+    public boolean cancel() {
+      if (STATE_UPDATER.compareAndSet(this, STATE_PENDING, STATE_CANCELLED)) {
+        scheduledCount.decrementAndGet();
+        pendingCancels.offer(this);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Checks if the timeout has expired and the task has been (or is being) run.
+     *
+     * @return {@code true} if the task was run.
+     */
+    public boolean isExpired() {
+      return state == STATE_EXPIRED;
+    }
+
+    /**
+     * Checks if the timeout was cancelled before it expired.
+     *
+     * @return {@code true} if {@link #cancel()} prevented the task from running.
+     */
+    public boolean isCancelled() {
+      return state == STATE_CANCELLED;
+    }
+
+    private void unlink() {
+      if (bucket != null) {
+        bucket.remove(this);
+      }
+    }
+
+    private void expire() {
+      if (STATE_UPDATER.compareAndSet(this, STATE_PENDING, STATE_EXPIRED)) {
+        scheduledCount.decrementAndGet();
+        try {
+          task.run();
+        } catch (Throwable t) {
+          ExceptionUtils.handleException(t);
+        }
+      }
+    }
+  }
+}
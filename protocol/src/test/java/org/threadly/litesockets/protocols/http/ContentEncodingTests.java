@@ -0,0 +1,238 @@
+package org.threadly.litesockets.protocols.http;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.shared.ContentDecoder;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoder;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoding;
+import org.threadly.litesockets.protocols.http.shared.HTTPParsingException;
+
+public class ContentEncodingTests {
+  private static final byte[] DATA_A = "first member ".getBytes();
+  private static final byte[] DATA_B = "second member".getBytes();
+  
+  private static byte[] makeData(int size) {
+    StringBuilder sb = new StringBuilder();
+    Random r = new Random(size);
+    while (sb.length() < size) {
+      sb.append("{\"id\":").append(r.nextInt(1000)).append(",\"name\":\"value\"},");
+    }
+    return sb.substring(0, size).getBytes();
+  }
+  
+  private static byte[] encode(ContentEncoding encoding, byte[] data, int writeSize, boolean direct) {
+    ContentEncoder encoder = new ContentEncoder(encoding);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < data.length; i += writeSize) {
+      int size = Math.min(writeSize, data.length - i);
+      ByteBuffer bb;
+      if (direct) {
+        bb = ByteBuffer.allocateDirect(size);
+        bb.put(data, i, size);
+        bb.flip();
+      } else {
+        bb = ByteBuffer.wrap(data, i, size);
+      }
+      ByteBuffer result = encoder.encode(bb);
+      assertFalse(bb.hasRemaining());
+      out.write(result.array(), result.arrayOffset() + result.position(), result.remaining());
+    }
+    ByteBuffer result = encoder.finish();
+    out.write(result.array(), result.arrayOffset() + result.position(), result.remaining());
+    assertEquals(data.length, encoder.getInputSize());
+    assertEquals(out.size(), encoder.getOutputSize());
+    return out.toByteArray();
+  }
+  
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int read;
+    while ((read = in.read(buf)) >= 0) {
+      out.write(buf, 0, read);
+    }
+    return out.toByteArray();
+  }
+  
+  @Test
+  public void gzipRoundTrip() throws IOException {
+    byte[] data = makeData(200000);
+    byte[] encoded = encode(ContentEncoding.GZIP, data, 1500, false);
+    assertTrue(encoded.length < data.length);
+    assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(encoded))));
+  }
+  
+  @Test
+  public void gzipDirectBufferRoundTrip() throws IOException {
+    byte[] data = makeData(100000);
+    byte[] encoded = encode(ContentEncoding.GZIP, data, 70000, true);
+    assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(encoded))));
+  }
+  
+  @Test
+  public void deflateRoundTrip() throws IOException {
+    byte[] data = makeData(50000);
+    byte[] encoded = encode(ContentEncoding.DEFLATE, data, 100, false);
+    assertArrayEquals(data, readFully(new InflaterInputStream(new ByteArrayInputStream(encoded))));
+  }
+  
+  @Test
+  public void emptyGzip() throws IOException {
+    byte[] encoded = encode(ContentEncoding.GZIP, new byte[0], 1, false);
+    assertEquals(0, readFully(new GZIPInputStream(new ByteArrayInputStream(encoded))).length);
+  }
+  
+  @Test
+  public void flushTest() throws Exception {
+    ContentEncoder encoder = new ContentEncoder(ContentEncoding.DEFLATE);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Inflater inflater = new Inflater();
+    byte[] decoded = new byte[DATA_A.length + DATA_B.length];
+    int decodedSize = 0;
+    for (byte[] data : new byte[][] { DATA_A, DATA_B }) {
+      ByteBuffer encoded = encoder.encode(ByteBuffer.wrap(data));
+      out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+      encoded = encoder.flush();
+      assertTrue(encoded.hasRemaining());
+      out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+      // everything provided so far can be decoded before the stream is finished
+      inflater.setInput(out.toByteArray());
+      out.reset();
+      decodedSize += inflater.inflate(decoded, decodedSize, decoded.length - decodedSize);
+      assertEquals(new String(data), new String(decoded, decodedSize - data.length, data.length));
+    }
+    inflater.end();
+    assertEquals(0, encoder.flush().remaining());  // nothing new to flush
+    encoder.close();
+  }
+  
+  @Test (expected = IllegalStateException.class)
+  public void encodeAfterFinishFail() {
+    ContentEncoder encoder = new ContentEncoder(ContentEncoding.GZIP);
+    encoder.finish();
+    encoder.encode(ByteBuffer.wrap(new byte[10]));
+  }
+  
+  @Test
+  public void negotiateEncoding() {
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("deflate, gzip;q=0"));
+    assertNull(ContentEncoding.negotiate("br"));
+    assertNull(ContentEncoding.negotiate(null));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.fromName("X-GZIP"));
+    assertNull(ContentEncoding.fromName("br"));
+  }
+  
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzos = new GZIPOutputStream(out)) {
+      gzos.write(data);
+    }
+    return out.toByteArray();
+  }
+  
+  private static byte[] decode(ContentEncoding encoding, byte[] encoded, int readSize, 
+                               long maxSize) throws HTTPParsingException {
+    ContentDecoder decoder = new ContentDecoder(encoding, maxSize);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < encoded.length; i += readSize) {
+      ByteBuffer result = decoder.decode(ByteBuffer.wrap(encoded, i, Math.min(readSize, encoded.length - i)));
+      out.write(result.array(), result.arrayOffset() + result.position(), result.remaining());
+    }
+    decoder.finish();
+    assertEquals(encoded.length, decoder.getInputSize());
+    assertEquals(out.size(), decoder.getOutputSize());
+    return out.toByteArray();
+  }
+  
+  @Test
+  public void gunzipTest() throws Exception {
+    byte[] data = makeData(100000);
+    byte[] encoded = gzip(data);
+    assertArrayEquals(data, decode(ContentEncoding.GZIP, encoded, encoded.length, Long.MAX_VALUE));
+    assertArrayEquals(data, decode(ContentEncoding.GZIP, encoded, 1, Long.MAX_VALUE));
+    assertArrayEquals(data, decode(ContentEncoding.GZIP, encoded, 1000, Long.MAX_VALUE));
+  }
+  
+  @Test
+  public void gunzipOptionalHeaderFieldsTest() throws Exception {
+    byte[] data = makeData(5000);
+    byte[] encoded = gzip(data);
+    ByteArrayOutputStream withFields = new ByteArrayOutputStream();
+    withFields.write(encoded, 0, 3);
+    withFields.write(4 | 8 | 16);  // FEXTRA, FNAME, FCOMMENT
+    withFields.write(encoded, 4, 6);
+    withFields.write(new byte[] {3, 0, 1, 2, 3});
+    withFields.write("name.txt\0comment\0".getBytes());
+    withFields.write(encoded, 10, encoded.length - 10);
+    byte[] modified = withFields.toByteArray();
+    assertArrayEquals(data, decode(ContentEncoding.GZIP, modified, 1, Long.MAX_VALUE));
+    assertArrayEquals(data, decode(ContentEncoding.GZIP, modified, 7, Long.MAX_VALUE));
+  }
+  
+  @Test
+  public void gunzipConcatenatedMembersTest() throws Exception {
+    byte[] first = gzip(DATA_A);
+    byte[] second = gzip(DATA_B);
+    byte[] encoded = new byte[first.length + second.length];
+    System.arraycopy(first, 0, encoded, 0, first.length);
+    System.arraycopy(second, 0, encoded, first.length, second.length);
+    assertEquals(new String(DATA_A) + new String(DATA_B), 
+                 new String(decode(ContentEncoding.GZIP, encoded, 5, Long.MAX_VALUE)));
+  }
+  
+  @Test
+  public void inflateZlibAndRawTest() throws Exception {
+    byte[] data = makeData(20000);
+    byte[] zlib = encode(ContentEncoding.DEFLATE, data, 20000, false);
+    assertArrayEquals(data, decode(ContentEncoding.DEFLATE, zlib, 1, Long.MAX_VALUE));
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(raw, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+      dos.write(data);
+    }
+    assertArrayEquals(data, decode(ContentEncoding.DEFLATE, raw.toByteArray(), 3, Long.MAX_VALUE));
+  }
+  
+  @Test (expected = HTTPParsingException.class)
+  public void decodedSizeLimitFail() throws Exception {
+    decode(ContentEncoding.GZIP, gzip(new byte[1024 * 1024]), 100, 1024 * 1024 - 1);
+  }
+  
+  @Test
+  public void decodedSizeAtLimit() throws Exception {
+    assertEquals(1024 * 1024, decode(ContentEncoding.GZIP, gzip(new byte[1024 * 1024]), 100, 1024 * 1024).length);
+  }
+  
+  @Test (expected = HTTPParsingException.class)
+  public void truncatedGzipFail() throws Exception {
+    byte[] encoded = gzip(makeData(1000));
+    decode(ContentEncoding.GZIP, Arrays.copyOf(encoded, encoded.length - 4), 100, Long.MAX_VALUE);
+  }
+  
+  @Test (expected = HTTPParsingException.class)
+  public void corruptGzipTrailerFail() throws Exception {
+    byte[] encoded = gzip(makeData(1000));
+    encoded[encoded.length - 5]++;
+    decode(ContentEncoding.GZIP, encoded, 100, Long.MAX_VALUE);
+  }
+  
+  @Test (expected = HTTPParsingException.class)
+  public void invalidGzipHeaderFail() throws Exception {
+    decode(ContentEncoding.GZIP, makeData(100), 100, Long.MAX_VALUE);
+  }
+}
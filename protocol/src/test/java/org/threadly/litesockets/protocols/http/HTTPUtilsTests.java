@@ -214,4 +214,15 @@ public class HTTPUtilsTests {
   public void HTTPRequestHeaderTest6() {
     new HTTPRequestHeader(HTTPRequestMethod.DELETE, "/ds/sds/ds/", new HashMap<>(), "HTTP/1.2");
   }
+  
+  @Test
+  public void acceptsEncodingTest() {
+    assertTrue(HTTPUtils.acceptsEncoding("gzip, deflate", "gzip"));
+    assertTrue(HTTPUtils.acceptsEncoding("deflate, GZIP;q=0.5", "gzip"));
+    assertFalse(HTTPUtils.acceptsEncoding("gzip;q=0, deflate", "gzip"));
+    assertFalse(HTTPUtils.acceptsEncoding("deflate", "gzip"));
+    assertTrue(HTTPUtils.acceptsEncoding("*", "gzip"));
+    assertFalse(HTTPUtils.acceptsEncoding("*, gzip;q=0", "gzip"));
+    assertFalse(HTTPUtils.acceptsEncoding(null, "gzip"));
+  }
 }
@@ -0,0 +1,56 @@
+package org.threadly.litesockets.protocols.http;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.shared.LatencyHistogram;
+
+public class LatencyHistogramTests {
+
+  @Test
+  public void emptyTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void smallValuesExactTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 4; i++) {
+      histogram.record(i);
+    }
+    assertEquals(4, histogram.getCount());
+    assertEquals(6, histogram.getSum());
+    assertEquals(1, histogram.getPercentile(50));
+    assertEquals(3, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void percentileWithinErrorTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1_000L);
+    }
+    assertEquals(10_000_000, histogram.getMax());
+    long p50 = histogram.getPercentile(50);
+    assertTrue(p50 >= 5_000_000 && p50 <= 5_000_000 * 1.25);
+    long p99 = histogram.getPercentile(99);
+    assertTrue(p99 >= 9_900_000 && p99 <= 10_000_000);
+    assertEquals(10_000_000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void largeAndNegativeValuesTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.getPercentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidPercentileFail() {
+    new LatencyHistogram().getPercentile(101);
+  }
+}
@@ -2,11 +2,15 @@ package org.threadly.litesockets.protocols.http;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -294,6 +298,84 @@ public class RequestTests {
     }
   }
   
+  @Test
+  public void decodeGzipContentLengthBody() throws Exception {
+    byte[] encoded = gzip(DATA_BA);
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length));
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip");
+    hrp.enableContentDecoding(1024);
+    hrp.addHTTPRequestCallback(cb);
+    hrp.processData(hrb.buildHTTPRequest().getMergedByteBuffers());
+    
+    assertNull(cb.request.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(-1, cb.request.getHTTPHeaders().getContentLength());
+    for (byte b : encoded) {
+      hrp.processData(ByteBuffer.wrap(new byte[] {b}));
+    }
+    assertTrue(cb.finished);
+    assertNull(cb.error);
+    StringBuilder sb = new StringBuilder();
+    for (ByteBuffer bb : cb.bbs) {
+      sb.append(bbToString(bb));
+    }
+    assertEquals(DATA, sb.toString());
+  }
+  
+  @Test
+  public void decodeGzipChunkedBody() throws Exception {
+    byte[] encoded = gzip(DATA_BA);
+    hrb.setHeader(HTTPConstants.HTTP_KEY_TRANSFER_ENCODING, "chunked");
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip");
+    hrp.enableContentDecoding(1024);
+    hrp.addHTTPRequestCallback(cb);
+    hrp.processData(hrb.buildHTTPRequest().getMergedByteBuffers());
+    hrp.processData(ByteBuffer.wrap(wrapInChunk(Arrays.copyOf(encoded, 5))));
+    hrp.processData(ByteBuffer.wrap(wrapInChunk(Arrays.copyOfRange(encoded, 5, encoded.length))));
+    hrp.processData(HTTPUtils.wrapInChunk(ByteBuffer.allocate(0)));
+    
+    assertTrue(cb.finished);
+    assertNull(cb.error);
+    assertEquals(1, cb.bbs.size());
+    assertEquals(DATA, bbToString(cb.bbs.get(0)));
+  }
+  
+  @Test
+  public void decodeDisabledByDefault() throws Exception {
+    byte[] encoded = gzip(DATA_BA);
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length));
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip");
+    hrp.addHTTPRequestCallback(cb);
+    hrp.processData(hrb.buildHTTPRequest().getMergedByteBuffers());
+    hrp.processData(ByteBuffer.wrap(encoded));
+    
+    assertTrue(cb.finished);
+    assertEquals("gzip", cb.request.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(encoded.length, cb.bbs.get(0).remaining());
+  }
+  
+  @Test
+  public void decodeSizeLimitError() throws Exception {
+    byte[] encoded = gzip(new byte[2048]);
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(encoded.length));
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, "gzip");
+    hrp.enableContentDecoding(1024);
+    hrp.addHTTPRequestCallback(cb);
+    hrp.processData(hrb.buildHTTPRequest().getMergedByteBuffers());
+    hrp.processData(ByteBuffer.wrap(encoded));
+    
+    assertFalse(cb.finished);
+    assertTrue(cb.error instanceof HTTPParsingException);
+    assertEquals(0, hrp.getBufferSize());
+  }
+  
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzos = new GZIPOutputStream(out)) {
+      gzos.write(data);
+    }
+    return out.toByteArray();
+  }
+  
   private static String bbToString(ByteBuffer bb) {
     byte[] ba = new byte[bb.remaining()];
     bb.get(ba);
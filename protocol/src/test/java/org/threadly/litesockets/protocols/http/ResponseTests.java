@@ -1,11 +1,13 @@
 package org.threadly.litesockets.protocols.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.threadly.concurrent.future.SettableListenableFuture;
@@ -18,6 +20,8 @@ import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
 import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
 import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
 import org.threadly.litesockets.protocols.websocket.WSFrame;
+import org.threadly.util.ExceptionHandler;
+import org.threadly.util.ExceptionUtils;
 
 public class ResponseTests {
   
@@ -128,4 +132,91 @@ public class ResponseTests {
     assertEquals(hr, header.get(5,TimeUnit.SECONDS));
     assertTrue(finished.get(5,TimeUnit.SECONDS));
   }
+  
+  private static class CountingCallback implements HTTPResponseCallback {
+    final AtomicInteger headers = new AtomicInteger();
+    final AtomicInteger finished = new AtomicInteger();
+    
+    @Override
+    public void headersFinished(HTTPResponse hr) {
+      headers.incrementAndGet();
+    }
+
+    @Override
+    public void bodyData(ByteBuffer bb) {
+      // ignored
+    }
+
+    @Override
+    public void finished() {
+      finished.incrementAndGet();
+    }
+
+    @Override
+    public void hasError(Throwable t) {
+      // ignored
+    }
+
+    @Override
+    public void websocketData(WSFrame wsf, ByteBuffer bb) {
+      // ignored
+    }
+  }
+  
+  @Test
+  public void responseProcessorCallbackErrorIsolatedTest() {
+    HTTPResponseProcessor hrp = new HTTPResponseProcessor(false);
+    CountingCallback failing = new CountingCallback() {
+      @Override
+      public void headersFinished(HTTPResponse hr) {
+        super.headersFinished(hr);
+        throw new IllegalStateException("expected");
+      }
+    };
+    CountingCallback counting = new CountingCallback();
+    hrp.addHTTPResponseCallback(failing);
+    hrp.addHTTPResponseCallback(counting);
+    AtomicInteger handledErrors = new AtomicInteger();
+    ExceptionHandler originalHandler = ExceptionUtils.getThreadLocalExceptionHandler();
+    ExceptionUtils.setThreadExceptionHandler((t) -> handledErrors.incrementAndGet());
+    try {
+      hrp.processData(new HTTPResponseBuilder().build().getMergedByteBuffers());
+    } finally {
+      ExceptionUtils.setThreadExceptionHandler(originalHandler);
+    }
+    
+    assertEquals(1, handledErrors.get());
+    assertEquals(1, failing.headers.get());
+    assertEquals(1, counting.headers.get());
+    assertEquals(1, counting.finished.get());
+    assertEquals(2, hrp.getAllCallbacks().size());
+    hrp.removeHTTPResponseCallback(failing);
+    assertEquals(1, hrp.getAllCallbacks().size());
+    assertTrue(hrp.getAllCallbacks().contains(counting));
+  }
+  
+  @Test
+  public void responseProcessorResetForReuseTest() {
+    HTTPResponseProcessor hrp = new HTTPResponseProcessor(false);
+    CountingCallback first = new CountingCallback();
+    hrp.addHTTPResponseCallback(first);
+    HTTPResponse hr = new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "10").build();
+    hrp.processData(hr.getMergedByteBuffers());
+    assertTrue(hrp.isProcessing());
+    
+    hrp.resetForReuse(true);
+    assertFalse(hrp.isProcessing());
+    assertTrue(hrp.getAllCallbacks().isEmpty());
+    CountingCallback second = new CountingCallback();
+    hrp.addHTTPResponseCallback(second);
+    // head request, so the content length does not indicate a body
+    hrp.processData(hr.getMergedByteBuffers());
+    
+    assertEquals(1, first.headers.get());
+    assertEquals(0, first.finished.get());
+    assertEquals(1, second.headers.get());
+    assertEquals(1, second.finished.get());
+    assertFalse(hrp.isProcessing());
+  }
 }
@@ -0,0 +1,95 @@
+package org.threadly.litesockets.protocols.http;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
+import org.threadly.test.concurrent.TestCondition;
+import org.threadly.util.Clock;
+
+public class TimingWheelTests {
+  PriorityScheduler PS;
+  TimingWheel wheel;
+
+  @Before
+  public void start() {
+    PS = new PriorityScheduler(2);
+    wheel = new TimingWheel(PS, 10, 8);
+  }
+
+  @After
+  public void stop() {
+    PS.shutdownNow();
+  }
+
+  @Test
+  public void expiresAfterDelayTest() {
+    AtomicInteger runs = new AtomicInteger();
+    long start = Clock.accurateForwardProgressingMillis();
+    TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 50);
+    assertEquals(1, wheel.getScheduledCount());
+
+    new TestCondition(() -> runs.get() == 1).blockTillTrue(5_000);
+    assertTrue(Clock.accurateForwardProgressingMillis() - start >= 50);
+    assertTrue(timeout.isExpired());
+    assertFalse(timeout.cancel());
+    assertEquals(0, wheel.getScheduledCount());
+  }
+
+  @Test
+  public void cancelPreventsRunTest() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 20);
+    assertTrue(timeout.cancel());
+    assertFalse(timeout.cancel());
+    assertTrue(timeout.isCancelled());
+    assertEquals(0, wheel.getScheduledCount());
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertEquals(0, runs.get());
+    assertFalse(timeout.isExpired());
+  }
+
+  @Test
+  public void multipleRotationsTest() {
+    // 8 buckets of 10ms, so this needs several trips around the wheel
+    AtomicInteger runs = new AtomicInteger();
+    long start = Clock.accurateForwardProgressingMillis();
+    wheel.schedule(runs::incrementAndGet, 250);
+
+    new TestCondition(() -> runs.get() == 1).blockTillTrue(5_000);
+    assertTrue(Clock.accurateForwardProgressingMillis() - start >= 250);
+  }
+
+  @Test
+  public void expireOrderTest() {
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    wheel.schedule(() -> order.add(3), 150);
+    wheel.schedule(() -> order.add(1), 20);
+    wheel.schedule(() -> order.add(2), 90);
+
+    new TestCondition(() -> order.size() == 3).blockTillTrue(5_000);
+    assertEquals(1, order.get(0).intValue());
+    assertEquals(2, order.get(1).intValue());
+    assertEquals(3, order.get(2).intValue());
+  }
+
+  @Test
+  public void restartsAfterIdleTest() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    wheel.schedule(runs::incrementAndGet, 10);
+    new TestCondition(() -> runs.get() == 1).blockTillTrue(5_000);
+    TimeUnit.MILLISECONDS.sleep(50);
+
+    wheel.schedule(runs::incrementAndGet, 10);
+    new TestCondition(() -> runs.get() == 2).blockTillTrue(5_000);
+  }
+}
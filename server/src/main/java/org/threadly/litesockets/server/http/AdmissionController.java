@@ -0,0 +1,167 @@
+package org.threadly.litesockets.server.http;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.threadly.util.Clock;
+
+/**
+ * Limits how many requests {@link HTTPServer} lets its handler work on at once.  Requests over the
+ * limit wait in a bounded queue, once that is full they are rejected so the server can respond
+ * with a {@code 503} rather than taking on more work than it can finish.
+ * <p>
+ * The limit can optionally adapt to the observed handler latency (AIMD).  Each request finishing
+ * within the target latency grows the limit by one per limit's worth of requests, while a request
+ * taking longer shrinks it by 10%, at most once per target latency.
+ */
+class AdmissionController {
+  private static final double DECREASE_FACTOR = .9;
+
+  private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waitingCount = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+  private final Object adaptLock = new Object();
+  private volatile int limit;
+  private volatile int maxQueued;
+  private volatile int minLimit = -1;
+  private volatile int maxLimit = -1;
+  private volatile long targetLatency = -1;
+  private int successes = 0; // guarded by adaptLock
+  private long lastDecrease = 0; // guarded by adaptLock
+
+  AdmissionController(int limit, int maxQueued) {
+    this.limit = limit;
+    this.maxQueued = maxQueued;
+  }
+
+  void setLimits(int limit, int maxQueued) {
+    this.limit = limit;
+    this.maxQueued = maxQueued;
+    drain();
+  }
+
+  void enableAdaptiveLimit(int minLimit, int maxLimit, long targetLatencyMillis) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.targetLatency = targetLatencyMillis;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    drain();
+  }
+
+  void disableAdaptiveLimit() {
+    this.targetLatency = -1;
+  }
+
+  /**
+   * Attempts to admit a request to run immediately.
+   *
+   * @return {@code true} if admitted, {@link #release(long)} must then be called once it is done
+   */
+  boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Queues a request which could not be admitted, to be run once a permit is available.  The
+   * task is run while holding the permit, so it must result in {@link #release(long)} being called.
+   *
+   * @param task the task to run once admitted
+   * @return {@code true} if queued, {@code false} if the queue is full and the request is rejected
+   */
+  boolean enqueue(Runnable task) {
+    while (true) {
+      int current = waitingCount.get();
+      if (current >= maxQueued) {
+        rejected.increment();
+        return false;
+      }
+      if (waitingCount.compareAndSet(current, current + 1)) {
+        break;
+      }
+    }
+    waiting.add(task);
+    drain();  // a permit may have been released before the task was queued
+    return true;
+  }
+
+  /**
+   * Releases a permit acquired for a request, starting the next waiting request if there is one.
+   *
+   * @param latencyMillis how long the request held the permit, used to adapt the limit
+   */
+  void release(long latencyMillis) {
+    inFlight.decrementAndGet();
+    if (targetLatency > 0) {
+      adapt(latencyMillis);
+    }
+    drain();
+  }
+
+  /**
+   * Releases a permit for a request which was abandoned (ie its connection closed while queued).  
+   * The limit is not adapted, a client giving up is not a sign the handler is keeping up.
+   */
+  void releaseAbandoned() {
+    inFlight.decrementAndGet();
+    drain();
+  }
+
+  private void adapt(long latencyMillis) {
+    synchronized (adaptLock) {
+      long targetLatency = this.targetLatency;
+      if (targetLatency <= 0) {
+        return;
+      }
+      if (latencyMillis > targetLatency) {
+        // only back off once per target latency, otherwise one slow burst collapses the limit
+        long now = Clock.lastKnownForwardProgressingMillis();
+        if (now - lastDecrease >= targetLatency) {
+          lastDecrease = now;
+          successes = 0;
+          limit = Math.max(minLimit, (int)(limit * DECREASE_FACTOR));
+        }
+      } else if (++successes >= limit) {
+        successes = 0;
+        limit = Math.min(maxLimit, limit + 1);
+      }
+    }
+  }
+
+  private void drain() {
+    while (! waiting.isEmpty() && tryAcquire()) {
+      Runnable task = waiting.poll();
+      if (task == null) {
+        inFlight.decrementAndGet();  // another thread took it, check again in case one was added
+        continue;
+      }
+      waitingCount.decrementAndGet();
+      task.run();
+    }
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  int getInFlightCount() {
+    return inFlight.get();
+  }
+
+  int getQueuedCount() {
+    return waitingCount.get();
+  }
+
+  long getRejectedCount() {
+    return rejected.sum();
+  }
+}
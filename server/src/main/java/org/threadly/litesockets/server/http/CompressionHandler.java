@@ -0,0 +1,335 @@
+package org.threadly.litesockets.server.http;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import org.threadly.litesockets.buffers.MergedByteBuffers;
+import org.threadly.litesockets.buffers.ReuseableMergedByteBuffers;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponse;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoder;
+import org.threadly.litesockets.protocols.http.shared.ContentEncoding;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPHeaders;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * An {@link HTTPServerHandler} which compresses the responses of another handler.  The handler
+ * writes its response as normal, either with a {@code Content-Length} or chunked (writing chunk 
+ * framed data).  If the client accepts gzip or deflate, the response is large enough (or chunked, 
+ * where the size is not known) and its {@code Content-Type} is in the allowlist, the response is 
+ * sent chunked and each {@link ResponseWriter#writeBody(ByteBuffer)} is compressed and flushed as 
+ * it is written, so streamed data is sent right away.  The compressed stream is finished once the 
+ * full {@code Content-Length} or the handler's final chunk is written, or on 
+ * {@link ResponseWriter#done()}.  Trailers after the handler's final chunk are dropped.
+ * <p>
+ * Responses which are already encoded, to {@code HEAD} requests or to HTTP/1.0 clients are passed 
+ * through unchanged.  The {@link Deflater} instances are pooled, see {@link ContentEncoder}.
+ */
+public class CompressionHandler implements HTTPServerHandler {
+  public static final int DEFAULT_MIN_COMPRESS_SIZE = 1024;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 4;
+  public static final List<String> DEFAULT_COMPRESSIBLE_TYPES =
+      Collections.unmodifiableList(Arrays.asList("text/", "application/json", "application/javascript",
+                                                 "application/xml", "image/svg+xml"));
+
+  private final HTTPServerHandler handler;
+  private final int minCompressSize;
+  private final int compressionLevel;
+  private final String[] compressibleTypes;
+
+  /**
+   * Constructs a new {@link CompressionHandler} using the default size threshold, compression
+   * level and content types.
+   *
+   * @param handler the {@link HTTPServerHandler} whose responses should be compressed.
+   */
+  public CompressionHandler(HTTPServerHandler handler) {
+    this(handler, DEFAULT_MIN_COMPRESS_SIZE, DEFAULT_COMPRESSION_LEVEL, DEFAULT_COMPRESSIBLE_TYPES);
+  }
+
+  /**
+   * Constructs a new {@link CompressionHandler}.
+   *
+   * @param handler the {@link HTTPServerHandler} whose responses should be compressed.
+   * @param minCompressSize responses with a {@code Content-Length} smaller than this are not compressed.
+   *          Chunked responses are compressed regardless of their size.
+   * @param compressionLevel the {@link Deflater} compression level to use.
+   * @param compressibleTypes the {@code Content-Type} prefixes which can be compressed (ie {@code text/}).
+   */
+  public CompressionHandler(HTTPServerHandler handler, int minCompressSize, int compressionLevel,
+                            Collection<String> compressibleTypes) {
+    ArgumentVerifier.assertNotNull(handler, "handler");
+    ArgumentVerifier.assertNotNegative(minCompressSize, "minCompressSize");
+    ArgumentVerifier.assertNotNull(compressibleTypes, "compressibleTypes");
+    if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+    }
+    this.handler = handler;
+    this.minCompressSize = minCompressSize;
+    this.compressionLevel = compressionLevel;
+    this.compressibleTypes = new String[compressibleTypes.size()];
+    int i = 0;
+    for (String type : compressibleTypes) {
+      this.compressibleTypes[i++] = type.toLowerCase(Locale.US);
+    }
+  }
+
+  @Override
+  public void handle(HTTPRequest httpRequest, ResponseWriter responseWriter, BodyFuture bodyListener) {
+    if (HTTPConstants.HTTP_VERSION_1_1.equals(httpRequest.getHTTPRequestHeader().getHttpVersion()) &&
+        ! HTTPRequestMethod.HEAD.toString().equals(httpRequest.getHTTPRequestHeader().getRequestMethod())) {
+      ContentEncoding encoding =
+          ContentEncoding.negotiate(httpRequest.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING));
+      responseWriter.setResponseCompressor(new ResponseCompressor(encoding));
+    }
+    handler.handle(httpRequest, responseWriter, bodyListener);
+  }
+
+  @Override
+  public void onError(HTTPRequest httpRequest, ResponseWriter responseWriter,
+                      BodyFuture bodyListener, Throwable t) {
+    handler.onError(httpRequest, responseWriter, bodyListener, t);
+  }
+
+  @Override
+  public boolean onConnection(InetSocketAddress isa) {
+    return handler.onConnection(isa);
+  }
+
+  @Override
+  public void onDisconnect(InetSocketAddress isa, long bytesRead, long bytesWritten) {
+    handler.onDisconnect(isa, bytesRead, bytesWritten);
+  }
+
+  private boolean isCompressible(HTTPHeaders headers) {
+    if ((! headers.isChunked() && headers.getContentLength() < minCompressSize) ||
+        headers.getHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING) != null) {
+      return false;
+    }
+    String contentType = headers.getHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE);
+    if (contentType == null) {
+      return false;
+    }
+    for (String type : compressibleTypes) {
+      if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compresses the body written to a single {@link ResponseWriter}.  If the response is not
+   * compressible {@link #isActive()} will return {@code false} after
+   * {@link #onResponse(HTTPResponse)} and the response must be written unchanged.
+   */
+  class ResponseCompressor {
+    private static final int READ_CHUNK_SIZE = -1;
+    private static final int READ_CHUNK_END = -2;
+
+    private final ContentEncoding encoding;
+    private ContentEncoder encoder = null;
+    private boolean active = false;
+    private long remaining;
+    // only set for a chunked response, holding chunk framing which has not been fully written yet
+    private MergedByteBuffers pendingChunks = null;
+    private int chunkRemaining = READ_CHUNK_SIZE;
+
+    private ResponseCompressor(ContentEncoding encoding) {
+      this.encoding = encoding;
+    }
+
+    /**
+     * Checks if the response will be compressed, returning the modified response to send if so.
+     *
+     * @param hr the response the handler is sending.
+     * @return the response to send to the client.
+     */
+    HTTPResponse onResponse(HTTPResponse hr) {
+      HTTPHeaders headers = hr.getHeaders();
+      if (! isCompressible(headers)) {
+        return hr;
+      }
+      String vary = headers.getHeader(HTTPConstants.HTTP_KEY_VARY);
+      if (vary == null) {
+        vary = HTTPConstants.HTTP_KEY_ACCEPT_ENCODING;
+      } else if (! vary.toLowerCase(Locale.US).contains(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING.toLowerCase(Locale.US))) {
+        vary = vary + ", " + HTTPConstants.HTTP_KEY_ACCEPT_ENCODING;
+      }
+      if (encoding == null) {
+        // still let caches know the response depends on the Accept-Encoding
+        return hr.makeBuilder().setHeader(HTTPConstants.HTTP_KEY_VARY, vary).build();
+      }
+      if (headers.isChunked()) {
+        pendingChunks = new ReuseableMergedByteBuffers(false);
+      } else {
+        remaining = headers.getContentLength();
+      }
+      encoder = new ContentEncoder(encoding, compressionLevel);
+      active = true;
+      return hr.makeBuilder()
+               .removeHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH)
+               .setHeader(HTTPConstants.HTTP_KEY_TRANSFER_ENCODING, "chunked")
+               .setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, encoding.getEncodingName())
+               .setHeader(HTTPConstants.HTTP_KEY_VARY, vary)
+               .build();
+    }
+
+    /**
+     * Returns if the response is being compressed.
+     *
+     * @return {@code true} if the body must be passed through {@link #compress(ByteBuffer)}.
+     */
+    boolean isActive() {
+      return active;
+    }
+
+    /**
+     * Compresses and flushes the body data, once the full {@code Content-Length} or the final 
+     * chunk has been provided the end of the compressed body is included in the result.
+     *
+     * @param bb the uncompressed body data, chunk framed if the response is chunked.
+     * @return the chunk encoded compressed data to write, may be empty.
+     */
+    synchronized MergedByteBuffers compress(ByteBuffer bb) {
+      MergedByteBuffers result = new ReuseableMergedByteBuffers(false);
+      write(bb, result);
+      flush(result);
+      return result;
+    }
+
+    /**
+     * Compresses and flushes the body data, once the full {@code Content-Length} or the final 
+     * chunk has been provided the end of the compressed body is included in the result.
+     *
+     * @param mbb the uncompressed body data, chunk framed if the response is chunked.
+     * @return the chunk encoded compressed data to write, may be empty.
+     */
+    synchronized MergedByteBuffers compress(MergedByteBuffers mbb) {
+      MergedByteBuffers result = new ReuseableMergedByteBuffers(false);
+      while (mbb.hasRemaining()) {
+        write(mbb.popBuffer(), result);
+      }
+      flush(result);
+      return result;
+    }
+
+    private void write(ByteBuffer bb, MergedByteBuffers result) {
+      if (pendingChunks != null) {
+        pendingChunks.add(bb);
+        writeChunks(result);
+        return;
+      }
+      if (bb.remaining() > remaining) {
+        throw new IllegalStateException("Body exceeds the responses Content-Length");
+      }
+      if (encoder != null) {
+        remaining -= bb.remaining();
+        addChunk(result, encoder.encode(bb));
+        if (remaining == 0) {
+          finish(result);
+        }
+      }
+    }
+
+    /**
+     * Removes the handler's chunk framing, compressing the chunk data.
+     */
+    private void writeChunks(MergedByteBuffers result) {
+      while (encoder != null && pendingChunks.hasRemaining()) {
+        if (chunkRemaining == READ_CHUNK_SIZE) {
+          int pos = pendingChunks.indexOf(HTTPConstants.HTTP_NEWLINE_DELIMINATOR);
+          if (pos < 0) {
+            return;
+          }
+          String size = pendingChunks.getAsString(pos);
+          pendingChunks.discard(HTTPConstants.HTTP_NEWLINE_DELIMINATOR.length());
+          int extension = size.indexOf(';');
+          try {
+            chunkRemaining = Integer.parseInt((extension < 0 ? size : size.substring(0, extension)).trim(), 
+                                              HTTPConstants.HEX_SIZE);
+          } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid chunk size: " + size, e);
+          }
+          if (chunkRemaining == 0) {
+            // final chunk, anything after it is trailers
+            pendingChunks.discard(pendingChunks.remaining());
+            finish(result);
+          } else if (chunkRemaining < 0) {
+            throw new IllegalStateException("Invalid chunk size: " + size);
+          }
+        } else if (chunkRemaining == READ_CHUNK_END) {
+          if (pendingChunks.remaining() < HTTPConstants.HTTP_NEWLINE_DELIMINATOR.length()) {
+            return;
+          }
+          pendingChunks.discard(HTTPConstants.HTTP_NEWLINE_DELIMINATOR.length());
+          chunkRemaining = READ_CHUNK_SIZE;
+        } else {
+          int size = Math.min(chunkRemaining, pendingChunks.remaining());
+          addChunk(result, encoder.encode(pendingChunks.pullBuffer(size)));
+          chunkRemaining -= size;
+          if (chunkRemaining == 0) {
+            chunkRemaining = READ_CHUNK_END;
+          }
+        }
+      }
+    }
+
+    private void flush(MergedByteBuffers result) {
+      // flushed so a streamed body is not held in the compressor until more is written
+      if (encoder != null) {
+        addChunk(result, encoder.flush());
+      }
+    }
+
+    /**
+     * Finishes the compressed stream if it has not been already.  This is used when the response
+     * is completed without the full {@code Content-Length} or the final chunk having been written.
+     *
+     * @return the final chunks to write, may be empty.
+     */
+    synchronized MergedByteBuffers finish() {
+      MergedByteBuffers result = new ReuseableMergedByteBuffers(false);
+      if (encoder != null) {
+        finish(result);
+      }
+      return result;
+    }
+
+    private void finish(MergedByteBuffers result) {
+      addChunk(result, encoder.finish());
+      encoder = null;
+      result.add(HTTPUtils.wrapInChunk(null));
+    }
+
+    private void addChunk(MergedByteBuffers result, ByteBuffer compressed) {
+      // an empty chunk would terminate the body, so only non-empty output is framed
+      if (compressed.hasRemaining()) {
+        result.add(HTTPUtils.wrapInChunk(compressed));
+      }
+    }
+
+    /**
+     * Releases the compressor resources without finishing the response.  This may be called from
+     * the connection's thread when it closes while the handler is still writing.
+     */
+    synchronized void release() {
+      if (encoder != null) {
+        encoder.close();
+        encoder = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,509 @@
+package org.threadly.litesockets.server.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestHeader;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
+import org.threadly.litesockets.server.http.HTTPRouterBuilder.RouteDefinition;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+/**
+ * An immutable {@link HTTPServerHandler} which dispatches requests to other handlers based off
+ * the request method, {@code Host} header and request path.  This is created through a
+ * {@link HTTPRouterBuilder}, see that class for the supported path patterns.
+ * <p>
+ * Routes are compiled into a radix trie keyed on the ASCII bytes of the path, so matching a
+ * request is a single walk over the request path.  Parameters are recorded as offsets into the
+ * path while walking, and are only turned into {@link String}'s if requested from the
+ * {@link RouteParameters}.
+ * <p>
+ * A {@code HEAD} request with no {@code HEAD} route uses the {@code GET} route, with any body the
+ * handler writes discarded.  If the path matches routes but not for the request method a
+ * {@code 405} is sent with an {@code Allow} header listing the methods which would match.
+ */
+public class HTTPRouter implements HTTPServerHandler {
+  private static final int ASCII_SIZE = 128;
+  private static final int[] NO_CAPTURES = new int[0];
+  private static final String GET = HTTPRequestMethod.GET.toString();
+  private static final String HEAD = HTTPRequestMethod.HEAD.toString();
+
+  private final HostRoutes[] hostRoutes;
+  private final HostRoutes anyHostRoutes;
+  private final HTTPServerHandler notFoundHandler;
+  private final int maxCaptures;
+
+  protected HTTPRouter(List<RouteDefinition> routes, HTTPServerHandler notFoundHandler) {
+    this.notFoundHandler = notFoundHandler;
+    Map<String, HostRoutes> hosts = new LinkedHashMap<>();
+    HostRoutes anyHost = null;
+    int maxCaptures = 0;
+    for (RouteDefinition rd : routes) {
+      Route route = compileRoute(rd);
+      HostRoutes hr;
+      if (rd.host == null) {
+        if (anyHost == null) {
+          anyHost = new HostRoutes(null);
+        }
+        hr = anyHost;
+      } else {
+        hr = hosts.computeIfAbsent(rd.host, HostRoutes::new);
+      }
+      hr.add(route);
+      maxCaptures = Math.max(maxCaptures, route.captureSize());
+    }
+    this.hostRoutes = hosts.values().toArray(new HostRoutes[hosts.size()]);
+    this.anyHostRoutes = anyHost;
+    this.maxCaptures = maxCaptures;
+  }
+
+  /**
+   * Creates a new {@link HTTPRouterBuilder}.
+   *
+   * @return a new {@link HTTPRouterBuilder}.
+   */
+  public static HTTPRouterBuilder builder() {
+    return new HTTPRouterBuilder();
+  }
+
+  @Override
+  public void handle(HTTPRequest httpRequest, ResponseWriter responseWriter, BodyFuture bodyListener) {
+    HTTPRequestHeader hrh = httpRequest.getHTTPRequestHeader();
+    String method = hrh.getRequestMethod();
+    String path = hrh.getRequestPath();
+    int[] captures = maxCaptures == 0 ? NO_CAPTURES : new int[maxCaptures];
+    HostRoutes hr = findHost(httpRequest.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_HOST));
+    Route route = match(hr, method, path, captures);
+    if (route == null && HEAD.equals(method)) {
+      route = match(hr, GET, path, captures);
+      if (route != null) {
+        responseWriter.discardBody();
+      }
+    }
+    if (route != null) {
+      responseWriter.setRoute(route.name);
+      route.handler.handle(httpRequest, new RouteParameters(route, path, captures),
+                           responseWriter, bodyListener);
+      return;
+    }
+    String allowed = allowedMethods(hr, path, captures);
+    if (allowed != null) {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+                                        .setResponseCode(HTTPResponseCode.MethodNotAllowed)
+                                        .setHeader(HTTPConstants.HTTP_KEY_ALLOW, allowed)
+                                        .build());
+      responseWriter.done();
+    } else if (notFoundHandler != null) {
+      notFoundHandler.handle(httpRequest, responseWriter, bodyListener);
+    } else {
+      responseWriter.sendHTTPResponse(HTTPServer.NOT_FOUND_RESPONSE);
+      responseWriter.closeOnDone();
+      responseWriter.done();
+    }
+  }
+
+  private Route match(HostRoutes hr, String method, String path, int[] captures) {
+    Route route = null;
+    if (hr != null) {
+      route = hr.match(method, path, captures);
+    }
+    if (route == null && anyHostRoutes != null) {
+      route = anyHostRoutes.match(method, path, captures);
+    }
+    return route;
+  }
+
+  /**
+   * Finds the methods which have a route matching the path, used to respond with a {@code 405}.
+   * This is only done once a request has failed to match, so is not optimized.
+   *
+   * @return the value for the {@code Allow} header, or {@code null} if no method matches the path
+   */
+  private String allowedMethods(HostRoutes hr, String path, int[] captures) {
+    Set<String> methods = new TreeSet<>();
+    if (hr != null) {
+      hr.addMatchingMethods(path, captures, methods);
+    }
+    if (anyHostRoutes != null) {
+      anyHostRoutes.addMatchingMethods(path, captures, methods);
+    }
+    if (methods.isEmpty()) {
+      return null;
+    }
+    if (methods.contains(GET)) {
+      methods.add(HEAD);
+    }
+    return String.join(", ", methods);
+  }
+
+  private HostRoutes findHost(String hostHeader) {
+    if (hostHeader == null || hostRoutes.length == 0) {
+      return null;
+    }
+    int hostEnd;
+    if (hostHeader.startsWith("[")) {  // ipv6 literal
+      hostEnd = hostHeader.indexOf(']') + 1;
+    } else {
+      hostEnd = hostHeader.indexOf(':');
+    }
+    if (hostEnd <= 0) {
+      hostEnd = hostHeader.length();
+    }
+    for (HostRoutes hr : hostRoutes) {
+      if (hr.host.length() == hostEnd && hostHeader.regionMatches(true, 0, hr.host, 0, hostEnd)) {
+        return hr;
+      }
+    }
+    return null;
+  }
+
+  private static Route compileRoute(RouteDefinition rd) {
+    String pattern = rd.pathPattern;
+    List<Object> tokens = new ArrayList<>();
+    List<String> paramNames = new ArrayList<>();
+    boolean wildcard = false;
+    StringBuilder staticText = new StringBuilder();
+    int pos = 0;
+    while (pos < pattern.length()) {
+      int segEnd = pattern.indexOf('/', pos + 1);
+      if (segEnd < 0) {
+        segEnd = pattern.length();
+      }
+      // pos points at the '/' which starts this segment
+      staticText.append('/');
+      String segment = pattern.substring(pos + 1, segEnd);
+      if (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2) {
+        String name = segment.substring(1, segment.length() - 1);
+        if (name.indexOf('{') >= 0 || name.indexOf('}') >= 0 || name.indexOf('*') >= 0) {
+          throw new IllegalArgumentException("Invalid parameter name: " + pattern);
+        }
+        tokens.add(staticText.toString());
+        staticText.setLength(0);
+        tokens.add(Token.PARAM);
+        paramNames.add(name);
+      } else if (segment.equals("*")) {
+        if (segEnd != pattern.length()) {
+          throw new IllegalArgumentException("Wildcard must be the final segment: " + pattern);
+        }
+        tokens.add(staticText.toString());
+        staticText.setLength(0);
+        tokens.add(Token.WILDCARD);
+        wildcard = true;
+      } else if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0 || segment.indexOf('*') >= 0) {
+        throw new IllegalArgumentException("Parameters and wildcards must be a full segment: " + pattern);
+      } else {
+        staticText.append(segment);
+      }
+      pos = segEnd;
+    }
+    if (staticText.length() > 0) {
+      tokens.add(staticText.toString());
+    }
+    return new Route(rd, tokens, paramNames.toArray(new String[paramNames.size()]), wildcard);
+  }
+
+  /**
+   * Token types within a compiled route, anything else in a token list is static text.
+   */
+  private enum Token { PARAM, WILDCARD }
+
+  /**
+   * The routes for a single host (or any host), split by request method.
+   */
+  private static class HostRoutes {
+    private final String host;
+    private final Map<String, Node> methodRoots = new HashMap<>();
+
+    private HostRoutes(String host) {
+      this.host = host;
+    }
+
+    private void add(Route route) {
+      Node node = methodRoots.computeIfAbsent(route.method, (ignored) -> new Node(new byte[0]));
+      for (Object token : route.tokens) {
+        if (token == Token.PARAM) {
+          if (node.paramChild == null) {
+            node.paramChild = new Node(new byte[0]);
+          }
+          node = node.paramChild;
+        } else if (token == Token.WILDCARD) {
+          if (node.wildcardRoute != null) {
+            throw new IllegalArgumentException("Duplicate route: " + route);
+          }
+          node.wildcardRoute = route;
+          return;
+        } else {
+          byte[] bytes = ((String)token).getBytes();
+          if (bytes.length > 0) {
+            node = node.insertStatic(bytes, 0);
+          }
+        }
+      }
+      if (node.route != null) {
+        throw new IllegalArgumentException("Duplicate route: " + route);
+      }
+      node.route = route;
+    }
+
+    private Route match(String method, String path, int[] captures) {
+      Node root = methodRoots.get(method);
+      if (root == null) {
+        return null;
+      }
+      return root.match(path, 0, captures, 0);
+    }
+
+    private void addMatchingMethods(String path, int[] captures, Set<String> methods) {
+      for (Map.Entry<String, Node> e : methodRoots.entrySet()) {
+        if (e.getValue().match(path, 0, captures, 0) != null) {
+          methods.add(e.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * A single node in the radix trie.  Each node consumes its {@code prefix} from the path, and
+   * then continues into a static child (keyed by the next byte), its parameter child, or
+   * finally its wildcard route.
+   */
+  private static class Node {
+    private byte[] prefix;
+    private Node[] children = null;
+    private Node paramChild = null;
+    private Route route = null;
+    private Route wildcardRoute = null;
+
+    private Node(byte[] prefix) {
+      this.prefix = prefix;
+    }
+
+    private Node insertStatic(byte[] bytes, int offset) {
+      if (children == null) {
+        children = new Node[ASCII_SIZE];
+      }
+      Node child = children[bytes[offset]];
+      if (child == null) {
+        child = new Node(copyRange(bytes, offset, bytes.length));
+        children[bytes[offset]] = child;
+        return child;
+      }
+      int common = 0;
+      while (common < child.prefix.length && offset + common < bytes.length &&
+             child.prefix[common] == bytes[offset + common]) {
+        common++;
+      }
+      if (common < child.prefix.length) {
+        // split the existing edge so the shared part becomes its own node
+        Node split = new Node(copyRange(child.prefix, 0, common));
+        child.prefix = copyRange(child.prefix, common, child.prefix.length);
+        split.children = new Node[ASCII_SIZE];
+        split.children[child.prefix[0]] = child;
+        children[bytes[offset]] = split;
+        child = split;
+      }
+      if (offset + common == bytes.length) {
+        return child;
+      }
+      return child.insertStatic(bytes, offset + common);
+    }
+
+    private Route match(String path, int pos, int[] captures, int paramIndex) {
+      int pathLength = path.length();
+      for (int i = 0; i < prefix.length; i++, pos++) {
+        if (pos >= pathLength || path.charAt(pos) != prefix[i]) {
+          return null;
+        }
+      }
+      if (pos == pathLength) {
+        if (route != null) {
+          return route;
+        } else if (wildcardRoute != null) {
+          captures[paramIndex * 2] = pos;
+          return wildcardRoute;
+        }
+        return null;
+      }
+      char c = path.charAt(pos);
+      if (children != null && c < ASCII_SIZE && children[c] != null) {
+        Route result = children[c].match(path, pos, captures, paramIndex);
+        if (result != null) {
+          return result;
+        }
+      }
+      if (paramChild != null) {
+        int segmentEnd = path.indexOf('/', pos);
+        if (segmentEnd < 0) {
+          segmentEnd = pathLength;
+        }
+        if (segmentEnd > pos) {
+          Route result = paramChild.match(path, segmentEnd, captures, paramIndex + 1);
+          if (result != null) {
+            captures[paramIndex * 2] = pos;
+            captures[paramIndex * 2 + 1] = segmentEnd;
+            return result;
+          }
+        }
+      }
+      if (wildcardRoute != null) {
+        captures[paramIndex * 2] = pos;
+        return wildcardRoute;
+      }
+      return null;
+    }
+
+    private static byte[] copyRange(byte[] source, int from, int to) {
+      byte[] result = new byte[to - from];
+      System.arraycopy(source, from, result, 0, result.length);
+      return result;
+    }
+  }
+
+  /**
+   * A compiled route.
+   */
+  private static class Route {
+    private final String method;
+    private final String host;
+    private final String pattern;
+    private final String name;
+    private final RouteHandler handler;
+    private final List<Object> tokens;
+    private final String[] paramNames;
+    private final boolean wildcard;
+
+    private Route(RouteDefinition rd, List<Object> tokens, String[] paramNames, boolean wildcard) {
+      this.method = rd.method;
+      this.host = rd.host;
+      this.pattern = rd.pathPattern;
+      this.name = method + " " + (host == null ? "*" : host) + pattern;
+      this.handler = rd.handler;
+      this.tokens = tokens;
+      this.paramNames = paramNames;
+      this.wildcard = wildcard;
+    }
+
+    private int captureSize() {
+      return (paramNames.length + (wildcard ? 1 : 0)) * 2;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * The path parameters extracted from a request which matched a route.  Values are stored as
+   * offsets into the request path and only converted into {@link String}'s when requested.
+   */
+  public static class RouteParameters {
+    private final Route route;
+    private final String path;
+    private final int[] captures;
+
+    private RouteParameters(Route route, String path, int[] captures) {
+      this.route = route;
+      this.path = path;
+      this.captures = captures;
+    }
+
+    /**
+     * Returns the path pattern of the route which was matched.
+     *
+     * @return the path pattern the route was added with.
+     */
+    public String getRoutePattern() {
+      return route.pattern;
+    }
+
+    /**
+     * Returns the number of named parameters in the matched route.
+     *
+     * @return the number of named parameters.
+     */
+    public int getParameterCount() {
+      return route.paramNames.length;
+    }
+
+    /**
+     * Returns the name of the parameter at a given position in the route.
+     *
+     * @param index the position of the parameter, starting at {@code 0}.
+     * @return the parameter name.
+     */
+    public String getParameterName(int index) {
+      return route.paramNames[index];
+    }
+
+    /**
+     * Returns the value of the parameter at a given position in the route.
+     *
+     * @param index the position of the parameter, starting at {@code 0}.
+     * @return the parameter value as it was in the request path.
+     */
+    public String getParameter(int index) {
+      if (index < 0 || index >= route.paramNames.length) {
+        throw new IndexOutOfBoundsException("No parameter at index: " + index);
+      }
+      return path.substring(captures[index * 2], captures[index * 2 + 1]);
+    }
+
+    /**
+     * Returns the value of a named parameter.
+     *
+     * @param name the name of the parameter as it was in the route pattern.
+     * @return the parameter value or {@code null} if the route has no parameter with that name.
+     */
+    public String getParameter(String name) {
+      for (int i = 0; i < route.paramNames.length; i++) {
+        if (route.paramNames[i].equals(name)) {
+          return getParameter(i);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the portion of the path matched by a {@code *} wildcard.  This will not include the
+     * {@code /} that preceded the wildcard.
+     *
+     * @return the wildcard match, or {@code null} if the route does not end in a wildcard.
+     */
+    public String getWildcard() {
+      if (! route.wildcard) {
+        return null;
+      }
+      return path.substring(captures[route.paramNames.length * 2]);
+    }
+  }
+
+  /**
+   * A handler for requests which matched a route.  This is the same as
+   * {@link HTTPServerHandler#handle(HTTPRequest, ResponseWriter, BodyFuture)} but also provides
+   * any parameters extracted from the path.
+   */
+  public interface RouteHandler {
+    /**
+     * This is called when a new HTTPRequest has matched this route.
+     *
+     * @param httpRequest the {@link HTTPRequest} the client sent.
+     * @param params the {@link RouteParameters} extracted from the request path.
+     * @param responseWriter the {@link ResponseWriter} that is used to send responses back on.
+     * @param bodyListener the {@link BodyFuture} that will be used to call back on as body data is read from the client.
+     */
+    void handle(HTTPRequest httpRequest, RouteParameters params,
+                ResponseWriter responseWriter, BodyFuture bodyListener);
+  }
+}
@@ -0,0 +1,140 @@
+package org.threadly.litesockets.server.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.server.http.HTTPRouter.RouteHandler;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.util.ArgumentVerifier;
+
+/**
+ * A builder for {@link HTTPRouter} objects.  Routes are collected here and then compiled into
+ * an immutable router once {@link #build()} is called.
+ * <p>
+ * Route paths are made up of {@code /} separated segments.  A segment can be:
+ * <ul>
+ *   <li>static text, for example {@code /users}</li>
+ *   <li>a named parameter which matches one full segment, for example {@code /users/{id}}</li>
+ *   <li>a {@code *} wildcard as the final segment, matching the remainder of the path
+ *       (including further {@code /}'s), for example {@code /static/*}</li>
+ * </ul>
+ * When multiple routes could match, static segments are preferred over parameters, and
+ * parameters are preferred over wildcards.
+ */
+public class HTTPRouterBuilder {
+  private final List<RouteDefinition> routes = new ArrayList<>();
+  private HTTPServerHandler notFoundHandler = null;
+
+  /**
+   * Adds a route which will match requests for any host.
+   *
+   * @param method the {@link HTTPRequestMethod} the route applies to.
+   * @param pathPattern the path pattern to match.
+   * @param handler the {@link RouteHandler} to invoke when matched.
+   * @return the current {@link HTTPRouterBuilder} object.
+   */
+  public HTTPRouterBuilder addRoute(HTTPRequestMethod method, String pathPattern, RouteHandler handler) {
+    return addRoute(method.toString(), null, pathPattern, handler);
+  }
+
+  /**
+   * Adds a route which will match requests for any host.
+   *
+   * @param method the {@link HTTPRequestMethod} the route applies to.
+   * @param pathPattern the path pattern to match.
+   * @param handler the {@link HTTPServerHandler} to invoke when matched.
+   * @return the current {@link HTTPRouterBuilder} object.
+   */
+  public HTTPRouterBuilder addRoute(HTTPRequestMethod method, String pathPattern, HTTPServerHandler handler) {
+    return addRoute(method.toString(), null, pathPattern, handler);
+  }
+
+  /**
+   * Adds a route which will only match requests sent with a matching {@code Host} header.  The
+   * host is compared without any port and ignoring case.  Routes for a specific host are checked
+   * before routes which were added for any host.
+   *
+   * @param method the request method the route applies to, this can be a non-standard method.
+   * @param host the host this route is for, or {@code null} to match any host.
+   * @param pathPattern the path pattern to match.
+   * @param handler the {@link HTTPServerHandler} to invoke when matched.
+   * @return the current {@link HTTPRouterBuilder} object.
+   */
+  public HTTPRouterBuilder addRoute(String method, String host, String pathPattern,
+                                    HTTPServerHandler handler) {
+    ArgumentVerifier.assertNotNull(handler, "handler");
+    return addRoute(method, host, pathPattern,
+                    (request, params, responseWriter, bodyListener) ->
+                        handler.handle(request, responseWriter, bodyListener));
+  }
+
+  /**
+   * Adds a route which will only match requests sent with a matching {@code Host} header.  The
+   * host is compared without any port and ignoring case.  Routes for a specific host are checked
+   * before routes which were added for any host.
+   *
+   * @param method the request method the route applies to, this can be a non-standard method.
+   * @param host the host this route is for, or {@code null} to match any host.
+   * @param pathPattern the path pattern to match.
+   * @param handler the {@link RouteHandler} to invoke when matched.
+   * @return the current {@link HTTPRouterBuilder} object.
+   */
+  public HTTPRouterBuilder addRoute(String method, String host, String pathPattern, RouteHandler handler) {
+    ArgumentVerifier.assertNotNull(method, "method");
+    ArgumentVerifier.assertNotNull(pathPattern, "pathPattern");
+    ArgumentVerifier.assertNotNull(handler, "handler");
+    if (! pathPattern.startsWith("/")) {
+      throw new IllegalArgumentException("Path pattern must start with '/': " + pathPattern);
+    }
+    for (int i = 0; i < pathPattern.length(); i++) {
+      if (pathPattern.charAt(i) > Byte.MAX_VALUE) {
+        throw new IllegalArgumentException("Path pattern must be ASCII (percent encode if needed): " +
+                                               pathPattern);
+      }
+    }
+    routes.add(new RouteDefinition(method.trim().toUpperCase(),
+                                   host == null ? null : host.trim().toLowerCase(),
+                                   pathPattern, handler));
+    return this;
+  }
+
+  /**
+   * Sets the handler to be used when no route matches a request.  If not set the
+   * {@link HTTPServer#NOT_FOUND_RESPONSE} will be sent.
+   *
+   * @param handler the {@link HTTPServerHandler} to use when no route is found.
+   * @return the current {@link HTTPRouterBuilder} object.
+   */
+  public HTTPRouterBuilder setNotFoundHandler(HTTPServerHandler handler) {
+    this.notFoundHandler = handler;
+    return this;
+  }
+
+  /**
+   * Compiles the added routes into an immutable {@link HTTPRouter}.
+   *
+   * @return a new {@link HTTPRouter} for the routes added to this builder.
+   * @throws IllegalArgumentException if two routes conflict or a path pattern is invalid.
+   */
+  public HTTPRouter build() {
+    return new HTTPRouter(routes, notFoundHandler);
+  }
+
+  /**
+   * Holds the values a route was added with until it is compiled.
+   */
+  protected static class RouteDefinition {
+    protected final String method;
+    protected final String host;
+    protected final String pathPattern;
+    protected final RouteHandler handler;
+
+    protected RouteDefinition(String method, String host, String pathPattern, RouteHandler handler) {
+      this.method = method;
+      this.host = host;
+      this.pathPattern = pathPattern;
+      this.handler = handler;
+    }
+  }
+}
@@ -3,11 +3,20 @@ package org.threadly.litesockets.server.http;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 
-import org.threadly.concurrent.event.ListenerHelper;
 import org.threadly.concurrent.event.RunnableListenerHelper;
 import org.threadly.concurrent.future.ListenableFuture;
 import org.threadly.litesockets.Client;
@@ -26,9 +35,14 @@ import org.threadly.litesockets.protocols.http.response.HTTPResponse;
 import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
 import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
 import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
+import org.threadly.litesockets.protocols.http.shared.TimingWheel;
 import org.threadly.litesockets.protocols.websocket.WSFrame;
 import org.threadly.litesockets.protocols.websocket.WSOPCode;
+import org.threadly.litesockets.server.http.CompressionHandler.ResponseCompressor;
+import org.threadly.litesockets.server.http.ResponseCacheHandler.ResponseCapture;
 import org.threadly.util.AbstractService;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.Clock;
 import org.threadly.util.ExceptionUtils;
 
 /**
@@ -39,16 +53,32 @@ import org.threadly.util.ExceptionUtils;
  */
 public class HTTPServer extends AbstractService {
   public static final HTTPResponse NOT_FOUND_RESPONSE = new HTTPResponseBuilder().setResponseCode(HTTPResponseCode.NotFound).build();
+  private static final int LISTEN_BACKLOG = 100;
+  private static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
   
-  private final ConcurrentHashMap<TCPClient, HTTPRequestProcessor> clients = new ConcurrentHashMap<>();
+  private final LongAdder connectionCount = new LongAdder();
+  private final LongAdder rejectedConnections = new LongAdder();
   private final ClientListener clientListener = new ClientListener();
-  private final SocketExecuter se;
-  private final TCPServer server;
+  private final SocketExecuter[] executors;
+  private final AcceptBalancing balancing;
+  private final TCPServer[] servers;
+  private final ServerSocketChannel acceptChannel;
+  private final TimingWheel[] timingWheels;
   private final String hostname;
   private final int port;
+  private int nextExecutor = 0; // only used from the accept thread
 
   private volatile SSLContext sslc;
   private volatile HTTPServerHandler handler;
+  private volatile long maxDecodedBodySize = -1;
+  private volatile long idleTimeout = -1;
+  private volatile long headerReadTimeout = -1;
+  private volatile long bodyReadTimeout = -1;
+  private volatile int maxRequestsPerConnection = -1;
+  private volatile int maxConnections = -1;
+  private volatile AdmissionController admission = null;
+  private volatile HTTPResponse overloadResponse = buildOverloadResponse(DEFAULT_RETRY_AFTER_SECONDS);
+  private volatile HTTPServerMetrics metrics = null;
   
   /**
    * Constructs an {@link HTTPServer} without SSL support.
@@ -72,17 +102,70 @@ public class HTTPServer extends AbstractService {
    * @throws IOException this is thrown if we have problems creating this HTTPServers listen socket.
    */
   public HTTPServer(final SocketExecuter se, final String hostName, final int port, final SSLContext sslc) throws IOException {
-    this.se = se;
+    this(new SocketExecuter[] {se}, hostName, port, sslc, AcceptBalancing.SharedListener);
+  }
+  
+  /**
+   * Constructs an {@link HTTPServer} which spreads its connections across multiple 
+   * {@link SocketExecuter}s.  Once a connection is given to an executor all of its reads, parsing 
+   * and handler calls stay on that executor, so giving each executor its own thread pool allows 
+   * the server to scale with the number of cores.  Each executor also has its own 
+   * {@link TimingWheel} on its thread scheduler for the timeouts of its connections.
+   * <p>
+   * With more than one executor the listen socket is opened by the server with 
+   * {@code SO_REUSEADDR} and a backlog of 100.  A single executor listens 
+   * through {@link SocketExecuter#createTCPServer(String, int)} as before, whatever the balancing.
+   * 
+   * @param executors The {@link SocketExecuter}s to spread connections across.
+   * @param hostName The hostname or ip to bind this httpServer too.
+   * @param port the port this server will bind to.
+   * @param sslc the {@link SSLContext} to use for this server, or {@code null} for no SSL.
+   * @param balancing How accepted connections are assigned to the executors.
+   * @throws IOException this is thrown if we have problems creating this HTTPServers listen socket.
+   */
+  public HTTPServer(final SocketExecuter[] executors, final String hostName, final int port, 
+                    final SSLContext sslc, final AcceptBalancing balancing) throws IOException {
+    ArgumentVerifier.assertNotNull(executors, "executors");
+    ArgumentVerifier.assertGreaterThanZero(executors.length, "executors.length");
+    ArgumentVerifier.assertNotNull(balancing, "balancing");
+    this.executors = executors.clone();
+    this.balancing = balancing;
     this.hostname = hostName;
     this.port = port;
     this.sslc = sslc;
-    this.server = this.se.createTCPServer(hostname, port);
-    server.setClientAcceptor(clientListener);
+    this.timingWheels = new TimingWheel[this.executors.length];
+    for (int i = 0; i < timingWheels.length; i++) {
+      timingWheels[i] = new TimingWheel(this.executors[i].getThreadScheduler());
+    }
     
-    if(this.sslc != null) {
-      server.setSSLContext(this.sslc);
-      server.setSSLHostName(hostname);
-      server.setDoHandshake(true);
+    if (this.executors.length == 1) {
+      // nothing to balance between, so listen through the executor
+      this.acceptChannel = null;
+      this.servers = new TCPServer[] {this.executors[0].createTCPServer(hostName, port)};
+      servers[0].setClientAcceptor(clientListener);
+      setSSLContext(sslc);
+      return;
+    }
+    ServerSocketChannel ssc = ServerSocketChannel.open();
+    try {
+      ssc.socket().setReuseAddress(true);
+      ssc.socket().bind(new InetSocketAddress(hostName, port), LISTEN_BACKLOG);
+      if (balancing == AcceptBalancing.SharedListener) {
+        this.acceptChannel = null;
+        this.servers = new TCPServer[this.executors.length];
+        for (int i = 0; i < servers.length; i++) {
+          servers[i] = this.executors[i].createTCPServer(ssc);
+          servers[i].setClientAcceptor(clientListener);
+        }
+        setSSLContext(sslc);
+      } else {
+        // accepted in blocking mode by our own thread, then handed to the chosen executor
+        this.acceptChannel = ssc;
+        this.servers = new TCPServer[0];
+      }
+    } catch (IOException | RuntimeException e) {
+      ssc.close();
+      throw e;
     }
   }
   
@@ -100,13 +183,15 @@ public class HTTPServer extends AbstractService {
    */
   public void setSSLContext(final SSLContext sslc) {
     this.sslc = sslc;
-    if(this.sslc != null) {
-      server.setSSLContext(this.sslc);
-      server.setSSLHostName(hostname);
-      server.setDoHandshake(true);
-    } else {
-      server.setDoHandshake(false);
-      server.setSSLContext(null);
+    for (TCPServer server : servers) {
+      if(sslc != null) {
+        server.setSSLContext(sslc);
+        server.setSSLHostName(hostname);
+        server.setDoHandshake(true);
+      } else {
+        server.setDoHandshake(false);
+        server.setSSLContext(null);
+      }
     }
   }
   
@@ -118,15 +203,123 @@ public class HTTPServer extends AbstractService {
     return hostname;
   }
 
+  /**
+   * Returns the number of connections currently open to this server.
+   * 
+   * @return the number of open client connections.
+   */
+  public int getConnectionCount() {
+    return connectionCount.intValue();
+  }
+  
+  /**
+   * @return the number of {@link SocketExecuter}s connections are spread across.
+   */
+  public int getExecutorCount() {
+    return executors.length;
+  }
+  
+  /**
+   * @return how accepted connections are assigned to the executors.
+   */
+  public AcceptBalancing getAcceptBalancing() {
+    return balancing;
+  }
+
   @Override
   protected void startupService() {
-    server.start();
+    for (TCPServer server : servers) {
+      server.start();
+    }
+    if (acceptChannel != null) {
+      Thread acceptThread = new Thread(this::acceptConnections, "HTTPServer-accept-" + port);
+      acceptThread.setDaemon(true);
+      acceptThread.start();
+    }
   }
 
   @Override
   protected void shutdownService() {
-    server.stop();
-    server.close();
+    for (TCPServer server : servers) {
+      server.stop();
+      server.close();
+    }
+    if (acceptChannel != null) {
+      try {
+        acceptChannel.close();  // unblocks the accept thread
+      } catch (IOException e) {
+        ExceptionUtils.handleException(e);
+      }
+    }
+  }
+  
+  private void acceptConnections() {
+    while (true) {
+      SocketChannel sc;
+      try {
+        sc = acceptChannel.accept();
+      } catch (ClosedChannelException e) {
+        return; // server was stopped
+      } catch (IOException e) {
+        // same as a litesockets server, stop on accept errors rather than spin on them
+        ExceptionUtils.handleException(e);
+        stopIfRunning();
+        return;
+      }
+      dispatchConnection(sc);
+    }
+  }
+  
+  private void dispatchConnection(SocketChannel sc) {
+    TCPClient client;
+    try {
+      sc.configureBlocking(false);
+      client = nextExecutor().createTCPClient(sc);
+    } catch (IOException | RuntimeException e) {
+      ExceptionUtils.handleException(e);
+      try {
+        sc.close();
+      } catch (IOException e1) {
+        // ignored, already reported the original failure
+      }
+      return;
+    }
+    SSLContext sslc = this.sslc;
+    if (sslc != null) {
+      SSLEngine ssle = sslc.createSSLEngine(hostname, client.getLocalSocketAddress().getPort());
+      ssle.setUseClientMode(false);
+      client.setSSLEngine(ssle);
+      client.startSSL();
+    }
+    client.getClientsThreadExecutor().execute(() -> clientListener.accept(client));
+  }
+  
+  /**
+   * Finds the {@link TimingWheel} for the executor a connection was given to.
+   */
+  private TimingWheel timingWheelFor(Client client) {
+    SocketExecuter se = client.getClientsSocketExecuter();
+    for (int i = 1; i < executors.length; i++) {
+      if (executors[i] == se) {
+        return timingWheels[i];
+      }
+    }
+    return timingWheels[0];
+  }
+  
+  private SocketExecuter nextExecutor() {
+    if (balancing == AcceptBalancing.LeastConnections) {
+      SocketExecuter result = executors[0];
+      for (int i = 1; i < executors.length; i++) {
+        if (executors[i].getClientCount() < result.getClientCount()) {
+          result = executors[i];
+        }
+      }
+      return result;
+    }
+    SocketExecuter result = executors[nextExecutor];
+    nextExecutor = (nextExecutor + 1) % executors.length;
+    return result;
   }
   
   /**
@@ -139,64 +332,536 @@ public class HTTPServer extends AbstractService {
   }
   
   /**
+   * Enables transparent decoding of {@code gzip} and {@code deflate} encoded request bodies.  The 
+   * {@link HTTPServerHandler} will get the {@link HTTPRequest} without the {@code Content-Encoding} 
+   * or {@code Content-Length} headers, and {@link BodyListener#onBody(HTTPRequest, ByteBuffer, ResponseWriter)} 
+   * will be called with the decoded data.  If a body fails to decode or its decoded size exceeds 
+   * the limit {@link HTTPServerHandler#onError(HTTPRequest, ResponseWriter, BodyFuture, Throwable)} 
+   * is called and the connection is closed.
+   * 
+   * This only applies to connections accepted after it is set.
+   * 
+   * @param maxDecodedBodySize the largest decoded body size to accept.
+   */
+  public void enableRequestBodyDecoding(long maxDecodedBodySize) {
+    ArgumentVerifier.assertGreaterThanZero(maxDecodedBodySize, "maxDecodedBodySize");
+    this.maxDecodedBodySize = maxDecodedBodySize;
+  }
+  
+  /**
+   * Disables request body decoding for newly accepted connections.  This is the default.
+   */
+  public void disableRequestBodyDecoding() {
+    this.maxDecodedBodySize = -1;
+  }
+  
+  /**
+   * Sets how long a connection may sit idle, with no request being read or responded to, before 
+   * it is closed.  This includes newly accepted connections which have not sent anything yet.
+   * 
+   * Timeouts only apply to connections accepted after at least one of them is set.  Changing a 
+   * timeout applies to open connections the next time they are checked.
+   * 
+   * @param idleTimeoutMillis the idle time in milliseconds, {@code <= 0} to disable (the default)
+   */
+  public void setIdleTimeout(long idleTimeoutMillis) {
+    this.idleTimeout = idleTimeoutMillis;
+  }
+  
+  /**
+   * Sets how long a client has to send the complete request headers, from when the first byte 
+   * of the request is read.  If exceeded the connection is closed, this bounds how long a client 
+   * slowly sending headers can hold the connection.
+   * 
+   * @param headerReadTimeoutMillis the time in milliseconds, {@code <= 0} to disable (the default)
+   */
+  public void setHeaderReadTimeout(long headerReadTimeoutMillis) {
+    this.headerReadTimeout = headerReadTimeoutMillis;
+  }
+  
+  /**
+   * Sets how long the server will wait for more data while reading a request body.  If no body 
+   * data is read for this long the connection is closed.
+   * 
+   * @param bodyReadTimeoutMillis the time in milliseconds, {@code <= 0} to disable (the default)
+   */
+  public void setBodyReadTimeout(long bodyReadTimeoutMillis) {
+    this.bodyReadTimeout = bodyReadTimeoutMillis;
+  }
+  
+  /**
+   * Sets the maximum number of requests which will be handled on a single connection.  The 
+   * response to the last request is sent with {@code Connection: close}, and the connection is 
+   * closed once that response is done.
+   * 
+   * @param maxRequests the maximum requests per connection, {@code <= 0} for no limit (the default)
+   */
+  public void setMaxRequestsPerConnection(int maxRequests) {
+    this.maxRequestsPerConnection = maxRequests;
+  }
+  
+  /**
+   * Sets the maximum number of connections which can be open to this server.  Connections 
+   * accepted past this are closed immediately, before {@link HTTPServerHandler#onConnection(InetSocketAddress)} 
+   * is called.  Connections accepted at the same time on different executors may briefly exceed 
+   * the limit.
+   * 
+   * @param maxConnections the maximum open connections, {@code <= 0} for no limit (the default)
+   */
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+  
+  /**
+   * @return the number of connections closed on accept because {@link #setMaxConnections(int)} was reached.
+   */
+  public long getRejectedConnectionCount() {
+    return rejectedConnections.sum();
+  }
+  
+  /**
+   * Limits how many requests the {@link HTTPServerHandler} is given at once.  A request counts 
+   * against the limit from when it is given to the handler until its response is 
+   * {@link ResponseWriter#done()} or the connection closes.  Requests past the limit wait in a 
+   * queue of up to {@code maxQueued} requests.  Reading from a queued request's connection is 
+   * paused until the handler is called, so its body is left to the client rather than buffered.  
+   * Once that queue is full requests are immediately answered with a {@code 503 Service Unavailable} 
+   * and a {@code Retry-After} header (see {@link #setOverloadRetryAfter(int)}) without calling the 
+   * handler.
+   * 
+   * This only applies to requests received after it is set.
+   * 
+   * @param maxConcurrent the maximum requests given to the handler at once, {@code <= 0} to disable (the default)
+   * @param maxQueued the maximum number of requests waiting to be given to the handler
+   */
+  public void setMaxConcurrentRequests(int maxConcurrent, int maxQueued) {
+    if (maxConcurrent <= 0) {
+      this.admission = null;
+      return;
+    }
+    ArgumentVerifier.assertNotNegative(maxQueued, "maxQueued");
+    AdmissionController admission = this.admission;
+    if (admission == null) {
+      this.admission = new AdmissionController(maxConcurrent, maxQueued);
+    } else {
+      admission.setLimits(maxConcurrent, maxQueued);
+    }
+  }
+  
+  /**
+   * Lets the concurrent request limit set by {@link #setMaxConcurrentRequests(int, int)} adapt to 
+   * how long the handler is taking.  While responses complete within the target latency the limit 
+   * is slowly raised, once they take longer it is reduced by 10%, backing off no more than once per 
+   * target latency.
+   * 
+   * @param minLimit the lowest the limit will be reduced to
+   * @param maxLimit the highest the limit will be raised to
+   * @param targetLatencyMillis the response time in milliseconds to keep requests under
+   */
+  public void enableAdaptiveConcurrencyLimit(int minLimit, int maxLimit, long targetLatencyMillis) {
+    ArgumentVerifier.assertGreaterThanZero(minLimit, "minLimit");
+    ArgumentVerifier.assertGreaterThanZero(targetLatencyMillis, "targetLatencyMillis");
+    if (maxLimit < minLimit) {
+      throw new IllegalArgumentException("maxLimit can not be less than minLimit");
+    }
+    AdmissionController admission = this.admission;
+    if (admission == null) {
+      throw new IllegalStateException("setMaxConcurrentRequests must be called first");
+    }
+    admission.enableAdaptiveLimit(minLimit, maxLimit, targetLatencyMillis);
+  }
+  
+  /**
+   * Stops adapting the concurrent request limit, leaving it at its current value.
+   */
+  public void disableAdaptiveConcurrencyLimit() {
+    AdmissionController admission = this.admission;
+    if (admission != null) {
+      admission.disableAdaptiveLimit();
+    }
+  }
+  
+  /**
+   * Sets the {@code Retry-After} value sent with {@code 503} responses for requests rejected by 
+   * {@link #setMaxConcurrentRequests(int, int)}.  Defaults to 1 second.
+   * 
+   * @param retryAfterSeconds the seconds clients should wait before retrying
+   */
+  public void setOverloadRetryAfter(int retryAfterSeconds) {
+    ArgumentVerifier.assertNotNegative(retryAfterSeconds, "retryAfterSeconds");
+    this.overloadResponse = buildOverloadResponse(retryAfterSeconds);
+  }
+  
+  private static HTTPResponse buildOverloadResponse(int retryAfterSeconds) {
+    return new HTTPResponseBuilder().setResponseCode(HTTPResponseCode.ServiceUnavailable)
+                                    .setHeader(HTTPConstants.HTTP_KEY_RETRY_AFTER, 
+                                               Integer.toString(retryAfterSeconds))
+                                    .build();
+  }
+  
+  /**
+   * @return the current concurrent request limit, or {@code -1} if requests are not limited.
+   */
+  public int getConcurrencyLimit() {
+    AdmissionController admission = this.admission;
+    return admission == null ? -1 : admission.getLimit();
+  }
+  
+  /**
+   * @return the number of requests currently counted against the concurrent request limit.
+   */
+  public int getInFlightRequestCount() {
+    AdmissionController admission = this.admission;
+    return admission == null ? 0 : admission.getInFlightCount();
+  }
+  
+  /**
+   * @return the number of requests waiting for the concurrent request limit.
+   */
+  public int getQueuedRequestCount() {
+    AdmissionController admission = this.admission;
+    return admission == null ? 0 : admission.getQueuedCount();
+  }
+  
+  /**
+   * @return the number of requests answered with a {@code 503} because the request queue was full.
+   */
+  public long getRejectedRequestCount() {
+    AdmissionController admission = this.admission;
+    return admission == null ? 0 : admission.getRejectedCount();
+  }
+  
+  /**
+   * Sets the {@link HTTPServerMetrics} to report connections and request timings to, for example 
+   * a {@link HTTPServerStats}.  Connections are reported to the metrics set when they were 
+   * accepted, requests to the metrics set when their headers were read.
+   * 
+   * @param metrics the metrics to report to, or {@code null} to stop reporting (the default)
+   */
+  public void setMetrics(HTTPServerMetrics metrics) {
+    this.metrics = metrics;
+  }
+  
+  /**
+   * @return the {@link HTTPServerMetrics} being reported to, or {@code null} if none is set.
+   */
+  public HTTPServerMetrics getMetrics() {
+    return metrics;
+  }
+  
+  /**
+   * Returns the interval open connections should be checked for timeouts at.
+   * 
+   * @return the smallest enabled timeout, or {@code -1} if all timeouts are disabled
+   */
+  private long timeoutCheckInterval() {
+    long result = Long.MAX_VALUE;
+    long idleTimeout = this.idleTimeout;
+    long headerReadTimeout = this.headerReadTimeout;
+    long bodyReadTimeout = this.bodyReadTimeout;
+    if (idleTimeout > 0) {
+      result = idleTimeout;
+    }
+    if (headerReadTimeout > 0) {
+      result = Math.min(result, headerReadTimeout);
+    }
+    if (bodyReadTimeout > 0) {
+      result = Math.min(result, bodyReadTimeout);
+    }
+    return result == Long.MAX_VALUE ? -1 : result;
+  }
+  
+  /**
+   * How a server with multiple {@link SocketExecuter}s assigns accepted connections to them.
+   */
+  public enum AcceptBalancing {
+    /** Connections are accepted on a dedicated thread and given to each executor in turn. */
+    RoundRobin, 
+    /** Connections are accepted on a dedicated thread and given to the executor with the fewest clients. */
+    LeastConnections, 
+    /** Every executor listens on the shared socket, whichever wakes first accepts the connection. */
+    SharedListener
+  }
+  
+  /**
+   * Accepts new connections, attaching a {@link ConnectionHandler} to each one allowed by the 
+   * {@link HTTPServerHandler}.
    * 
    * @author lwahlmeier
    *
    */
-  private class ClientListener implements ClientAcceptor, Reader, ClientCloseListener {
+  private class ClientListener implements ClientAcceptor {
     @Override
     public void accept(Client client) {
       TCPClient tclient = (TCPClient)client;
+      int maxConnections = HTTPServer.this.maxConnections;
+      HTTPServerMetrics metrics = HTTPServer.this.metrics;
+      if (maxConnections > 0 && connectionCount.sum() >= maxConnections) {
+        rejectedConnections.increment();
+        if (metrics != null) {
+          metrics.connectionRejected();
+        }
+        tclient.close();
+        return;
+      }
       if(handler == null || handler.onConnection(tclient.getRemoteSocketAddress())) {
         HTTPRequestProcessor hrp = new HTTPRequestProcessor();
-        hrp.addHTTPRequestCallback(new HTTPRequestListener(tclient));
-        clients.put(tclient, hrp);
-        client.setReader(this);
-        client.addCloseListener(this);
+        long maxDecodedBodySize = HTTPServer.this.maxDecodedBodySize;
+        if (maxDecodedBodySize > 0) {
+          hrp.enableContentDecoding(maxDecodedBodySize);
+        }
+        HTTPRequestListener hrl = new HTTPRequestListener(tclient, hrp);
+        hrp.addHTTPRequestCallback(hrl);
+        ConnectionHandler ch = new ConnectionHandler(hrp, hrl, metrics);
+        connectionCount.increment();
+        if (metrics != null) {
+          metrics.connectionOpened();
+        }
+        client.setReader(ch);
+        client.addCloseListener(ch);
+        hrl.startTimeouts();
       } else {
         tclient.close();
       }
     }
+  }
+  
+  /**
+   * Per connection reader, holding the connection's {@link HTTPRequestProcessor} so reads do not 
+   * need to look it up.
+   */
+  private class ConnectionHandler implements Reader, ClientCloseListener {
+    private final HTTPRequestProcessor hrp;
+    private final HTTPRequestListener hrl;
+    private final HTTPServerMetrics metrics;
+    
+    ConnectionHandler(HTTPRequestProcessor hrp, HTTPRequestListener hrl, HTTPServerMetrics metrics) {
+      this.hrp = hrp;
+      this.hrl = hrl;
+      this.metrics = metrics;
+    }
 
     @Override
     public void onClose(Client client) {
+      connectionCount.decrement();
+      if (metrics != null) {
+        metrics.connectionClosed(client.getStats().getTotalRead(), client.getStats().getTotalWrite());
+      }
       if (handler != null) {
         handler.onDisconnect((InetSocketAddress)client.getRemoteSocketAddress(), 
                              client.getStats().getTotalRead(), client.getStats().getTotalWrite());
       }
-      HTTPRequestProcessor hrp = clients.remove(client);
-      if(hrp != null) {
-        hrp.connectionClosed();
-      }
+      hrp.connectionClosed();
     }
 
     @Override
     public void onRead(Client client) {
-      HTTPRequestProcessor hrp = clients.get(client);
-      if(hrp != null) {
-        hrp.processData(client.getRead());
-      }
+      hrl.processReads();
     }
   }
   
+  /**
+   * What a connection is currently reading, used to decide which timeout applies to it.
+   */
+  private enum ReadState { Idle, Headers, Body, Upgraded }
+  
   /**
    * Listener for handling the incoming client request data and state.
    */
   private class HTTPRequestListener implements HTTPRequestCallback {
     final TCPClient client;
-    BodyFuture bodyFuture;
-    ResponseWriter responseWriter;
+    final HTTPRequestProcessor hrp;
+    final TimingWheel timingWheel;
+    final AtomicInteger pendingResponses = new AtomicInteger();
+    // responses still being written after the next request started, removed as each completes
+    final Queue<ResponseState> outstandingStates = new ConcurrentLinkedQueue<>();
+    volatile ResponseState responseState;
+    volatile ResponseWriter responseWriter;
+    volatile BodyFuture bodyFuture;
+    volatile ReadState readState = ReadState.Idle;
+    volatile long stateTime = Clock.lastKnownForwardProgressingMillis();
+    volatile long lastRead = stateTime;
+    volatile AdmittedRequest pausedFor = null;
+    long requestStartNanos = 0;
+    int requestCount = 0;
     HTTPRequest hr = null; 
     
-    HTTPRequestListener(TCPClient client) {
+    HTTPRequestListener(TCPClient client, HTTPRequestProcessor hrp) {
       this.client = client;
+      this.hrp = hrp;
+      this.timingWheel = timingWheelFor(client);
       bodyFuture = new BodyFuture();
-      responseWriter = new ResponseWriter(this.client);
+      responseState = new ResponseState(client, false);
+      responseWriter = new ResponseWriter(responseState);
+      // one close listener for the connection, rather than one per response
+      this.client.addCloseListener((ignored) -> connectionClosed());
+    }
+    
+    private void connectionClosed() {
+      responseState.connectionClosed();
+      closeOutstandingStates();
+    }
+    
+    private void closeOutstandingStates() {
+      ResponseState state;
+      while ((state = outstandingStates.poll()) != null) {
+        state.connectionClosed();
+      }
+    }
+    
+    /**
+     * Tracks a response which is still being written while the next request is read, so it is 
+     * told if the connection closes.  It is removed again once the response completes.
+     */
+    private void addOutstandingState(ResponseState state) {
+      if (! state.addCompletionTask(() -> outstandingStates.remove(state))) {
+        return;  // already completed, nothing to tell about the close
+      }
+      outstandingStates.add(state);
+      if (client.isClosed()) {
+        // the connection's close listener may have already run, make sure the state is not missed
+        closeOutstandingStates();
+      }
+    }
+    
+    void startTimeouts() {
+      long interval = timeoutCheckInterval();
+      if (interval > 0) {
+        timingWheel.schedule(this::checkTimeouts, interval);
+      }
+    }
+    
+    /**
+     * Checks if the timeout for the connection's current state has passed, closing it if so.  
+     * Rather than rescheduling on every state change, a single check is kept scheduled for each 
+     * connection, which reschedules itself for the next deadline.
+     */
+    private void checkTimeouts() {
+      long interval = timeoutCheckInterval();
+      if (client.isClosed() || readState == ReadState.Upgraded || interval <= 0) {
+        return;
+      }
+      long now = Clock.accurateForwardProgressingMillis();
+      long deadline;
+      if (pausedFor != null) {
+        // waiting on the server to start a queued request, not on the client
+        deadline = Long.MAX_VALUE;
+      } else {
+        switch (readState) {
+          case Headers:
+            deadline = deadline(stateTime, headerReadTimeout);
+            break;
+          case Body:
+            deadline = deadline(lastRead, bodyReadTimeout);
+            break;
+          default:
+            // not idle while a response is still being sent
+            deadline = pendingResponses.get() > 0 ? Long.MAX_VALUE : deadline(stateTime, idleTimeout);
+        }
+      }
+      if (now >= deadline) {
+        client.close();
+      } else {
+        timingWheel.schedule(this::checkTimeouts, Math.min(interval, deadline - now));
+      }
+    }
+    
+    private long deadline(long since, long timeout) {
+      return timeout > 0 ? since + timeout : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Processes the data read from the client, unless reads are paused for a queued request.  While 
+     * paused the data is left in the client's read buffer, once that is full the client stops 
+     * reading from the socket so the sender is pushed back on rather than buffering on the heap.
+     */
+    void processReads() {
+      if (pausedFor == null) {
+        dataRead();
+        hrp.processData(client.getRead());
+      }
+    }
+    
+    /**
+     * Resumes processing reads if they were last paused for the provided request, this must be 
+     * invoked from the connection's thread.
+     * 
+     * @param request the queued request which is now starting
+     */
+    void resumeReads(AdmittedRequest request) {
+      if (pausedFor == request) {
+        pausedFor = null;
+        if (client.getReadBufferSize() > 0) {
+          processReads();
+        }
+      }
+    }
+    
+    private void dataRead() {
+      lastRead = Clock.lastKnownForwardProgressingMillis();
+      if (readState == ReadState.Idle) {
+        stateTime = lastRead;
+        readState = ReadState.Headers;
+        if (metrics != null) {
+          requestStartNanos = System.nanoTime();
+        }
+      }
+    }
+    
+    void responseDone() {
+      if (pendingResponses.decrementAndGet() == 0 && readState == ReadState.Idle) {
+        stateTime = Clock.lastKnownForwardProgressingMillis();
+      }
     }
 
     @Override
     public void headersFinished(HTTPRequest hr) {
       this.hr = hr;
+      HTTPServerMetrics metrics = HTTPServer.this.metrics;
+      if (metrics != null) {
+        long now = System.nanoTime();
+        // a pipelined request is parsed from data already read, so is not timed from that read
+        responseWriter.startMetrics(metrics, hr, readState == ReadState.Headers ? requestStartNanos : now, now);
+      }
+      if (HTTPConstants.WEBSOCKET.equals(hr.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_UPGRADE))) {
+        readState = ReadState.Upgraded;
+      } else {
+        readState = ReadState.Body;
+      }
+      int maxRequests = maxRequestsPerConnection;
+      if (maxRequests > 0 && ++requestCount >= maxRequests) {
+        if (requestCount > maxRequests) {
+          return; // pipelined past the limit, the connection will close once the last response is done
+        }
+        responseWriter.forceClose();
+      }
+      pendingResponses.incrementAndGet();
+      AdmissionController admission = HTTPServer.this.admission;
+      if (admission == null || handler == null) {
+        responseWriter.setCompletionListener(this::responseDone);
+        dispatch(hr, responseWriter, bodyFuture);
+        return;
+      }
+      AdmittedRequest request = new AdmittedRequest(admission, this, hr, responseWriter, bodyFuture);
+      responseWriter.setCompletionListener(request);
+      if (admission.tryAcquire()) {
+        request.start();
+      } else if (admission.enqueue(() -> client.getClientsThreadExecutor().execute(request::start))) {
+        // start runs on this connection's thread after this read, so nothing is missed by holding now
+        bodyFuture.hold();
+        // only the rest of this read is held, no more is processed until the request starts
+        pausedFor = request;
+      } else {
+        if (metrics != null) {
+          metrics.requestRejected();
+        }
+        responseWriter.sendHTTPResponse(overloadResponse);
+        responseWriter.done();
+      }
+    }
+    
+    void dispatch(HTTPRequest hr, ResponseWriter responseWriter, BodyFuture bodyFuture) {
+      HTTPServerHandler handler = HTTPServer.this.handler;
       if(handler != null) {
         handler.handle(hr, responseWriter, bodyFuture);
       } else {
@@ -208,14 +873,30 @@ public class HTTPServer extends AbstractService {
 
     @Override
     public void bodyData(ByteBuffer bb) {
+      responseWriter.bodyRead(bb.remaining());
       bodyFuture.addBody(hr, bb, responseWriter);
     }
 
     @Override
     public void finished() {
+      stateTime = Clock.lastKnownForwardProgressingMillis();
+      readState = ReadState.Idle;
       bodyFuture.completed(hr, responseWriter);
-      bodyFuture = new BodyFuture();
-      responseWriter = new ResponseWriter(this.client);
+      if (bodyFuture.isHeld()) {
+        // still waiting for the handler, the next request needs its own future
+        bodyFuture = new BodyFuture();
+      } else {
+        bodyFuture.reset();
+      }
+      if (responseState.isReusable()) {
+        responseState.reset();
+      } else {
+        // still responding (ie pipelined or async handler)
+        addOutstandingState(responseState);
+        responseState = new ResponseState(client, false);
+      }
+      // a new handle for each request, so one kept by a handler can't write to the next response
+      responseWriter = new ResponseWriter(responseState);
     }
 
     @Override
@@ -232,25 +913,86 @@ public class HTTPServer extends AbstractService {
     }
   }
   
+  /**
+   * A request subject to the concurrent request limit.  It holds a permit from when the handler is 
+   * called until the response is done or the connection closes, which ever happens first.
+   */
+  private static class AdmittedRequest implements Runnable {
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int COMPLETE = 2;
+    
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final AdmissionController admission;
+    private final HTTPRequestListener hrl;
+    private final HTTPRequest hr;
+    private final ResponseWriter responseWriter;
+    private final BodyFuture bodyFuture;
+    private volatile long startTime;
+    
+    AdmittedRequest(AdmissionController admission, HTTPRequestListener hrl, HTTPRequest hr, 
+                    ResponseWriter responseWriter, BodyFuture bodyFuture) {
+      this.admission = admission;
+      this.hrl = hrl;
+      this.hr = hr;
+      this.responseWriter = responseWriter;
+      this.bodyFuture = bodyFuture;
+    }
+    
+    /**
+     * Calls the handler, this must be invoked holding a permit and from the connection's thread.
+     */
+    void start() {
+      startTime = Clock.accurateForwardProgressingMillis();
+      if (! state.compareAndSet(WAITING, RUNNING)) {
+        admission.releaseAbandoned();  // connection closed while queued
+        return;
+      }
+      hrl.dispatch(hr, responseWriter, bodyFuture);
+      bodyFuture.release();
+      hrl.resumeReads(this);
+    }
+
+    @Override
+    public void run() {
+      hrl.responseDone();
+      if (state.getAndSet(COMPLETE) == RUNNING) {
+        admission.release(Clock.accurateForwardProgressingMillis() - startTime);
+      }
+    }
+  }
+  
   /**
    * This class is used to write responses to HTTPRequests that are made against the HTTPServer.
+   * <p>
+   * Each request gets its own {@link ResponseWriter}, over state which is reused for the following 
+   * requests on the connection.  Once the response is done the writer is finished: writes throw an 
+   * {@link IllegalStateException} and {@link #done()}, {@link #closeOnDone()} and 
+   * {@link #addCloseListener(Runnable)} do nothing, so a handler which keeps a reference can not 
+   * affect the response to a later request.  Like before, a writer must not be used from multiple 
+   * threads at once.
    * 
    * @author lwahlmeier
    */
   public static class ResponseWriter {
-    private final Client client;
-    private final RunnableListenerHelper closeListener = new RunnableListenerHelper(false);
-    private boolean responseSent = false;
-    private boolean done = false;
-    private boolean closeOnDone = false;
+    private final ResponseState state;
+    private final int generation;
     
     protected ResponseWriter(Client client) {
-      this.client = client;
-      this.client.addCloseListener(new ClientCloseListener() {
-        @Override
-        public void onClose(Client client) {
-          closeListener.callListeners();
-        }});
+      this(new ResponseState(client, true));
+    }
+    
+    ResponseWriter(ResponseState state) {
+      this.state = state;
+      this.generation = state.generation;
+    }
+    
+    /**
+     * Checks that the connection's state has not been reset for a later request since this writer 
+     * was created.
+     */
+    private boolean isCurrent() {
+      return state.generation == generation;
     }
     
     /**
@@ -259,7 +1001,7 @@ public class HTTPServer extends AbstractService {
      * @return the size of data pending to be written to the socket.
      */
     public int pendingDataSize() {
-      return client.getWriteBufferSize();
+      return state.client.getWriteBufferSize();
     }
     
     /**
@@ -269,17 +1011,10 @@ public class HTTPServer extends AbstractService {
      * @return a {@link ListenableFuture} that will be complete once this data is written to the socket.
      */
     public ListenableFuture<?> sendHTTPResponse(HTTPResponse hr) {
-      if(!responseSent && ! done) {
-        if(hr.getResponseHeader().getHTTPVersion().equals(HTTPConstants.HTTP_VERSION_1_0)) {
-          closeOnDone = true;
-        }
-        responseSent = true;
-        return client.write(hr.getMergedByteBuffers());
-      } else if (responseSent) {
-        throw new IllegalStateException("HTTPResponse already sent!");
-      } else {
+      if (! isCurrent()) {
         throw new IllegalStateException("Cant write HTTPResponse, Response is already finished!");
       }
+      return state.sendHTTPResponse(hr);
     }
     
     /**
@@ -287,7 +1022,9 @@ public class HTTPServer extends AbstractService {
      * 
      */
     public void closeOnDone() {
-      this.closeOnDone = true;
+      if (isCurrent()) {
+        state.closeOnDone();
+      }
     }
     
     /**
@@ -296,16 +1033,20 @@ public class HTTPServer extends AbstractService {
      * @return true if the client connection is closed, false if its still open.
      */
     public boolean isClosed() {
-      return client.isClosed();
+      return state.client.isClosed();
     }
     
     /**
-     * Allows you to set a runnable to run once the clients connection is closed.
+     * Allows you to set a runnable to run once the clients connection is closed.  Listeners are 
+     * released once the response is done and the next request on the connection starts, so they 
+     * will only be called if the connection closes while this response is being handled.
      * 
      * @param cl the Runnable to run once the connection is closed.
      */
     public void addCloseListener(Runnable cl) {
-      closeListener.addListener(cl);
+      if (isCurrent()) {
+        state.addCloseListener(cl);
+      }
     }
     
     /**
@@ -316,13 +1057,10 @@ public class HTTPServer extends AbstractService {
      * @return a {@link ListenableFuture} that will be complete once this data is written to the socket.
      */
     public ListenableFuture<?> writeBody(ByteBuffer bb) {
-      if(responseSent && !done) {
-        return client.write(bb);
-      } else if(responseSent){
-        throw new IllegalStateException("Can not send body before HTTPResponse!");
-      } else {
+      if (! isCurrent()) {
         throw new IllegalStateException("Cant write body, Response is already finished!");
       }
+      return state.writeBody(bb);
     }
 
     /**
@@ -333,13 +1071,10 @@ public class HTTPServer extends AbstractService {
      * @return a {@link ListenableFuture} that will be complete once this data is written to the socket.
      */
     public ListenableFuture<?> writeBody(MergedByteBuffers mbb) {
-      if(responseSent && !done) {
-        return client.write(mbb);
-      } else if(responseSent){
-        throw new IllegalStateException("Can not send body before HTTPResponse!");
-      } else {
+      if (! isCurrent()) {
         throw new IllegalStateException("Cant write body, Response is already finished!");
       }
+      return state.writeBody(mbb);
     }
     
     // TODO - complete javadocs
@@ -358,21 +1093,68 @@ public class HTTPServer extends AbstractService {
     
     /**
      * This is called once you are done handling this HTTPRequest.  If the connection is not closed
-     * the client can send a new HTTPRequest that will call back on the {@link HTTPServerHandler} again.
+     * the client can send a new HTTPRequest that will call back on the {@link HTTPServerHandler} again.  
+     * Calling this more than once has no effect.
      */
     public void done() {
-      done = true;
-      if(closeOnDone && !client.isClosed()) {
-        client.lastWriteFuture().listener(client::close);
+      if (isCurrent()) {
+        state.done();
       }
     }
     
     /**
-     * forces this clients connection closed.
+     * forces this clients connection closed.  This closes the connection even once the response is 
+     * done, but will not otherwise modify the response to a later request.
      */
     public void closeConnection() {
-      done = true;
-      client.close();
+      if (isCurrent()) {
+        state.closeConnection();
+      } else {
+        state.client.close();
+      }
+    }
+    
+    void forceClose() {
+      state.forceClose();
+    }
+    
+    boolean isSendingConnectionClose() {
+      return state.isSendingConnectionClose();
+    }
+    
+    void discardBody() {
+      state.discardBody();
+    }
+    
+    void setCompletionListener(Runnable completionListener) {
+      state.setCompletionListener(completionListener);
+    }
+    
+    void setResponseCapture(ResponseCapture capture) {
+      state.setResponseCapture(capture);
+    }
+    
+    void setResponseCompressor(ResponseCompressor compressor) {
+      state.setResponseCompressor(compressor);
+    }
+    
+    void startMetrics(HTTPServerMetrics metrics, HTTPRequest request, long requestStartNanos, long headersNanos) {
+      state.startMetrics(metrics, request, requestStartNanos, headersNanos);
+    }
+    
+    void setRoute(String route) {
+      state.setRoute(route);
+    }
+    
+    void bodyRead(int size) {
+      state.bodyRead(size);
+    }
+    
+    ListenableFuture<?> sendEncodedResponse(ByteBuffer encodedResponse, boolean closeOnDone, int statusCode) {
+      if (! isCurrent()) {
+        throw new IllegalStateException("Cant write HTTPResponse, Response is already finished!");
+      }
+      return state.sendEncodedResponse(encodedResponse, closeOnDone, statusCode);
     }
     
     /**
@@ -381,7 +1163,7 @@ public class HTTPServer extends AbstractService {
      * @return See {@link Client#getRemoteSocketAddress()}
      */
     public InetSocketAddress getRemoteSocketAddress() {
-      return (InetSocketAddress)client.getRemoteSocketAddress();
+      return (InetSocketAddress)state.client.getRemoteSocketAddress();
     }
 
     /**
@@ -390,7 +1172,371 @@ public class HTTPServer extends AbstractService {
      * @return See {@link Client#getLocalSocketAddress()}
      */
     public InetSocketAddress getLocalSocketAddress() {
-      return (InetSocketAddress)client.getLocalSocketAddress();
+      return (InetSocketAddress)state.client.getLocalSocketAddress();
+    }
+  }
+  
+  /**
+   * The state of the response currently being written on a connection.  This is reused for each 
+   * request on the connection, while each request gets its own {@link ResponseWriter} handle over 
+   * it, see {@link #reset()}.
+   */
+  static class ResponseState {
+    private final Client client;
+    private final RunnableListenerHelper closeListener = new RunnableListenerHelper(false);
+    private boolean responseSent = false;
+    private boolean done = false;
+    private boolean closeOnDone = false;
+    private ResponseCapture capture = null;
+    private volatile ResponseCompressor compressor = null;
+    private boolean sendConnectionClose = false;
+    private boolean discardBody = false;
+    private final AtomicReference<Runnable> completionListener = new AtomicReference<>();
+    private volatile boolean reusable = false;
+    private volatile int generation = 0;
+    // request metrics, only tracked if metrics is set
+    private HTTPServerMetrics metrics = null;
+    private HTTPRequest request = null;
+    private String route = null;
+    private int statusCode = -1;
+    private long requestStartNanos;
+    private long headersNanos;
+    private long responseStartNanos;
+    private long bodyBytesRead;
+    private long bytesWritten;
+    
+    ResponseState(Client client, boolean listenForClose) {
+      this.client = client;
+      if (listenForClose) {
+        listenForClose();
+      }
+    }
+    
+    /**
+     * Adds a listener to the client so this state's close listeners are called once the 
+     * connection closes.  This is only for a {@link ResponseWriter} created directly over a client, 
+     * the server's connections have a single close listener shared by all of their responses.
+     */
+    private void listenForClose() {
+      if (! client.isClosed()) {
+        client.addCloseListener((ignored) -> connectionClosed());
+      }
+    }
+    
+    void connectionClosed() {
+      if (compressor != null) {
+        // abandoned mid response, return the deflater rather than waiting for gc
+        compressor.release();
+        compressor = null;
+      }
+      closeListener.callListeners();
+      responseComplete();
+    }
+    
+    private void responseComplete() {
+      Runnable listener = completionListener.getAndSet(null);
+      if (listener != null) {
+        if (metrics != null) {
+          reportMetrics();
+        }
+        listener.run();
+      }
+    }
+    
+    private void reportMetrics() {
+      long now = System.nanoTime();
+      try {
+        metrics.requestCompleted(request, route, statusCode, headersNanos - requestStartNanos, 
+                                 statusCode < 0 ? -1 : responseStartNanos - headersNanos, 
+                                 now - requestStartNanos, bodyBytesRead, bytesWritten);
+      } catch (Throwable t) {
+        ExceptionUtils.handleException(t);
+      }
+    }
+    
+    /**
+     * Starts tracking metrics for the request being responded to, reported once the 
+     * response completes.
+     * 
+     * @param metrics the metrics to report to
+     * @param request the request being responded to
+     * @param requestStartNanos {@link System#nanoTime()} the request started being read at
+     * @param headersNanos {@link System#nanoTime()} the request headers were parsed at
+     */
+    void startMetrics(HTTPServerMetrics metrics, HTTPRequest request, long requestStartNanos, long headersNanos) {
+      this.metrics = metrics;
+      this.request = request;
+      this.requestStartNanos = requestStartNanos;
+      this.headersNanos = headersNanos;
+    }
+    
+    /**
+     * Sets the route name reported to the {@link HTTPServerMetrics} for this response.
+     * 
+     * @param route the route the request matched
+     */
+    void setRoute(String route) {
+      this.route = route;
+    }
+    
+    void bodyRead(int size) {
+      bodyBytesRead += size;
+    }
+    
+    private void responseStarted(int statusCode) {
+      this.statusCode = statusCode;
+      if (metrics != null) {
+        responseStartNanos = System.nanoTime();
+      }
+    }
+    
+    /**
+     * Checks if the response has been completed with {@link #done()}, and this state can be 
+     * {@link #reset()} for the next request on the connection.
+     * 
+     * @return {@code true} if the state can be reused
+     */
+    boolean isReusable() {
+      return reusable;
+    }
+    
+    /**
+     * Resets this state so it can be used for the next response on the same connection.  Close 
+     * listeners added for the previous response are removed, and {@link ResponseWriter}'s handed 
+     * out for the previous response become stale.
+     */
+    void reset() {
+      generation++;
+      responseSent = false;
+      done = false;
+      closeOnDone = false;
+      sendConnectionClose = false;
+      discardBody = false;
+      capture = null;
+      compressor = null;
+      metrics = null;
+      request = null;
+      route = null;
+      statusCode = -1;
+      bodyBytesRead = 0;
+      bytesWritten = 0;
+      reusable = false;
+      closeListener.clearListeners();
+    }
+    
+    ListenableFuture<?> sendHTTPResponse(HTTPResponse hr) {
+      if(!responseSent && ! done) {
+        if (compressor != null) {
+          hr = compressor.onResponse(hr);
+          if (! compressor.isActive()) {
+            compressor = null;
+          }
+        }
+        if(hr.getResponseHeader().getHTTPVersion().equals(HTTPConstants.HTTP_VERSION_1_0)) {
+          closeOnDone = true;
+        }
+        responseSent = true;
+        if (capture != null) {
+          capture.onResponse(hr);
+        }
+        if (sendConnectionClose) {
+          // added after the capture, since the close is specific to this connection
+          hr = hr.makeBuilder().setHeader(HTTPConstants.HTTP_KEY_CONNECTION, "close").build();
+        }
+        responseStarted(hr.getResponseCode().getId());
+        MergedByteBuffers mbb = hr.getMergedByteBuffers();
+        bytesWritten += mbb.remaining();
+        return client.write(mbb);
+      } else if (responseSent) {
+        throw new IllegalStateException("HTTPResponse already sent!");
+      } else {
+        throw new IllegalStateException("Cant write HTTPResponse, Response is already finished!");
+      }
+    }
+    
+    void closeOnDone() {
+      this.closeOnDone = true;
+      if (capture != null) {
+        capture.abandon();
+      }
+    }
+    
+    void addCloseListener(Runnable cl) {
+      closeListener.addListener(cl);
+    }
+    
+    ListenableFuture<?> writeBody(ByteBuffer bb) {
+      if(responseSent && !done) {
+        if (discardBody) {
+          return client.lastWriteFuture();
+        }
+        ResponseCompressor compressor = this.compressor;
+        if (compressor != null) {
+          return writeEncoded(compressor.compress(bb));
+        }
+        if (capture != null) {
+          capture.onBody(bb);
+        }
+        bytesWritten += bb.remaining();
+        return client.write(bb);
+      } else if(responseSent){
+        throw new IllegalStateException("Can not send body before HTTPResponse!");
+      } else {
+        throw new IllegalStateException("Cant write body, Response is already finished!");
+      }
+    }
+
+    ListenableFuture<?> writeBody(MergedByteBuffers mbb) {
+      if(responseSent && !done) {
+        if (discardBody) {
+          return client.lastWriteFuture();
+        }
+        ResponseCompressor compressor = this.compressor;
+        if (compressor != null) {
+          return writeEncoded(compressor.compress(mbb));
+        }
+        return writeEncoded(mbb);
+      } else if(responseSent){
+        throw new IllegalStateException("Can not send body before HTTPResponse!");
+      } else {
+        throw new IllegalStateException("Cant write body, Response is already finished!");
+      }
+    }
+    
+    void done() {
+      ResponseCompressor compressor = this.compressor;
+      if (compressor != null && ! done) {
+        writeEncoded(compressor.finish());
+        this.compressor = null;
+      }
+      done = true;
+      if (capture != null) {
+        capture.complete();
+        capture = null;
+      }
+      if(closeOnDone && !client.isClosed()) {
+        client.lastWriteFuture().listener(client::close);
+      }
+      responseComplete();
+      reusable = true;  // set last, after this the state may be reset for the next request
+    }
+    
+    void closeConnection() {
+      done = true;
+      if (capture != null) {
+        capture.abandon();
+      }
+      if (compressor != null) {
+        compressor.release();
+        compressor = null;
+      }
+      client.close();
+    }
+    
+    /**
+     * Closes the connection once this response is done, and sends {@code Connection: close} with 
+     * the response so the client knows not to send more requests.  This must be set before 
+     * {@link #sendHTTPResponse(HTTPResponse)} is called.
+     */
+    void forceClose() {
+      closeOnDone = true;
+      sendConnectionClose = true;
+    }
+    
+    /**
+     * Drops any body written for this response, while still sending the headers as written.  
+     * Used when a {@code HEAD} request is answered by a handler for {@code GET}.
+     */
+    void discardBody() {
+      discardBody = true;
+    }
+    
+    /**
+     * Checks if {@code Connection: close} will be added to the response headers, because this is 
+     * the last request allowed on the connection.
+     * 
+     * @return {@code true} if the connection close header will be sent
+     */
+    boolean isSendingConnectionClose() {
+      return sendConnectionClose;
+    }
+    
+    /**
+     * Sets a listener to be run once the current response is complete, either from the first 
+     * {@link #done()} call or the connection closing, which ever happens first.
+     * 
+     * @param completionListener the listener to run
+     */
+    void setCompletionListener(Runnable completionListener) {
+      this.completionListener.set(completionListener);
+    }
+    
+    /**
+     * Adds a task to be run before the completion listener, once the current response completes.
+     * 
+     * @param task the task to run
+     * @return {@code false} if the response has already completed (or has no completion listener), 
+     *           in which case the task will not be run
+     */
+    boolean addCompletionTask(Runnable task) {
+      return completionListener.updateAndGet((listener) -> listener == null ? null : () -> {
+        task.run();
+        listener.run();
+      }) != null;
+    }
+    
+    /**
+     * Sets a {@link ResponseCapture} which will be given a copy of everything written for this
+     * response.  This must be set before {@link #sendHTTPResponse(HTTPResponse)} is called.
+     * 
+     * @param capture the capture to record the response into.
+     */
+    void setResponseCapture(ResponseCapture capture) {
+      this.capture = capture;
+    }
+    
+    /**
+     * Sets a {@link ResponseCompressor} which will be given the chance to compress this response.
+     * This must be set before {@link #sendHTTPResponse(HTTPResponse)} is called.
+     * 
+     * @param compressor the compressor to use for the response body.
+     */
+    void setResponseCompressor(ResponseCompressor compressor) {
+      this.compressor = compressor;
+    }
+    
+    private ListenableFuture<?> writeEncoded(MergedByteBuffers mbb) {
+      if (discardBody || ! mbb.hasRemaining()) {
+        // compressor is buffering, nothing new to write yet
+        return client.lastWriteFuture();
+      }
+      if (capture != null) {
+        capture.onBody(mbb);
+      }
+      bytesWritten += mbb.remaining();
+      return client.write(mbb);
+    }
+    
+    /**
+     * Writes a complete, already encoded, response (headers and body) to the client.
+     * 
+     * @param encodedResponse the response bytes to write.
+     * @param closeOnDone {@code true} if the connection should be closed once {@link #done()} is called.
+     * @param statusCode the status code of the encoded response.
+     * @return a {@link ListenableFuture} that will be complete once this data is written to the socket.
+     */
+    ListenableFuture<?> sendEncodedResponse(ByteBuffer encodedResponse, boolean closeOnDone, int statusCode) {
+      if(!responseSent && ! done) {
+        responseSent = true;
+        this.closeOnDone |= closeOnDone;
+        responseStarted(statusCode);
+        bytesWritten += encodedResponse.remaining();
+        return client.write(encodedResponse);
+      } else if (responseSent) {
+        throw new IllegalStateException("HTTPResponse already sent!");
+      } else {
+        throw new IllegalStateException("Cant write HTTPResponse, Response is already finished!");
+      }
     }
   }
   
@@ -402,7 +1548,8 @@ public class HTTPServer extends AbstractService {
    *
    */
   public static class BodyFuture {
-    private final ListenerHelper<BodyListener> listener = new ListenerHelper<>(BodyListener.class);
+    private volatile BodyListener listener = null;
+    private volatile List<Runnable> held = null;
     
     /**
      * Sets the BodyListener to be used/called back on.
@@ -410,20 +1557,98 @@ public class HTTPServer extends AbstractService {
      * @param listener the listener to set.
      */
     public void setBodyListener(BodyListener listener) {
-      this.listener.clearListeners();
-      this.listener.addListener(listener);
+      this.listener = listener;
+    }
+    
+    /**
+     * Removes the listener so this future can be used for the next request on the connection.
+     */
+    void reset() {
+      listener = null;
+    }
+    
+    /**
+     * Holds body data and completion, rather than dropping it, until {@link #release()} is called.  
+     * Used while the request is waiting to be given to the handler, during which reads from the 
+     * connection are paused, so only what was already read is held.
+     */
+    void hold() {
+      held = new ArrayList<>();
+    }
+    
+    boolean isHeld() {
+      return held != null;
     }
     
+    /**
+     * Gives any held data to the listener (if one was set by then), and stops holding.
+     */
+    void release() {
+      List<Runnable> held = this.held;
+      if (held != null) {
+        this.held = null;
+        for (Runnable r : held) {
+          r.run();
+        }
+      }
+    }
+    
+    private static ByteBuffer copy(ByteBuffer bb) {
+      ByteBuffer result = ByteBuffer.allocate(bb.remaining());
+      result.put(bb.duplicate()).flip();
+      return result;
+    }
+    
+    // the listener is invoked directly, errors it throws are handled without closing the connection
+    
     protected void addBody(HTTPRequest httpRequest, ByteBuffer bb, ResponseWriter responseWriter) {
-      listener.call().onBody(httpRequest, bb, responseWriter);
+      List<Runnable> held = this.held;
+      if (held != null) {
+        ByteBuffer copy = copy(bb);  // the read buffer may be reused before release
+        held.add(() -> addBody(httpRequest, copy, responseWriter));
+        return;
+      }
+      BodyListener listener = this.listener;
+      if (listener != null) {
+        try {
+          listener.onBody(httpRequest, bb, responseWriter);
+        } catch (Throwable t) {
+          ExceptionUtils.handleException(t);
+        }
+      }
     }
     
     protected void completed(HTTPRequest httpRequest, ResponseWriter responseWriter) {
-      listener.call().bodyComplete(httpRequest, responseWriter);
+      List<Runnable> held = this.held;
+      if (held != null) {
+        held.add(() -> completed(httpRequest, responseWriter));
+        return;
+      }
+      BodyListener listener = this.listener;
+      if (listener != null) {
+        try {
+          listener.bodyComplete(httpRequest, responseWriter);
+        } catch (Throwable t) {
+          ExceptionUtils.handleException(t);
+        }
+      }
     }
     
     protected void onWebsocketFrame(HTTPRequest httpRequest, WSFrame wsf, ByteBuffer bb, ResponseWriter responseWriter) {
-      listener.call().onWebsocketFrame(httpRequest, wsf, bb, responseWriter);
+      List<Runnable> held = this.held;
+      if (held != null) {
+        ByteBuffer copy = copy(bb);
+        held.add(() -> onWebsocketFrame(httpRequest, wsf, copy, responseWriter));
+        return;
+      }
+      BodyListener listener = this.listener;
+      if (listener != null) {
+        try {
+          listener.onWebsocketFrame(httpRequest, wsf, bb, responseWriter);
+        } catch (Throwable t) {
+          ExceptionUtils.handleException(t);
+        }
+      }
     }
   }
   
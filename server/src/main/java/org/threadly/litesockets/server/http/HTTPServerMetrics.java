@@ -0,0 +1,59 @@
+package org.threadly.litesockets.server.http;
+
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+
+/**
+ * Receives measurements from an {@link HTTPServer}, set with {@link HTTPServer#setMetrics(HTTPServerMetrics)}.
+ * All methods default to doing nothing so implementations only need to override what they use.
+ * {@link HTTPServerStats} is the built in implementation.
+ * <p>
+ * These are called inline from the server's connection threads, so implementations must be
+ * thread safe and should not block.
+ */
+public interface HTTPServerMetrics {
+  /**
+   * Called when a connection is accepted and allowed by the {@link HTTPServer.HTTPServerHandler}.
+   */
+  default void connectionOpened() {
+  }
+
+  /**
+   * Called when a connection previously reported by {@link #connectionOpened()} closes.
+   *
+   * @param bytesRead total bytes read from the connection
+   * @param bytesWritten total bytes written to the connection
+   */
+  default void connectionClosed(long bytesRead, long bytesWritten) {
+  }
+
+  /**
+   * Called when a connection is closed because {@link HTTPServer#setMaxConnections(int)} was reached.
+   */
+  default void connectionRejected() {
+  }
+
+  /**
+   * Called when a request is answered with a {@code 503} because the queue for
+   * {@link HTTPServer#setMaxConcurrentRequests(int, int)} was full.  The response is also
+   * reported to {@link #requestCompleted(HTTPRequest, String, int, long, long, long, long, long)}.
+   */
+  default void requestRejected() {
+  }
+
+  /**
+   * Called once the response to a request is done, or the connection closed before it was.
+   *
+   * @param request the request which was responded to
+   * @param route the route the request matched in an {@link HTTPRouter}, or {@code null} if not routed
+   * @param statusCode the response status code, or {@code -1} if no response was sent
+   * @param headerNanos time from the first byte of the request being read until its headers were parsed
+   * @param handlerNanos time from the headers being parsed until the response headers were sent,
+   *          or {@code -1} if no response was sent
+   * @param totalNanos time from the first byte of the request being read until the response was done
+   * @param bodyBytesRead request body bytes read before the response was done
+   * @param bytesWritten response bytes written, including the response headers
+   */
+  default void requestCompleted(HTTPRequest request, String route, int statusCode, long headerNanos,
+                                long handlerNanos, long totalNanos, long bodyBytesRead, long bytesWritten) {
+  }
+}
@@ -0,0 +1,355 @@
+package org.threadly.litesockets.server.http;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.LatencyHistogram;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+
+/**
+ * The built in {@link HTTPServerMetrics}, keeping counters by status code and route, connection
+ * counts and a {@link LatencyHistogram} for each of the request phases.  Everything is recorded
+ * with atomic adds, so it is safe to share a single instance across servers.
+ * <p>
+ * The values can be read directly, exposed as text in the Prometheus exposition format through
+ * {@link #getExpositionHandler()}, or over JMX with {@link #registerMBean(String)}.
+ */
+public class HTTPServerStats implements HTTPServerMetrics, HTTPServerStatsMBean {
+  private static final int MAX_STATUS_CODE = 600;
+  private static final double[] EXPOSED_QUANTILES = new double[] {.5, .9, .99};
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final LongAdder activeConnections = new LongAdder();
+  private final LongAdder totalConnections = new LongAdder();
+  private final LongAdder rejectedConnections = new LongAdder();
+  private final LongAdder connectionBytesRead = new LongAdder();
+  private final LongAdder connectionBytesWritten = new LongAdder();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder rejectedRequests = new LongAdder();
+  private final LongAdder bodyBytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS_CODE);
+  private final ConcurrentHashMap<String, LongAdder> routeCounts = new ConcurrentHashMap<>();
+  private final LatencyHistogram headerLatency = new LatencyHistogram();
+  private final LatencyHistogram handlerLatency = new LatencyHistogram();
+  private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+  @Override
+  public void connectionOpened() {
+    activeConnections.increment();
+    totalConnections.increment();
+  }
+
+  @Override
+  public void connectionClosed(long bytesRead, long bytesWritten) {
+    activeConnections.decrement();
+    connectionBytesRead.add(bytesRead);
+    connectionBytesWritten.add(bytesWritten);
+  }
+
+  @Override
+  public void connectionRejected() {
+    rejectedConnections.increment();
+  }
+
+  @Override
+  public void requestRejected() {
+    rejectedRequests.increment();
+  }
+
+  @Override
+  public void requestCompleted(HTTPRequest request, String route, int statusCode, long headerNanos,
+                               long handlerNanos, long totalNanos, long bodyBytesRead, long bytesWritten) {
+    requests.increment();
+    if (statusCode >= 0 && statusCode < MAX_STATUS_CODE) {
+      statusCounts.incrementAndGet(statusCode);
+    }
+    if (route != null) {
+      LongAdder counter = routeCounts.get(route);
+      if (counter == null) {
+        counter = routeCounts.computeIfAbsent(route, (ignored) -> new LongAdder());
+      }
+      counter.increment();
+    }
+    headerLatency.record(headerNanos);
+    if (handlerNanos >= 0) {
+      handlerLatency.record(handlerNanos);
+    }
+    totalLatency.record(totalNanos);
+    this.bodyBytesRead.add(bodyBytesRead);
+    this.bytesWritten.add(bytesWritten);
+  }
+
+  /**
+   * @return the histogram of nanoseconds from the first byte of a request until its headers were parsed
+   */
+  public LatencyHistogram getHeaderLatency() {
+    return headerLatency;
+  }
+
+  /**
+   * @return the histogram of nanoseconds from request headers being parsed until the response was started
+   */
+  public LatencyHistogram getHandlerLatency() {
+    return handlerLatency;
+  }
+
+  /**
+   * @return the histogram of nanoseconds from the first byte of a request until its response was done
+   */
+  public LatencyHistogram getTotalLatency() {
+    return totalLatency;
+  }
+
+  /**
+   * Returns the number of responses sent with the given status code.
+   *
+   * @param statusCode the status code to check
+   * @return the number of responses with that status
+   */
+  public long getStatusCount(int statusCode) {
+    if (statusCode < 0 || statusCode >= MAX_STATUS_CODE) {
+      return 0;
+    }
+    return statusCounts.get(statusCode);
+  }
+
+  /**
+   * Returns the number of requests which matched the given route.  Routes are named as
+   * {@code METHOD host/path/pattern}, with {@code *} as the host for routes matching any host.
+   *
+   * @param route the route to check
+   * @return the number of requests for the route
+   */
+  public long getRouteCount(String route) {
+    LongAdder counter = routeCounts.get(route);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * @return total bytes read from closed connections, including request headers
+   */
+  public long getConnectionBytesRead() {
+    return connectionBytesRead.sum();
+  }
+
+  /**
+   * @return total bytes written to closed connections
+   */
+  public long getConnectionBytesWritten() {
+    return connectionBytesWritten.sum();
+  }
+
+  @Override
+  public long getActiveConnections() {
+    return activeConnections.sum();
+  }
+
+  @Override
+  public long getTotalConnections() {
+    return totalConnections.sum();
+  }
+
+  @Override
+  public long getRejectedConnections() {
+    return rejectedConnections.sum();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  @Override
+  public long getRejectedRequests() {
+    return rejectedRequests.sum();
+  }
+
+  @Override
+  public long getBodyBytesRead() {
+    return bodyBytesRead.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public double getHeaderMillisP50() {
+    return headerLatency.getPercentile(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getHeaderMillisP99() {
+    return headerLatency.getPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getHandlerMillisP50() {
+    return handlerLatency.getPercentile(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getHandlerMillisP99() {
+    return handlerLatency.getPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getTotalMillisP50() {
+    return totalLatency.getPercentile(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getTotalMillisP99() {
+    return totalLatency.getPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getTotalMillisMax() {
+    return totalLatency.getMax() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public String getStatusCounts() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < MAX_STATUS_CODE; i++) {
+      long count = statusCounts.get(i);
+      if (count > 0) {
+        sb.append(i).append('=').append(count).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String getRouteCounts() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, LongAdder> e : new TreeMap<>(routeCounts).entrySet()) {
+      sb.append(e.getKey()).append('=').append(e.getValue().sum()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Registers these stats with the platform MBean server.
+   *
+   * @param objectName the name to register as, for example {@code org.threadly:type=HTTPServer,name=api}
+   * @return the {@link ObjectName} registered, to be given to {@link #unregisterMBean(ObjectName)}
+   * @throws JMException if the name is invalid or already registered
+   */
+  public ObjectName registerMBean(String objectName) throws JMException {
+    ObjectName name = new ObjectName(objectName);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    return name;
+  }
+
+  /**
+   * Removes a registration made by {@link #registerMBean(String)}.
+   *
+   * @param name the name returned when registering
+   * @throws JMException if the name is not registered
+   */
+  public void unregisterMBean(ObjectName name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+  }
+
+  /**
+   * Renders the stats in the Prometheus text exposition format.  Latencies are exposed in seconds
+   * as summaries with the 50th, 90th and 99th percentiles.
+   *
+   * @return the stats as text
+   */
+  public String toExpositionText() {
+    StringBuilder sb = new StringBuilder(2048);
+    appendMetric(sb, "http_server_connections_active", "gauge", getActiveConnections());
+    appendMetric(sb, "http_server_connections_total", "counter", getTotalConnections());
+    appendMetric(sb, "http_server_connections_rejected_total", "counter", getRejectedConnections());
+    appendMetric(sb, "http_server_connection_read_bytes_total", "counter", getConnectionBytesRead());
+    appendMetric(sb, "http_server_connection_written_bytes_total", "counter", getConnectionBytesWritten());
+    appendMetric(sb, "http_server_requests_rejected_total", "counter", getRejectedRequests());
+    appendMetric(sb, "http_server_request_body_read_bytes_total", "counter", getBodyBytesRead());
+    appendMetric(sb, "http_server_response_written_bytes_total", "counter", getBytesWritten());
+
+    sb.append("# TYPE http_server_responses_total counter\n");
+    for (int i = 0; i < MAX_STATUS_CODE; i++) {
+      long count = statusCounts.get(i);
+      if (count > 0) {
+        sb.append("http_server_responses_total{code=\"").append(i).append("\"} ").append(count).append('\n');
+      }
+    }
+    sb.append("# TYPE http_server_route_requests_total counter\n");
+    for (Map.Entry<String, LongAdder> e : new TreeMap<>(routeCounts).entrySet()) {
+      sb.append("http_server_route_requests_total{route=\"");
+      appendEscaped(sb, e.getKey());
+      sb.append("\"} ").append(e.getValue().sum()).append('\n');
+    }
+
+    appendSummary(sb, "http_server_request_header_seconds", headerLatency);
+    appendSummary(sb, "http_server_handler_seconds", handlerLatency);
+    appendSummary(sb, "http_server_request_seconds", totalLatency);
+    return sb.toString();
+  }
+
+  private static void appendMetric(StringBuilder sb, String name, String type, long value) {
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void appendSummary(StringBuilder sb, String name, LatencyHistogram histogram) {
+    sb.append("# TYPE ").append(name).append(" summary\n");
+    for (double quantile : EXPOSED_QUANTILES) {
+      sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+        .append(histogram.getPercentile(quantile * 100) / NANOS_PER_SECOND).append('\n');
+    }
+    sb.append(name).append("_sum ").append(histogram.getSum() / NANOS_PER_SECOND).append('\n');
+    sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+  }
+
+  private static void appendEscaped(StringBuilder sb, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        sb.append('\\').append(c);
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  /**
+   * Returns a handler which responds with {@link #toExpositionText()}, to be served directly or
+   * added as a route to an {@link HTTPRouter}.
+   *
+   * @return a handler serving these stats
+   */
+  public HTTPServerHandler getExpositionHandler() {
+    return (httpRequest, responseWriter, bodyListener) -> {
+      byte[] body = toExpositionText().getBytes(StandardCharsets.UTF_8);
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+                                          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE,
+                                                     "text/plain; version=0.0.4; charset=utf-8")
+                                          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH,
+                                                     Integer.toString(body.length))
+                                          .build());
+      responseWriter.writeBody(ByteBuffer.wrap(body));
+      responseWriter.done();
+    };
+  }
+}
@@ -0,0 +1,45 @@
+package org.threadly.litesockets.server.http;
+
+/**
+ * JMX interface for {@link HTTPServerStats}, registered with {@link HTTPServerStats#registerMBean(String)}.
+ * Latencies are reported in milliseconds.
+ */
+public interface HTTPServerStatsMBean {
+  long getActiveConnections();
+
+  long getTotalConnections();
+
+  long getRejectedConnections();
+
+  long getRequestCount();
+
+  long getRejectedRequests();
+
+  long getBodyBytesRead();
+
+  long getBytesWritten();
+
+  double getHeaderMillisP50();
+
+  double getHeaderMillisP99();
+
+  double getHandlerMillisP50();
+
+  double getHandlerMillisP99();
+
+  double getTotalMillisP50();
+
+  double getTotalMillisP99();
+
+  double getTotalMillisMax();
+
+  /**
+   * @return the count of responses by status code, one {@code code=count} entry per line
+   */
+  String getStatusCounts();
+
+  /**
+   * @return the count of requests by route, one {@code route=count} entry per line
+   */
+  String getRouteCounts();
+}
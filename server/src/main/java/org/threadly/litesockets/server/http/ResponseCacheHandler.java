@@ -0,0 +1,406 @@
+package org.threadly.litesockets.server.http;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.threadly.litesockets.buffers.MergedByteBuffers;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponse;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPHeaders;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.Clock;
+
+/**
+ * An {@link HTTPServerHandler} which caches the fully encoded responses of another handler in
+ * memory.  Cache hits are written to the client as a duplicate of a single buffer, without calling
+ * into the wrapped handler.
+ * <p>
+ * Only {@code GET} and {@code HEAD} requests without a body, {@code Authorization} or conditional
+ * headers are cached.  Entries are keyed on the request line (method, path, query and version)
+ * and {@code Host} header, plus the values of any request headers the response listed in its {@code Vary} header.  The
+ * response {@code Cache-Control} header is respected: {@code no-store}, {@code no-cache} and
+ * {@code private} responses are not cached, and {@code s-maxage} / {@code max-age} override the
+ * default time to live.  Responses with a {@code Set-Cookie} header are never cached.
+ * <p>
+ * The cache is an LRU bounded by the total size of the encoded responses it holds.
+ */
+public class ResponseCacheHandler implements HTTPServerHandler {
+  public static final long DEFAULT_MAX_CACHE_SIZE = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+  public static final long DEFAULT_TTL_MILLIS = 1000;
+  protected static final int MAX_VARY_ENTRIES = 4096;
+  private static final EnumSet<HTTPResponseCode> CACHEABLE_RESPONSE_CODES =
+      EnumSet.of(HTTPResponseCode.OK, HTTPResponseCode.NonAuthoritativeInformation,
+                 HTTPResponseCode.NoContent, HTTPResponseCode.MultipleChoices,
+                 HTTPResponseCode.MovedPermanently, HTTPResponseCode.NotFound, HTTPResponseCode.Gone);
+  private static final String[] NO_VARY = new String[0];
+
+  private final HTTPServerHandler handler;
+  private final long maxCacheSize;
+  private final int maxEntrySize;
+  private final long defaultTtlMillis;
+  private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, .75f, true);
+  private final LinkedHashMap<String, String[]> varyHeaders = new LinkedHashMap<String, String[]>(64, .75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+      return size() > MAX_VARY_ENTRIES;
+    }
+  };
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private long cachedBytes = 0;
+
+  /**
+   * Constructs a new {@link ResponseCacheHandler} with the default size limits and time to live.
+   *
+   * @param handler the {@link HTTPServerHandler} whose responses should be cached.
+   */
+  public ResponseCacheHandler(HTTPServerHandler handler) {
+    this(handler, DEFAULT_MAX_CACHE_SIZE, DEFAULT_MAX_ENTRY_SIZE, DEFAULT_TTL_MILLIS);
+  }
+
+  /**
+   * Constructs a new {@link ResponseCacheHandler}.
+   *
+   * @param handler the {@link HTTPServerHandler} whose responses should be cached.
+   * @param maxCacheSize the maximum total bytes of all cached responses.
+   * @param maxEntrySize the largest encoded response (headers and body) which will be cached.
+   * @param defaultTtlMillis how long a response is cached for when it does not specify a {@code max-age}.
+   */
+  public ResponseCacheHandler(HTTPServerHandler handler, long maxCacheSize,
+                              int maxEntrySize, long defaultTtlMillis) {
+    ArgumentVerifier.assertNotNull(handler, "handler");
+    ArgumentVerifier.assertNotNegative(maxCacheSize, "maxCacheSize");
+    ArgumentVerifier.assertNotNegative(maxEntrySize, "maxEntrySize");
+    ArgumentVerifier.assertNotNegative(defaultTtlMillis, "defaultTtlMillis");
+    this.handler = handler;
+    this.maxCacheSize = maxCacheSize;
+    this.maxEntrySize = maxEntrySize;
+    this.defaultTtlMillis = defaultTtlMillis;
+  }
+
+  /**
+   * Returns the number of requests which were served from the cache.
+   *
+   * @return the cache hit count.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of cacheable requests which had to be passed to the wrapped handler.
+   *
+   * @return the cache miss count.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the total size of the encoded responses currently held in the cache.
+   *
+   * @return the number of bytes cached.
+   */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    varyHeaders.clear();
+    cachedBytes = 0;
+  }
+
+  @Override
+  public void handle(HTTPRequest httpRequest, ResponseWriter responseWriter, BodyFuture bodyListener) {
+    HTTPHeaders requestHeaders = httpRequest.getHTTPHeaders();
+    if (! isCacheableRequest(httpRequest)) {
+      handler.handle(httpRequest, responseWriter, bodyListener);
+      return;
+    }
+    String host = requestHeaders.getHeader(HTTPConstants.HTTP_KEY_HOST);
+    String baseKey = httpRequest.getHTTPRequestHeader().toString() + '\n' + 
+                       (host == null ? "" : host.trim().toLowerCase(Locale.US));
+    String requestCacheControl = requestHeaders.getHeader(HTTPConstants.HTTP_KEY_CACHE_CONTROL);
+    // cached bytes can't carry the Connection: close sent with the last request on a connection
+    if (! responseWriter.isSendingConnectionClose() && 
+        (requestCacheControl == null || ! requestCacheControl.toLowerCase(Locale.US).contains("no-cache"))) {
+      CachedResponse cr = lookup(baseKey, requestHeaders);
+      if (cr != null) {
+        hits.increment();
+        responseWriter.sendEncodedResponse(cr.response.duplicate(), cr.closeOnDone, cr.statusCode);
+        responseWriter.done();
+        return;
+      }
+    }
+    misses.increment();
+    boolean head = HTTPRequestMethod.HEAD.toString().equals(httpRequest.getHTTPRequestHeader().getRequestMethod());
+    responseWriter.setResponseCapture(new ResponseCapture(baseKey, requestHeaders, head));
+    handler.handle(httpRequest, responseWriter, bodyListener);
+  }
+
+  @Override
+  public void onError(HTTPRequest httpRequest, ResponseWriter responseWriter,
+                      BodyFuture bodyListener, Throwable t) {
+    handler.onError(httpRequest, responseWriter, bodyListener, t);
+  }
+
+  @Override
+  public boolean onConnection(InetSocketAddress isa) {
+    return handler.onConnection(isa);
+  }
+
+  @Override
+  public void onDisconnect(InetSocketAddress isa, long bytesRead, long bytesWritten) {
+    handler.onDisconnect(isa, bytesRead, bytesWritten);
+  }
+
+  private static boolean isCacheableRequest(HTTPRequest httpRequest) {
+    String method = httpRequest.getHTTPRequestHeader().getRequestMethod();
+    if (! HTTPRequestMethod.GET.toString().equals(method) &&
+        ! HTTPRequestMethod.HEAD.toString().equals(method)) {
+      return false;
+    }
+    HTTPHeaders headers = httpRequest.getHTTPHeaders();
+    if (headers.getContentLength() > 0 || headers.isChunked() ||
+        headers.getHeader(HTTPConstants.HTTP_KEY_AUTHORIZATION) != null ||
+        headers.getHeader(HTTPConstants.HTTP_KEY_IF_NONE_MATCH) != null ||
+        headers.getHeader(HTTPConstants.HTTP_KEY_IF_MODIFIED_SINCE) != null) {
+      return false;
+    }
+    String cacheControl = headers.getHeader(HTTPConstants.HTTP_KEY_CACHE_CONTROL);
+    return cacheControl == null || ! cacheControl.toLowerCase(Locale.US).contains("no-store");
+  }
+
+  private static String makeKey(String baseKey, String[] vary, HTTPHeaders requestHeaders) {
+    if (vary.length == 0) {
+      return baseKey;
+    }
+    StringBuilder sb = new StringBuilder(baseKey);
+    for (String header : vary) {
+      String value = requestHeaders.getHeader(header);
+      sb.append('\n');
+      if (value != null) {
+        sb.append(value);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Finds the time to live for a response based off its {@code Cache-Control} header.
+   *
+   * @param cacheControl the response {@code Cache-Control} header value, may be {@code null}.
+   * @return the time in milliseconds to cache the response for, {@code 0} if it should not be cached.
+   */
+  private long responseTtl(String cacheControl) {
+    if (cacheControl == null) {
+      return defaultTtlMillis;
+    }
+    long maxAge = -1;
+    long sMaxAge = -1;
+    for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+      directive = directive.trim();
+      if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+        return 0;
+      }
+      try {
+        if (directive.startsWith("s-maxage=")) {
+          sMaxAge = Long.parseLong(directive.substring(9).trim());
+        } else if (directive.startsWith("max-age=")) {
+          maxAge = Long.parseLong(directive.substring(8).trim());
+        }
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    if (sMaxAge >= 0) {
+      return sMaxAge * 1000;
+    } else if (maxAge >= 0) {
+      return maxAge * 1000;
+    }
+    return defaultTtlMillis;
+  }
+
+  private synchronized CachedResponse lookup(String baseKey, HTTPHeaders requestHeaders) {
+    String[] vary = varyHeaders.get(baseKey);
+    String key = vary == null ? baseKey : makeKey(baseKey, vary, requestHeaders);
+    CachedResponse cr = entries.get(key);
+    if (cr != null && cr.expiresAt <= Clock.accurateForwardProgressingMillis()) {
+      entries.remove(key);
+      cachedBytes -= cr.response.remaining();
+      return null;
+    }
+    return cr;
+  }
+
+  private synchronized void store(String baseKey, String[] vary, HTTPHeaders requestHeaders,
+                                  CachedResponse cr) {
+    if (vary.length == 0) {
+      varyHeaders.remove(baseKey);
+    } else {
+      varyHeaders.put(baseKey, vary);
+    }
+    CachedResponse previous = entries.put(makeKey(baseKey, vary, requestHeaders), cr);
+    if (previous != null) {
+      cachedBytes -= previous.response.remaining();
+    }
+    cachedBytes += cr.response.remaining();
+    Iterator<CachedResponse> it = entries.values().iterator();
+    while (cachedBytes > maxCacheSize && it.hasNext()) {
+      cachedBytes -= it.next().response.remaining();
+      it.remove();
+    }
+  }
+
+  /**
+   * Records a copy of everything written to a {@link ResponseWriter} so that it can be stored in
+   * the cache once the response is done.  If the response turns out to not be cacheable, or is
+   * too large, the recorded data is dropped and nothing further is copied.
+   */
+  class ResponseCapture {
+    private final String baseKey;
+    private final HTTPHeaders requestHeaders;
+    private final boolean head;
+    private byte[] data = null;
+    private int size = 0;
+    private int headerSize = 0;
+    private long contentLength = -1;
+    private long ttl = 0;
+    private String[] vary = NO_VARY;
+    private boolean closeOnDone = false;
+    private int statusCode = -1;
+    private boolean abandoned = false;
+
+    private ResponseCapture(String baseKey, HTTPHeaders requestHeaders, boolean head) {
+      this.baseKey = baseKey;
+      this.requestHeaders = requestHeaders;
+      this.head = head;
+    }
+
+    void onResponse(HTTPResponse hr) {
+      HTTPHeaders headers = hr.getHeaders();
+      ttl = responseTtl(headers.getHeader(HTTPConstants.HTTP_KEY_CACHE_CONTROL));
+      if (ttl <= 0 || ! CACHEABLE_RESPONSE_CODES.contains(hr.getResponseCode()) ||
+          headers.getHeader(HTTPConstants.HTTP_KEY_SET_COOKIE) != null) {
+        abandon();
+        return;
+      }
+      if (! headers.isChunked()) {
+        contentLength = headers.getContentLength();
+        if (contentLength < 0) {
+          // body is delimited by the connection closing
+          abandon();
+          return;
+        }
+      }
+      String varyValue = headers.getHeader(HTTPConstants.HTTP_KEY_VARY);
+      if (varyValue != null) {
+        if (varyValue.contains("*")) {
+          abandon();
+          return;
+        }
+        vary = varyValue.split(",");
+        for (int i = 0; i < vary.length; i++) {
+          vary[i] = vary[i].trim();
+        }
+      }
+      closeOnDone = hr.getResponseHeader().getHTTPVersion().equals(HTTPConstants.HTTP_VERSION_1_0);
+      statusCode = hr.getResponseCode().getId();
+      append(hr.getMergedByteBuffers());
+      headerSize = size;
+    }
+
+    void onBody(ByteBuffer bb) {
+      if (! abandoned && ensureCapacity(bb.remaining())) {
+        bb.duplicate().get(data, size, bb.remaining());
+        size += bb.remaining();
+      }
+    }
+
+    void onBody(MergedByteBuffers mbb) {
+      if (! abandoned) {
+        append(mbb.duplicate());
+      }
+    }
+
+    void complete() {
+      if (abandoned || data == null) {
+        return;
+      }
+      if (contentLength >= 0 && ! head && size - headerSize != contentLength) {
+        // handler finished without writing the full body
+        abandon();
+        return;
+      }
+      ByteBuffer response = ByteBuffer.wrap(size == data.length ? data : Arrays.copyOf(data, size));
+      data = null;
+      store(baseKey, vary, requestHeaders,
+            new CachedResponse(response.asReadOnlyBuffer(), Clock.accurateForwardProgressingMillis() + ttl,
+                               closeOnDone, statusCode));
+    }
+
+    void abandon() {
+      abandoned = true;
+      data = null;
+    }
+
+    private void append(MergedByteBuffers mbb) {
+      int length = mbb.remaining();
+      if (ensureCapacity(length)) {
+        mbb.get(data, size, length);
+        size += length;
+      }
+    }
+
+    private boolean ensureCapacity(int length) {
+      if (size + length > maxEntrySize) {
+        abandon();
+        return false;
+      }
+      if (data == null) {
+        data = new byte[(int)Math.min(maxEntrySize, Math.max(length, contentLength > 0 ?
+                                                                       length + contentLength : 1024))];
+      } else if (size + length > data.length) {
+        data = Arrays.copyOf(data, (int)Math.min(maxEntrySize, Math.max(size + length, data.length * 2L)));
+      }
+      return true;
+    }
+  }
+
+  /**
+   * An encoded response stored in the cache.
+   */
+  private static class CachedResponse {
+    private final ByteBuffer response;
+    private final long expiresAt;
+    private final boolean closeOnDone;
+    private final int statusCode;
+
+    private CachedResponse(ByteBuffer response, long expiresAt, boolean closeOnDone, int statusCode) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+      this.closeOnDone = closeOnDone;
+      this.statusCode = statusCode;
+    }
+  }
+}
@@ -0,0 +1,511 @@
+package org.threadly.litesockets.server.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponse;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPHeaders;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.http.shared.HTTPResponseCode;
+import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
+import org.threadly.litesockets.server.http.HTTPRouter.RouteHandler;
+import org.threadly.litesockets.server.http.HTTPRouter.RouteParameters;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+import org.threadly.util.ArgumentVerifier;
+import org.threadly.util.ExceptionUtils;
+
+/**
+ * A handler which serves files from a directory on the local file system.  File contents are
+ * never copied onto the heap, instead read only memory mapped regions of the file are handed to
+ * the {@link ResponseWriter}.  Small files stay mapped in a bounded LRU cache so repeated requests
+ * only need a {@code stat} of the file.  Large files are mapped and written one region at a time,
+ * waiting for the previous region to be written before mapping the next.
+ * <p>
+ * Responses include {@code ETag} and {@code Last-Modified} headers, and conditional requests
+ * ({@code If-None-Match} / {@code If-Modified-Since}) are answered with a {@code 304}.  If the
+ * client accepts gzip and a {@code .gz} file exists next to the requested file (and is not older
+ * than it), the pre-compressed variant is sent instead.
+ * <p>
+ * This can be set directly on the {@link HTTPServer}, or added to an {@link HTTPRouter} with a
+ * wildcard route (for example {@code /static/*}), in which case the wildcard portion of the path
+ * is used to locate the file.
+ */
+public class StaticFileHandler implements HTTPServerHandler, RouteHandler {
+  public static final String DEFAULT_INDEX_FILE = "index.html";
+  public static final int DEFAULT_MAX_CACHED_FILE_SIZE = 64 * 1024;
+  public static final long DEFAULT_MAX_CACHE_SIZE = 32L * 1024 * 1024;
+  public static final int MAPPED_REGION_SIZE = 1024 * 1024;
+  public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+  private static final String GZIP_ENCODING = "gzip";
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String ALLOWED_METHODS = HTTPRequestMethod.GET + ", " + HTTPRequestMethod.HEAD;
+  private static final DateTimeFormatter HTTP_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+  private static final Map<String, String> CONTENT_TYPES;
+
+  static {
+    Map<String, String> types = new HashMap<>();
+    types.put("html", "text/html");
+    types.put("htm", "text/html");
+    types.put("css", "text/css");
+    types.put("js", "application/javascript");
+    types.put("json", "application/json");
+    types.put("txt", "text/plain");
+    types.put("xml", "application/xml");
+    types.put("svg", "image/svg+xml");
+    types.put("png", "image/png");
+    types.put("jpg", "image/jpeg");
+    types.put("jpeg", "image/jpeg");
+    types.put("gif", "image/gif");
+    types.put("ico", "image/x-icon");
+    types.put("webp", "image/webp");
+    types.put("woff", "font/woff");
+    types.put("woff2", "font/woff2");
+    types.put("pdf", "application/pdf");
+    types.put("wasm", "application/wasm");
+    types.put("mp4", "video/mp4");
+    types.put("zip", "application/zip");
+    CONTENT_TYPES = Collections.unmodifiableMap(types);
+  }
+
+  private final Path root;
+  private final Path realRoot;
+  private final String urlPrefix;
+  private final String indexFile;
+  private final int maxCachedFileSize;
+  private final MappedFileCache cache;
+
+  /**
+   * Constructs a new {@link StaticFileHandler} serving the full request path from the provided
+   * directory, using the default cache sizes.
+   *
+   * @param root the directory files will be served from.
+   */
+  public StaticFileHandler(Path root) {
+    this(root, null, DEFAULT_INDEX_FILE, DEFAULT_MAX_CACHED_FILE_SIZE, DEFAULT_MAX_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link StaticFileHandler}.
+   *
+   * @param root the directory files will be served from.
+   * @param urlPrefix a prefix which is removed from the request path before looking up the file,
+   *          requests not starting with this prefix will get a 404.  Can be {@code null}.  This is
+   *          not used when the handler is invoked as a {@link RouteHandler}.
+   * @param indexFile the file to serve when a directory is requested, or {@code null} to 404 on directories.
+   * @param maxCachedFileSize files at or below this size will be kept mapped in the cache.
+   * @param maxCacheSize the total size of all the files which can be held in the cache, {@code 0} to disable caching.
+   */
+  public StaticFileHandler(Path root, String urlPrefix, String indexFile,
+                           int maxCachedFileSize, long maxCacheSize) {
+    ArgumentVerifier.assertNotNull(root, "root");
+    ArgumentVerifier.assertNotNegative(maxCachedFileSize, "maxCachedFileSize");
+    ArgumentVerifier.assertNotNegative(maxCacheSize, "maxCacheSize");
+    this.root = root.toAbsolutePath().normalize();
+    Path realRoot;
+    try {
+      realRoot = this.root.toRealPath();
+    } catch (IOException e) {
+      realRoot = this.root;  // does not exist (yet), nothing will be found until it does
+    }
+    this.realRoot = realRoot;
+    this.urlPrefix = urlPrefix;
+    this.indexFile = indexFile;
+    this.maxCachedFileSize = maxCacheSize == 0 ? -1 : maxCachedFileSize;
+    this.cache = new MappedFileCache(maxCacheSize);
+  }
+
+  /**
+   * Returns the number of bytes currently held (mapped) by the small file cache.
+   *
+   * @return the size of all the cached files.
+   */
+  public long getCachedBytes() {
+    return cache.getCachedBytes();
+  }
+
+  @Override
+  public void handle(HTTPRequest httpRequest, ResponseWriter responseWriter, BodyFuture bodyListener) {
+    String path = httpRequest.getHTTPRequestHeader().getRequestPath();
+    if (urlPrefix != null) {
+      if (! path.startsWith(urlPrefix)) {
+        sendAndFinish(responseWriter, HTTPServer.NOT_FOUND_RESPONSE);
+        return;
+      }
+      path = path.substring(urlPrefix.length());
+    }
+    serve(httpRequest, path, responseWriter);
+  }
+
+  @Override
+  public void handle(HTTPRequest httpRequest, RouteParameters params,
+                     ResponseWriter responseWriter, BodyFuture bodyListener) {
+    String path = params.getWildcard();
+    serve(httpRequest, path == null ? "" : path, responseWriter);
+  }
+
+  /**
+   * Serves the file for the provided path relative to the root directory.
+   *
+   * @param httpRequest the {@link HTTPRequest} the client sent.
+   * @param relativePath the still percent encoded path relative to the root directory.
+   * @param responseWriter the {@link ResponseWriter} to send the response on.
+   */
+  protected void serve(HTTPRequest httpRequest, String relativePath, ResponseWriter responseWriter) {
+    String method = httpRequest.getHTTPRequestHeader().getRequestMethod();
+    boolean head = HTTPRequestMethod.HEAD.toString().equals(method);
+    if (! head && ! HTTPRequestMethod.GET.toString().equals(method)) {
+      sendAndFinish(responseWriter, new HTTPResponseBuilder()
+                                      .setResponseCode(HTTPResponseCode.MethodNotAllowed)
+                                      .setHeader(HTTPConstants.HTTP_KEY_ALLOW, ALLOWED_METHODS)
+                                      .build());
+      return;
+    }
+
+    Path file = resolve(relativePath);
+    BasicFileAttributes attributes = file == null ? null : readAttributes(file);
+    if (attributes != null && attributes.isDirectory() && indexFile != null) {
+      file = file.resolve(indexFile);
+      attributes = readAttributes(file);
+    }
+    if (attributes == null || ! attributes.isRegularFile() || ! isInRoot(file)) {
+      sendAndFinish(responseWriter, HTTPServer.NOT_FOUND_RESPONSE);
+      return;
+    }
+
+    HTTPHeaders requestHeaders = httpRequest.getHTTPHeaders();
+    String contentType = contentType(file);
+    Path gzFile = file.resolveSibling(file.getFileName() + GZIP_EXTENSION);
+    BasicFileAttributes gzAttributes = readAttributes(gzFile);
+    boolean hasGzVariant = gzAttributes != null && gzAttributes.isRegularFile() &&
+        gzAttributes.lastModifiedTime().compareTo(attributes.lastModifiedTime()) >= 0 &&
+        isInRoot(gzFile);
+    boolean sendGz = hasGzVariant &&
+        HTTPUtils.acceptsEncoding(requestHeaders.getHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING), GZIP_ENCODING);
+    if (sendGz) {
+      file = gzFile;
+      attributes = gzAttributes;
+    }
+
+    long size = attributes.size();
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    String etag = makeETag(size, lastModified, sendGz);
+    HTTPResponseBuilder hrb = new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_ETAG, etag)
+        .setHeader(HTTPConstants.HTTP_KEY_LAST_MODIFIED, HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(lastModified)));
+    if (hasGzVariant) {
+      hrb.setHeader(HTTPConstants.HTTP_KEY_VARY, HTTPConstants.HTTP_KEY_ACCEPT_ENCODING);
+    }
+    if (notModified(requestHeaders, etag, lastModified)) {
+      sendAndFinish(responseWriter, hrb.setResponseCode(HTTPResponseCode.NotModified).build());
+      return;
+    }
+
+    hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, contentType)
+       .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Long.toString(size));
+    if (sendGz) {
+      hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_ENCODING, GZIP_ENCODING);
+    }
+    if (head || size == 0) {
+      sendAndFinish(responseWriter, hrb.build());
+      return;
+    }
+
+    if (size <= maxCachedFileSize) {
+      ByteBuffer bb;
+      try {
+        bb = cache.get(file, size, lastModified);
+      } catch (IOException e) {
+        sendError(responseWriter, e);
+        return;
+      }
+      responseWriter.sendHTTPResponse(hrb.build());
+      responseWriter.writeBody(bb);
+      responseWriter.done();
+    } else {
+      FileChannel channel;
+      try {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+      } catch (IOException e) {
+        sendError(responseWriter, e);
+        return;
+      }
+      responseWriter.sendHTTPResponse(hrb.build());
+      new RegionWriter(responseWriter, channel, size).run();
+    }
+  }
+
+  /**
+   * Decodes and resolves the path against the root directory.  Any path which would end up
+   * outside of the root directory will result in {@code null}.  Symbolic links are not followed 
+   * here, see {@link #isInRoot(Path)}.
+   *
+   * @param relativePath the percent encoded path.
+   * @return the resolved {@link Path} or {@code null} if the path is not valid.
+   */
+  protected Path resolve(String relativePath) {
+    String decoded = percentDecode(relativePath);
+    if (decoded == null || decoded.indexOf('\0') >= 0) {
+      return null;
+    }
+    int start = 0;
+    while (start < decoded.length() && (decoded.charAt(start) == '/' || decoded.charAt(start) == '\\')) {
+      start++;
+    }
+    try {
+      Path file = root.resolve(decoded.substring(start)).normalize();
+      if (file.startsWith(root)) {
+        return file;
+      }
+    } catch (RuntimeException e) {
+      // invalid path for this file system
+    }
+    return null;
+  }
+
+  private static String percentDecode(String path) {
+    if (path.indexOf('%') < 0) {
+      return path;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(path.length());
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '%') {
+        if (i + 2 >= path.length()) {
+          return null;
+        }
+        int high = Character.digit(path.charAt(i + 1), HTTPConstants.HEX_SIZE);
+        int low = Character.digit(path.charAt(i + 2), HTTPConstants.HEX_SIZE);
+        if (high < 0 || low < 0) {
+          return null;
+        }
+        out.write((high << 4) | low);
+        i += 2;
+      } else if (c > Byte.MAX_VALUE) {
+        byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+        out.write(encoded, 0, encoded.length);
+      } else {
+        out.write(c);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks that the file, once any symbolic links are followed, is still within the root 
+   * directory.  Otherwise a link inside the root could be used to serve any file on the system.
+   *
+   * @param file the existing file to check.
+   * @return {@code true} if the real path of the file is within the real path of the root directory.
+   */
+  protected boolean isInRoot(Path file) {
+    try {
+      return file.toRealPath().startsWith(realRoot);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(Path file) {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String contentType(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    if (dot < 0) {
+      return DEFAULT_CONTENT_TYPE;
+    }
+    String type = CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.US));
+    return type == null ? DEFAULT_CONTENT_TYPE : type;
+  }
+
+  private static String makeETag(long size, long lastModified, boolean gzip) {
+    return "W/\"" + Long.toHexString(size) + '-' + Long.toHexString(lastModified) +
+             (gzip ? "-gz\"" : "\"");
+  }
+
+  private static boolean notModified(HTTPHeaders requestHeaders, String etag, long lastModified) {
+    String ifNoneMatch = requestHeaders.getHeader(HTTPConstants.HTTP_KEY_IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      // If-None-Match takes precedence, If-Modified-Since must be ignored when it is present
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.equals("*") || tag.equals(etag) || ("W/" + tag).equals(etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    String ifModifiedSince = requestHeaders.getHeader(HTTPConstants.HTTP_KEY_IF_MODIFIED_SINCE);
+    if (ifModifiedSince != null) {
+      try {
+        long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                                  .toInstant().toEpochMilli();
+        // http dates only have second precision
+        return lastModified / 1000 <= since / 1000;
+      } catch (DateTimeParseException e) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static void sendAndFinish(ResponseWriter responseWriter, HTTPResponse response) {
+    responseWriter.sendHTTPResponse(response);
+    responseWriter.done();
+  }
+
+  private static void sendError(ResponseWriter responseWriter, IOException e) {
+    ExceptionUtils.handleException(e);
+    responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+                                      .setResponseCode(HTTPResponseCode.InternalServerError)
+                                      .build());
+    responseWriter.closeOnDone();
+    responseWriter.done();
+  }
+
+  /**
+   * Writes a large file to the client by mapping one region at a time.  The next region is only
+   * mapped once the previous one has been written to the socket, so no more than a couple of
+   * regions are ever pending for a single response.
+   */
+  private static class RegionWriter implements Runnable {
+    private final ResponseWriter responseWriter;
+    private final FileChannel channel;
+    private final long size;
+    private long position = 0;
+
+    private RegionWriter(ResponseWriter responseWriter, FileChannel channel, long size) {
+      this.responseWriter = responseWriter;
+      this.channel = channel;
+      this.size = size;
+      responseWriter.addCloseListener(this::closeChannel);
+    }
+
+    @Override
+    public void run() {
+      // loop rather than recurse in case the write futures are already complete
+      while (! responseWriter.isClosed()) {
+        long length = Math.min(MAPPED_REGION_SIZE, size - position);
+        ListenableFuture<?> lf;
+        try {
+          MappedByteBuffer region = channel.map(MapMode.READ_ONLY, position, length);
+          position += length;
+          lf = responseWriter.writeBody(region);
+        } catch (IOException e) {
+          ExceptionUtils.handleException(e);
+          closeChannel();
+          responseWriter.closeConnection();
+          return;
+        }
+        if (position >= size) {
+          closeChannel();
+          responseWriter.done();
+          return;
+        } else if (! lf.isDone()) {
+          lf.listener(this);
+          return;
+        }
+      }
+      closeChannel();
+    }
+
+    private void closeChannel() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        ExceptionUtils.handleException(e);
+      }
+    }
+  }
+
+  /**
+   * A size bounded LRU cache of read only mapped files.  Entries are validated against the files
+   * current size and modification time on every lookup, so a changed file is re-mapped.
+   */
+  private static class MappedFileCache {
+    private final LinkedHashMap<Path, CachedFile> files = new LinkedHashMap<>(16, .75f, true);
+    private final long maxSize;
+    private long cachedBytes = 0;
+
+    private MappedFileCache(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    private synchronized long getCachedBytes() {
+      return cachedBytes;
+    }
+
+    private ByteBuffer get(Path file, long size, long lastModified) throws IOException {
+      synchronized (this) {
+        CachedFile cf = files.get(file);
+        if (cf != null && cf.size == size && cf.lastModified == lastModified) {
+          return cf.buffer.duplicate();
+        }
+      }
+      ByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        buffer = channel.map(MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+      }
+      synchronized (this) {
+        CachedFile previous = files.put(file, new CachedFile(buffer, size, lastModified));
+        if (previous != null) {
+          cachedBytes -= previous.size;
+        }
+        cachedBytes += size;
+        Iterator<CachedFile> it = files.values().iterator();
+        while (cachedBytes > maxSize && it.hasNext()) {
+          cachedBytes -= it.next().size;
+          it.remove();
+        }
+      }
+      return buffer.duplicate();
+    }
+  }
+
+  /**
+   * A mapped file held in the {@link MappedFileCache}.
+   */
+  private static class CachedFile {
+    private final ByteBuffer buffer;
+    private final long size;
+    private final long lastModified;
+
+    private CachedFile(ByteBuffer buffer, long size, long lastModified) {
+      this.buffer = buffer;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+}
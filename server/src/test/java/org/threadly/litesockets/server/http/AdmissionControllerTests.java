@@ -0,0 +1,142 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.threadly.util.Clock;
+
+public class AdmissionControllerTests {
+  private static final long TARGET_LATENCY = 10;
+
+  private static void waitTargetLatency() throws InterruptedException {
+    long start = Clock.accurateForwardProgressingMillis();
+    while (Clock.accurateForwardProgressingMillis() - start <= TARGET_LATENCY) {
+      // the accurate time also updates the last known time the controller checks
+      TimeUnit.MILLISECONDS.sleep(TARGET_LATENCY);
+    }
+  }
+
+  @Test
+  public void acquireToLimitTest() {
+    AdmissionController admission = new AdmissionController(2, 0);
+    assertTrue(admission.tryAcquire());
+    assertTrue(admission.tryAcquire());
+    assertFalse(admission.tryAcquire());
+    assertEquals(2, admission.getInFlightCount());
+    admission.release(0);
+    assertTrue(admission.tryAcquire());
+  }
+
+  @Test
+  public void enqueueBoundTest() {
+    AdmissionController admission = new AdmissionController(1, 2);
+    assertTrue(admission.tryAcquire());
+    assertTrue(admission.enqueue(() -> { }));
+    assertTrue(admission.enqueue(() -> { }));
+    assertFalse(admission.enqueue(() -> fail("rejected task run")));
+    assertEquals(2, admission.getQueuedCount());
+    assertEquals(1, admission.getRejectedCount());
+  }
+
+  @Test
+  public void releaseStartsQueuedTest() {
+    AdmissionController admission = new AdmissionController(1, 10);
+    List<Integer> started = new ArrayList<>();
+    assertTrue(admission.tryAcquire());
+    admission.enqueue(() -> started.add(1));
+    admission.enqueue(() -> started.add(2));
+    assertTrue(started.isEmpty());
+    admission.release(0);
+    assertEquals(1, started.size());
+    assertEquals(1, admission.getInFlightCount());
+    assertEquals(1, admission.getQueuedCount());
+    admission.release(0);
+    assertEquals(2, started.size());
+    assertEquals(1, started.get(0).intValue());
+    assertEquals(0, admission.getQueuedCount());
+  }
+
+  @Test
+  public void raisedLimitStartsQueuedTest() {
+    AdmissionController admission = new AdmissionController(1, 10);
+    List<Integer> started = new ArrayList<>();
+    assertTrue(admission.tryAcquire());
+    admission.enqueue(() -> started.add(1));
+    admission.setLimits(2, 10);
+    assertEquals(1, started.size());
+    assertEquals(2, admission.getInFlightCount());
+  }
+
+  @Test
+  public void adaptiveIncreaseTest() {
+    AdmissionController admission = new AdmissionController(4, 0);
+    admission.enableAdaptiveLimit(2, 5, TARGET_LATENCY);
+    // one increase per limit's worth of fast requests
+    for (int i = 0; i < 3; i++) {
+      assertTrue(admission.tryAcquire());
+      admission.release(0);
+    }
+    assertEquals(4, admission.getLimit());
+    assertTrue(admission.tryAcquire());
+    admission.release(0);
+    assertEquals(5, admission.getLimit());
+    for (int i = 0; i < 20; i++) {
+      assertTrue(admission.tryAcquire());
+      admission.release(0);
+    }
+    assertEquals(5, admission.getLimit());
+  }
+
+  @Test
+  public void adaptiveDecreaseTest() throws InterruptedException {
+    AdmissionController admission = new AdmissionController(20, 0);
+    admission.enableAdaptiveLimit(15, 20, TARGET_LATENCY);
+    waitTargetLatency();
+    assertTrue(admission.tryAcquire());
+    admission.release(TARGET_LATENCY + 1);
+    assertEquals(18, admission.getLimit());
+    // only backs off once per target latency
+    assertTrue(admission.tryAcquire());
+    admission.release(TARGET_LATENCY + 1);
+    assertEquals(18, admission.getLimit());
+    for (int i = 0; i < 2; i++) {
+      waitTargetLatency();
+      assertTrue(admission.tryAcquire());
+      admission.release(TARGET_LATENCY + 1);
+    }
+    assertEquals(15, admission.getLimit());  // 18 -> 16 -> 15 (floored at min)
+  }
+
+  @Test
+  public void abandonedNotAdaptedTest() {
+    AdmissionController admission = new AdmissionController(1, 10);
+    admission.enableAdaptiveLimit(1, 10, TARGET_LATENCY);
+    List<Integer> started = new ArrayList<>();
+    assertTrue(admission.tryAcquire());
+    for (int i = 0; i < 10; i++) {
+      admission.enqueue(() -> started.add(1));
+      // the abandoned permit still starts the next queued request
+      admission.releaseAbandoned();
+      assertEquals(i + 1, started.size());
+    }
+    // released with a latency of 0 these would have raised the limit
+    assertEquals(1, admission.getLimit());
+    assertEquals(1, admission.getInFlightCount());
+  }
+
+  @Test
+  public void adaptiveDisabledTest() {
+    AdmissionController admission = new AdmissionController(4, 0);
+    admission.enableAdaptiveLimit(2, 10, TARGET_LATENCY);
+    admission.disableAdaptiveLimit();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(admission.tryAcquire());
+      admission.release(0);
+    }
+    assertEquals(4, admission.getLimit());
+  }
+}
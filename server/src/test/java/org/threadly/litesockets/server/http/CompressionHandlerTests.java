@@ -0,0 +1,269 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.http.shared.HTTPUtils;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+public class CompressionHandlerTests {
+  private static final int BODY_SIZE = 4096;
+  private static final String BODY;
+
+  static {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < BODY_SIZE) {
+      sb.append("compressible body text ").append(sb.length()).append(' ');
+    }
+    BODY = sb.substring(0, BODY_SIZE);
+  }
+
+  private FakeClient client;
+  private ResponseWriter responseWriter;
+
+  @Before
+  public void setup() {
+    client = new FakeClient();
+    responseWriter = new ResponseWriter(client);
+  }
+
+  private static HTTPRequestBuilder request(String acceptEncoding) {
+    return new HTTPRequestBuilder().setPath("/")
+                                   .setHeader(HTTPConstants.HTTP_KEY_ACCEPT_ENCODING, acceptEncoding);
+  }
+
+  // responds with the first size bytes of BODY
+  private static HTTPServerHandler sizedHandler(String contentType, int size) {
+    return (request, responseWriter, bodyListener) -> {
+      HTTPResponseBuilder hrb = new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(size));
+      if (contentType != null) {
+        hrb.setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, contentType);
+      }
+      responseWriter.sendHTTPResponse(hrb.build());
+      responseWriter.writeBody(ByteBuffer.wrap(BODY.substring(0, size).getBytes(StandardCharsets.US_ASCII)));
+      responseWriter.done();
+    };
+  }
+
+  private Response handle(HTTPRequestBuilder hrb, HTTPServerHandler handler) {
+    client = new FakeClient();
+    responseWriter = new ResponseWriter(client);
+    new CompressionHandler(handler).handle(hrb.buildHTTPRequest(), responseWriter, new BodyFuture());
+    return new Response(client.getWrittenBytes());
+  }
+
+  private static byte[] dechunk(byte[] chunked) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    int pos = 0;
+    while (pos < chunked.length) {
+      int lineEnd = new String(chunked, pos, chunked.length - pos, StandardCharsets.ISO_8859_1).indexOf("\r\n");
+      int size = Integer.parseInt(new String(chunked, pos, lineEnd, StandardCharsets.US_ASCII),
+                                  HTTPConstants.HEX_SIZE);
+      pos += lineEnd + 2;
+      result.write(chunked, pos, size);
+      pos += size + 2;
+    }
+    return result.toByteArray();
+  }
+
+  private static String decode(InputStream in) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int read;
+    while ((read = in.read(buf)) != -1) {
+      result.write(buf, 0, read);
+    }
+    return new String(result.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  private static String inflate(Inflater inflater, byte[] data) throws Exception {
+    inflater.setInput(data);
+    byte[] buf = new byte[BODY_SIZE * 2];
+    int read = inflater.inflate(buf);
+    return new String(buf, 0, read, StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void compressedResponseTest() throws IOException {
+    // starts the response and writes the first half of the body
+    handle(request("gzip"), (request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, "text/plain")
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(BODY_SIZE)).build());
+      responseWriter.writeBody(ByteBuffer.wrap(BODY.substring(0, BODY_SIZE / 2).getBytes(StandardCharsets.US_ASCII)));
+    });
+    // the already written bytes are read by getWrittenBytes in handle
+    responseWriter.writeBody(ByteBuffer.wrap(BODY.substring(BODY_SIZE / 2).getBytes(StandardCharsets.US_ASCII)));
+    responseWriter.done();
+    assertTrue(client.getWritten().endsWith("0\r\n\r\n"));
+
+    Response response = handle(request("gzip"), sizedHandler("text/plain", BODY_SIZE));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": gzip\r\n"));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_VARY + ": " +
+                                           HTTPConstants.HTTP_KEY_ACCEPT_ENCODING + "\r\n"));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_LENGTH));
+    assertTrue(response.body.length < BODY_SIZE);
+    assertEquals(BODY, decode(new GZIPInputStream(new ByteArrayInputStream(dechunk(response.body)))));
+  }
+
+  @Test
+  public void thresholdTest() {
+    int threshold = CompressionHandler.DEFAULT_MIN_COMPRESS_SIZE;
+    Response response = handle(request("gzip"), sizedHandler("text/plain", threshold - 1));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(BODY.substring(0, threshold - 1), response.bodyString());
+
+    response = handle(request("gzip"), sizedHandler("text/plain", threshold));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": gzip\r\n"));
+  }
+
+  @Test
+  public void contentTypeAllowlistTest() {
+    Response response = handle(request("gzip"), sizedHandler("image/png", BODY_SIZE));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertEquals(BODY, response.bodyString());
+
+    response = handle(request("gzip"), sizedHandler(null, BODY_SIZE));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+
+    response = handle(request("gzip"), sizedHandler("Application/JSON; charset=utf-8", BODY_SIZE));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": gzip\r\n"));
+  }
+
+  @Test
+  public void negotiationTest() throws IOException {
+    Response response = handle(request("deflate"), sizedHandler("text/plain", BODY_SIZE));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": deflate\r\n"));
+    assertEquals(BODY, decode(new InflaterInputStream(new ByteArrayInputStream(dechunk(response.body)))));
+
+    response = handle(request("deflate, gzip"), sizedHandler("text/plain", BODY_SIZE));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": gzip\r\n"));
+
+    response = handle(request("gzip;q=0, deflate"), sizedHandler("text/plain", BODY_SIZE));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": deflate\r\n"));
+
+    response = handle(request("identity"), sizedHandler("text/plain", BODY_SIZE));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    // the response still depends on the request's Accept-Encoding
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_VARY + ": " +
+                                           HTTPConstants.HTTP_KEY_ACCEPT_ENCODING + "\r\n"));
+    assertEquals(BODY, response.bodyString());
+  }
+
+  @Test
+  public void headPassThroughTest() {
+    Response response = handle(request("gzip").setRequestMethod(HTTPRequestMethod.HEAD),
+                               sizedHandler("text/plain", BODY_SIZE));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": " + BODY_SIZE + "\r\n"));
+  }
+
+  @Test
+  public void http10PassThroughTest() {
+    Response response = handle(request("gzip").setHTTPVersion(HTTPConstants.HTTP_VERSION_1_0),
+                               sizedHandler("text/plain", BODY_SIZE));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING));
+    assertFalse(response.headers.contains(HTTPConstants.HTTP_KEY_TRANSFER_ENCODING));
+    assertEquals(BODY, response.bodyString());
+  }
+
+  @Test
+  public void streamedChunkedResponseTest() throws Exception {
+    handle(request("deflate"), (request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, "text/plain")
+          .setHeader(HTTPConstants.HTTP_KEY_TRANSFER_ENCODING, "chunked").build());
+    });
+    Inflater inflater = new Inflater();
+    try {
+      StringBuilder received = new StringBuilder();
+      int written = 0;
+      for (int i = 0; i < 4; i++) {
+        int end = written + BODY_SIZE / 4;
+        byte[] chunk = HTTPUtils.wrapInChunk(ByteBuffer.wrap(BODY.substring(written, end)
+                                                                 .getBytes(StandardCharsets.US_ASCII)))
+                                .getAsString(BODY_SIZE).getBytes(StandardCharsets.US_ASCII);
+        // the chunk framing split across writes is still understood
+        responseWriter.writeBody(ByteBuffer.wrap(chunk, 0, 2));
+        responseWriter.writeBody(ByteBuffer.wrap(chunk, 2, chunk.length - 2));
+        written = end;
+        // each write is flushed, so everything written so far can be decoded
+        received.append(inflate(inflater, dechunk(client.getWrittenBytes())));
+        assertEquals(BODY.substring(0, written), received.toString());
+      }
+      responseWriter.writeBody(HTTPUtils.wrapInChunk(null));
+      byte[] end = client.getWrittenBytes();
+      assertTrue(new String(end, StandardCharsets.ISO_8859_1).endsWith("0\r\n\r\n"));
+      assertEquals("", inflate(inflater, dechunk(end)));
+      assertTrue(inflater.finished());
+      responseWriter.done();
+      assertEquals(0, client.getWrittenBytes().length);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Test
+  public void streamedResponseFinishedOnDoneTest() throws IOException {
+    Response response = handle(request("gzip"), (request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, "text/plain")
+          .setHeader(HTTPConstants.HTTP_KEY_TRANSFER_ENCODING, "chunked").build());
+      responseWriter.writeBody(HTTPUtils.wrapInChunk(ByteBuffer.wrap("small".getBytes(StandardCharsets.US_ASCII))));
+      // the handler does not write the final chunk
+      responseWriter.done();
+    });
+    assertTrue(response.headers.contains(HTTPConstants.HTTP_KEY_CONTENT_ENCODING + ": gzip\r\n"));
+    assertTrue(response.bodyString().endsWith("0\r\n\r\n"));
+    assertEquals("small", decode(new GZIPInputStream(new ByteArrayInputStream(dechunk(response.body)))));
+  }
+
+  @Test
+  public void connectionClosedReleasesCompressorTest() {
+    handle(request("gzip"), (request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_TYPE, "text/plain")
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(BODY_SIZE)).build());
+      responseWriter.writeBody(ByteBuffer.allocate(BODY_SIZE / 2));
+    });
+    client.close();
+    responseWriter.done();
+    // the compressor was released by the close, so there is no stream left to finish
+    assertEquals("", client.getWritten());
+  }
+
+  private static class Response {
+    private final String headers;
+    private final byte[] body;
+
+    private Response(byte[] written) {
+      String response = new String(written, StandardCharsets.ISO_8859_1);
+      int bodyStart = response.indexOf("\r\n\r\n") + 4;
+      headers = response.substring(0, bodyStart);
+      body = new byte[written.length - bodyStart];
+      System.arraycopy(written, bodyStart, body, 0, body.length);
+    }
+
+    private String bodyString() {
+      return new String(body, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package org.threadly.litesockets.server.http;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.threadly.concurrent.SameThreadSubmitterExecutor;
+import org.threadly.concurrent.future.FutureUtils;
+import org.threadly.concurrent.future.ListenableFuture;
+import org.threadly.litesockets.Client;
+import org.threadly.litesockets.NoThreadSocketExecuter;
+import org.threadly.litesockets.WireProtocol;
+import org.threadly.litesockets.buffers.MergedByteBuffers;
+import org.threadly.litesockets.buffers.ReuseableMergedByteBuffers;
+
+/**
+ * A {@link Client} without a socket, which records everything written to it.  Used to drive a
+ * {@link HTTPServer.ResponseWriter} from tests.
+ */
+public class FakeClient extends Client {
+  private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 80);
+  private final ReuseableMergedByteBuffers written = new ReuseableMergedByteBuffers(false);
+
+  public FakeClient() {
+    super(new NoThreadSocketExecuter(), SameThreadSubmitterExecutor.instance());
+  }
+
+  /**
+   * Removes and returns everything written so far.
+   *
+   * @return the written data as a string
+   */
+  public String getWritten() {
+    return written.getAsString(written.remaining(), StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Removes and returns everything written so far.
+   *
+   * @return the written data
+   */
+  public byte[] getWrittenBytes() {
+    byte[] result = new byte[written.remaining()];
+    written.get(result);
+    return result;
+  }
+
+  @Override
+  public ListenableFuture<?> write(ByteBuffer bb) {
+    written.add(bb.duplicate());
+    return FutureUtils.immediateResultFuture(null);
+  }
+
+  @Override
+  public ListenableFuture<?> write(MergedByteBuffers mbb) {
+    written.add(mbb.duplicateAndClean());
+    return FutureUtils.immediateResultFuture(null);
+  }
+
+  @Override
+  public ListenableFuture<?> lastWriteFuture() {
+    return FutureUtils.immediateResultFuture(null);
+  }
+
+  @Override
+  public void close(Throwable error) {
+    if (setClose()) {
+      callClosers(true, error);
+    }
+  }
+
+  @Override
+  public SocketAddress getRemoteSocketAddress() {
+    return ADDRESS;
+  }
+
+  @Override
+  public SocketAddress getLocalSocketAddress() {
+    return ADDRESS;
+  }
+
+  @Override
+  public boolean canWrite() {
+    return true;
+  }
+
+  @Override
+  public int getWriteBufferSize() {
+    return 0;
+  }
+
+  @Override
+  public ListenableFuture<Boolean> connect() {
+    return FutureUtils.immediateResultFuture(true);
+  }
+
+  @Override
+  public void setConnectionTimeout(int timeout) {
+  }
+
+  @Override
+  public boolean hasConnectionTimedOut() {
+    return false;
+  }
+
+  @Override
+  public int getTimeout() {
+    return 0;
+  }
+
+  @Override
+  public WireProtocol getProtocol() {
+    return WireProtocol.TCP;
+  }
+
+  @Override
+  public ClientOptions clientOptions() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected void setConnectionStatus(Throwable t) {
+  }
+
+  @Override
+  protected ByteBuffer getWriteBuffer() {
+    return null;
+  }
+
+  @Override
+  protected void reduceWrite(int size) {
+  }
+
+  @Override
+  protected SocketChannel getChannel() {
+    return null;
+  }
+
+  @Override
+  protected void doSocketRead(boolean doLocal) {
+  }
+
+  @Override
+  protected void doSocketWrite(boolean doLocal) {
+  }
+}
@@ -0,0 +1,208 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.server.http.HTTPRouter.RouteHandler;
+import org.threadly.litesockets.server.http.HTTPRouter.RouteParameters;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+public class HTTPRouterTests {
+  private FakeClient client;
+  private String matched;
+  private RouteParameters params;
+
+  @Before
+  public void setup() {
+    client = new FakeClient();
+    matched = null;
+    params = null;
+  }
+
+  private RouteHandler route(String name) {
+    return (request, params, responseWriter, bodyListener) -> {
+      matched = name;
+      this.params = params;
+    };
+  }
+
+  private void handle(HTTPRouter router, String method, String host, String path) {
+    HTTPRequestBuilder hrb = new HTTPRequestBuilder().setRequestMethod(method).setPath(path);
+    if (host != null) {
+      hrb.setHeader(HTTPConstants.HTTP_KEY_HOST, host);
+    }
+    HTTPRequest request = hrb.buildHTTPRequest();
+    router.handle(request, new ResponseWriter(client), new BodyFuture());
+  }
+
+  @Test
+  public void staticPreferredOverParameterTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/users/{id}", route("param"))
+                                  .addRoute(HTTPRequestMethod.GET, "/users/me", route("static"))
+                                  .build();
+    handle(router, "GET", null, "/users/me");
+    assertEquals("static", matched);
+    handle(router, "GET", null, "/users/42");
+    assertEquals("param", matched);
+    assertEquals("42", params.getParameter("id"));
+    assertEquals("/users/{id}", params.getRoutePattern());
+  }
+
+  @Test
+  public void parameterPreferredOverWildcardTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/files/*", route("wildcard"))
+                                  .addRoute(HTTPRequestMethod.GET, "/files/{name}", route("param"))
+                                  .build();
+    handle(router, "GET", null, "/files/a.txt");
+    assertEquals("param", matched);
+    assertNull(params.getWildcard());
+    handle(router, "GET", null, "/files/dir/a.txt");
+    assertEquals("wildcard", matched);
+    assertEquals("dir/a.txt", params.getWildcard());
+  }
+
+  @Test
+  public void multipleParametersTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/a/{x}/b/{y}", route("params"))
+                                  .build();
+    handle(router, "GET", null, "/a/one/b/two");
+    assertEquals("params", matched);
+    assertEquals(2, params.getParameterCount());
+    assertEquals("x", params.getParameterName(0));
+    assertEquals("one", params.getParameter(0));
+    assertEquals("two", params.getParameter("y"));
+    assertNull(params.getParameter("z"));
+  }
+
+  @Test
+  public void backtrackFromStaticTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/a/bc/d", route("static"))
+                                  .addRoute(HTTPRequestMethod.GET, "/a/{p}/e", route("param"))
+                                  .build();
+    handle(router, "GET", null, "/a/bc/e");
+    assertEquals("param", matched);
+    assertEquals("bc", params.getParameter("p"));
+  }
+
+  @Test
+  public void splitEdgeTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/status", route("status"))
+                                  .addRoute(HTTPRequestMethod.GET, "/stats", route("stats"))
+                                  .addRoute(HTTPRequestMethod.GET, "/st", route("st"))
+                                  .build();
+    handle(router, "GET", null, "/stats");
+    assertEquals("stats", matched);
+    handle(router, "GET", null, "/status");
+    assertEquals("status", matched);
+    handle(router, "GET", null, "/st");
+    assertEquals("st", matched);
+    matched = null;
+    handle(router, "GET", null, "/sta");
+    assertNull(matched);
+    assertTrue(client.getWritten().startsWith("HTTP/1.1 404"));
+  }
+
+  @Test
+  public void hostPrecedenceTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute("GET", null, "/x", route("any"))
+                                  .addRoute("GET", "a.example", "/x", route("host"))
+                                  .addRoute("GET", null, "/y", route("anyY"))
+                                  .build();
+    handle(router, "GET", "A.Example:8080", "/x");
+    assertEquals("host", matched);
+    handle(router, "GET", "b.example", "/x");
+    assertEquals("any", matched);
+    handle(router, "GET", "a.example", "/y");
+    assertEquals("anyY", matched);
+    handle(router, "GET", null, "/x");
+    assertEquals("any", matched);
+  }
+
+  @Test
+  public void notFoundHandlerTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/x", route("x"))
+                                  .setNotFoundHandler((request, responseWriter, bodyListener) -> matched = "notFound")
+                                  .build();
+    handle(router, "GET", null, "/x/y");
+    assertEquals("notFound", matched);
+  }
+
+  @Test
+  public void methodNotAllowedTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.POST, "/x", route("post"))
+                                  .addRoute(HTTPRequestMethod.GET, "/{p}", route("get"))
+                                  .setNotFoundHandler((request, responseWriter, bodyListener) -> matched = "notFound")
+                                  .build();
+    handle(router, "PUT", null, "/x");
+    assertNull(matched);
+    String response = client.getWritten();
+    assertTrue(response.startsWith("HTTP/1.1 405"));
+    assertTrue(response.contains(HTTPConstants.HTTP_KEY_ALLOW + ": GET, HEAD, POST\r\n"));
+  }
+
+  @Test
+  public void headUsesGetRouteTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/x", (request, params, responseWriter, bodyListener) -> {
+                                    matched = request.getHTTPRequestHeader().getRequestMethod();
+                                    responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+                                        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "4").build());
+                                    responseWriter.writeBody(ByteBuffer.wrap("body".getBytes()));
+                                    responseWriter.done();
+                                  })
+                                  .build();
+    handle(router, "HEAD", null, "/x");
+    assertEquals("HEAD", matched);
+    String response = client.getWritten();
+    assertTrue(response.startsWith("HTTP/1.1 200"));
+    assertTrue(response.endsWith("\r\n\r\n"));
+
+    handle(router, "GET", null, "/x");
+    assertTrue(client.getWritten().endsWith("\r\n\r\nbody"));
+  }
+
+  @Test
+  public void headRouteTakesPrecedenceTest() {
+    HTTPRouter router = HTTPRouter.builder()
+                                  .addRoute(HTTPRequestMethod.GET, "/x", route("get"))
+                                  .addRoute(HTTPRequestMethod.HEAD, "/x", route("head"))
+                                  .build();
+    handle(router, "HEAD", null, "/x");
+    assertEquals("head", matched);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void duplicateRouteFail() {
+    HTTPRouter.builder()
+              .addRoute(HTTPRequestMethod.GET, "/a/{x}", route("one"))
+              .addRoute(HTTPRequestMethod.GET, "/a/{y}", route("two"))
+              .build();
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void partialSegmentParameterFail() {
+    HTTPRouter.builder().addRoute(HTTPRequestMethod.GET, "/a{x}", route("one")).build();
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void wildcardNotLastFail() {
+    HTTPRouter.builder().addRoute(HTTPRequestMethod.GET, "/*/a", route("one")).build();
+  }
+}
@@ -0,0 +1,175 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.websocket.WSFrame;
+import org.threadly.litesockets.server.http.HTTPServer.BodyListener;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+import org.threadly.litesockets.utils.PortUtils;
+
+public class HTTPServerAdmissionTests {
+  private static final String BLOCK_REQUEST = "GET /block HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final int UPLOAD_SIZE = 64 * 1024 * 1024;
+
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final AtomicLong bodyRead = new AtomicLong();
+  private PriorityScheduler ps;
+  private ThreadedSocketExecuter se;
+  private HTTPServer server;
+  private int port;
+  private volatile ResponseWriter blockedWriter;
+
+  @Before
+  public void setup() throws IOException {
+    ps = new PriorityScheduler(4);
+    se = new ThreadedSocketExecuter(ps);
+    se.start();
+    port = PortUtils.findTCPPort();
+    server = new HTTPServer(se, "localhost", port);
+    server.setMaxConcurrentRequests(1, 5);
+    // "/block" is not responded to until the test does, anything else responds with the body size
+    server.setHandler((request, responseWriter, bodyFuture) -> {
+      if (request.getHTTPRequestHeader().getRequestPath().equals("/block")) {
+        blockedWriter = responseWriter;
+        blocked.countDown();
+        return;
+      }
+      bodyFuture.setBodyListener(new BodyListener() {
+        @Override
+        public void onBody(HTTPRequest httpRequest, ByteBuffer bb, ResponseWriter responseWriter) {
+          bodyRead.addAndGet(bb.remaining());
+        }
+
+        @Override
+        public void onWebsocketFrame(HTTPRequest httpRequest, WSFrame wsf, ByteBuffer bb,
+                                     ResponseWriter responseWriter) {
+          // not used
+        }
+
+        @Override
+        public void bodyComplete(HTTPRequest httpRequest, ResponseWriter responseWriter) {
+          respond(responseWriter, Long.toString(bodyRead.get()));
+        }
+      });
+    });
+    server.start();
+  }
+
+  @After
+  public void cleanup() {
+    server.stop();
+    se.stop();
+    ps.shutdownNow();
+  }
+
+  private static void respond(ResponseWriter responseWriter, String body) {
+    responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(body.length())).build());
+    responseWriter.writeBody(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)));
+    responseWriter.done();
+  }
+
+  private Socket connect(String send) throws IOException {
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(10_000);
+    socket.getOutputStream().write(send.getBytes(StandardCharsets.US_ASCII));
+    return socket;
+  }
+
+  private static String readResponseBody(Socket socket) throws IOException {
+    InputStream in = socket.getInputStream();
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1) {
+      sb.append((char)c);
+      int bodyStart = sb.indexOf("\r\n\r\n");
+      if (bodyStart >= 0 && sb.length() > bodyStart + 4) {
+        int lengthStart = sb.indexOf(HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": ") +
+                            HTTPConstants.HTTP_KEY_CONTENT_LENGTH.length() + 2;
+        int length = Integer.parseInt(sb.substring(lengthStart, sb.indexOf("\r\n", lengthStart)));
+        if (sb.length() == bodyStart + 4 + length) {
+          return sb.substring(bodyStart + 4);
+        }
+      }
+    }
+    throw new IOException("connection closed");
+  }
+
+  @Test
+  public void queuedRequestBodyNotReadTest() throws Exception {
+    Socket blockedSocket = connect(BLOCK_REQUEST);
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    Socket uploadSocket = connect("POST /upload HTTP/1.1\r\nHost: localhost\r\n" +
+                                    HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": " + UPLOAD_SIZE + "\r\n\r\n");
+    AtomicLong written = new AtomicLong();
+    Thread writer = new Thread(() -> {
+      byte[] chunk = new byte[64 * 1024];
+      try {
+        OutputStream out = uploadSocket.getOutputStream();
+        while (written.get() < UPLOAD_SIZE) {
+          out.write(chunk);
+          written.addAndGet(chunk.length);
+        }
+      } catch (IOException e) {
+        // failure seen by the response read
+      }
+    });
+    writer.start();
+    try {
+      TimeUnit.MILLISECONDS.sleep(500);
+      // the queued request's connection is no longer read, so the sender is pushed back on
+      assertEquals(1, server.getQueuedRequestCount());
+      assertEquals(0, bodyRead.get());
+      assertTrue(writer.isAlive());
+      long stalledAt = written.get();
+      TimeUnit.MILLISECONDS.sleep(200);
+      assertEquals(stalledAt, written.get());
+
+      respond(blockedWriter, "done");
+      assertEquals("done", readResponseBody(blockedSocket));
+      assertEquals(Integer.toString(UPLOAD_SIZE), readResponseBody(uploadSocket));
+      writer.join(10_000);
+      assertEquals(UPLOAD_SIZE, written.get());
+    } finally {
+      blockedSocket.close();
+      uploadSocket.close();
+    }
+  }
+
+  @Test
+  public void pipelinedQueuedRequestsTest() throws Exception {
+    Socket blockedSocket = connect(BLOCK_REQUEST);
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    String upload = "POST /upload HTTP/1.1\r\nHost: localhost\r\n" +
+                      HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": 2\r\n\r\nab";
+    Socket uploadSocket = connect(upload + upload);
+    try {
+      TimeUnit.MILLISECONDS.sleep(100);
+      respond(blockedWriter, "done");
+      assertEquals("done", readResponseBody(blockedSocket));
+      assertEquals("2", readResponseBody(uploadSocket));
+      assertEquals("4", readResponseBody(uploadSocket));
+    } finally {
+      blockedSocket.close();
+      uploadSocket.close();
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.test.concurrent.TestCondition;
+
+public class HTTPServerAsyncResponseTests {
+  private static final String REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final String HOLD_REQUEST = "GET /hold HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final int REQUEST_COUNT = 500;
+  // the threads which last ran the connection's tasks may still reference its latest response
+  private static final int MAX_RETAINED = 5;
+
+  private final List<WeakReference<Runnable>> closeListeners = new CopyOnWriteArrayList<>();
+  private PriorityScheduler ps;
+  private ThreadedSocketExecuter se;
+  private HTTPServer server;
+  private int port;
+  private volatile CountDownLatch closed;
+
+  @Before
+  public void setup() throws IOException {
+    ps = new PriorityScheduler(4);
+    se = new ThreadedSocketExecuter(ps);
+    se.start();
+    port = PortUtils.findTCPPort();
+    server = new HTTPServer(se, "localhost", port);
+    // responds from another thread once the request has been read, "/hold" is never responded to
+    server.setHandler((request, responseWriter, bodyListener) -> {
+      CountDownLatch closed = this.closed;
+      Runnable closeListener = closed::countDown;
+      responseWriter.addCloseListener(closeListener);
+      closeListeners.add(new WeakReference<>(closeListener));
+      if (request.getHTTPRequestHeader().getRequestPath().equals("/hold")) {
+        return;
+      }
+      ps.schedule(() -> {
+        responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+            .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "2").build());
+        responseWriter.writeBody(ByteBuffer.wrap("ok".getBytes(StandardCharsets.US_ASCII)));
+        responseWriter.done();
+      }, 1);
+    });
+    server.start();
+    closed = new CountDownLatch(1);
+  }
+
+  @After
+  public void cleanup() {
+    server.stop();
+    se.stop();
+    ps.shutdownNow();
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(5_000);
+    return socket;
+  }
+
+  private static void readResponse(Socket socket) throws IOException {
+    InputStream in = socket.getInputStream();
+    StringBuilder sb = new StringBuilder();
+    while (! sb.toString().endsWith("\r\n\r\nok")) {
+      int c = in.read();
+      assertTrue("connection closed", c != -1);
+      sb.append((char)c);
+    }
+  }
+
+  private int retainedCloseListeners() throws InterruptedException {
+    int retained = 0;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      TimeUnit.MILLISECONDS.sleep(10);
+      retained = 0;
+      for (WeakReference<Runnable> ref : closeListeners) {
+        if (ref.get() != null) {
+          retained++;
+        }
+      }
+      if (retained <= MAX_RETAINED) {
+        break;
+      }
+    }
+    return retained;
+  }
+
+  @Test
+  public void completedAsyncResponsesReleasedTest() throws IOException, InterruptedException {
+    try (Socket socket = connect()) {
+      for (int i = 0; i < REQUEST_COUNT; i++) {
+        socket.getOutputStream().write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+        readResponse(socket);
+      }
+      assertEquals(REQUEST_COUNT, closeListeners.size());
+      // while the connection is still open, the completed responses are not kept
+      int retained = retainedCloseListeners();
+      assertTrue("retained " + retained, retained <= MAX_RETAINED);
+    }
+  }
+
+  @Test
+  public void outstandingResponsesToldOfCloseTest() throws IOException, InterruptedException {
+    closed = new CountDownLatch(3);
+    Socket socket = connect();
+    // pipelined, so the first two are still outstanding as the next request is read
+    socket.getOutputStream().write((HOLD_REQUEST + HOLD_REQUEST + HOLD_REQUEST)
+                                     .getBytes(StandardCharsets.US_ASCII));
+    new TestCondition(() -> closeListeners.size() == 3).blockTillTrue(5_000);
+    socket.close();
+    assertTrue(closed.await(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,205 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.SocketExecuter;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.server.http.HTTPServer.AcceptBalancing;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.test.concurrent.TestCondition;
+
+public class HTTPServerExecutorsTests {
+  private static final String REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final int EXECUTOR_COUNT = 2;
+
+  private PriorityScheduler[] schedulers;
+  private ThreadedSocketExecuter[] executors;
+  private HTTPServer server;
+  private int port;
+
+  @Before
+  public void setup() {
+    schedulers = new PriorityScheduler[EXECUTOR_COUNT];
+    executors = new ThreadedSocketExecuter[EXECUTOR_COUNT];
+    for (int i = 0; i < EXECUTOR_COUNT; i++) {
+      schedulers[i] = new PriorityScheduler(2);
+      executors[i] = new ThreadedSocketExecuter(schedulers[i]);
+      executors[i].start();
+    }
+    port = PortUtils.findTCPPort();
+  }
+
+  @After
+  public void cleanup() {
+    if (server != null) {
+      server.stopIfRunning();
+    }
+    for (int i = 0; i < EXECUTOR_COUNT; i++) {
+      executors[i].stop();
+      schedulers[i].shutdownNow();
+    }
+  }
+
+  private void startServer(AcceptBalancing balancing) throws IOException {
+    startServer(executors, balancing);
+  }
+
+  private void startServer(SocketExecuter[] executors, AcceptBalancing balancing) throws IOException {
+    server = new HTTPServer(executors, "localhost", port, null, balancing);
+    server.setHandler((request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "2").build());
+      responseWriter.writeBody(ByteBuffer.wrap("ok".getBytes(StandardCharsets.US_ASCII)));
+      responseWriter.done();
+    });
+    server.start();
+    assertEquals(executors.length, server.getExecutorCount());
+    assertEquals(balancing, server.getAcceptBalancing());
+  }
+
+  /**
+   * Connects and completes a request, leaving the connection open.
+   */
+  private Socket request() throws IOException {
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(5_000);
+    socket.getOutputStream().write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+    InputStream in = socket.getInputStream();
+    StringBuilder sb = new StringBuilder();
+    while (! sb.toString().endsWith("\r\n\r\nok")) {
+      int c = in.read();
+      assertTrue("connection closed", c != -1);
+      sb.append((char)c);
+    }
+    return socket;
+  }
+
+  private void waitForClientCounts(int... counts) {
+    new TestCondition(() -> {
+      for (int i = 0; i < counts.length; i++) {
+        if (executors[i].getClientCount() != counts[i]) {
+          return false;
+        }
+      }
+      return true;
+    }).blockTillTrue(5_000);
+  }
+
+  private static void close(Socket... sockets) throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void roundRobinTest() throws IOException {
+    startServer(AcceptBalancing.RoundRobin);
+    Socket[] sockets = new Socket[4];
+    try {
+      for (int i = 0; i < sockets.length; i++) {
+        sockets[i] = request();
+        waitForClientCounts((i + 2) / 2, (i + 1) / 2);
+      }
+      assertEquals(sockets.length, server.getConnectionCount());
+    } finally {
+      for (Socket socket : sockets) {
+        if (socket != null) {
+          socket.close();
+        }
+      }
+    }
+    waitForClientCounts(0, 0);
+  }
+
+  @Test
+  public void leastConnectionsTest() throws IOException {
+    startServer(AcceptBalancing.LeastConnections);
+    Socket first = request();
+    waitForClientCounts(1, 0);
+    Socket second = request();
+    waitForClientCounts(1, 1);
+    Socket third = request();
+    waitForClientCounts(2, 1);
+    Socket fourth = null;
+    try {
+      // the first executor now has the fewest connections, though it would be the second's turn
+      first.close();
+      third.close();
+      waitForClientCounts(0, 1);
+      fourth = request();
+      waitForClientCounts(1, 1);
+    } finally {
+      close(first, second, third);
+      if (fourth != null) {
+        fourth.close();
+      }
+    }
+    waitForClientCounts(0, 0);
+  }
+
+  @Test
+  public void sharedListenerTest() throws IOException {
+    startServer(AcceptBalancing.SharedListener);
+    Socket[] sockets = new Socket[6];
+    try {
+      for (int i = 0; i < sockets.length; i++) {
+        sockets[i] = request();
+      }
+      // which executor accepts is up to the selectors, but every connection is served by one
+      new TestCondition(() -> executors[0].getClientCount() +
+                                executors[1].getClientCount() == sockets.length).blockTillTrue(5_000);
+      assertEquals(sockets.length, server.getConnectionCount());
+    } finally {
+      for (Socket socket : sockets) {
+        if (socket != null) {
+          socket.close();
+        }
+      }
+    }
+    waitForClientCounts(0, 0);
+  }
+
+  @Test
+  public void timeoutOnEachExecutorTest() throws IOException {
+    startServer(AcceptBalancing.RoundRobin);
+    server.setIdleTimeout(200);
+    Socket first = request();
+    Socket second = request();
+    try {
+      waitForClientCounts(1, 1);
+      // each executor's own timing wheel closes its idle connection
+      assertEquals(-1, first.getInputStream().read());
+      assertEquals(-1, second.getInputStream().read());
+      waitForClientCounts(0, 0);
+    } finally {
+      close(first, second);
+    }
+  }
+
+  @Test
+  public void singleExecutorTest() throws IOException {
+    startServer(new SocketExecuter[] {executors[1]}, AcceptBalancing.RoundRobin);
+    // listens through the executor itself, rather than the server's accept thread
+    assertEquals(1, executors[1].getServerCount());
+    Socket socket = request();
+    try {
+      waitForClientCounts(0, 1);
+    } finally {
+      socket.close();
+    }
+    server.stop();
+    assertEquals(0, executors[1].getServerCount());
+  }
+}
@@ -0,0 +1,298 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.request.HTTPRequest;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.protocols.http.shared.HTTPRequestMethod;
+import org.threadly.litesockets.protocols.websocket.WSFrame;
+import org.threadly.litesockets.server.http.HTTPServer.BodyListener;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.test.concurrent.TestCondition;
+
+public class HTTPServerStatsTests {
+  private static final String HELLO_REQUEST = "GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final String HELLO_ROUTE = "GET */hello";
+  private static final String UPLOAD_ROUTE = "POST */upload";
+  private static final long DELAY_MILLIS = 50;
+
+  private PriorityScheduler ps;
+  private ThreadedSocketExecuter se;
+  private HTTPServer server;
+  private HTTPServerStats stats;
+  private int port;
+
+  @Before
+  public void setup() throws IOException {
+    ps = new PriorityScheduler(4);
+    se = new ThreadedSocketExecuter(ps);
+    se.start();
+    port = PortUtils.findTCPPort();
+    stats = new HTTPServerStats();
+    server = new HTTPServer(se, "localhost", port);
+    server.setMetrics(stats);
+    server.setHandler(HTTPRouter.builder()
+        .addRoute(HTTPRequestMethod.GET, "/hello", (request, responseWriter, bodyListener) -> {
+          respond(responseWriter, "hello");
+        })
+        .addRoute(HTTPRequestMethod.GET, "/slow", (request, responseWriter, bodyListener) -> {
+          try {
+            TimeUnit.MILLISECONDS.sleep(DELAY_MILLIS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          respond(responseWriter, "slow");
+        })
+        .addRoute(HTTPRequestMethod.GET, "/metrics", stats.getExpositionHandler())
+        .addRoute(HTTPRequestMethod.POST, "/upload", (request, responseWriter, bodyFuture) -> {
+          AtomicLong bodyRead = new AtomicLong();
+          bodyFuture.setBodyListener(new BodyListener() {
+            @Override
+            public void onBody(HTTPRequest httpRequest, ByteBuffer bb, ResponseWriter responseWriter) {
+              bodyRead.addAndGet(bb.remaining());
+            }
+
+            @Override
+            public void onWebsocketFrame(HTTPRequest httpRequest, WSFrame wsf, ByteBuffer bb,
+                                         ResponseWriter responseWriter) {
+              // not used
+            }
+
+            @Override
+            public void bodyComplete(HTTPRequest httpRequest, ResponseWriter responseWriter) {
+              respond(responseWriter, Long.toString(bodyRead.get()));
+            }
+          });
+        }).build());
+    server.start();
+  }
+
+  @After
+  public void cleanup() {
+    server.stop();
+    se.stop();
+    ps.shutdownNow();
+  }
+
+  private static void respond(ResponseWriter responseWriter, String body) {
+    responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+        .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(body.length())).build());
+    responseWriter.writeBody(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)));
+    responseWriter.done();
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(5_000);
+    return socket;
+  }
+
+  private static void send(Socket socket, String data) throws IOException {
+    socket.getOutputStream().write(data.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Reads a single {@code Content-Length} response, returning all of it including the headers.
+   */
+  private static String readResponse(Socket socket) throws IOException {
+    InputStream in = socket.getInputStream();
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1) {
+      sb.append((char)c);
+      int bodyStart = sb.indexOf("\r\n\r\n");
+      if (bodyStart >= 0) {
+        int lengthStart = sb.indexOf(HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": ");
+        if (lengthStart < 0) {
+          return sb.toString();
+        }
+        lengthStart += HTTPConstants.HTTP_KEY_CONTENT_LENGTH.length() + 2;
+        int length = Integer.parseInt(sb.substring(lengthStart, sb.indexOf("\r\n", lengthStart)));
+        if (sb.length() == bodyStart + 4 + length) {
+          return sb.toString();
+        }
+      }
+    }
+    throw new IOException("connection closed");
+  }
+
+  private void waitForRequests(long count) {
+    // reported once the response is done, which may be after the client has read it
+    new TestCondition(() -> stats.getRequestCount() == count).blockTillTrue(5_000);
+  }
+
+  @Test
+  public void phaseTimingTest() throws IOException, InterruptedException {
+    long delayNanos = TimeUnit.MILLISECONDS.toNanos(DELAY_MILLIS);
+    try (Socket socket = connect()) {
+      // the connection is warmed up first, so the first read is not delayed past the send
+      send(socket, HELLO_REQUEST);
+      readResponse(socket);
+      waitForRequests(1);
+      assertEquals(1, stats.getHeaderLatency().getCount());
+      long warmupHandlerNanos = stats.getHandlerLatency().getMax();
+
+      // headers sent in two parts, so the header phase takes about the delay
+      send(socket, HELLO_REQUEST.substring(0, 10));
+      TimeUnit.MILLISECONDS.sleep(DELAY_MILLIS);
+      send(socket, HELLO_REQUEST.substring(10));
+      readResponse(socket);
+      waitForRequests(2);
+      // less the time for the server to read the first part
+      assertTrue(stats.getHeaderLatency().getMax() >= delayNanos / 2);
+      // the wait for the headers is not part of the handler phase
+      assertTrue(stats.getHandlerLatency().getMax() < Math.max(warmupHandlerNanos + 1, delayNanos));
+
+      // the handler blocks for the delay
+      send(socket, "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      readResponse(socket);
+      waitForRequests(3);
+      assertEquals(3, stats.getHeaderLatency().getCount());
+      assertEquals(3, stats.getHandlerLatency().getCount());
+      assertEquals(3, stats.getTotalLatency().getCount());
+      assertTrue(stats.getHandlerLatency().getMax() >= delayNanos);
+      assertTrue(stats.getTotalLatency().getMax() >= stats.getHandlerLatency().getMax());
+      assertTrue(stats.getTotalMillisMax() >= DELAY_MILLIS);
+    }
+  }
+
+  @Test
+  public void statusAndRouteCountTest() throws IOException {
+    try (Socket socket = connect()) {
+      send(socket, HELLO_REQUEST + HELLO_REQUEST);
+      readResponse(socket);
+      readResponse(socket);
+    }
+    try (Socket socket = connect()) {
+      // not routed, responded to with a 404
+      send(socket, "GET /missing HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      assertTrue(readResponse(socket).startsWith("HTTP/1.1 404"));
+    }
+    waitForRequests(3);
+    assertEquals(2, stats.getStatusCount(200));
+    assertEquals(1, stats.getStatusCount(404));
+    assertEquals(0, stats.getStatusCount(500));
+    assertEquals(2, stats.getRouteCount(HELLO_ROUTE));
+    assertEquals(0, stats.getRouteCount(UPLOAD_ROUTE));
+    assertEquals("200=2\n404=1\n", stats.getStatusCounts());
+    assertEquals(HELLO_ROUTE + "=2\n", stats.getRouteCounts());
+  }
+
+  @Test
+  public void bytesCountedTest() throws IOException {
+    String upload = "POST /upload HTTP/1.1\r\nHost: localhost\r\n" +
+                      HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": 10\r\n\r\n0123456789";
+    String helloResponse;
+    String uploadResponse;
+    try (Socket socket = connect()) {
+      send(socket, HELLO_REQUEST);
+      helloResponse = readResponse(socket);
+      send(socket, upload);
+      uploadResponse = readResponse(socket);
+      assertTrue(uploadResponse.endsWith("\r\n\r\n10"));
+      waitForRequests(2);
+      assertEquals(10, stats.getBodyBytesRead());
+      assertEquals(helloResponse.length() + uploadResponse.length(), stats.getBytesWritten());
+      assertEquals(1, stats.getRouteCount(UPLOAD_ROUTE));
+      // connection totals are only added once the connection closes
+      assertEquals(0, stats.getConnectionBytesRead());
+    }
+    new TestCondition(() -> stats.getActiveConnections() == 0).blockTillTrue(5_000);
+    assertEquals(HELLO_REQUEST.length() + upload.length(), stats.getConnectionBytesRead());
+    assertEquals(helloResponse.length() + uploadResponse.length(), stats.getConnectionBytesWritten());
+  }
+
+  @Test
+  public void activeConnectionsTest() throws IOException {
+    Socket first = connect();
+    Socket second = connect();
+    try {
+      new TestCondition(() -> stats.getActiveConnections() == 2).blockTillTrue(5_000);
+      assertEquals(2, stats.getTotalConnections());
+      first.close();
+      new TestCondition(() -> stats.getActiveConnections() == 1).blockTillTrue(5_000);
+    } finally {
+      first.close();
+      second.close();
+    }
+    new TestCondition(() -> stats.getActiveConnections() == 0).blockTillTrue(5_000);
+    assertEquals(2, stats.getTotalConnections());
+    assertEquals(0, stats.getRejectedConnections());
+  }
+
+  @Test
+  public void expositionTextTest() throws IOException {
+    String metrics;
+    try (Socket socket = connect()) {
+      send(socket, HELLO_REQUEST);
+      readResponse(socket);
+      waitForRequests(1);
+      send(socket, "GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      metrics = readResponse(socket);
+    }
+    assertTrue(metrics.contains(HTTPConstants.HTTP_KEY_CONTENT_TYPE + ": text/plain; version=0.0.4"));
+    // the metrics request is still in progress while rendered, so only the first is counted
+    assertTrue(metrics.contains("\r\n\r\n# TYPE http_server_connections_active gauge\n" +
+                                  "http_server_connections_active 1\n"));
+    assertTrue(metrics.contains("# TYPE http_server_responses_total counter\n" +
+                                  "http_server_responses_total{code=\"200\"} 1\n"));
+    assertTrue(metrics.contains("# TYPE http_server_route_requests_total counter\n" +
+                                  "http_server_route_requests_total{route=\"" + HELLO_ROUTE + "\"} 1\n"));
+    assertTrue(metrics.contains("# TYPE http_server_request_seconds summary\n" +
+                                  "http_server_request_seconds{quantile=\"0.5\"} "));
+    assertTrue(metrics.contains("http_server_request_seconds{quantile=\"0.99\"} "));
+    assertTrue(metrics.contains("\nhttp_server_request_seconds_count 1\n"));
+    assertTrue(metrics.contains("\nhttp_server_handler_seconds_count 1\n"));
+
+    // label values are escaped
+    stats.requestCompleted(null, "GET */a\"b\\c", 200, 0, 0, 0, 0, 0);
+    assertTrue(stats.toExpositionText().contains("{route=\"GET */a\\\"b\\\\c\"} 1\n"));
+  }
+
+  @Test
+  public void mbeanTest() throws Exception {
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = stats.registerMBean("org.threadly.litesockets:type=HTTPServer,name=statsTest");
+    try {
+      assertTrue(mbs.isRegistered(name));
+      try {
+        stats.registerMBean(name.toString());
+        fail("Exception should have thrown");
+      } catch (InstanceAlreadyExistsException e) {
+        // expected
+      }
+      try (Socket socket = connect()) {
+        send(socket, HELLO_REQUEST);
+        readResponse(socket);
+        waitForRequests(1);
+        assertEquals(1L, mbs.getAttribute(name, "RequestCount"));
+        assertEquals(1L, mbs.getAttribute(name, "ActiveConnections"));
+        assertEquals(HELLO_ROUTE + "=1\n", mbs.getAttribute(name, "RouteCounts"));
+        assertEquals(stats.getTotalMillisMax(), (Double)mbs.getAttribute(name, "TotalMillisMax"), 0);
+      }
+    } finally {
+      stats.unregisterMBean(name);
+    }
+    assertFalse(mbs.isRegistered(name));
+  }
+}
@@ -0,0 +1,151 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.concurrent.PriorityScheduler;
+import org.threadly.litesockets.ThreadedSocketExecuter;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.utils.PortUtils;
+import org.threadly.util.Clock;
+
+public class HTTPServerTimeoutTests {
+  private static final String REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  private static final int TIMEOUT = 200;
+
+  private PriorityScheduler ps;
+  private ThreadedSocketExecuter se;
+  private HTTPServer server;
+  private int port;
+
+  @Before
+  public void setup() throws IOException {
+    ps = new PriorityScheduler(4);
+    se = new ThreadedSocketExecuter(ps);
+    se.start();
+    port = PortUtils.findTCPPort();
+    server = new HTTPServer(se, "localhost", port);
+    server.setHandler((request, responseWriter, bodyListener) -> {
+      responseWriter.sendHTTPResponse(new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "2").build());
+      responseWriter.writeBody(ByteBuffer.wrap("ok".getBytes()));
+      responseWriter.done();
+    });
+  }
+
+  @After
+  public void cleanup() {
+    server.stop();
+    se.stop();
+    ps.shutdownNow();
+  }
+
+  private Socket connect(String send) throws IOException {
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(5_000);
+    if (send != null) {
+      socket.getOutputStream().write(send.getBytes(StandardCharsets.US_ASCII));
+    }
+    return socket;
+  }
+
+  /**
+   * Reads until the server closes the connection, failing with a timeout if it does not.
+   */
+  private static String readUntilClosed(Socket socket) throws IOException {
+    try {
+      InputStream in = socket.getInputStream();
+      StringBuilder sb = new StringBuilder();
+      int c;
+      while ((c = in.read()) != -1) {
+        sb.append((char)c);
+      }
+      return sb.toString();
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static void readResponse(Socket socket) throws IOException {
+    InputStream in = socket.getInputStream();
+    StringBuilder sb = new StringBuilder();
+    while (! sb.toString().endsWith("\r\n\r\nok")) {
+      int c = in.read();
+      assertTrue("connection closed", c != -1);
+      sb.append((char)c);
+    }
+  }
+
+  @Test
+  public void idleTimeoutTest() throws IOException {
+    server.setIdleTimeout(TIMEOUT);
+    server.start();
+    long start = Clock.accurateForwardProgressingMillis();
+    assertEquals("", readUntilClosed(connect(null)));
+    assertTrue(Clock.accurateForwardProgressingMillis() - start >= TIMEOUT - 50);
+  }
+
+  @Test
+  public void idleTimeoutAfterResponseTest() throws IOException, InterruptedException {
+    server.setIdleTimeout(TIMEOUT);
+    server.start();
+    Socket socket = connect(null);
+    // requests keep the connection active past the idle timeout
+    for (int i = 0; i < 5; i++) {
+      socket.getOutputStream().write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+      readResponse(socket);
+      TimeUnit.MILLISECONDS.sleep(TIMEOUT / 2);
+    }
+    assertEquals("", readUntilClosed(socket));
+  }
+
+  @Test
+  public void headerReadTimeoutTest() throws IOException {
+    server.setHeaderReadTimeout(TIMEOUT);
+    server.start();
+    long start = Clock.accurateForwardProgressingMillis();
+    assertEquals("", readUntilClosed(connect("GET / HTTP/1.1\r\nHost: local")));
+    assertTrue(Clock.accurateForwardProgressingMillis() - start >= TIMEOUT - 50);
+  }
+
+  @Test
+  public void bodyReadTimeoutTest() throws IOException {
+    server.setBodyReadTimeout(TIMEOUT);
+    server.start();
+    String response = readUntilClosed(connect("POST / HTTP/1.1\r\nContent-Length: 10\r\n\r\nab"));
+    // the handler responded right away, the connection is closed for the incomplete body
+    assertTrue(response.startsWith("HTTP/1.1 200"));
+  }
+
+  @Test
+  public void noTimeoutTest() throws IOException, InterruptedException {
+    server.start();
+    Socket socket = connect(REQUEST);
+    readResponse(socket);
+    TimeUnit.MILLISECONDS.sleep(TIMEOUT * 2);
+    socket.getOutputStream().write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+    readResponse(socket);
+    socket.close();
+  }
+
+  @Test
+  public void maxRequestsPerConnectionTest() throws IOException {
+    server.setMaxRequestsPerConnection(2);
+    server.start();
+    String response = readUntilClosed(connect(REQUEST + REQUEST + REQUEST));
+    String[] responses = response.split("HTTP/1.1 200", -1);
+    assertEquals(3, responses.length);  // two responses
+    assertFalse(responses[1].contains(HTTPConstants.HTTP_KEY_CONNECTION));
+    assertTrue(responses[2].contains(HTTPConstants.HTTP_KEY_CONNECTION + ": close\r\n"));
+  }
+}
@@ -0,0 +1,217 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.HTTPServerHandler;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+public class ResponseCacheHandlerTests {
+  private static final String HOST = "a.example";
+  private static final String ACCEPT_LANGUAGE = "Accept-Language";
+
+  private int handled;
+  private String cacheControl;
+  private String vary;
+  private HTTPServerHandler handler;
+  private ResponseCacheHandler cache;
+
+  @Before
+  public void setup() {
+    handled = 0;
+    cacheControl = null;
+    vary = null;
+    // responds with the Host header as the body
+    handler = (request, responseWriter, bodyListener) -> {
+      handled++;
+      byte[] body = request.getHTTPHeaders().getHeader(HTTPConstants.HTTP_KEY_HOST)
+                           .getBytes(StandardCharsets.US_ASCII);
+      HTTPResponseBuilder hrb = new HTTPResponseBuilder()
+          .setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, Integer.toString(body.length));
+      if (cacheControl != null) {
+        hrb.setHeader(HTTPConstants.HTTP_KEY_CACHE_CONTROL, cacheControl);
+      }
+      if (vary != null) {
+        hrb.setHeader(HTTPConstants.HTTP_KEY_VARY, vary);
+      }
+      responseWriter.sendHTTPResponse(hrb.build());
+      responseWriter.writeBody(ByteBuffer.wrap(body));
+      responseWriter.done();
+    };
+    cache = new ResponseCacheHandler(handler);
+  }
+
+  private String request(String host, boolean forceClose) {
+    return request(new HTTPRequestBuilder().setPath("/").setHeader(HTTPConstants.HTTP_KEY_HOST, host),
+                   forceClose);
+  }
+
+  private String request(HTTPRequestBuilder hrb, boolean forceClose) {
+    FakeClient client = new FakeClient();
+    ResponseWriter responseWriter = new ResponseWriter(client);
+    if (forceClose) {
+      responseWriter.forceClose();
+    }
+    cache.handle(hrb.buildHTTPRequest(), responseWriter, new BodyFuture());
+    return client.getWritten();
+  }
+
+  private String request(String path) {
+    return request(new HTTPRequestBuilder().setPath(path).setHeader(HTTPConstants.HTTP_KEY_HOST, HOST),
+                   false);
+  }
+
+  @Test
+  public void cacheHitTest() {
+    assertTrue(request("a.example", false).endsWith("\r\n\r\na.example"));
+    assertTrue(request("a.example", false).endsWith("\r\n\r\na.example"));
+    assertEquals(1, handled);
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void hostIsPartOfKeyTest() {
+    assertTrue(request("a.example", false).endsWith("\r\n\r\na.example"));
+    assertTrue(request("b.example", false).endsWith("\r\n\r\nb.example"));
+    assertEquals(2, handled);
+    assertTrue(request("A.example", false).endsWith("\r\n\r\na.example"));
+    assertEquals(2, handled);
+  }
+
+  @Test
+  public void connectionCloseNotServedFromCacheTest() {
+    request("a.example", false);
+    String response = request("a.example", true);
+    assertEquals(2, handled);
+    assertTrue(response.contains(HTTPConstants.HTTP_KEY_CONNECTION + ": close\r\n"));
+    // the response stored without the connection specific header is still used
+    assertFalse(request("a.example", false).contains(HTTPConstants.HTTP_KEY_CONNECTION));
+    assertEquals(2, handled);
+  }
+
+  @Test
+  public void ttlExpiryTest() throws InterruptedException {
+    cache = new ResponseCacheHandler(handler, ResponseCacheHandler.DEFAULT_MAX_CACHE_SIZE,
+                                     ResponseCacheHandler.DEFAULT_MAX_ENTRY_SIZE, 50);
+    request("/");
+    request("/");
+    assertEquals(1, handled);
+    TimeUnit.MILLISECONDS.sleep(100);
+    request("/");
+    assertEquals(2, handled);
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void maxAgeTest() {
+    // without a max-age nothing is cached
+    cache = new ResponseCacheHandler(handler, ResponseCacheHandler.DEFAULT_MAX_CACHE_SIZE,
+                                     ResponseCacheHandler.DEFAULT_MAX_ENTRY_SIZE, 0);
+    request("/");
+    request("/");
+    assertEquals(2, handled);
+    cacheControl = "public, max-age=60";
+    request("/");
+    request("/");
+    assertEquals(3, handled);
+    cacheControl = "max-age=0";
+    request("/other");
+    request("/other");
+    assertEquals(5, handled);
+  }
+
+  @Test
+  public void noStoreResponseTest() {
+    cacheControl = "no-store";
+    request("/");
+    request("/");
+    assertEquals(2, handled);
+    assertEquals(0, cache.getCachedBytes());
+  }
+
+  @Test
+  public void privateResponseTest() {
+    cacheControl = "private, max-age=60";
+    request("/");
+    request("/");
+    assertEquals(2, handled);
+    assertEquals(0, cache.getCachedBytes());
+  }
+
+  @Test
+  public void noStoreRequestTest() {
+    HTTPRequestBuilder hrb = new HTTPRequestBuilder().setPath("/").setHeader(HTTPConstants.HTTP_KEY_HOST, HOST)
+                                                     .setHeader(HTTPConstants.HTTP_KEY_CACHE_CONTROL, "no-store");
+    request(hrb, false);
+    request(hrb, false);
+    assertEquals(2, handled);
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void varyTest() {
+    vary = ACCEPT_LANGUAGE;
+    HTTPRequestBuilder en = new HTTPRequestBuilder().setPath("/").setHeader(HTTPConstants.HTTP_KEY_HOST, HOST)
+                                                    .setHeader(ACCEPT_LANGUAGE, "en");
+    HTTPRequestBuilder fr = new HTTPRequestBuilder().setPath("/").setHeader(HTTPConstants.HTTP_KEY_HOST, HOST)
+                                                    .setHeader(ACCEPT_LANGUAGE, "fr");
+    request(en, false);
+    request(fr, false);
+    assertEquals(2, handled);
+    request(en, false);
+    request(fr, false);
+    assertEquals(2, handled);
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void varyStarNotCachedTest() {
+    vary = "*";
+    request("/");
+    request("/");
+    assertEquals(2, handled);
+  }
+
+  @Test
+  public void sizeBoundEvictionTest() {
+    int size = request("/size").length();
+    // room for two responses
+    cache = new ResponseCacheHandler(handler, size * 2 + size / 2,
+                                     ResponseCacheHandler.DEFAULT_MAX_ENTRY_SIZE,
+                                     ResponseCacheHandler.DEFAULT_TTL_MILLIS);
+    handled = 0;
+    request("/a");
+    request("/b");
+    request("/a");  // b is now the least recently used
+    assertEquals(2, handled);
+    request("/c");
+    assertEquals(3, handled);
+    assertEquals(size * 2, cache.getCachedBytes());
+    request("/a");
+    request("/c");
+    assertEquals(3, handled);
+    request("/b");
+    assertEquals(4, handled);
+  }
+
+  @Test
+  public void maxEntrySizeTest() {
+    int size = request("/size").length();
+    cache = new ResponseCacheHandler(handler, ResponseCacheHandler.DEFAULT_MAX_CACHE_SIZE,
+                                     size - 1, ResponseCacheHandler.DEFAULT_TTL_MILLIS);
+    handled = 0;
+    assertEquals(size, request("/").length());
+    request("/");
+    assertEquals(2, handled);
+    assertEquals(0, cache.getCachedBytes());
+  }
+}
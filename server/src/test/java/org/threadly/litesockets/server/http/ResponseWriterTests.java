@@ -0,0 +1,66 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.response.HTTPResponse;
+import org.threadly.litesockets.protocols.http.response.HTTPResponseBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseState;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+public class ResponseWriterTests {
+  private static final HTTPResponse RESPONSE =
+      new HTTPResponseBuilder().setHeader(HTTPConstants.HTTP_KEY_CONTENT_LENGTH, "4").build();
+
+  private FakeClient client;
+  private ResponseState state;
+  private ResponseWriter first;
+
+  @Before
+  public void setup() {
+    client = new FakeClient();
+    state = new ResponseState(client, false);
+    first = new ResponseWriter(state);
+    first.sendHTTPResponse(RESPONSE);
+    first.writeBody(ByteBuffer.wrap("test".getBytes()));
+    first.done();
+    state.reset();
+    client.getWritten();
+  }
+
+  @Test (expected = IllegalStateException.class)
+  public void staleWriteBodyFail() {
+    new ResponseWriter(state).sendHTTPResponse(RESPONSE);
+    first.writeBody(ByteBuffer.wrap("late".getBytes()));
+  }
+
+  @Test (expected = IllegalStateException.class)
+  public void staleSendResponseFail() {
+    first.sendHTTPResponse(RESPONSE);
+  }
+
+  @Test
+  public void staleDoneIgnoredTest() {
+    ResponseWriter second = new ResponseWriter(state);
+    second.sendHTTPResponse(RESPONSE);
+    first.closeOnDone();
+    first.done();
+    first.addCloseListener(() -> fail("stale listener called"));
+    second.writeBody(ByteBuffer.wrap("next".getBytes()));
+    second.done();
+    assertTrue(client.getWritten().endsWith("\r\n\r\nnext"));
+    assertFalse(client.isClosed());
+    state.connectionClosed();
+  }
+
+  @Test
+  public void staleCloseConnectionTest() {
+    first.closeConnection();
+    assertTrue(client.isClosed());
+    assertTrue(new ResponseWriter(state).isClosed());
+  }
+}
@@ -0,0 +1,124 @@
+package org.threadly.litesockets.server.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threadly.litesockets.protocols.http.request.HTTPRequestBuilder;
+import org.threadly.litesockets.protocols.http.shared.HTTPConstants;
+import org.threadly.litesockets.server.http.HTTPServer.BodyFuture;
+import org.threadly.litesockets.server.http.HTTPServer.ResponseWriter;
+
+public class StaticFileHandlerTests {
+  private Path root;
+  private Path outside;
+  private StaticFileHandler handler;
+
+  @Before
+  public void setup() throws IOException {
+    outside = Files.createTempDirectory("staticFileHandlerTests");
+    root = Files.createDirectory(outside.resolve("root"));
+    Files.write(outside.resolve("secret.txt"), "secret".getBytes(StandardCharsets.US_ASCII));
+    Files.write(root.resolve("a.txt"), "hello".getBytes(StandardCharsets.US_ASCII));
+    Files.createDirectory(root.resolve("sub"));
+    Files.write(root.resolve("sub").resolve("b.txt"), "b".getBytes(StandardCharsets.US_ASCII));
+    handler = new StaticFileHandler(root);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    Files.delete(root.resolve("sub").resolve("b.txt"));
+    Files.delete(root.resolve("sub"));
+    Files.delete(root.resolve("a.txt"));
+    Files.delete(root);
+    Files.delete(outside.resolve("secret.txt"));
+    Files.delete(outside);
+  }
+
+  private String request(String method, String path) {
+    FakeClient client = new FakeClient();
+    handler.handle(new HTTPRequestBuilder().setRequestMethod(method).setPath(path).buildHTTPRequest(),
+                   new ResponseWriter(client), new BodyFuture());
+    return client.getWritten();
+  }
+
+  @Test
+  public void resolveTest() {
+    assertEquals(root.resolve("a.txt"), handler.resolve("a.txt"));
+    assertEquals(root.resolve("a.txt"), handler.resolve("//a.txt"));
+    assertEquals(root.resolve("sub").resolve("b.txt"), handler.resolve("sub%2Fb.txt"));
+    assertEquals(root.resolve("a.txt"), handler.resolve("sub/../a.txt"));
+    assertEquals(root.resolve("a b.txt"), handler.resolve("a%20b.txt"));
+  }
+
+  @Test
+  public void resolveTraversalTest() {
+    assertNull(handler.resolve("../secret.txt"));
+    assertNull(handler.resolve("/../secret.txt"));
+    assertNull(handler.resolve("sub/../../secret.txt"));
+    assertNull(handler.resolve("%2e%2e/secret.txt"));
+    assertNull(handler.resolve("%2E%2E%2Fsecret.txt"));
+    assertNull(handler.resolve("sub/%2e%2e/%2e%2e/secret.txt"));
+    assertNull(handler.resolve(".%2e/secret.txt"));
+  }
+
+  @Test
+  public void resolveInvalidTest() {
+    assertNull(handler.resolve("a.txt%00.html"));
+    assertNull(handler.resolve("a.txt\0"));
+    assertNull(handler.resolve("a%zz.txt"));
+    assertNull(handler.resolve("a.txt%2"));
+  }
+
+  @Test
+  public void getTest() {
+    String response = request("GET", "/a.txt");
+    assertTrue(response.startsWith("HTTP/1.1 200"));
+    assertTrue(response.contains(HTTPConstants.HTTP_KEY_CONTENT_TYPE + ": text/plain\r\n"));
+    assertTrue(response.endsWith("\r\n\r\nhello"));
+  }
+
+  @Test
+  public void headTest() {
+    String response = request("HEAD", "/a.txt");
+    assertTrue(response.startsWith("HTTP/1.1 200"));
+    assertTrue(response.contains(HTTPConstants.HTTP_KEY_CONTENT_LENGTH + ": 5\r\n"));
+    assertTrue(response.endsWith("\r\n\r\n"));
+  }
+
+  @Test
+  public void traversalNotFoundTest() {
+    assertTrue(request("GET", "/../secret.txt").startsWith("HTTP/1.1 404"));
+    assertTrue(request("GET", "/%2e%2e/secret.txt").startsWith("HTTP/1.1 404"));
+    assertTrue(request("GET", "/sub").startsWith("HTTP/1.1 404"));
+  }
+
+  @Test
+  public void symlinkEscapeNotFoundTest() throws IOException {
+    Path fileLink = Files.createSymbolicLink(root.resolve("link.txt"), outside.resolve("secret.txt"));
+    Path dirLink = Files.createSymbolicLink(root.resolve("linkdir"), outside);
+    Path insideLink = Files.createSymbolicLink(root.resolve("inside.txt"), root.resolve("a.txt"));
+    try {
+      assertTrue(request("GET", "/link.txt").startsWith("HTTP/1.1 404"));
+      assertTrue(request("GET", "/linkdir/secret.txt").startsWith("HTTP/1.1 404"));
+      assertTrue(request("GET", "/inside.txt").endsWith("\r\n\r\nhello"));
+    } finally {
+      Files.delete(fileLink);
+      Files.delete(dirLink);
+      Files.delete(insideLink);
+    }
+  }
+
+  @Test
+  public void methodNotAllowedTest() {
+    String response = request("POST", "/a.txt");
+    assertTrue(response.startsWith("HTTP/1.1 405"));
+    assertTrue(response.contains(HTTPConstants.HTTP_KEY_ALLOW + ": GET, HEAD\r\n"));
+  }
+}